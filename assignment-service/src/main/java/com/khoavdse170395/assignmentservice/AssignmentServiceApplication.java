@@ -2,8 +2,10 @@ package com.khoavdse170395.assignmentservice;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cache.annotation.EnableCaching;
 
 @SpringBootApplication
+@EnableCaching
 public class AssignmentServiceApplication {
 
 	public static void main(String[] args) {
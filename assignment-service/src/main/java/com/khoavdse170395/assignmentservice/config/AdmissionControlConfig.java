@@ -0,0 +1,50 @@
+package com.khoavdse170395.assignmentservice.config;
+
+import com.khoavdse170395.assignmentservice.service.impl.AdmissionGate;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Admission gates in front of reserve and check-eligibility. Limits are per node; the defaults keep
+ * a single hot assignment from taking more than most of the 10 pooled connections.
+ * assignment.admission.enabled=false admits everything but still counts the calls.
+ */
+@Configuration
+public class AdmissionControlConfig {
+
+    @Value("${assignment.admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${assignment.admission.retryAfterSeconds:1}")
+    private long retryAfterSeconds;
+
+    @Value("${assignment.admission.maxTaggedAssignments:1000}")
+    private int maxTaggedAssignments;
+
+    @Bean
+    public AdmissionGate reserveAdmissionGate(@Value("${assignment.admission.reserve.maxPerAssignment:8}") int maxPerAssignment,
+                                              @Value("${assignment.admission.reserve.maxTotal:40}") int maxTotal,
+                                              MeterRegistry meterRegistry) {
+        return gate("assignment.reserve", maxPerAssignment, maxTotal, meterRegistry);
+    }
+
+    @Bean
+    public AdmissionGate eligibilityAdmissionGate(@Value("${assignment.admission.eligibility.maxPerAssignment:16}") int maxPerAssignment,
+                                                  @Value("${assignment.admission.eligibility.maxTotal:80}") int maxTotal,
+                                                  MeterRegistry meterRegistry) {
+        return gate("assignment.eligibility", maxPerAssignment, maxTotal, meterRegistry);
+    }
+
+    private AdmissionGate gate(String name, int maxPerAssignment, int maxTotal, MeterRegistry meterRegistry) {
+        AdmissionGate gate = enabled
+                ? new AdmissionGate(name, maxPerAssignment, maxTotal, retryAfterSeconds, maxTaggedAssignments, meterRegistry)
+                : new AdmissionGate(name, Integer.MAX_VALUE, Integer.MAX_VALUE, retryAfterSeconds, maxTaggedAssignments, meterRegistry);
+        Gauge.builder(name + ".admission.inflight", gate, AdmissionGate::inFlight)
+                .description("Calls currently admitted by the gate")
+                .register(meterRegistry);
+        return gate;
+    }
+}
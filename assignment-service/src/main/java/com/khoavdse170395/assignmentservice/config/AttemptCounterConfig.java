@@ -0,0 +1,77 @@
+package com.khoavdse170395.assignmentservice.config;
+
+import com.khoavdse170395.assignmentservice.repository.AssignmentAttemptCounterJdbcRepository;
+import com.khoavdse170395.assignmentservice.repository.AssignmentAttemptCounterRepository;
+import com.khoavdse170395.assignmentservice.repository.QuizAssignmentRepository;
+import com.khoavdse170395.assignmentservice.service.AssignmentService;
+import com.khoavdse170395.assignmentservice.service.IdempotencyStore;
+import com.khoavdse170395.assignmentservice.service.QuizAssignmentCache;
+import com.khoavdse170395.assignmentservice.service.impl.AssignmentServiceImpl;
+import com.khoavdse170395.assignmentservice.service.impl.StripedAssignmentService;
+import com.khoavdse170395.assignmentservice.service.impl.StripedAttemptCounters;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * assignment.counters.mode=rowlock (default): every reserve is a guarded update of its
+ * assignment_attempt_counter row. assignment.counters.mode=striped: reserves are decided against
+ * in-memory counters and written behind in batches; single node only, like the memory idempotency store.
+ */
+@Configuration
+@ConditionalOnProperty(name = "assignment.counters.mode", havingValue = "striped")
+public class AttemptCounterConfig {
+
+    @Value("${assignment.counters.stripes:64}")
+    private int stripes;
+
+    @Value("${assignment.counters.flushIntervalMs:20}")
+    private long flushIntervalMs;
+
+    @Value("${assignment.counters.maxBatch:500}")
+    private int maxBatch;
+
+    @Value("${assignment.counters.maxLagMs:5000}")
+    private long maxLagMs;
+
+    @Value("${assignment.counters.awaitFlush:true}")
+    private boolean awaitFlush;
+
+    @Value("${assignment.counters.idleTtlMs:600000}")
+    private long idleTtlMs;
+
+    @Bean
+    public StripedAttemptCounters stripedAttemptCounters(AssignmentAttemptCounterRepository counterRepository,
+                                                         AssignmentAttemptCounterJdbcRepository counterJdbcRepository,
+                                                         QuizAssignmentRepository quizAssignmentRepository,
+                                                         PlatformTransactionManager transactionManager,
+                                                         MeterRegistry meterRegistry) {
+        StripedAttemptCounters counters = new StripedAttemptCounters(counterRepository, counterJdbcRepository,
+                new TransactionTemplate(transactionManager), stripes, Duration.ofMillis(flushIntervalMs), maxBatch,
+                Duration.ofMillis(maxLagMs), awaitFlush, Duration.ofMillis(idleTtlMs), meterRegistry);
+        // Warm up with the assignments that can take reservations now; the rest are seeded on first use
+        counters.reconcile(quizAssignmentRepository.findOpenAssignmentIds(Instant.now()));
+        counters.start();
+        return counters;
+    }
+
+    @Bean
+    @Primary
+    public AssignmentService stripedAssignmentService(AssignmentServiceImpl delegate,
+                                                      StripedAttemptCounters counters,
+                                                      IdempotencyStore idempotencyStore,
+                                                      QuizAssignmentCache quizAssignmentCache,
+                                                      DemoFlags demoFlags,
+                                                      PlatformTransactionManager transactionManager) {
+        return new StripedAssignmentService(delegate, counters, idempotencyStore, quizAssignmentCache, demoFlags,
+                new TransactionTemplate(transactionManager));
+    }
+}
@@ -0,0 +1,59 @@
+package com.khoavdse170395.assignmentservice.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+/**
+ * Puts ConcurrencyLimitedDataSource in front of the Hikari pool. On by default whenever virtual
+ * threads are active; assignment.datasource.limiter.enabled overrides that either way.
+ */
+@Configuration
+public class DataSourceLimiterConfig {
+
+    @Bean
+    static BeanPostProcessor dataSourceConcurrencyLimiter(Environment environment) {
+        boolean enabled = environment.getProperty("assignment.datasource.limiter.enabled", Boolean.class,
+                Threading.VIRTUAL.isActive(environment));
+        // Defaults match the pool: as many permits as connections, the same wait as Hikari's connection-timeout
+        int maxConnections = environment.getProperty("assignment.datasource.limiter.maxConnections", Integer.class,
+                environment.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10));
+        int maxWaiting = environment.getProperty("assignment.datasource.limiter.maxWaiting", Integer.class, 10_000);
+        long acquireTimeoutMs = environment.getProperty("assignment.datasource.limiter.acquireTimeoutMs", Long.class,
+                environment.getProperty("spring.datasource.hikari.connection-timeout", Long.class, 30_000L));
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (enabled && bean instanceof DataSource dataSource && !(bean instanceof ConcurrencyLimitedDataSource)) {
+                    return new ConcurrencyLimitedDataSource(dataSource, maxConnections, maxWaiting, acquireTimeoutMs);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    MeterBinder dataSourceLimiterMetrics(DataSource dataSource) {
+        return registry -> {
+            if (!(dataSource instanceof ConcurrencyLimitedDataSource limiter)) {
+                return;
+            }
+            Gauge.builder("assignment.datasource.limiter.active", limiter, ConcurrencyLimitedDataSource::getActive)
+                    .description("Threads holding a connection through the limiter")
+                    .register(registry);
+            Gauge.builder("assignment.datasource.limiter.waiting", limiter, ConcurrencyLimitedDataSource::getWaiting)
+                    .description("Threads queued in front of the connection pool")
+                    .register(registry);
+            FunctionCounter.builder("assignment.datasource.limiter.rejected", limiter, ConcurrencyLimitedDataSource::getRejected)
+                    .description("Connection requests refused because the queue was full or the wait timed out")
+                    .register(registry);
+        };
+    }
+}
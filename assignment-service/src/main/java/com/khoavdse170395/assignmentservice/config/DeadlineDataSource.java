@@ -0,0 +1,87 @@
+package com.khoavdse170395.assignmentservice.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounds the statements of a request by the time its caller still waits (RequestDeadline): each
+ * statement's query timeout is lowered to the remaining time, and a statement that would only start
+ * after the deadline is not sent to the database at all but fails with SQLTimeoutException.
+ * Connections taken without a deadline, e.g. by background flushes, are handed out as they are.
+ */
+public class DeadlineDataSource extends DelegatingDataSource {
+
+    private final AtomicLong expired = new AtomicLong();
+
+    public DeadlineDataSource(DataSource target) {
+        super(target);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return bounded(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return bounded(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    // Statements refused because the request's deadline had passed
+    public long getExpired() {
+        return expired.get();
+    }
+
+    private Connection bounded(Connection target) {
+        if (!RequestDeadline.isSet()) {
+            return target;
+        }
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(target, method, args);
+                    // createStatement, prepareStatement and prepareCall, as the interface each returns
+                    if (result instanceof Statement statement) {
+                        return bounded(statement, method.getReturnType());
+                    }
+                    return result;
+                });
+    }
+
+    private Object bounded(Statement target, Class<?> type) {
+        return Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    if (method.getName().startsWith("execute")) {
+                        long remaining = RequestDeadline.remainingMillis();
+                        if (remaining <= 0 && RequestDeadline.isSet()) {
+                            expired.incrementAndGet();
+                            throw new SQLTimeoutException("Request deadline passed before the statement ran");
+                        }
+                        if (remaining != Long.MAX_VALUE) {
+                            // JDBC timeouts are whole seconds, and 0 would mean none
+                            int seconds = (int) Math.max(1, Math.min(Integer.MAX_VALUE, (remaining + 999) / 1000));
+                            // A shorter timeout the statement already has, e.g. a query hint, is kept
+                            int existing = target.getQueryTimeout();
+                            target.setQueryTimeout(existing > 0 ? Math.min(existing, seconds) : seconds);
+                        }
+                    }
+                    return invoke(target, method, args);
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.khoavdse170395.assignmentservice.config;
+
+import com.khoavdse170395.assignmentservice.service.IdempotencyStore;
+import com.khoavdse170395.assignmentservice.service.impl.CachingIdempotencyStore;
+import com.khoavdse170395.assignmentservice.service.impl.InMemoryIdempotencyStore;
+import com.khoavdse170395.assignmentservice.service.impl.JdbcIdempotencyStore;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * assignment.idempotency.store=jdbc (default): durable table shared by all replicas, fronted by a
+ * bounded in-memory cache. assignment.idempotency.store=memory: bounded in-memory store only,
+ * for single-node demos.
+ */
+@Configuration
+@EnableScheduling
+public class IdempotencyStoreConfig implements SchedulingConfigurer {
+
+    @Value("${assignment.idempotency.ttlMinutes:1440}")
+    private long ttlMinutes;
+
+    @Value("${assignment.idempotency.cacheMaxSize:10000}")
+    private int cacheMaxSize;
+
+    @Value("${assignment.idempotency.purgeBatchSize:500}")
+    private int purgeBatchSize;
+
+    @Value("${assignment.idempotency.purgeIntervalMs:60000}")
+    private long purgeIntervalMs;
+
+    private final ObjectProvider<JdbcIdempotencyStore> jdbcIdempotencyStore;
+
+    public IdempotencyStoreConfig(ObjectProvider<JdbcIdempotencyStore> jdbcIdempotencyStore) {
+        this.jdbcIdempotencyStore = jdbcIdempotencyStore;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "assignment.idempotency.store", havingValue = "jdbc", matchIfMissing = true)
+    public JdbcIdempotencyStore jdbcIdempotencyStore(NamedParameterJdbcTemplate jdbcTemplate) {
+        return new JdbcIdempotencyStore(jdbcTemplate, Duration.ofMinutes(ttlMinutes), purgeBatchSize, Clock.systemUTC());
+    }
+
+    @Bean
+    @Primary
+    public IdempotencyStore idempotencyStore(MeterRegistry meterRegistry) {
+        Duration ttl = Duration.ofMinutes(ttlMinutes);
+        JdbcIdempotencyStore durable = jdbcIdempotencyStore.getIfAvailable();
+        if (durable == null) {
+            InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(cacheMaxSize, ttl, Clock.systemUTC(), true);
+            registerSizeGauge(meterRegistry, "memory", store);
+            return store;
+        }
+
+        InMemoryIdempotencyStore front = new InMemoryIdempotencyStore(cacheMaxSize, ttl, Clock.systemUTC(), false);
+        CachingIdempotencyStore store = new CachingIdempotencyStore(front, durable, meterRegistry);
+        registerSizeGauge(meterRegistry, "front", front);
+        registerSizeGauge(meterRegistry, "jdbc", durable);
+        return store;
+    }
+
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar taskRegistrar) {
+        JdbcIdempotencyStore durable = jdbcIdempotencyStore.getIfAvailable();
+        if (durable != null) {
+            taskRegistrar.addFixedDelayTask(durable::purgeExpired, Duration.ofMillis(purgeIntervalMs));
+        }
+    }
+
+    private static void registerSizeGauge(MeterRegistry meterRegistry, String tier, IdempotencyStore store) {
+        Gauge.builder("assignment.idempotency.store.size", store, IdempotencyStore::size)
+                .tag("tier", tier)
+                .description("Idempotency keys currently held")
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,25 @@
+package com.khoavdse170395.assignmentservice.config;
+
+import com.khoavdse170395.assignmentservice.model.dto.CheckEligibilityResponse;
+import com.khoavdse170395.assignmentservice.service.impl.SingleFlight;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Retries and double clicks send the same check-eligibility several times at once; with this they
+ * share one pair of queries. Keyed by "assignmentId:userId".
+ */
+@Configuration
+public class SingleFlightConfig {
+
+    @Bean
+    public SingleFlight<String, CheckEligibilityResponse> eligibilitySingleFlight(MeterRegistry meterRegistry) {
+        SingleFlight<String, CheckEligibilityResponse> singleFlight = new SingleFlight<>("assignment.eligibility", meterRegistry);
+        Gauge.builder("assignment.eligibility.singleflight.inflight", singleFlight, SingleFlight::inFlight)
+                .description("Distinct eligibility checks currently running")
+                .register(meterRegistry);
+        return singleFlight;
+    }
+}
@@ -0,0 +1,52 @@
+package com.khoavdse170395.assignmentservice.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+/**
+ * Opt-in virtual-thread mode (spring.threads.virtual.enabled=true, Java 21+). Spring Boot then runs
+ * Tomcat requests on virtual threads; this class adds the pieces specific to this service.
+ */
+@Configuration
+@Slf4j
+public class VirtualThreadConfig {
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reportThreadingMode(ApplicationReadyEvent event) {
+        Environment environment = event.getApplicationContext().getEnvironment();
+        boolean requested = environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false);
+        if (Threading.VIRTUAL.isActive(environment)) {
+            log.info("Virtual-thread mode active");
+        } else if (requested) {
+            log.warn("spring.threads.virtual.enabled=true is ignored on Java {}; virtual threads need Java 21+",
+                    Runtime.version().feature());
+        }
+    }
+
+    /**
+     * @Cacheable(sync = true) loads inside Caffeine's per-key compute, i.e. while holding a
+     * ConcurrentHashMap bin monitor, which pins the carrier thread for the whole JDBC round trip.
+     * Async cache mode only inserts a future under that monitor and runs the load on its own
+     * virtual thread; callers wait on the future, which parks instead of pinning.
+     */
+    @Bean
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    CacheManagerCustomizer<CaffeineCacheManager> asyncCaffeineCacheMode(Environment environment) {
+        return cacheManager -> {
+            String spec = environment.getProperty("spring.cache.caffeine.spec");
+            Caffeine<Object, Object> caffeine = spec != null ? Caffeine.from(spec) : Caffeine.newBuilder();
+            cacheManager.setCaffeine(caffeine.executor(new VirtualThreadTaskExecutor("cache-load-")));
+            cacheManager.setAsyncCacheMode(true);
+        };
+    }
+}
@@ -1,5 +1,10 @@
 package com.khoavdse170395.assignmentservice.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.khoavdse170395.assignmentservice.model.dto.BulkEligibilityRequest;
+import com.khoavdse170395.assignmentservice.model.dto.BulkEligibilityResult;
+import com.khoavdse170395.assignmentservice.model.dto.BulkReservationRequest;
+import com.khoavdse170395.assignmentservice.model.dto.BulkReservationResponse;
 import com.khoavdse170395.assignmentservice.model.dto.CheckEligibilityRequest;
 import com.khoavdse170395.assignmentservice.model.dto.CheckEligibilityResponse;
 import com.khoavdse170395.assignmentservice.model.dto.CreateAssignmentRequest;
@@ -8,6 +13,8 @@ import com.khoavdse170395.assignmentservice.model.dto.ReleaseRequest;
 import com.khoavdse170395.assignmentservice.model.dto.ReserveRequest;
 import com.khoavdse170395.assignmentservice.model.dto.RemainingAttemptsResponse;
 import com.khoavdse170395.assignmentservice.service.AssignmentService;
+import com.khoavdse170395.assignmentservice.service.impl.AdmissionGate;
+import com.khoavdse170395.assignmentservice.service.impl.SingleFlight;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -16,8 +23,13 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
 
 @RestController
 @RequestMapping("/assignments")
@@ -27,6 +39,10 @@ import org.springframework.web.bind.annotation.*;
 public class AssignmentController {
 
     private final AssignmentService assignmentService;
+    private final ObjectMapper objectMapper;
+    private final SingleFlight<String, CheckEligibilityResponse> eligibilitySingleFlight;
+    private final AdmissionGate reserveAdmissionGate;
+    private final AdmissionGate eligibilityAdmissionGate;
 
     @Operation(summary = "Tạo assignment", description = "Tạo quiz assignment với số lượt làm cho phép")
     @ApiResponses(value = {
@@ -49,7 +65,8 @@ public class AssignmentController {
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Eligibility check completed"),
             @ApiResponse(responseCode = "400", description = "Invalid request"),
-            @ApiResponse(responseCode = "404", description = "Assignment not found")
+            @ApiResponse(responseCode = "404", description = "Assignment not found"),
+            @ApiResponse(responseCode = "429", description = "Too many checks for this assignment, see Retry-After")
     })
     @PostMapping("/{assignmentId}/check-eligibility")
     public ResponseEntity<CheckEligibilityResponse> checkEligibility(
@@ -59,16 +76,47 @@ public class AssignmentController {
         log.info("Received check eligibility request for assignmentId: {}, userId: {}", 
                 assignmentId, request.getUserId());
         
-        CheckEligibilityResponse response = assignmentService.checkEligibility(assignmentId, request.getUserId());
+        // Identical checks already in flight share their answer; taken before the read-only transaction opens.
+        // Only the call that actually runs needs admission, its waiters share the outcome, 429 included
+        CheckEligibilityResponse response = eligibilitySingleFlight.execute(assignmentId + ":" + request.getUserId(),
+                () -> eligibilityAdmissionGate.execute(assignmentId,
+                        () -> assignmentService.checkEligibility(assignmentId, request.getUserId())));
         
         return ResponseEntity.ok(response);
     }
 
+    @Operation(summary = "Bulk eligibility and remaining attempts", description = "Eligibility and remaining attempts "
+            + "for many (assignmentId, userId) pairs, e.g. a class roster or all assignments of a user. "
+            + "Streamed as newline-delimited JSON in request order, one chunk at a time")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "One JSON object per line and pair"),
+            @ApiResponse(responseCode = "400", description = "Invalid request")
+    })
+    @PostMapping(value = "/bulk/eligibility", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> checkEligibilityBulk(@Valid @RequestBody BulkEligibilityRequest request) {
+        log.info("Received bulk eligibility request for {} pairs", request.getPairs().size());
+
+        StreamingResponseBody body = out -> assignmentService.streamEligibility(request.getPairs(), chunk -> {
+            try {
+                for (BulkEligibilityResult result : chunk) {
+                    out.write(objectMapper.writeValueAsBytes(result));
+                    out.write('\n');
+                }
+                // Push each chunk to the client before the next one is computed
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
     @Operation(summary = "Reserve attempt", description = "Reserve a quiz attempt for a user (idempotent)")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Attempt reserved successfully"),
             @ApiResponse(responseCode = "400", description = "Invalid request or user not eligible"),
-            @ApiResponse(responseCode = "404", description = "Assignment not found")
+            @ApiResponse(responseCode = "404", description = "Assignment not found"),
+            @ApiResponse(responseCode = "429", description = "Too many reserves for this assignment, see Retry-After")
     })
     @PostMapping("/{assignmentId}/reserve")
     public ResponseEntity<Void> reserveAttempt(
@@ -78,7 +126,11 @@ public class AssignmentController {
         log.info("Received reserve request for assignmentId: {}, userId: {}, idempotencyKey: {}", 
                 assignmentId, request.getUserId(), request.getIdempotencyKey());
         
-        assignmentService.reserveAttempt(assignmentId, request.getUserId(), request.getIdempotencyKey());
+        // Refused before it waits for a connection; release is never gated, compensation must get through
+        reserveAdmissionGate.execute(assignmentId, () -> {
+            assignmentService.reserveAttempt(assignmentId, request.getUserId(), request.getIdempotencyKey());
+            return null;
+        });
         
         return ResponseEntity.ok().build();
     }
@@ -102,6 +154,35 @@ public class AssignmentController {
         return ResponseEntity.ok().build();
     }
 
+    @Operation(summary = "Bulk reserve attempts", description = "Check eligibility and reserve attempts for many users "
+            + "in one transaction (idempotent per item). Each item is RESERVED, ALREADY_RESERVED or REJECTED with a reason")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Per-item results in request order"),
+            @ApiResponse(responseCode = "400", description = "Invalid request")
+    })
+    @PostMapping("/bulk/reserve")
+    public ResponseEntity<BulkReservationResponse> reserveAttempts(@Valid @RequestBody BulkReservationRequest request) {
+        log.info("Received bulk reserve request for {} items", request.getItems().size());
+
+        BulkReservationResponse response = assignmentService.reserveAttempts(request.getItems());
+
+        return ResponseEntity.ok(response);
+    }
+
+    @Operation(summary = "Bulk release attempts", description = "Release many reserved attempts in one transaction (for compensation)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Per-item results in request order"),
+            @ApiResponse(responseCode = "400", description = "Invalid request")
+    })
+    @PostMapping("/bulk/release")
+    public ResponseEntity<BulkReservationResponse> releaseAttempts(@Valid @RequestBody BulkReservationRequest request) {
+        log.info("Received bulk release request for {} items", request.getItems().size());
+
+        BulkReservationResponse response = assignmentService.releaseAttempts(request.getItems());
+
+        return ResponseEntity.ok(response);
+    }
+
     @Operation(summary = "Xem số lượt còn lại", description = "Trả về số lần attempt còn lại cho user trên assignment")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Truy vấn thành công"),
@@ -0,0 +1,29 @@
+package com.khoavdse170395.assignmentservice.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Instant;
+
+// Bản chụp bất biến của QuizAssignment để cache, không giữ entity đang được Hibernate quản lý
+@Value
+@Builder
+public class QuizAssignmentSnapshot {
+    Long assignmentId;
+    Long quizId;
+    String allowedGroup;
+    Instant openAt;
+    Instant closeAt;
+    int maxAttempts;
+
+    public static QuizAssignmentSnapshot from(QuizAssignment assignment) {
+        return QuizAssignmentSnapshot.builder()
+                .assignmentId(assignment.getAssignmentId())
+                .quizId(assignment.getQuizId())
+                .allowedGroup(assignment.getAllowedGroup())
+                .openAt(assignment.getOpenAt())
+                .closeAt(assignment.getCloseAt())
+                .maxAttempts(assignment.getMaxAttempts())
+                .build();
+    }
+}
@@ -0,0 +1,26 @@
+package com.khoavdse170395.assignmentservice.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+// Bảng lưu idempotency key của các lần reserve thành công (đọc/ghi qua JdbcIdempotencyStore)
+@Entity
+@Table(name = "reservation_idempotency_key", indexes = {
+        @Index(name = "ix_reservation_idempotency_created_at", columnList = "created_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReservationIdempotencyKey {
+
+    @Id
+    @Column(name = "idempotency_key", length = 100)
+    private String idempotencyKey;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
@@ -0,0 +1,36 @@
+package com.khoavdse170395.assignmentservice.model.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkEligibilityRequest {
+    @NotEmpty(message = "Pairs list cannot be empty")
+    @Size(max = 10000, message = "At most 10000 pairs per request")
+    @Valid
+    private List<Pair> pairs;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Pair {
+        @NotNull(message = "Assignment ID is required")
+        private Long assignmentId;
+
+        @NotBlank(message = "User ID is required")
+        private String userId;
+    }
+}
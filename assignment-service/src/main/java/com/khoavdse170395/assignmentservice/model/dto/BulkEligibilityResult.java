@@ -0,0 +1,19 @@
+package com.khoavdse170395.assignmentservice.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One line of the bulk eligibility stream: the answers of check-eligibility and remaining together
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkEligibilityResult {
+    private Long assignmentId;
+    private String userId;
+    private boolean eligible;
+    private String reason;
+    private int remainingAttempts;
+}
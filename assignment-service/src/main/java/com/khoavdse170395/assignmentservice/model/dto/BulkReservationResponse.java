@@ -0,0 +1,31 @@
+package com.khoavdse170395.assignmentservice.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkReservationResponse {
+    // Same order as the request items
+    private List<Result> results;
+
+    public enum Status { RESERVED, ALREADY_RESERVED, REJECTED, RELEASED, NOT_RESERVED }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Result {
+        private Long assignmentId;
+        private String userId;
+        private String idempotencyKey;
+        private Status status;
+        private String reason;
+    }
+}
@@ -0,0 +1,129 @@
+package com.khoavdse170395.assignmentservice.repository;
+
+import com.khoavdse170395.assignmentservice.model.AssignmentAttemptCounter;
+import com.khoavdse170395.assignmentservice.model.dto.BulkReservationRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plain JDBC statements on assignment_attempt_counter that must not go through the JPA session.
+ * A constraint violation raised by Hibernate marks the whole transaction rollback-only, while here
+ * it is an expected outcome of a race and the surrounding transaction has to stay usable.
+ */
+@Repository
+@RequiredArgsConstructor
+public class AssignmentAttemptCounterJdbcRepository {
+
+    private static final String INSERT_FIRST_RESERVATION_SQL =
+            "INSERT INTO assignment_attempt_counter (assignment_id, user_id, used) " +
+            "SELECT q.assignment_id, :userId, 1 FROM quiz_assignment q " +
+            "WHERE q.assignment_id = :assignmentId " +
+            "AND q.max_attempts >= 1 " +
+            "AND (q.open_at IS NULL OR q.open_at <= :now) " +
+            "AND (q.close_at IS NULL OR q.close_at >= :now) " +
+            "AND NOT EXISTS (SELECT 1 FROM assignment_attempt_counter c " +
+            "WHERE c.assignment_id = :assignmentId AND c.user_id = :userId)";
+
+    // Same guard as AssignmentAttemptCounterRepository#reserveIfEligible, in SQL so it can be batched
+    private static final String RESERVE_IF_ELIGIBLE_SQL =
+            "UPDATE assignment_attempt_counter SET used = used + 1 " +
+            "WHERE assignment_id = :assignmentId AND user_id = :userId " +
+            "AND EXISTS (SELECT 1 FROM quiz_assignment q WHERE q.assignment_id = :assignmentId " +
+            "AND assignment_attempt_counter.used < q.max_attempts " +
+            "AND (q.open_at IS NULL OR q.open_at <= :now) " +
+            "AND (q.close_at IS NULL OR q.close_at >= :now))";
+
+    private static final String RELEASE_SQL =
+            "UPDATE assignment_attempt_counter SET used = used - 1 " +
+            "WHERE assignment_id = :assignmentId AND user_id = :userId AND used > 0";
+
+    private static final String ADD_DELTA_SQL =
+            "UPDATE assignment_attempt_counter SET used = used + :delta " +
+            "WHERE assignment_id = :assignmentId AND user_id = :userId";
+
+    private static final String INSERT_COUNTER_SQL =
+            "INSERT INTO assignment_attempt_counter (assignment_id, user_id, used) VALUES (:assignmentId, :userId, :delta)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Inserts the counter with used = 1 under the same guard as
+     * AssignmentAttemptCounterRepository#reserveIfEligible. Returns 0 when the row already exists
+     * (including losing the insert race to a concurrent first reservation) or the guard rejects it.
+     */
+    public int insertFirstReservation(Long assignmentId, String userId, Instant now) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("assignmentId", assignmentId)
+                .addValue("userId", userId)
+                .addValue("now", now.atOffset(ZoneOffset.UTC));
+        try {
+            return jdbcTemplate.update(INSERT_FIRST_RESERVATION_SQL, params);
+        } catch (DuplicateKeyException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Guarded increment for many (assignmentId, userId) pairs in one JDBC batch. Statements run in
+     * list order, so a pair listed twice sees its own earlier increment. 0 at an index means no
+     * counter row yet or the guard rejected it, as with the single-row version.
+     */
+    public int[] batchReserveIfEligible(List<BulkReservationRequest.Item> items, Instant now) {
+        return jdbcTemplate.batchUpdate(RESERVE_IF_ELIGIBLE_SQL, toParams(items, now));
+    }
+
+    /**
+     * Batched {@link #insertFirstReservation}. Unlike the single-row version a duplicate key is not
+     * swallowed: drivers do not say which rows of a failed batch went in, so the caller's whole
+     * transaction has to roll back and be retried.
+     */
+    public int[] batchInsertFirstReservations(List<BulkReservationRequest.Item> items, Instant now) {
+        return jdbcTemplate.batchUpdate(INSERT_FIRST_RESERVATION_SQL, toParams(items, now));
+    }
+
+    public int[] batchRelease(List<BulkReservationRequest.Item> items) {
+        return jdbcTemplate.batchUpdate(RELEASE_SQL, toParams(items, null));
+    }
+
+    /**
+     * Adds each delta to its counter, inserting the rows that do not exist yet. Unguarded: used by the
+     * striped counter mode, where the limit was already enforced in memory and this node is the only writer.
+     */
+    public void applyDeltas(Map<AssignmentAttemptCounter.AssignmentAttemptCounterId, Integer> deltas) {
+        List<SqlParameterSource> params = deltas.entrySet().stream()
+                .map(entry -> (SqlParameterSource) new MapSqlParameterSource()
+                        .addValue("assignmentId", entry.getKey().getAssignmentId())
+                        .addValue("userId", entry.getKey().getUserId())
+                        .addValue("delta", entry.getValue()))
+                .toList();
+        int[] updated = jdbcTemplate.batchUpdate(ADD_DELTA_SQL, params.toArray(SqlParameterSource[]::new));
+        List<SqlParameterSource> missing = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                missing.add(params.get(i));
+            }
+        }
+        if (!missing.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_COUNTER_SQL, missing.toArray(SqlParameterSource[]::new));
+        }
+    }
+
+    private static SqlParameterSource[] toParams(List<BulkReservationRequest.Item> items, Instant now) {
+        return items.stream()
+                .map(item -> new MapSqlParameterSource()
+                        .addValue("assignmentId", item.getAssignmentId())
+                        .addValue("userId", item.getUserId())
+                        .addValue("now", now != null ? now.atOffset(ZoneOffset.UTC) : null))
+                .toArray(SqlParameterSource[]::new);
+    }
+}
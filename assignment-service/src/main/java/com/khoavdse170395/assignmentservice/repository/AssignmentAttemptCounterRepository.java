@@ -8,18 +8,47 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface AssignmentAttemptCounterRepository extends JpaRepository<AssignmentAttemptCounter, AssignmentAttemptCounter.AssignmentAttemptCounterId> {
     
     Optional<AssignmentAttemptCounter> findByAssignmentIdAndUserId(Long assignmentId, String userId);
+
+    /**
+     * Counters for every combination of the given assignments and users. For a class roster (one
+     * assignment) or one user's assignments this is exactly the requested set; otherwise callers
+     * drop the combinations they did not ask for.
+     */
+    List<AssignmentAttemptCounter> findByAssignmentIdInAndUserIdIn(Collection<Long> assignmentIds, Collection<String> userIds);
+
+    List<AssignmentAttemptCounter> findByAssignmentIdIn(Collection<Long> assignmentIds);
     
     @Modifying
     @Transactional
     @Query("UPDATE AssignmentAttemptCounter a SET a.used = a.used + 1 WHERE a.assignmentId = :assignmentId AND a.userId = :userId")
     int incrementUsedAttempts(@Param("assignmentId") Long assignmentId, @Param("userId") String userId);
     
+    /**
+     * Guarded increment: bumps used only while used < max_attempts and the assignment window is open.
+     * Returns 0 when the counter row does not exist yet or the guard rejects the reservation
+     * (see AssignmentAttemptCounterJdbcRepository#insertFirstReservation for the missing-row case).
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE AssignmentAttemptCounter a SET a.used = a.used + 1 " +
+            "WHERE a.assignmentId = :assignmentId AND a.userId = :userId " +
+            "AND EXISTS (SELECT 1 FROM QuizAssignment q WHERE q.assignmentId = :assignmentId " +
+            "AND a.used < q.maxAttempts " +
+            "AND (q.openAt IS NULL OR q.openAt <= :now) " +
+            "AND (q.closeAt IS NULL OR q.closeAt >= :now))")
+    int reserveIfEligible(@Param("assignmentId") Long assignmentId,
+                          @Param("userId") String userId,
+                          @Param("now") Instant now);
+
     @Modifying
     @Transactional
     @Query("UPDATE AssignmentAttemptCounter a SET a.used = a.used - 1 WHERE a.assignmentId = :assignmentId AND a.userId = :userId AND a.used > 0")
@@ -2,8 +2,12 @@ package com.khoavdse170395.assignmentservice.repository;
 
 import com.khoavdse170395.assignmentservice.model.QuizAssignment;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -12,6 +16,11 @@ public interface QuizAssignmentRepository extends JpaRepository<QuizAssignment,
     Optional<QuizAssignment> findByAssignmentId(Long assignmentId);
     
     Optional<QuizAssignment> findByQuizId(Long quizId);
+
+    // Assignments whose window contains the given instant (no bound counts as open)
+    @Query("SELECT q.assignmentId FROM QuizAssignment q " +
+            "WHERE (q.openAt IS NULL OR q.openAt <= :now) AND (q.closeAt IS NULL OR q.closeAt >= :now)")
+    List<Long> findOpenAssignmentIds(@Param("now") Instant now);
 }
 
 
@@ -1,15 +1,27 @@
 package com.khoavdse170395.assignmentservice.service;
 
+import com.khoavdse170395.assignmentservice.model.dto.BulkEligibilityRequest;
+import com.khoavdse170395.assignmentservice.model.dto.BulkEligibilityResult;
+import com.khoavdse170395.assignmentservice.model.dto.BulkReservationRequest;
+import com.khoavdse170395.assignmentservice.model.dto.BulkReservationResponse;
 import com.khoavdse170395.assignmentservice.model.dto.CheckEligibilityResponse;
 import com.khoavdse170395.assignmentservice.model.dto.CreateAssignmentRequest;
 import com.khoavdse170395.assignmentservice.model.dto.CreateAssignmentResponse;
 import com.khoavdse170395.assignmentservice.model.dto.RemainingAttemptsResponse;
 
+import java.util.List;
+import java.util.function.Consumer;
+
 public interface AssignmentService {
     CreateAssignmentResponse createAssignment(CreateAssignmentRequest request);
     CheckEligibilityResponse checkEligibility(Long assignmentId, String userId);
+    // Results go to the sink chunk by chunk, in request order, as soon as each chunk is computed
+    void streamEligibility(List<BulkEligibilityRequest.Pair> pairs, Consumer<List<BulkEligibilityResult>> sink);
     void reserveAttempt(Long assignmentId, String userId, String idempotencyKey);
     void releaseAttempt(Long assignmentId, String userId, String idempotencyKey);
+    // One transaction for the whole batch; per-item outcomes in request order
+    BulkReservationResponse reserveAttempts(List<BulkReservationRequest.Item> items);
+    BulkReservationResponse releaseAttempts(List<BulkReservationRequest.Item> items);
     RemainingAttemptsResponse getRemainingAttempts(Long assignmentId, String userId);
 }
 
@@ -0,0 +1,27 @@
+package com.khoavdse170395.assignmentservice.service;
+
+/**
+ * Remembers which reserve idempotency keys have already been applied.
+ * Both operations take part in the caller's transaction: if it rolls back, the change is undone.
+ */
+public interface IdempotencyStore {
+
+    /**
+     * Records the key. Returns false if it was already recorded, i.e. the reserve is a replay.
+     */
+    boolean putIfAbsent(String idempotencyKey);
+
+    /**
+     * Forgets the key. Returns true only for the caller that actually removed it, so a release
+     * can claim the key before undoing the reservation.
+     */
+    boolean remove(String idempotencyKey);
+
+    /**
+     * Whether the key is recorded, without recording it. Lets a caller spot a replay before it
+     * does anything that is expensive to undo.
+     */
+    boolean contains(String idempotencyKey);
+
+    long size();
+}
@@ -0,0 +1,14 @@
+package com.khoavdse170395.assignmentservice.service;
+
+import com.khoavdse170395.assignmentservice.model.QuizAssignmentSnapshot;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+
+public interface QuizAssignmentCache {
+    Optional<QuizAssignmentSnapshot> find(Long assignmentId);
+    // Cached snapshots plus one query for all misses; ids that do not exist are left out
+    Map<Long, QuizAssignmentSnapshot> findAll(Collection<Long> assignmentIds);
+    void invalidate(Long assignmentId);
+}
@@ -0,0 +1,121 @@
+package com.khoavdse170395.assignmentservice.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounded concurrency per assignment, plus a bound for all assignments together. A call that finds
+ * its assignment (or the node) at the limit is refused at once with 429 and Retry-After instead of
+ * queueing for a database connection; with a hot assignment most of those calls would only have
+ * learned that maxAttempts is used up.
+ */
+public class AdmissionGate {
+
+    private final String name;
+    private final int maxPerAssignment;
+    private final int maxTotal;
+    private final long retryAfterSeconds;
+    private final int maxTaggedAssignments;
+    private final MeterRegistry meterRegistry;
+
+    // Only assignments with calls in flight have an entry
+    private final ConcurrentHashMap<Long, AtomicInteger> inFlightByAssignment = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Set<Long> taggedAssignments = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Publishes {@code <name>.admission.calls} tagged assignmentId and result=admitted|rejected. Past
+     * maxTaggedAssignments distinct assignments the rest share assignmentId=other.
+     */
+    public AdmissionGate(String name, int maxPerAssignment, int maxTotal, long retryAfterSeconds,
+                         int maxTaggedAssignments, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.maxPerAssignment = maxPerAssignment;
+        this.maxTotal = maxTotal;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.maxTaggedAssignments = maxTaggedAssignments;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public <T> T execute(Long assignmentId, Supplier<T> call) {
+        if (!tryAcquire(assignmentId)) {
+            count(assignmentId, "rejected");
+            throw new Rejected(retryAfterSeconds);
+        }
+        count(assignmentId, "admitted");
+        try {
+            return call.get();
+        } finally {
+            release(assignmentId);
+        }
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    private boolean tryAcquire(Long assignmentId) {
+        if (inFlight.incrementAndGet() > maxTotal) {
+            inFlight.decrementAndGet();
+            return false;
+        }
+        boolean[] admitted = new boolean[1];
+        inFlightByAssignment.compute(assignmentId, (id, count) -> {
+            AtomicInteger current = count != null ? count : new AtomicInteger();
+            admitted[0] = current.get() < maxPerAssignment;
+            if (admitted[0]) {
+                current.incrementAndGet();
+            }
+            return current.get() > 0 ? current : null;
+        });
+        if (!admitted[0]) {
+            inFlight.decrementAndGet();
+        }
+        return admitted[0];
+    }
+
+    private void release(Long assignmentId) {
+        inFlightByAssignment.computeIfPresent(assignmentId, (id, count) -> count.decrementAndGet() > 0 ? count : null);
+        inFlight.decrementAndGet();
+    }
+
+    private void count(Long assignmentId, String result) {
+        String tag = taggedAssignments.contains(assignmentId)
+                || (taggedAssignments.size() < maxTaggedAssignments && taggedAssignments.add(assignmentId))
+                ? String.valueOf(assignmentId) : "other";
+        Counter.builder(name + ".admission.calls")
+                .tag("assignmentId", tag)
+                .tag("result", result)
+                .description("Calls admitted or refused by the per-assignment admission gate")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * 429 with Retry-After; resolved by Spring MVC like any ResponseStatusException.
+     */
+    public static class Rejected extends ResponseStatusException {
+
+        private final long retryAfterSeconds;
+
+        public Rejected(long retryAfterSeconds) {
+            super(HttpStatus.TOO_MANY_REQUESTS, "Too many requests for this assignment, retry later");
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            return headers;
+        }
+    }
+}
@@ -1,24 +1,38 @@
 package com.khoavdse170395.assignmentservice.service.impl;
 
+import com.khoavdse170395.assignmentservice.model.dto.BulkEligibilityRequest;
+import com.khoavdse170395.assignmentservice.model.dto.BulkEligibilityResult;
+import com.khoavdse170395.assignmentservice.model.dto.BulkReservationRequest;
+import com.khoavdse170395.assignmentservice.model.dto.BulkReservationResponse;
 import com.khoavdse170395.assignmentservice.model.dto.CheckEligibilityResponse;
 import com.khoavdse170395.assignmentservice.model.dto.CreateAssignmentRequest;
 import com.khoavdse170395.assignmentservice.model.dto.CreateAssignmentResponse;
 import com.khoavdse170395.assignmentservice.model.dto.RemainingAttemptsResponse;
 import com.khoavdse170395.assignmentservice.model.AssignmentAttemptCounter;
 import com.khoavdse170395.assignmentservice.model.QuizAssignment;
+import com.khoavdse170395.assignmentservice.model.QuizAssignmentSnapshot;
 import com.khoavdse170395.assignmentservice.config.DemoFlags;
+import com.khoavdse170395.assignmentservice.repository.AssignmentAttemptCounterJdbcRepository;
 import com.khoavdse170395.assignmentservice.repository.AssignmentAttemptCounterRepository;
 import com.khoavdse170395.assignmentservice.repository.QuizAssignmentRepository;
 import com.khoavdse170395.assignmentservice.service.AssignmentService;
+import com.khoavdse170395.assignmentservice.service.IdempotencyStore;
+import com.khoavdse170395.assignmentservice.service.QuizAssignmentCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -27,11 +41,13 @@ public class AssignmentServiceImpl implements AssignmentService {
 
     private final QuizAssignmentRepository quizAssignmentRepository;
     private final AssignmentAttemptCounterRepository attemptCounterRepository;
+    private final AssignmentAttemptCounterJdbcRepository attemptCounterJdbcRepository;
     private final DemoFlags demoFlags;
+    private final IdempotencyStore idempotencyStore;
+    private final QuizAssignmentCache quizAssignmentCache;
 
-    // In-memory map to store idempotency keys for reserve operations
-    // In a real-world scenario, this would be a distributed cache like Redis
-    private final Map<String, Boolean> idempotencyKeyStore = new ConcurrentHashMap<>();
+    // 500 assignment ids plus 500 user ids keep the counter query well under SQL Server's 2100 parameters
+    private static final int BULK_CHUNK_SIZE = 500;
 
     @Override
     @Transactional
@@ -47,6 +63,7 @@ public class AssignmentServiceImpl implements AssignmentService {
                 .build();
 
         quizAssignmentRepository.save(assignment);
+        quizAssignmentCache.invalidate(assignment.getAssignmentId());
 
         return CreateAssignmentResponse.builder()
                 .assignmentId(assignment.getAssignmentId())
@@ -58,21 +75,18 @@ public class AssignmentServiceImpl implements AssignmentService {
     @Transactional(readOnly = true)
     public CheckEligibilityResponse checkEligibility(Long assignmentId, String userId) {
         log.info("Checking eligibility for assignmentId: {}, userId: {}", assignmentId, userId);
-        Optional<QuizAssignment> assignmentOpt = quizAssignmentRepository.findById(assignmentId);
+        Optional<QuizAssignmentSnapshot> assignmentOpt = quizAssignmentCache.find(assignmentId);
 
         if (assignmentOpt.isEmpty()) {
             return CheckEligibilityResponse.builder().eligible(false).reason("Assignment not found").build();
         }
 
-        QuizAssignment assignment = assignmentOpt.get();
+        QuizAssignmentSnapshot assignment = assignmentOpt.get();
         Instant now = Instant.now();
 
-        if (assignment.getOpenAt() != null && now.isBefore(assignment.getOpenAt())) {
-            return CheckEligibilityResponse.builder().eligible(false).reason("Assignment not yet open").build();
-        }
-
-        if (assignment.getCloseAt() != null && now.isAfter(assignment.getCloseAt())) {
-            return CheckEligibilityResponse.builder().eligible(false).reason("Assignment has closed").build();
+        String windowRejection = windowRejection(assignment, now);
+        if (windowRejection != null) {
+            return CheckEligibilityResponse.builder().eligible(false).reason(windowRejection).build();
         }
 
         Optional<AssignmentAttemptCounter> counterOpt = attemptCounterRepository.findByAssignmentIdAndUserId(assignmentId, userId);
@@ -85,6 +99,73 @@ public class AssignmentServiceImpl implements AssignmentService {
         return CheckEligibilityResponse.builder().eligible(true).reason("Eligible").build();
     }
 
+    /**
+     * Same answers as {@link #checkEligibility} and {@link #getRemainingAttempts}, for many pairs at
+     * once: per chunk one lookup for the assignments the cache does not hold and one counter query.
+     * No transaction around the whole call, so no connection is held while the caller writes a chunk out.
+     */
+    @Override
+    public void streamEligibility(List<BulkEligibilityRequest.Pair> pairs, Consumer<List<BulkEligibilityResult>> sink) {
+        log.info("Checking eligibility for {} pairs", pairs.size());
+        for (int from = 0; from < pairs.size(); from += BULK_CHUNK_SIZE) {
+            sink.accept(evaluateChunk(pairs.subList(from, Math.min(from + BULK_CHUNK_SIZE, pairs.size()))));
+        }
+    }
+
+    private List<BulkEligibilityResult> evaluateChunk(List<BulkEligibilityRequest.Pair> chunk) {
+        Map<Long, QuizAssignmentSnapshot> assignments = quizAssignmentCache.findAll(chunk.stream()
+                .map(BulkEligibilityRequest.Pair::getAssignmentId)
+                .collect(Collectors.toCollection(LinkedHashSet::new)));
+        Instant now = Instant.now();
+
+        // Counters only matter for assignments that are open right now
+        Set<Long> openAssignmentIds = assignments.values().stream()
+                .filter(assignment -> windowRejection(assignment, now) == null)
+                .map(QuizAssignmentSnapshot::getAssignmentId)
+                .collect(Collectors.toSet());
+        Set<String> userIds = chunk.stream()
+                .filter(pair -> openAssignmentIds.contains(pair.getAssignmentId()))
+                .map(BulkEligibilityRequest.Pair::getUserId)
+                .collect(Collectors.toSet());
+        Map<AssignmentAttemptCounter.AssignmentAttemptCounterId, Integer> usedByPair = userIds.isEmpty() ? Map.of()
+                : attemptCounterRepository.findByAssignmentIdInAndUserIdIn(openAssignmentIds, userIds).stream()
+                .collect(Collectors.toMap(
+                        counter -> new AssignmentAttemptCounter.AssignmentAttemptCounterId(counter.getAssignmentId(), counter.getUserId()),
+                        AssignmentAttemptCounter::getUsed));
+
+        List<BulkEligibilityResult> results = new ArrayList<>(chunk.size());
+        for (BulkEligibilityRequest.Pair pair : chunk) {
+            QuizAssignmentSnapshot assignment = assignments.get(pair.getAssignmentId());
+            String reason = assignment == null ? "Assignment not found" : windowRejection(assignment, now);
+            int remaining = 0;
+            if (reason == null) {
+                int used = usedByPair.getOrDefault(
+                        new AssignmentAttemptCounter.AssignmentAttemptCounterId(pair.getAssignmentId(), pair.getUserId()), 0);
+                remaining = Math.max(0, assignment.getMaxAttempts() - used);
+                reason = remaining > 0 ? "Eligible" : "Maximum attempts reached";
+            }
+            results.add(BulkEligibilityResult.builder()
+                    .assignmentId(pair.getAssignmentId())
+                    .userId(pair.getUserId())
+                    .eligible(remaining > 0)
+                    .reason(reason)
+                    .remainingAttempts(remaining)
+                    .build());
+        }
+        return results;
+    }
+
+    // Reason why the assignment cannot be taken right now, or null while it is open
+    static String windowRejection(QuizAssignmentSnapshot assignment, Instant now) {
+        if (assignment.getOpenAt() != null && now.isBefore(assignment.getOpenAt())) {
+            return "Assignment not yet open";
+        }
+        if (assignment.getCloseAt() != null && now.isAfter(assignment.getCloseAt())) {
+            return "Assignment has closed";
+        }
+        return null;
+    }
+
     @Override
     @Transactional
     public void reserveAttempt(Long assignmentId, String userId, String idempotencyKey) {
@@ -95,65 +176,168 @@ public class AssignmentServiceImpl implements AssignmentService {
             throw new IllegalStateException("Demo: reserve failed by flag");
         }
 
-        // Idempotency check
-        if (idempotencyKeyStore.containsKey(idempotencyKey)) {
+        // Idempotency check: the key is recorded in this transaction, so it is rolled back with a failed reserve
+        if (!idempotencyStore.putIfAbsent(idempotencyKey)) {
             log.info("Idempotency key {} already processed. Skipping reservation.", idempotencyKey);
             return;
         }
 
-        CheckEligibilityResponse eligibility = checkEligibility(assignmentId, userId);
-        if (!eligibility.isEligible()) {
-            throw new IllegalStateException("Cannot reserve attempt: " + eligibility.getReason());
+        // Single guarded statement on the hot path; the insert only runs for a user's first reservation.
+        // If a concurrent first reservation won the insert, the retried update sees its row.
+        Instant now = Instant.now();
+        boolean reserved = attemptCounterRepository.reserveIfEligible(assignmentId, userId, now) == 1
+                || attemptCounterJdbcRepository.insertFirstReservation(assignmentId, userId, now) == 1
+                || attemptCounterRepository.reserveIfEligible(assignmentId, userId, now) == 1;
+        if (!reserved) {
+            throw new IllegalStateException("Cannot reserve attempt: " + rejectionReason(assignmentId, userId));
         }
-
-        Optional<AssignmentAttemptCounter> counterOpt = attemptCounterRepository.findByAssignmentIdAndUserId(assignmentId, userId);
-        if (counterOpt.isPresent()) {
-            attemptCounterRepository.incrementUsedAttempts(assignmentId, userId);
-        } else {
-            AssignmentAttemptCounter newCounter = AssignmentAttemptCounter.builder()
-                    .assignmentId(assignmentId)
-                    .userId(userId)
-                    .used(1)
-                    .build();
-            attemptCounterRepository.save(newCounter);
-        }
-        idempotencyKeyStore.put(idempotencyKey, true); // Mark key as processed
         log.info("Successfully reserved attempt for assignmentId: {}, userId: {}", assignmentId, userId);
     }
 
+    // Only called once the guarded statements affected no rows, so the extra reads stay off the success path
+    private String rejectionReason(Long assignmentId, String userId) {
+        CheckEligibilityResponse eligibility = checkEligibility(assignmentId, userId);
+        // Eligible here means a concurrent reservation took the last slot between our update and this read
+        return eligibility.isEligible() ? "Maximum attempts reached" : eligibility.getReason();
+    }
+
     @Override
     @Transactional
     public void releaseAttempt(Long assignmentId, String userId, String idempotencyKey) {
         log.info("Releasing attempt for assignmentId: {}, userId: {}, idempotencyKey: {}", assignmentId, userId, idempotencyKey);
 
-        // Only release if the exact reserve with this key had succeeded before
-        if (!idempotencyKeyStore.containsKey(idempotencyKey)) {
+        // Only release if the exact reserve with this key had succeeded before.
+        // Removing the key claims it, so a duplicate release cannot decrement twice.
+        if (!idempotencyStore.remove(idempotencyKey)) {
             log.warn("Skip release: no successful reserve found for idempotencyKey {}", idempotencyKey);
             return;
         }
 
-        Optional<AssignmentAttemptCounter> counterOpt = attemptCounterRepository.findByAssignmentIdAndUserId(assignmentId, userId);
-        if (counterOpt.isPresent() && counterOpt.get().getUsed() > 0) {
-            attemptCounterRepository.decrementUsedAttempts(assignmentId, userId);
-            // Mark the key as released to avoid double-release; also forget the reserve marker
-            idempotencyKeyStore.remove(idempotencyKey);
+        if (attemptCounterRepository.decrementUsedAttempts(assignmentId, userId) == 1) {
             log.info("Successfully released attempt for assignmentId: {}, userId: {}", assignmentId, userId);
         } else {
             log.warn("No attempts to release for assignmentId: {}, userId: {}", assignmentId, userId);
         }
     }
 
+    /**
+     * Batched {@link #reserveAttempt}: the guarded update and the first-reservation insert each go
+     * out as one JDBC batch, so a class-wide launch costs a handful of round trips instead of
+     * several per student. Items are independent; a rejected item only forgets its own key.
+     */
+    @Override
+    @Transactional
+    public BulkReservationResponse reserveAttempts(List<BulkReservationRequest.Item> items) {
+        log.info("Reserving {} attempts in one batch", items.size());
+
+        if (Boolean.TRUE.equals(demoFlags.isFailReserve())) {
+            log.warn("Demo flag failReserve is ON. Throwing to simulate failure.");
+            throw new IllegalStateException("Demo: reserve failed by flag");
+        }
+
+        BulkReservationResponse.Result[] results = new BulkReservationResponse.Result[items.size()];
+        List<Integer> fresh = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            // A key repeated inside the batch is a replay of its first occurrence
+            if (idempotencyStore.putIfAbsent(items.get(i).getIdempotencyKey())) {
+                fresh.add(i);
+            } else {
+                results[i] = result(items.get(i), BulkReservationResponse.Status.ALREADY_RESERVED, "Already processed");
+            }
+        }
+
+        Instant now = Instant.now();
+        List<Integer> pending = unreserved(fresh, attemptCounterJdbcRepository.batchReserveIfEligible(select(items, fresh), now));
+        // A duplicate key here means a concurrent first reservation for one of the users; it rolls the
+        // whole batch back, keys included, so the caller can simply send it again
+        pending = unreserved(pending, attemptCounterJdbcRepository.batchInsertFirstReservations(select(items, pending), now));
+        for (int i : pending) {
+            // Counter row inserted by an earlier item of this batch, or the guard said no
+            BulkReservationRequest.Item item = items.get(i);
+            if (attemptCounterRepository.reserveIfEligible(item.getAssignmentId(), item.getUserId(), now) == 0) {
+                idempotencyStore.remove(item.getIdempotencyKey());
+                results[i] = result(item, BulkReservationResponse.Status.REJECTED,
+                        rejectionReason(item.getAssignmentId(), item.getUserId()));
+            }
+        }
+
+        for (int i : fresh) {
+            if (results[i] == null) {
+                results[i] = result(items.get(i), BulkReservationResponse.Status.RESERVED, null);
+            }
+        }
+        log.info("Bulk reserve finished: {} items, {} fresh, {} rejected", items.size(), fresh.size(),
+                Arrays.stream(results).filter(r -> r.getStatus() == BulkReservationResponse.Status.REJECTED).count());
+        return BulkReservationResponse.builder().results(Arrays.asList(results)).build();
+    }
+
+    @Override
+    @Transactional
+    public BulkReservationResponse releaseAttempts(List<BulkReservationRequest.Item> items) {
+        log.info("Releasing {} attempts in one batch", items.size());
+
+        BulkReservationResponse.Result[] results = new BulkReservationResponse.Result[items.size()];
+        List<Integer> claimed = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            // Same rule as a single release: only the caller that removes the key may decrement
+            if (idempotencyStore.remove(items.get(i).getIdempotencyKey())) {
+                claimed.add(i);
+            } else {
+                results[i] = result(items.get(i), BulkReservationResponse.Status.NOT_RESERVED,
+                        "No successful reserve for this key");
+            }
+        }
+
+        int[] released = attemptCounterJdbcRepository.batchRelease(select(items, claimed));
+        for (int j = 0; j < claimed.size(); j++) {
+            int i = claimed.get(j);
+            results[i] = released[j] > 0
+                    ? result(items.get(i), BulkReservationResponse.Status.RELEASED, null)
+                    : result(items.get(i), BulkReservationResponse.Status.NOT_RESERVED, "No attempts to release");
+        }
+        return BulkReservationResponse.builder().results(Arrays.asList(results)).build();
+    }
+
+    private static List<BulkReservationRequest.Item> select(List<BulkReservationRequest.Item> items, List<Integer> indexes) {
+        List<BulkReservationRequest.Item> selected = new ArrayList<>(indexes.size());
+        for (int i : indexes) {
+            selected.add(items.get(i));
+        }
+        return selected;
+    }
+
+    // Indexes whose statement in the batch touched no row
+    private static List<Integer> unreserved(List<Integer> indexes, int[] updateCounts) {
+        List<Integer> remaining = new ArrayList<>();
+        for (int j = 0; j < indexes.size(); j++) {
+            if (updateCounts[j] == 0) {
+                remaining.add(indexes.get(j));
+            }
+        }
+        return remaining;
+    }
+
+    static BulkReservationResponse.Result result(BulkReservationRequest.Item item,
+                                                 BulkReservationResponse.Status status, String reason) {
+        return BulkReservationResponse.Result.builder()
+                .assignmentId(item.getAssignmentId())
+                .userId(item.getUserId())
+                .idempotencyKey(item.getIdempotencyKey())
+                .status(status)
+                .reason(reason)
+                .build();
+    }
+
     @Override
     @Transactional(readOnly = true)
     public RemainingAttemptsResponse getRemainingAttempts(Long assignmentId, String userId) {
-        Optional<QuizAssignment> assignmentOpt = quizAssignmentRepository.findById(assignmentId);
+        Optional<QuizAssignmentSnapshot> assignmentOpt = quizAssignmentCache.find(assignmentId);
         if (assignmentOpt.isEmpty()) {
             return RemainingAttemptsResponse.builder().remainingAttempts(0).build();
         }
-        QuizAssignment assignment = assignmentOpt.get();
+        QuizAssignmentSnapshot assignment = assignmentOpt.get();
         Instant now = Instant.now();
-        if ((assignment.getOpenAt() != null && now.isBefore(assignment.getOpenAt())) ||
-                (assignment.getCloseAt() != null && now.isAfter(assignment.getCloseAt()))) {
+        if (windowRejection(assignment, now) != null) {
             return RemainingAttemptsResponse.builder().remainingAttempts(0).build();
         }
 
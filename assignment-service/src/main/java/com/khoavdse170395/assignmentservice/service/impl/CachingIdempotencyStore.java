@@ -0,0 +1,119 @@
+package com.khoavdse170395.assignmentservice.service.impl;
+
+import com.khoavdse170395.assignmentservice.service.IdempotencyStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Node-local front cache over the durable store. A front hit answers a replayed reserve without
+ * touching the database; a miss always falls through, so the durable store stays authoritative.
+ */
+public class CachingIdempotencyStore implements IdempotencyStore {
+
+    private final InMemoryIdempotencyStore front;
+    private final IdempotencyStore durable;
+    private final Counter hits;
+    private final Counter misses;
+
+    public CachingIdempotencyStore(InMemoryIdempotencyStore front, IdempotencyStore durable, MeterRegistry meterRegistry) {
+        this.front = front;
+        this.durable = durable;
+        this.hits = Counter.builder("assignment.idempotency.front.lookups")
+                .tag("result", "hit")
+                .description("Reserve idempotency lookups answered by the in-memory front cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("assignment.idempotency.front.lookups")
+                .tag("result", "miss")
+                .description("Reserve idempotency lookups that went to the durable store")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean putIfAbsent(String idempotencyKey) {
+        if (front.contains(idempotencyKey)) {
+            hits.increment();
+            return false;
+        }
+        misses.increment();
+        if (!durable.putIfAbsent(idempotencyKey)) {
+            // Already committed by an earlier request, possibly on another replica
+            front.putIfAbsent(idempotencyKey);
+            return false;
+        }
+        // Cache only once the key is durable, otherwise a rolled-back reserve would look applied
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            pendingFrontPuts().add(idempotencyKey);
+        } else {
+            front.putIfAbsent(idempotencyKey);
+        }
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(String idempotencyKey) {
+        front.remove(idempotencyKey);
+        // A bulk reserve records a key and drops it again when the item is rejected; it must not reach the front
+        Set<String> pending = (Set<String>) TransactionSynchronizationManager.getResource(this);
+        if (pending != null) {
+            pending.remove(idempotencyKey);
+        }
+        return durable.remove(idempotencyKey);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(String idempotencyKey) {
+        if (front.contains(idempotencyKey)) {
+            hits.increment();
+            return true;
+        }
+        misses.increment();
+        if (!durable.contains(idempotencyKey)) {
+            return false;
+        }
+        // A key put by the current, uncommitted transaction only reaches the front on commit
+        Set<String> pending = (Set<String>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null || !pending.contains(idempotencyKey)) {
+            front.putIfAbsent(idempotencyKey);
+        }
+        return true;
+    }
+
+    @Override
+    public long size() {
+        return durable.size();
+    }
+
+    public long frontSize() {
+        return front.size();
+    }
+
+    // Keys recorded by the current transaction, copied to the front cache once it commits
+    @SuppressWarnings("unchecked")
+    private Set<String> pendingFrontPuts() {
+        Set<String> pending = (Set<String>) TransactionSynchronizationManager.getResource(this);
+        if (pending != null) {
+            return pending;
+        }
+        Set<String> keys = new LinkedHashSet<>();
+        TransactionSynchronizationManager.bindResource(this, keys);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                keys.forEach(front::putIfAbsent);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(CachingIdempotencyStore.this);
+            }
+        });
+        return keys;
+    }
+}
@@ -0,0 +1,127 @@
+package com.khoavdse170395.assignmentservice.service.impl;
+
+import com.khoavdse170395.assignmentservice.service.IdempotencyStore;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, node-local store. Keys expire after the TTL and the oldest key is evicted once
+ * maxSize is reached. Used on its own for single-node setups and as the front cache of
+ * {@link CachingIdempotencyStore}.
+ */
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Clock clock;
+    private final boolean transactional;
+
+    // Insertion order is expiry order (same TTL for every key), so expired keys are always at the head;
+    // reads still check the expiry because a rolled-back remove re-appends its key at the tail
+    private final LinkedHashMap<String, Long> expiresAtByKey = new LinkedHashMap<>();
+
+    /**
+     * @param transactional undo changes when the surrounding Spring transaction rolls back;
+     *                      off for the front cache, which is only written after commit
+     */
+    public InMemoryIdempotencyStore(int maxSize, Duration ttl, Clock clock, boolean transactional) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+        this.transactional = transactional;
+    }
+
+    @Override
+    public boolean putIfAbsent(String idempotencyKey) {
+        synchronized (expiresAtByKey) {
+            long now = clock.millis();
+            evictExpired(now);
+            if (expiresAtByKey.containsKey(idempotencyKey)) {
+                return false;
+            }
+            expiresAtByKey.put(idempotencyKey, now + ttlMillis);
+            if (expiresAtByKey.size() > maxSize) {
+                Iterator<String> eldest = expiresAtByKey.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        onRollback(() -> remove(idempotencyKey));
+        return true;
+    }
+
+    @Override
+    public boolean remove(String idempotencyKey) {
+        Long expiresAt;
+        synchronized (expiresAtByKey) {
+            expiresAt = expiresAtByKey.remove(idempotencyKey);
+        }
+        if (expiresAt == null || expiresAt <= clock.millis()) {
+            return false;
+        }
+        onRollback(() -> restore(idempotencyKey, expiresAt));
+        return true;
+    }
+
+    @Override
+    public boolean contains(String idempotencyKey) {
+        synchronized (expiresAtByKey) {
+            Long expiresAt = expiresAtByKey.get(idempotencyKey);
+            return expiresAt != null && expiresAt > clock.millis();
+        }
+    }
+
+    @Override
+    public long size() {
+        synchronized (expiresAtByKey) {
+            evictExpired(clock.millis());
+            return expiresAtByKey.size();
+        }
+    }
+
+    private void restore(String idempotencyKey, long expiresAt) {
+        synchronized (expiresAtByKey) {
+            expiresAtByKey.putIfAbsent(idempotencyKey, expiresAt);
+        }
+    }
+
+    private void evictExpired(long now) {
+        Iterator<Map.Entry<String, Long>> it = expiresAtByKey.entrySet().iterator();
+        while (it.hasNext() && it.next().getValue() <= now) {
+            it.remove();
+        }
+    }
+
+    // Undo actions of one transaction run newest first, so a put followed by a remove of the same key
+    // (a rejected item of a bulk reserve) rolls back to "absent" rather than re-adding the key
+    @SuppressWarnings("unchecked")
+    private void onRollback(Runnable undo) {
+        if (!transactional || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        Deque<Runnable> undoLog = (Deque<Runnable>) TransactionSynchronizationManager.getResource(this);
+        if (undoLog == null) {
+            Deque<Runnable> actions = new ArrayDeque<>();
+            TransactionSynchronizationManager.bindResource(this, actions);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(InMemoryIdempotencyStore.this);
+                    if (status == STATUS_ROLLED_BACK) {
+                        actions.forEach(Runnable::run);
+                    }
+                }
+            });
+            undoLog = actions;
+        }
+        undoLog.push(undo);
+    }
+}
@@ -0,0 +1,109 @@
+package com.khoavdse170395.assignmentservice.service.impl;
+
+import com.khoavdse170395.assignmentservice.service.IdempotencyStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Durable store backed by the reservation_idempotency_key table. Statements run on the
+ * connection of the surrounding transaction, so a key is only committed together with the
+ * counter update it guards. Shared by every assignment-service replica.
+ */
+@Slf4j
+public class JdbcIdempotencyStore implements IdempotencyStore {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO reservation_idempotency_key (idempotency_key, created_at) VALUES (:key, :createdAt)";
+    private static final String DELETE_SQL =
+            "DELETE FROM reservation_idempotency_key WHERE idempotency_key = :key";
+    private static final String EXISTS_SQL =
+            "SELECT COUNT(*) FROM reservation_idempotency_key WHERE idempotency_key = :key";
+    private static final String SELECT_EXPIRED_SQL =
+            "SELECT idempotency_key FROM reservation_idempotency_key WHERE created_at < :cutoff";
+    private static final String DELETE_BATCH_SQL =
+            "DELETE FROM reservation_idempotency_key WHERE idempotency_key IN (:keys)";
+    private static final String COUNT_SQL =
+            "SELECT COUNT(*) FROM reservation_idempotency_key";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    // Separate template so that maxRows bounds each purge page without affecting other queries
+    private final NamedParameterJdbcTemplate purgePageTemplate;
+    private final Duration ttl;
+    private final Clock clock;
+    private final AtomicLong lastKnownSize = new AtomicLong();
+
+    public JdbcIdempotencyStore(NamedParameterJdbcTemplate jdbcTemplate, Duration ttl, int purgeBatchSize, Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        JdbcTemplate pageTemplate = new JdbcTemplate(jdbcTemplate.getJdbcTemplate().getDataSource());
+        pageTemplate.setMaxRows(purgeBatchSize);
+        this.purgePageTemplate = new NamedParameterJdbcTemplate(pageTemplate);
+        this.ttl = ttl;
+        this.clock = clock;
+    }
+
+    @Override
+    public boolean putIfAbsent(String idempotencyKey) {
+        // Plain JDBC on purpose: a duplicate key through Hibernate would mark the transaction rollback-only
+        try {
+            jdbcTemplate.update(INSERT_SQL, new MapSqlParameterSource()
+                    .addValue("key", idempotencyKey)
+                    .addValue("createdAt", clock.instant().atOffset(ZoneOffset.UTC)));
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean remove(String idempotencyKey) {
+        return jdbcTemplate.update(DELETE_SQL, Map.of("key", idempotencyKey)) == 1;
+    }
+
+    @Override
+    public boolean contains(String idempotencyKey) {
+        Integer count = jdbcTemplate.queryForObject(EXISTS_SQL, Map.of("key", idempotencyKey), Integer.class);
+        return count != null && count > 0;
+    }
+
+    /**
+     * Row count as of the last purge run; counting the table on every metrics scrape is not worth it.
+     */
+    @Override
+    public long size() {
+        return lastKnownSize.get();
+    }
+
+    /**
+     * Deletes keys older than the TTL, one page at a time, so each delete holds its locks briefly.
+     * Returns the number of keys removed.
+     */
+    public int purgeExpired() {
+        MapSqlParameterSource cutoff = new MapSqlParameterSource()
+                .addValue("cutoff", clock.instant().minus(ttl).atOffset(ZoneOffset.UTC));
+        int purged = 0;
+        List<String> page;
+        do {
+            page = purgePageTemplate.queryForList(SELECT_EXPIRED_SQL, cutoff, String.class);
+            if (!page.isEmpty()) {
+                purged += jdbcTemplate.update(DELETE_BATCH_SQL, Map.of("keys", page));
+            }
+        } while (page.size() == purgePageTemplate.getJdbcTemplate().getMaxRows());
+
+        Long count = jdbcTemplate.queryForObject(COUNT_SQL, Map.of(), Long.class);
+        lastKnownSize.set(count != null ? count : 0);
+        if (purged > 0) {
+            log.info("Purged {} expired idempotency keys, {} remaining", purged, lastKnownSize.get());
+        }
+        return purged;
+    }
+}
@@ -0,0 +1,92 @@
+package com.khoavdse170395.assignmentservice.service.impl;
+
+import com.khoavdse170395.assignmentservice.model.QuizAssignmentSnapshot;
+import com.khoavdse170395.assignmentservice.repository.QuizAssignmentRepository;
+import com.khoavdse170395.assignmentservice.service.QuizAssignmentCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Read-through cache of assignment rows, bounded by spring.cache.caffeine.spec.
+ * sync = true hands the load to Caffeine's per-key compute, so concurrent misses for the same
+ * id wait for a single findById instead of all hitting the database.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class QuizAssignmentCacheImpl implements QuizAssignmentCache {
+
+    public static final String CACHE_NAME = "quizAssignments";
+
+    private final QuizAssignmentRepository quizAssignmentRepository;
+    private final CacheManager cacheManager;
+
+    @Override
+    @Cacheable(cacheNames = CACHE_NAME, sync = true)
+    public Optional<QuizAssignmentSnapshot> find(Long assignmentId) {
+        log.debug("Loading assignment {} into cache", assignmentId);
+        return quizAssignmentRepository.findById(assignmentId).map(QuizAssignmentSnapshot::from);
+    }
+
+    @Override
+    public Map<Long, QuizAssignmentSnapshot> findAll(Collection<Long> assignmentIds) {
+        Cache cache = cacheManager.getCache(CACHE_NAME);
+        Map<Long, QuizAssignmentSnapshot> found = new HashMap<>();
+        List<Long> misses = new ArrayList<>();
+        for (Long assignmentId : new LinkedHashSet<>(assignmentIds)) {
+            Cache.ValueWrapper cached = cache != null ? cache.get(assignmentId) : null;
+            if (cached == null) {
+                misses.add(assignmentId);
+            } else if (cached.get() != null) {
+                found.put(assignmentId, (QuizAssignmentSnapshot) cached.get());
+            }
+        }
+        if (misses.isEmpty()) {
+            return found;
+        }
+
+        log.debug("Loading {} assignments into cache", misses.size());
+        for (QuizAssignmentSnapshot snapshot : quizAssignmentRepository.findAllById(misses).stream()
+                .map(QuizAssignmentSnapshot::from).toList()) {
+            found.put(snapshot.getAssignmentId(), snapshot);
+            // putIfAbsent: an entry loaded meanwhile by find() is at least as fresh as ours
+            if (cache != null) {
+                cache.putIfAbsent(snapshot.getAssignmentId(), snapshot);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public void invalidate(Long assignmentId) {
+        Cache cache = cacheManager.getCache(CACHE_NAME);
+        if (cache == null) {
+            return;
+        }
+        // Evict after commit; evicting earlier lets a concurrent miss reload the pre-commit row
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.evict(assignmentId);
+                }
+            });
+        } else {
+            cache.evict(assignmentId);
+        }
+    }
+}
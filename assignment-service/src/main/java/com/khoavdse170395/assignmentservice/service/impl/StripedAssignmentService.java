@@ -0,0 +1,240 @@
+package com.khoavdse170395.assignmentservice.service.impl;
+
+import com.khoavdse170395.assignmentservice.config.DemoFlags;
+import com.khoavdse170395.assignmentservice.model.QuizAssignmentSnapshot;
+import com.khoavdse170395.assignmentservice.model.dto.BulkEligibilityRequest;
+import com.khoavdse170395.assignmentservice.model.dto.BulkEligibilityResult;
+import com.khoavdse170395.assignmentservice.model.dto.BulkReservationRequest;
+import com.khoavdse170395.assignmentservice.model.dto.BulkReservationResponse;
+import com.khoavdse170395.assignmentservice.model.dto.CheckEligibilityResponse;
+import com.khoavdse170395.assignmentservice.model.dto.CreateAssignmentRequest;
+import com.khoavdse170395.assignmentservice.model.dto.CreateAssignmentResponse;
+import com.khoavdse170395.assignmentservice.model.dto.RemainingAttemptsResponse;
+import com.khoavdse170395.assignmentservice.service.AssignmentService;
+import com.khoavdse170395.assignmentservice.service.IdempotencyStore;
+import com.khoavdse170395.assignmentservice.service.QuizAssignmentCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * assignment.counters.mode=striped: reserve and release are decided by {@link StripedAttemptCounters}
+ * instead of guarded updates on assignment_attempt_counter; everything else goes to
+ * {@link AssignmentServiceImpl}.
+ *
+ * <p>A reserve takes the attempt in memory, waits for the counter to be flushed, and only then
+ * records its idempotency key. A crash in between leaves the counter one too high, never too low,
+ * so a restarted node cannot hand out more attempts than allowed. A release does it the other way
+ * round (key first, counter second) for the same reason.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class StripedAssignmentService implements AssignmentService {
+
+    private final AssignmentServiceImpl delegate;
+    private final StripedAttemptCounters counters;
+    private final IdempotencyStore idempotencyStore;
+    private final QuizAssignmentCache quizAssignmentCache;
+    private final DemoFlags demoFlags;
+    private final TransactionTemplate transactionTemplate;
+
+    @Override
+    public CreateAssignmentResponse createAssignment(CreateAssignmentRequest request) {
+        return delegate.createAssignment(request);
+    }
+
+    @Override
+    public CheckEligibilityResponse checkEligibility(Long assignmentId, String userId) {
+        String rejection = rejection(quizAssignmentCache.find(assignmentId), userId, Instant.now());
+        return CheckEligibilityResponse.builder()
+                .eligible(rejection == null)
+                .reason(rejection == null ? "Eligible" : rejection)
+                .build();
+    }
+
+    // Reads the table, which trails the in-memory counters by at most one flush interval
+    @Override
+    public void streamEligibility(List<BulkEligibilityRequest.Pair> pairs, Consumer<List<BulkEligibilityResult>> sink) {
+        delegate.streamEligibility(pairs, sink);
+    }
+
+    @Override
+    public RemainingAttemptsResponse getRemainingAttempts(Long assignmentId, String userId) {
+        Optional<QuizAssignmentSnapshot> assignment = quizAssignmentCache.find(assignmentId);
+        int remaining = 0;
+        if (assignment.isPresent() && AssignmentServiceImpl.windowRejection(assignment.get(), Instant.now()) == null) {
+            remaining = Math.max(0, assignment.get().getMaxAttempts() - counters.used(assignmentId, userId));
+        }
+        return RemainingAttemptsResponse.builder().remainingAttempts(remaining).build();
+    }
+
+    @Override
+    public void reserveAttempt(Long assignmentId, String userId, String idempotencyKey) {
+        log.info("Reserving attempt for assignmentId: {}, userId: {}, idempotencyKey: {}", assignmentId, userId, idempotencyKey);
+
+        if (Boolean.TRUE.equals(demoFlags.isFailReserve())) {
+            log.warn("Demo flag failReserve is ON. Throwing to simulate failure.");
+            throw new IllegalStateException("Demo: reserve failed by flag");
+        }
+
+        // Checked up front so a replay never takes an attempt, even for a user who is now at the limit
+        if (idempotencyStore.contains(idempotencyKey)) {
+            log.info("Idempotency key {} already processed. Skipping reservation.", idempotencyKey);
+            return;
+        }
+
+        Optional<QuizAssignmentSnapshot> assignment = quizAssignmentCache.find(assignmentId);
+        String rejection = rejection(assignment, null, Instant.now());
+        long seq = rejection == null ? counters.tryReserve(assignmentId, userId, assignment.get().getMaxAttempts()) : -1;
+        if (seq < 0) {
+            throw new IllegalStateException("Cannot reserve attempt: " + (rejection != null ? rejection : "Maximum attempts reached"));
+        }
+
+        boolean recorded;
+        try {
+            counters.awaitDurable(seq);
+            recorded = Boolean.TRUE.equals(transactionTemplate.execute(status -> idempotencyStore.putIfAbsent(idempotencyKey)));
+        } catch (RuntimeException e) {
+            counters.release(assignmentId, userId);
+            throw e;
+        }
+        if (!recorded) {
+            // A concurrent call with the same key got there first
+            counters.release(assignmentId, userId);
+            log.info("Idempotency key {} already processed. Skipping reservation.", idempotencyKey);
+            return;
+        }
+        log.info("Successfully reserved attempt for assignmentId: {}, userId: {}", assignmentId, userId);
+    }
+
+    @Override
+    public void releaseAttempt(Long assignmentId, String userId, String idempotencyKey) {
+        log.info("Releasing attempt for assignmentId: {}, userId: {}, idempotencyKey: {}", assignmentId, userId, idempotencyKey);
+
+        if (!Boolean.TRUE.equals(transactionTemplate.execute(status -> idempotencyStore.remove(idempotencyKey)))) {
+            log.warn("Skip release: no successful reserve found for idempotencyKey {}", idempotencyKey);
+            return;
+        }
+        if (counters.release(assignmentId, userId) > 0) {
+            log.info("Successfully released attempt for assignmentId: {}, userId: {}", assignmentId, userId);
+        } else {
+            log.warn("No attempts to release for assignmentId: {}, userId: {}", assignmentId, userId);
+        }
+    }
+
+    /**
+     * Same protocol as {@link #reserveAttempt}, with one wait for the flush and one transaction for
+     * the keys of the whole batch.
+     */
+    @Override
+    public BulkReservationResponse reserveAttempts(List<BulkReservationRequest.Item> items) {
+        log.info("Reserving {} attempts in one batch", items.size());
+
+        if (Boolean.TRUE.equals(demoFlags.isFailReserve())) {
+            log.warn("Demo flag failReserve is ON. Throwing to simulate failure.");
+            throw new IllegalStateException("Demo: reserve failed by flag");
+        }
+
+        Map<Long, QuizAssignmentSnapshot> assignments = quizAssignmentCache.findAll(items.stream()
+                .map(BulkReservationRequest.Item::getAssignmentId)
+                .collect(Collectors.toCollection(LinkedHashSet::new)));
+        Instant now = Instant.now();
+        BulkReservationResponse.Result[] results = new BulkReservationResponse.Result[items.size()];
+        List<Integer> taken = new ArrayList<>();
+        Set<String> seenKeys = new HashSet<>();
+        long lastSeq = 0;
+        boolean recorded = false;
+        try {
+            for (int i = 0; i < items.size(); i++) {
+                BulkReservationRequest.Item item = items.get(i);
+                // A key repeated inside the batch is a replay of its first occurrence
+                if (!seenKeys.add(item.getIdempotencyKey()) || idempotencyStore.contains(item.getIdempotencyKey())) {
+                    results[i] = AssignmentServiceImpl.result(item, BulkReservationResponse.Status.ALREADY_RESERVED, "Already processed");
+                    continue;
+                }
+                QuizAssignmentSnapshot assignment = assignments.get(item.getAssignmentId());
+                String rejection = rejection(Optional.ofNullable(assignment), null, now);
+                long seq = rejection == null ? counters.tryReserve(item.getAssignmentId(), item.getUserId(), assignment.getMaxAttempts()) : -1;
+                if (seq < 0) {
+                    results[i] = AssignmentServiceImpl.result(item, BulkReservationResponse.Status.REJECTED,
+                            rejection != null ? rejection : "Maximum attempts reached");
+                    continue;
+                }
+                taken.add(i);
+                lastSeq = seq;
+            }
+
+            counters.awaitDurable(lastSeq);
+            transactionTemplate.executeWithoutResult(status -> {
+                for (int i : taken) {
+                    BulkReservationRequest.Item item = items.get(i);
+                    results[i] = idempotencyStore.putIfAbsent(item.getIdempotencyKey())
+                            ? AssignmentServiceImpl.result(item, BulkReservationResponse.Status.RESERVED, null)
+                            : AssignmentServiceImpl.result(item, BulkReservationResponse.Status.ALREADY_RESERVED, "Already processed");
+                }
+            });
+            recorded = true;
+        } finally {
+            for (int i : taken) {
+                // Give back every attempt whose key was not recorded, including all of them on failure
+                if (!recorded || results[i].getStatus() != BulkReservationResponse.Status.RESERVED) {
+                    counters.release(items.get(i).getAssignmentId(), items.get(i).getUserId());
+                }
+            }
+        }
+        return BulkReservationResponse.builder().results(Arrays.asList(results)).build();
+    }
+
+    @Override
+    public BulkReservationResponse releaseAttempts(List<BulkReservationRequest.Item> items) {
+        log.info("Releasing {} attempts in one batch", items.size());
+
+        BulkReservationResponse.Result[] results = new BulkReservationResponse.Result[items.size()];
+        List<Integer> claimed = new ArrayList<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < items.size(); i++) {
+                if (idempotencyStore.remove(items.get(i).getIdempotencyKey())) {
+                    claimed.add(i);
+                } else {
+                    results[i] = AssignmentServiceImpl.result(items.get(i), BulkReservationResponse.Status.NOT_RESERVED,
+                            "No successful reserve for this key");
+                }
+            }
+        });
+
+        for (int i : claimed) {
+            BulkReservationRequest.Item item = items.get(i);
+            results[i] = counters.release(item.getAssignmentId(), item.getUserId()) > 0
+                    ? AssignmentServiceImpl.result(item, BulkReservationResponse.Status.RELEASED, null)
+                    : AssignmentServiceImpl.result(item, BulkReservationResponse.Status.NOT_RESERVED, "No attempts to release");
+        }
+        return BulkReservationResponse.builder().results(Arrays.asList(results)).build();
+    }
+
+    // Reason the user cannot reserve now, or null; userId null skips the counter (the reserve checks it itself)
+    private String rejection(Optional<QuizAssignmentSnapshot> assignment, String userId, Instant now) {
+        if (assignment.isEmpty()) {
+            return "Assignment not found";
+        }
+        String windowRejection = AssignmentServiceImpl.windowRejection(assignment.get(), now);
+        if (windowRejection != null) {
+            return windowRejection;
+        }
+        if (userId != null && counters.used(assignment.get().getAssignmentId(), userId) >= assignment.get().getMaxAttempts()) {
+            return "Maximum attempts reached";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,424 @@
+package com.khoavdse170395.assignmentservice.service.impl;
+
+import com.khoavdse170395.assignmentservice.model.AssignmentAttemptCounter;
+import com.khoavdse170395.assignmentservice.repository.AssignmentAttemptCounterJdbcRepository;
+import com.khoavdse170395.assignmentservice.repository.AssignmentAttemptCounterRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Attempt counters held in memory and decided under one of a fixed set of lock stripes, so
+ * reservations for a hot assignment never wait on a database row lock. Changes are queued as
+ * per-counter deltas and written to assignment_attempt_counter by a single flusher, one batch per
+ * flush interval (or sooner once maxBatch counters are dirty).
+ *
+ * <p>This node must be the only writer of the table: counters are seeded from it once and then
+ * trusted. Reservations stop being accepted when unflushed changes get older than maxLag, so a
+ * database outage cannot pile up an unbounded amount of undurable state.
+ *
+ * <p>A counter untouched for idleTtl with nothing left to flush is dropped after a successful
+ * flush, at most every idleTtl / 2; the table then holds its value and the next use seeds it again.
+ * That keeps memory proportional to the (assignment, user) pairs in recent use rather than every
+ * pair since startup.
+ */
+@Slf4j
+public class StripedAttemptCounters implements AutoCloseable {
+
+    // 500 assignment ids keep the reconcile query well under SQL Server's 2100 parameters
+    private static final int RECONCILE_CHUNK_SIZE = 500;
+    private static final Duration DEFAULT_IDLE_TTL = Duration.ofMinutes(10);
+
+    private final AssignmentAttemptCounterRepository counterRepository;
+    private final AssignmentAttemptCounterJdbcRepository counterJdbcRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Object[] stripes;
+    private final int maxBatch;
+    private final long maxLagNanos;
+    private final boolean awaitFlush;
+    private final long idleTtlNanos;
+    private long lastEvictionNanos;
+
+    private final Map<AssignmentAttemptCounter.AssignmentAttemptCounterId, Slot> slots = new ConcurrentHashMap<>();
+    private final Set<AssignmentAttemptCounter.AssignmentAttemptCounterId> dirty = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ScheduledExecutorService flusher;
+    private final long flushIntervalMs;
+
+    // Every change takes the next sequence number; a flush makes everything up to its snapshot durable
+    private final AtomicLong sequence = new AtomicLong();
+    private final Object durableMonitor = new Object();
+    private long durableSequence;
+
+    // nanoTime of the oldest change not yet handed to a flush, and of the oldest one inside the running flush; 0 = none
+    private final AtomicLong oldestPendingNanos = new AtomicLong();
+    private volatile long oldestFlushingNanos;
+
+    private final Counter flushSuccess;
+    private final Counter flushFailure;
+    private final Counter evictions;
+
+    public StripedAttemptCounters(AssignmentAttemptCounterRepository counterRepository,
+                                  AssignmentAttemptCounterJdbcRepository counterJdbcRepository,
+                                  TransactionTemplate transactionTemplate,
+                                  int stripeCount, Duration flushInterval, int maxBatch, Duration maxLag,
+                                  boolean awaitFlush, MeterRegistry meterRegistry) {
+        this(counterRepository, counterJdbcRepository, transactionTemplate, stripeCount, flushInterval, maxBatch, maxLag,
+                awaitFlush, DEFAULT_IDLE_TTL, meterRegistry);
+    }
+
+    public StripedAttemptCounters(AssignmentAttemptCounterRepository counterRepository,
+                                  AssignmentAttemptCounterJdbcRepository counterJdbcRepository,
+                                  TransactionTemplate transactionTemplate,
+                                  int stripeCount, Duration flushInterval, int maxBatch, Duration maxLag,
+                                  boolean awaitFlush, Duration idleTtl, MeterRegistry meterRegistry) {
+        this.counterRepository = counterRepository;
+        this.counterJdbcRepository = counterJdbcRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.stripes = new Object[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Object();
+        }
+        this.flushIntervalMs = flushInterval.toMillis();
+        this.maxBatch = maxBatch;
+        this.maxLagNanos = maxLag.toNanos();
+        this.awaitFlush = awaitFlush;
+        this.idleTtlNanos = idleTtl.toNanos();
+        this.lastEvictionNanos = System.nanoTime();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "attempt-counter-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.flushSuccess = Counter.builder("assignment.counters.flushes")
+                .tag("result", "success")
+                .description("Write-behind flushes of the attempt counters")
+                .register(meterRegistry);
+        this.flushFailure = Counter.builder("assignment.counters.flushes")
+                .tag("result", "failure")
+                .description("Write-behind flushes of the attempt counters")
+                .register(meterRegistry);
+        this.evictions = Counter.builder("assignment.counters.evictions")
+                .description("Idle attempt counters dropped from memory, to be seeded again from the table")
+                .register(meterRegistry);
+        Gauge.builder("assignment.counters.cached", slots, Map::size)
+                .description("Attempt counters held in memory")
+                .register(meterRegistry);
+        Gauge.builder("assignment.counters.pending", dirty, Set::size)
+                .description("Counters with changes not yet written to the database")
+                .register(meterRegistry);
+        Gauge.builder("assignment.counters.lag", this, StripedAttemptCounters::lagMillis)
+                .baseUnit("milliseconds")
+                .description("Age of the oldest counter change not yet written to the database")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Loads the counters of the given assignments from the table, replacing whatever is held for
+     * them. Only valid before the first change, i.e. at startup.
+     */
+    public int reconcile(List<Long> assignmentIds) {
+        int loaded = 0;
+        for (int from = 0; from < assignmentIds.size(); from += RECONCILE_CHUNK_SIZE) {
+            List<Long> chunk = assignmentIds.subList(from, Math.min(from + RECONCILE_CHUNK_SIZE, assignmentIds.size()));
+            for (AssignmentAttemptCounter counter : counterRepository.findByAssignmentIdIn(chunk)) {
+                slots.put(new AssignmentAttemptCounter.AssignmentAttemptCounterId(counter.getAssignmentId(), counter.getUserId()),
+                        new Slot(counter.getUsed()));
+                loaded++;
+            }
+        }
+        log.info("Reconciled {} attempt counters of {} open assignments from the table", loaded, assignmentIds.size());
+        return loaded;
+    }
+
+    public void start() {
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public int used(Long assignmentId, String userId) {
+        AssignmentAttemptCounter.AssignmentAttemptCounterId id = new AssignmentAttemptCounter.AssignmentAttemptCounterId(assignmentId, userId);
+        synchronized (stripe(id)) {
+            Slot slot = slot(id);
+            slot.touch();
+            return slot.used;
+        }
+    }
+
+    /**
+     * Takes one attempt if fewer than maxAttempts are used. Returns the change's sequence number for
+     * {@link #awaitDurable}, or -1 when the limit is reached.
+     *
+     * @throws IllegalStateException when unflushed changes are older than maxLag
+     */
+    public long tryReserve(Long assignmentId, String userId, int maxAttempts) {
+        if (lagNanos() > maxLagNanos) {
+            throw new IllegalStateException("Attempt counters are not being persisted, retry later");
+        }
+        AssignmentAttemptCounter.AssignmentAttemptCounterId id = new AssignmentAttemptCounter.AssignmentAttemptCounterId(assignmentId, userId);
+        synchronized (stripe(id)) {
+            Slot slot = slot(id);
+            slot.touch();
+            if (slot.used >= maxAttempts) {
+                return -1;
+            }
+            slot.used++;
+            return recordChange(id, slot, 1);
+        }
+    }
+
+    /**
+     * Gives one attempt back. Returns the change's sequence number, or -1 when nothing was used.
+     * Never refused for lag: a lost release only leaves the counter too high.
+     */
+    public long release(Long assignmentId, String userId) {
+        AssignmentAttemptCounter.AssignmentAttemptCounterId id = new AssignmentAttemptCounter.AssignmentAttemptCounterId(assignmentId, userId);
+        synchronized (stripe(id)) {
+            Slot slot = slot(id);
+            slot.touch();
+            if (slot.used <= 0) {
+                return -1;
+            }
+            slot.used--;
+            return recordChange(id, slot, -1);
+        }
+    }
+
+    /**
+     * Blocks until the change with this sequence number is in the table, or does nothing when
+     * awaitFlush is off. Waits at most maxLag.
+     */
+    public void awaitDurable(long seq) {
+        if (!awaitFlush || seq <= 0) {
+            return;
+        }
+        long deadline = System.nanoTime() + maxLagNanos;
+        synchronized (durableMonitor) {
+            while (durableSequence < seq) {
+                long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMs <= 0) {
+                    throw new IllegalStateException("Attempt counters were not persisted in time, retry later");
+                }
+                try {
+                    durableMonitor.wait(remainingMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the attempt counters to be persisted", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes every pending delta in one transaction. On failure the deltas go back to their counters
+     * and the next flush retries them. Returns the number of counters written.
+     */
+    public int flush() {
+        flushLock.lock();
+        try {
+            flushRequested.set(false);
+            // Every change numbered up to target has already added its delta, so the drain below sees it
+            long target = sequence.get();
+            oldestFlushingNanos = oldestPendingNanos.getAndSet(0);
+            Map<AssignmentAttemptCounter.AssignmentAttemptCounterId, Integer> deltas = drain();
+            if (!deltas.isEmpty()) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        List<Map.Entry<AssignmentAttemptCounter.AssignmentAttemptCounterId, Integer>> entries = new ArrayList<>(deltas.entrySet());
+                        for (int from = 0; from < entries.size(); from += maxBatch) {
+                            Map<AssignmentAttemptCounter.AssignmentAttemptCounterId, Integer> batch = new LinkedHashMap<>();
+                            entries.subList(from, Math.min(from + maxBatch, entries.size()))
+                                    .forEach(entry -> batch.put(entry.getKey(), entry.getValue()));
+                            counterJdbcRepository.applyDeltas(batch);
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    restore(deltas);
+                    long flushing = oldestFlushingNanos;
+                    oldestPendingNanos.accumulateAndGet(flushing, (current, previous) -> current == 0 ? previous : Math.min(current, previous));
+                    flushFailure.increment();
+                    throw e;
+                }
+                flushSuccess.increment();
+            }
+            synchronized (durableMonitor) {
+                durableSequence = Math.max(durableSequence, target);
+                durableMonitor.notifyAll();
+            }
+            evictIdle();
+            return deltas.size();
+        } finally {
+            oldestFlushingNanos = 0;
+            flushLock.unlock();
+        }
+    }
+
+    public int cachedCounters() {
+        return slots.size();
+    }
+
+    public long lagMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lagNanos());
+    }
+
+    // Final flush so a clean shutdown loses nothing
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Final attempt counter flush failed, {} counters not persisted", dirty.size(), e);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Attempt counter flush failed, {} counters pending: {}", dirty.size(), e.getMessage());
+        }
+    }
+
+    // Called under the counter's stripe lock
+    private long recordChange(AssignmentAttemptCounter.AssignmentAttemptCounterId id, Slot slot, int delta) {
+        slot.unflushed += delta;
+        dirty.add(id);
+        oldestPendingNanos.compareAndSet(0, System.nanoTime());
+        long seq = sequence.incrementAndGet();
+        if (dirty.size() >= maxBatch && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+        return seq;
+    }
+
+    private Map<AssignmentAttemptCounter.AssignmentAttemptCounterId, Integer> drain() {
+        Map<AssignmentAttemptCounter.AssignmentAttemptCounterId, Integer> deltas = new LinkedHashMap<>();
+        for (AssignmentAttemptCounter.AssignmentAttemptCounterId id : dirty) {
+            dirty.remove(id);
+            int delta;
+            synchronized (stripe(id)) {
+                // A dirty counter is never evicted, so its slot is still there
+                Slot slot = slots.get(id);
+                delta = slot.unflushed;
+                slot.unflushed = 0;
+            }
+            // A reserve and its release inside one interval cancel out
+            if (delta != 0) {
+                deltas.put(id, delta);
+            }
+        }
+        return deltas;
+    }
+
+    private void restore(Map<AssignmentAttemptCounter.AssignmentAttemptCounterId, Integer> deltas) {
+        deltas.forEach((id, delta) -> {
+            synchronized (stripe(id)) {
+                Slot slot = slots.get(id);
+                slot.unflushed += delta;
+                dirty.add(id);
+            }
+        });
+    }
+
+    /**
+     * Called by flush, holding the flush lock, after everything drained was written: a counter that is
+     * not dirty now has its value in the table. Changes made since the drain left it dirty, and the
+     * check and the removal happen under its stripe, the lock every change and every seed holds.
+     */
+    private void evictIdle() {
+        long now = System.nanoTime();
+        if (now - lastEvictionNanos < idleTtlNanos / 2) {
+            return;
+        }
+        lastEvictionNanos = now;
+        int evicted = 0;
+        for (Map.Entry<AssignmentAttemptCounter.AssignmentAttemptCounterId, Slot> entry : slots.entrySet()) {
+            AssignmentAttemptCounter.AssignmentAttemptCounterId id = entry.getKey();
+            Slot slot = entry.getValue();
+            synchronized (stripe(id)) {
+                if (slot.unflushed == 0 && !dirty.contains(id) && now - slot.lastUsedNanos >= idleTtlNanos) {
+                    slots.remove(id, slot);
+                    evicted++;
+                }
+            }
+        }
+        if (evicted > 0) {
+            evictions.increment(evicted);
+            log.debug("Evicted {} idle attempt counters, {} left", evicted, slots.size());
+        }
+    }
+
+    /**
+     * Called under the counter's stripe lock; seeds it from the table when it is not held. The flusher
+     * writes the table too, but only deltas of counters in memory, and a counter is evicted only once
+     * they are all written: with no slot under the stripe, the row is current and nothing can change
+     * it or seed the counter until the lock is released.
+     */
+    private Slot slot(AssignmentAttemptCounter.AssignmentAttemptCounterId id) {
+        Slot slot = slots.get(id);
+        if (slot == null) {
+            int used = counterRepository.findByAssignmentIdAndUserId(id.getAssignmentId(), id.getUserId())
+                    .map(AssignmentAttemptCounter::getUsed)
+                    .orElse(0);
+            slot = new Slot(used);
+            slots.put(id, slot);
+        }
+        return slot;
+    }
+
+    private Object stripe(AssignmentAttemptCounter.AssignmentAttemptCounterId id) {
+        return stripes[Math.floorMod(id.hashCode(), stripes.length)];
+    }
+
+    private long lagNanos() {
+        long now = System.nanoTime();
+        long lag = 0;
+        long pending = oldestPendingNanos.get();
+        if (pending != 0) {
+            lag = now - pending;
+        }
+        long flushing = oldestFlushingNanos;
+        if (flushing != 0) {
+            lag = Math.max(lag, now - flushing);
+        }
+        return lag;
+    }
+
+    // Guarded by the stripe of its id
+    private static final class Slot {
+        int used;
+        int unflushed;
+        long lastUsedNanos = System.nanoTime();
+
+        Slot(int used) {
+            this.used = used;
+        }
+
+        void touch() {
+            lastUsedNanos = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.khoavdse170395.assignmentservice;
+
+import com.khoavdse170395.assignmentservice.service.impl.AdmissionGate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// A reserve limit of 0 refuses every reserve, so the 429 mapping can be checked without racing real calls
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:admissiontest;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "assignment.admission.reserve.maxPerAssignment=0",
+        "assignment.admission.retryAfterSeconds=2"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class AdmissionGateTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void testGateLimitsEachAssignmentAndTheTotal() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AdmissionGate gate = new AdmissionGate("test", 2, 3, 1, 1, meterRegistry);
+        CountDownLatch hold = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Future<?> first = executor.submit(() -> gate.execute(1L, () -> await(hold)));
+            Future<?> second = executor.submit(() -> gate.execute(1L, () -> await(hold)));
+            waitForInFlight(gate, 2);
+
+            AdmissionGate.Rejected rejected = assertThrows(AdmissionGate.Rejected.class, () -> gate.execute(1L, () -> "third"));
+            assertEquals(429, rejected.getStatusCode().value());
+            assertEquals("1", rejected.getHeaders().getFirst("Retry-After"));
+
+            // Another assignment still gets in, up to the total of 3
+            Future<?> other = executor.submit(() -> gate.execute(2L, () -> await(hold)));
+            waitForInFlight(gate, 3);
+            assertThrows(AdmissionGate.Rejected.class, () -> gate.execute(3L, () -> "over total"));
+
+            hold.countDown();
+            first.get(5, TimeUnit.SECONDS);
+            second.get(5, TimeUnit.SECONDS);
+            other.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(0, gate.inFlight());
+        assertEquals("again", gate.execute(1L, () -> "again"));
+
+        // Only the first assignment gets its own tag (maxTaggedAssignments = 1)
+        assertEquals(3, meterRegistry.get("test.admission.calls").tags("assignmentId", "1", "result", "admitted").counter().count());
+        assertEquals(1, meterRegistry.get("test.admission.calls").tags("assignmentId", "1", "result", "rejected").counter().count());
+        assertEquals(1, meterRegistry.get("test.admission.calls").tags("assignmentId", "other", "result", "admitted").counter().count());
+        assertEquals(1, meterRegistry.get("test.admission.calls").tags("assignmentId", "other", "result", "rejected").counter().count());
+    }
+
+    @Test
+    public void testRejectedReserveGets429WithRetryAfter() throws Exception {
+        mockMvc.perform(post("/assignments/1/reserve")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userId\":\"u1\",\"idempotencyKey\":\"k1\"}"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "2"));
+    }
+
+    private static String await(CountDownLatch hold) {
+        try {
+            hold.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "done";
+    }
+
+    private static void waitForInFlight(AdmissionGate gate, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (gate.inFlight() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, gate.inFlight());
+    }
+}
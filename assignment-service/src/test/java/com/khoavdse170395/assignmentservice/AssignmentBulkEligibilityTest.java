@@ -0,0 +1,104 @@
+package com.khoavdse170395.assignmentservice;
+
+import com.khoavdse170395.assignmentservice.model.QuizAssignment;
+import com.khoavdse170395.assignmentservice.model.dto.BulkEligibilityRequest;
+import com.khoavdse170395.assignmentservice.model.dto.BulkEligibilityResult;
+import com.khoavdse170395.assignmentservice.model.dto.CheckEligibilityResponse;
+import com.khoavdse170395.assignmentservice.repository.QuizAssignmentRepository;
+import com.khoavdse170395.assignmentservice.service.AssignmentService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The single-pair comparison runs over a thousand queries; per-call SQL logging would dominate the run
+@SpringBootTest(properties = {
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.org.hibernate.orm.jdbc.bind=WARN",
+        "logging.level.com.khoavdse170395.assignmentservice=WARN"
+})
+@ActiveProfiles("test")
+public class AssignmentBulkEligibilityTest {
+
+    private static final int STUDENTS = 600;
+
+    @Autowired
+    private AssignmentService assignmentService;
+
+    @Autowired
+    private QuizAssignmentRepository quizAssignmentRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    public void testBulkAnswersMatchSingleCallsWithFewQueries() {
+        Long open = saveAssignment(Instant.now().minus(1, ChronoUnit.HOURS), 2);
+        Long closed = saveAssignment(Instant.now().minus(3, ChronoUnit.HOURS), 2);
+        for (int i = 0; i < 10; i++) {
+            assignmentService.reserveAttempt(open, "roster-" + i, "roster-key-" + i);
+            if (i < 5) {
+                assignmentService.reserveAttempt(open, "roster-" + i, "roster-key-again-" + i);
+            }
+        }
+
+        List<BulkEligibilityRequest.Pair> pairs = new ArrayList<>();
+        for (int i = 0; i < STUDENTS; i++) {
+            pairs.add(BulkEligibilityRequest.Pair.builder().assignmentId(open).userId("roster-" + i).build());
+        }
+        pairs.add(BulkEligibilityRequest.Pair.builder().assignmentId(closed).userId("roster-0").build());
+        pairs.add(BulkEligibilityRequest.Pair.builder().assignmentId(-1L).userId("roster-0").build());
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        List<Integer> chunkSizes = new ArrayList<>();
+        List<BulkEligibilityResult> results = new ArrayList<>();
+        assignmentService.streamEligibility(pairs, chunk -> {
+            chunkSizes.add(chunk.size());
+            results.addAll(chunk);
+        });
+        long statements = statistics.getPrepareStatementCount();
+        statistics.setStatisticsEnabled(false);
+
+        // Two chunks, at most an assignment lookup and a counter query each
+        assertEquals(List.of(500, 102), chunkSizes);
+        assertTrue(statements <= 4, "Expected at most 4 statements, got " + statements);
+
+        assertEquals(pairs.size(), results.size());
+        for (int i = 0; i < pairs.size(); i++) {
+            BulkEligibilityRequest.Pair pair = pairs.get(i);
+            BulkEligibilityResult result = results.get(i);
+            CheckEligibilityResponse single = assignmentService.checkEligibility(pair.getAssignmentId(), pair.getUserId());
+            assertEquals(pair.getUserId(), result.getUserId());
+            assertEquals(single.isEligible(), result.isEligible(), "eligible of pair " + i);
+            assertEquals(single.getReason(), result.getReason(), "reason of pair " + i);
+            assertEquals(assignmentService.getRemainingAttempts(pair.getAssignmentId(), pair.getUserId()).getRemainingAttempts(),
+                    result.getRemainingAttempts(), "remaining of pair " + i);
+        }
+        assertEquals(0, results.get(0).getRemainingAttempts());
+        assertEquals(1, results.get(5).getRemainingAttempts());
+        assertEquals(2, results.get(STUDENTS - 1).getRemainingAttempts());
+        assertEquals("Assignment has closed", results.get(STUDENTS).getReason());
+        assertEquals("Assignment not found", results.get(STUDENTS + 1).getReason());
+    }
+
+    private Long saveAssignment(Instant openAt, int maxAttempts) {
+        return quizAssignmentRepository.save(QuizAssignment.builder()
+                .quizId(1L)
+                .openAt(openAt)
+                .closeAt(openAt.plus(2, ChronoUnit.HOURS))
+                .maxAttempts(maxAttempts)
+                .build()).getAssignmentId();
+    }
+}
@@ -0,0 +1,108 @@
+package com.khoavdse170395.assignmentservice;
+
+import com.khoavdse170395.assignmentservice.model.QuizAssignment;
+import com.khoavdse170395.assignmentservice.model.dto.BulkReservationRequest;
+import com.khoavdse170395.assignmentservice.model.dto.BulkReservationResponse;
+import com.khoavdse170395.assignmentservice.repository.AssignmentAttemptCounterRepository;
+import com.khoavdse170395.assignmentservice.repository.QuizAssignmentRepository;
+import com.khoavdse170395.assignmentservice.service.AssignmentService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class AssignmentBulkReserveTest {
+
+    @Autowired
+    private AssignmentService assignmentService;
+
+    @Autowired
+    private QuizAssignmentRepository quizAssignmentRepository;
+
+    @Autowired
+    private AssignmentAttemptCounterRepository attemptCounterRepository;
+
+    @Test
+    public void testBulkReserveGivesPerItemResults() {
+        Long open = saveAssignment(Instant.now().minus(1, ChronoUnit.HOURS), 1);
+        Long notYetOpen = saveAssignment(Instant.now().plus(1, ChronoUnit.HOURS), 1);
+
+        List<BulkReservationRequest.Item> items = List.of(
+                item(open, "student-1", "bulk-1"),
+                item(open, "student-2", "bulk-2"),
+                item(open, "student-1", "bulk-3"),   // second attempt of the same student, max is 1
+                item(open, "student-2", "bulk-2"),   // repeated key
+                item(notYetOpen, "student-1", "bulk-4"));
+
+        List<BulkReservationResponse.Result> results = assignmentService.reserveAttempts(items).getResults();
+
+        assertEquals(List.of(BulkReservationResponse.Status.RESERVED, BulkReservationResponse.Status.RESERVED,
+                BulkReservationResponse.Status.REJECTED, BulkReservationResponse.Status.ALREADY_RESERVED,
+                BulkReservationResponse.Status.REJECTED), results.stream().map(BulkReservationResponse.Result::getStatus).toList());
+        assertEquals("Maximum attempts reached", results.get(2).getReason());
+        assertEquals("Assignment not yet open", results.get(4).getReason());
+        assertEquals(1, used(open, "student-1"));
+        assertEquals(1, used(open, "student-2"));
+
+        // The whole batch again is a replay, except for the rejected items whose keys were dropped
+        List<BulkReservationResponse.Result> replay = assignmentService.reserveAttempts(items).getResults();
+        assertEquals(BulkReservationResponse.Status.ALREADY_RESERVED, replay.get(0).getStatus());
+        assertEquals(BulkReservationResponse.Status.REJECTED, replay.get(2).getStatus());
+        assertEquals(1, used(open, "student-1"));
+
+        // A rejected key is free again, also in the front cache
+        Long roomy = saveAssignment(Instant.now().minus(1, ChronoUnit.HOURS), 2);
+        assertEquals(BulkReservationResponse.Status.RESERVED, assignmentService.reserveAttempts(
+                List.of(item(roomy, "student-1", "bulk-3"))).getResults().get(0).getStatus());
+    }
+
+    @Test
+    public void testBulkReleaseUndoesOnlyReservedItems() {
+        Long open = saveAssignment(Instant.now().minus(1, ChronoUnit.HOURS), 2);
+        List<BulkReservationRequest.Item> items = List.of(
+                item(open, "student-a", "release-1"),
+                item(open, "student-b", "release-2"));
+        assignmentService.reserveAttempts(items);
+
+        List<BulkReservationRequest.Item> release = List.of(items.get(0), items.get(1), item(open, "student-c", "never-reserved"));
+        assertEquals(List.of(BulkReservationResponse.Status.RELEASED, BulkReservationResponse.Status.RELEASED,
+                        BulkReservationResponse.Status.NOT_RESERVED),
+                assignmentService.releaseAttempts(release).getResults().stream()
+                        .map(BulkReservationResponse.Result::getStatus).toList());
+        assertEquals(0, used(open, "student-a"));
+
+        // Releasing twice does not decrement twice
+        assertEquals(BulkReservationResponse.Status.NOT_RESERVED,
+                assignmentService.releaseAttempts(release).getResults().get(0).getStatus());
+        assertEquals(0, used(open, "student-a"));
+    }
+
+    private Long saveAssignment(Instant openAt, int maxAttempts) {
+        return quizAssignmentRepository.save(QuizAssignment.builder()
+                .quizId(1L)
+                .openAt(openAt)
+                .closeAt(Instant.now().plus(2, ChronoUnit.HOURS))
+                .maxAttempts(maxAttempts)
+                .build()).getAssignmentId();
+    }
+
+    private int used(Long assignmentId, String userId) {
+        return attemptCounterRepository.findByAssignmentIdAndUserId(assignmentId, userId).orElseThrow().getUsed();
+    }
+
+    private static BulkReservationRequest.Item item(Long assignmentId, String userId, String idempotencyKey) {
+        return BulkReservationRequest.Item.builder()
+                .assignmentId(assignmentId)
+                .userId(userId)
+                .idempotencyKey(idempotencyKey)
+                .build();
+    }
+}
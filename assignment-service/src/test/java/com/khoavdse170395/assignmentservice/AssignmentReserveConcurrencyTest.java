@@ -0,0 +1,117 @@
+package com.khoavdse170395.assignmentservice;
+
+import com.khoavdse170395.assignmentservice.model.QuizAssignment;
+import com.khoavdse170395.assignmentservice.repository.AssignmentAttemptCounterRepository;
+import com.khoavdse170395.assignmentservice.repository.QuizAssignmentRepository;
+import com.khoavdse170395.assignmentservice.service.AssignmentService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Per-call SQL/bind logging would serialize the threads on the console appender and skew the throughput numbers
+@SpringBootTest(properties = {
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.org.hibernate.orm.jdbc.bind=WARN",
+        "logging.level.com.khoavdse170395.assignmentservice=WARN"
+})
+@ActiveProfiles("test")
+@Slf4j
+public class AssignmentReserveConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final int RESERVES_PER_THREAD = 50;
+
+    @Autowired
+    private AssignmentService assignmentService;
+
+    @Autowired
+    private QuizAssignmentRepository quizAssignmentRepository;
+
+    @Autowired
+    private AssignmentAttemptCounterRepository attemptCounterRepository;
+
+    @Test
+    public void testConcurrentReservesNeverExceedMaxAttempts() throws Exception {
+        int maxAttempts = 25;
+        QuizAssignment assignment = quizAssignmentRepository.save(QuizAssignment.builder()
+                .quizId(1L)
+                .openAt(Instant.now().minus(1, ChronoUnit.HOURS))
+                .closeAt(Instant.now().plus(1, ChronoUnit.HOURS))
+                .maxAttempts(maxAttempts)
+                .build());
+        Long assignmentId = assignment.getAssignmentId();
+        String userId = "concurrency-user";
+
+        AtomicInteger reserved = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < RESERVES_PER_THREAD; i++) {
+                    try {
+                        assignmentService.reserveAttempt(assignmentId, userId, "conc-" + thread + "-" + i);
+                        reserved.incrementAndGet();
+                    } catch (IllegalStateException e) {
+                        assertTrue(e.getMessage().contains("Maximum attempts reached"), e.getMessage());
+                        rejected.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long startNanos = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        executor.shutdown();
+
+        int total = THREADS * RESERVES_PER_THREAD;
+        double opsPerSecond = total / (elapsedNanos / 1_000_000_000.0);
+        log.info("Reserve throughput: {} calls in {} ms ({} ops/s), reserved={}, rejected={}",
+                total, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), Math.round(opsPerSecond), reserved.get(), rejected.get());
+
+        assertEquals(maxAttempts, reserved.get());
+        assertEquals(total - maxAttempts, rejected.get());
+        assertEquals(maxAttempts, attemptCounterRepository.findByAssignmentIdAndUserId(assignmentId, userId)
+                .orElseThrow().getUsed());
+        assertTrue(opsPerSecond > 10, "Reserve throughput too low: " + opsPerSecond);
+    }
+
+    @Test
+    public void testReserveRejectedOutsideWindow() {
+        QuizAssignment closed = quizAssignmentRepository.save(QuizAssignment.builder()
+                .quizId(1L)
+                .openAt(Instant.now().minus(2, ChronoUnit.HOURS))
+                .closeAt(Instant.now().minus(1, ChronoUnit.HOURS))
+                .maxAttempts(3)
+                .build());
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> assignmentService.reserveAttempt(closed.getAssignmentId(), "late-user", "late-key"));
+        assertEquals("Cannot reserve attempt: Assignment has closed", e.getMessage());
+        assertTrue(attemptCounterRepository.findByAssignmentIdAndUserId(closed.getAssignmentId(), "late-user").isEmpty());
+
+        IllegalStateException missing = assertThrows(IllegalStateException.class,
+                () -> assignmentService.reserveAttempt(-1L, "late-user", "missing-key"));
+        assertEquals("Cannot reserve attempt: Assignment not found", missing.getMessage());
+    }
+}
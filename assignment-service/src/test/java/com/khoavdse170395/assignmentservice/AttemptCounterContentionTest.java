@@ -0,0 +1,209 @@
+package com.khoavdse170395.assignmentservice;
+
+import com.khoavdse170395.assignmentservice.model.QuizAssignment;
+import com.khoavdse170395.assignmentservice.repository.AssignmentAttemptCounterJdbcRepository;
+import com.khoavdse170395.assignmentservice.repository.AssignmentAttemptCounterRepository;
+import com.khoavdse170395.assignmentservice.repository.QuizAssignmentRepository;
+import com.khoavdse170395.assignmentservice.service.AssignmentService;
+import com.khoavdse170395.assignmentservice.service.impl.AssignmentServiceImpl;
+import com.khoavdse170395.assignmentservice.service.impl.StripedAttemptCounters;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Both counter modes in one context: AssignmentService is the striped one, AssignmentServiceImpl still the row-lock path.
+// Own H2 database: recreating the shared schema would leave other cached contexts with stale assignment caches
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:countertest;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "assignment.counters.mode=striped",
+        "assignment.counters.flushIntervalMs=5",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.org.hibernate.orm.jdbc.bind=WARN",
+        "logging.level.com.khoavdse170395.assignmentservice=WARN"
+})
+@ActiveProfiles("test")
+@Slf4j
+public class AttemptCounterContentionTest {
+
+    private static final int THREADS = 16;
+    private static final int RESERVES_PER_THREAD = 50;
+
+    @Autowired
+    private AssignmentService stripedService;
+
+    @Autowired
+    private AssignmentServiceImpl rowLockService;
+
+    @Autowired
+    private StripedAttemptCounters counters;
+
+    @Autowired
+    private QuizAssignmentRepository quizAssignmentRepository;
+
+    @Autowired
+    private AssignmentAttemptCounterRepository attemptCounterRepository;
+
+    @Autowired
+    private AssignmentAttemptCounterJdbcRepository attemptCounterJdbcRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    @Tag("benchmark")
+    public void testHotCounterContentionRowLockVersusStriped() throws Exception {
+        int maxAttempts = 400;
+        Long rowLockAssignment = saveAssignment(maxAttempts);
+        Long stripedAssignment = saveAssignment(maxAttempts);
+
+        double rowLockOps = hammer(rowLockService, rowLockAssignment, maxAttempts, "rowlock");
+        double stripedOps = hammer(stripedService, stripedAssignment, maxAttempts, "striped");
+        log.info("Hot counter contention, {} threads: row-lock {} ops/s, striped {} ops/s ({}x)",
+                THREADS, Math.round(rowLockOps), Math.round(stripedOps), Math.round(stripedOps / rowLockOps * 10) / 10.0);
+
+        counters.flush();
+        assertEquals(maxAttempts, used(rowLockAssignment, "hot-user"));
+        assertEquals(maxAttempts, used(stripedAssignment, "hot-user"));
+        assertEquals(0, counters.lagMillis());
+    }
+
+    @Test
+    public void testStripedCountersAreDurableAndReconciledAfterRestart() {
+        Long assignmentId = saveAssignment(3);
+        stripedService.reserveAttempt(assignmentId, "restart-user", "restart-1");
+        stripedService.reserveAttempt(assignmentId, "restart-user", "restart-2");
+        stripedService.reserveAttempt(assignmentId, "restart-user", "restart-2");   // replay
+        stripedService.reserveAttempt(assignmentId, "restart-user", "restart-3");
+        // awaitFlush: each reserve returned only once its counter was in the table
+        assertEquals(3, used(assignmentId, "restart-user"));
+
+        // Replays succeed even at the limit; a new key does not
+        stripedService.reserveAttempt(assignmentId, "restart-user", "restart-3");
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> stripedService.reserveAttempt(assignmentId, "restart-user", "restart-4"));
+        assertEquals("Cannot reserve attempt: Maximum attempts reached", e.getMessage());
+
+        stripedService.releaseAttempt(assignmentId, "restart-user", "restart-1");
+        stripedService.releaseAttempt(assignmentId, "restart-user", "restart-1");   // already released
+        assertEquals(1, stripedService.getRemainingAttempts(assignmentId, "restart-user").getRemainingAttempts());
+        counters.flush();
+        assertEquals(2, used(assignmentId, "restart-user"));
+
+        // A fresh node starts from the table
+        try (StripedAttemptCounters restarted = new StripedAttemptCounters(attemptCounterRepository, attemptCounterJdbcRepository,
+                new TransactionTemplate(transactionManager), 4, Duration.ofSeconds(1), 100, Duration.ofSeconds(5), true,
+                new SimpleMeterRegistry())) {
+            assertEquals(1, restarted.reconcile(List.of(assignmentId)));
+            assertEquals(2, restarted.used(assignmentId, "restart-user"));
+            assertTrue(restarted.tryReserve(assignmentId, "restart-user", 3) > 0);
+            assertEquals(-1, restarted.tryReserve(assignmentId, "restart-user", 3));
+        }
+        assertEquals(3, used(assignmentId, "restart-user"));
+    }
+
+    @Test
+    public void testIdleCountersAreEvictedAndReseededWithoutOverReserving() throws Exception {
+        Long assignmentId = saveAssignment(40);
+        try (StripedAttemptCounters evicting = new StripedAttemptCounters(attemptCounterRepository, attemptCounterJdbcRepository,
+                new TransactionTemplate(transactionManager), 4, Duration.ofMillis(2), 100, Duration.ofSeconds(5), false,
+                Duration.ZERO, new SimpleMeterRegistry())) {
+            assertTrue(evicting.tryReserve(assignmentId, "idle-user", 40) > 0);
+            assertTrue(evicting.tryReserve(assignmentId, "idle-user", 40) > 0);
+            assertEquals(1, evicting.cachedCounters());
+
+            // The flush writes the counter; the next one finds it clean and idle and drops it
+            evicting.flush();
+            evicting.flush();
+            assertEquals(0, evicting.cachedCounters());
+            assertEquals(2, evicting.used(assignmentId, "idle-user"));
+
+            // Reserves race a flusher that evicts on every pass: the limit holds across re-seeding
+            evicting.start();
+            AtomicInteger reserved = new AtomicInteger(2);
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 20; i++) {
+                        if (evicting.tryReserve(assignmentId, "idle-user", 40) > 0) {
+                            reserved.incrementAndGet();
+                        }
+                        Thread.sleep(1);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+            executor.shutdown();
+
+            evicting.flush();
+            assertEquals(40, reserved.get());
+            assertEquals(40, used(assignmentId, "idle-user"));
+            assertEquals(-1, evicting.tryReserve(assignmentId, "idle-user", 40));
+        }
+    }
+
+    private double hammer(AssignmentService service, Long assignmentId, int maxAttempts, String prefix) throws Exception {
+        AtomicInteger reserved = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < RESERVES_PER_THREAD; i++) {
+                    try {
+                        service.reserveAttempt(assignmentId, "hot-user", prefix + "-" + thread + "-" + i);
+                        reserved.incrementAndGet();
+                    } catch (IllegalStateException e) {
+                        assertTrue(e.getMessage().contains("Maximum attempts reached"), e.getMessage());
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long startNanos = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        executor.shutdown();
+
+        assertEquals(maxAttempts, reserved.get());
+        return THREADS * RESERVES_PER_THREAD / (elapsedNanos / 1_000_000_000.0);
+    }
+
+    private Long saveAssignment(int maxAttempts) {
+        return quizAssignmentRepository.save(QuizAssignment.builder()
+                .quizId(1L)
+                .openAt(Instant.now().minus(1, ChronoUnit.HOURS))
+                .closeAt(Instant.now().plus(1, ChronoUnit.HOURS))
+                .maxAttempts(maxAttempts)
+                .build()).getAssignmentId();
+    }
+
+    private int used(Long assignmentId, String userId) {
+        return attemptCounterRepository.findByAssignmentIdAndUserId(assignmentId, userId).orElseThrow().getUsed();
+    }
+}
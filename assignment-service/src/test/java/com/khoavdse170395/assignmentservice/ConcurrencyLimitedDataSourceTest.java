@@ -0,0 +1,62 @@
+package com.khoavdse170395.assignmentservice;
+
+import com.khoavdse170395.assignmentservice.config.ConcurrencyLimitedDataSource;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ConcurrencyLimitedDataSourceTest {
+
+    @Test
+    public void testPermitsCapConnectionsAndCloseReleasesOnce() throws Exception {
+        DataSource pool = mock(DataSource.class);
+        when(pool.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+        ConcurrencyLimitedDataSource limiter = new ConcurrencyLimitedDataSource(pool, 2, 10, 5000);
+
+        Connection first = limiter.getConnection();
+        Connection second = limiter.getConnection();
+        assertEquals(2, limiter.getActive());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Connection> third = executor.submit(() -> limiter.getConnection());
+        while (limiter.getWaiting() == 0) {
+            Thread.sleep(1);
+        }
+        assertFalse(third.isDone());
+
+        first.close();
+        first.close();
+        third.get(5, TimeUnit.SECONDS).close();
+        second.close();
+        executor.shutdown();
+
+        assertEquals(0, limiter.getActive());
+        verify(pool, times(3)).getConnection();
+    }
+
+    @Test
+    public void testOverflowAndTimeoutAreRejected() throws Exception {
+        DataSource pool = mock(DataSource.class);
+        when(pool.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+
+        ConcurrencyLimitedDataSource noQueue = new ConcurrencyLimitedDataSource(pool, 1, 0, 5000);
+        Connection held = noQueue.getConnection();
+        assertThrows(SQLTransientConnectionException.class, noQueue::getConnection);
+        held.close();
+
+        ConcurrencyLimitedDataSource shortWait = new ConcurrencyLimitedDataSource(pool, 1, 10, 20);
+        held = shortWait.getConnection();
+        assertThrows(SQLTransientConnectionException.class, shortWait::getConnection);
+        held.close();
+
+        assertEquals(1, noQueue.getRejected());
+        assertEquals(1, shortWait.getRejected());
+        assertEquals(0, shortWait.getWaiting());
+    }
+}
@@ -0,0 +1,161 @@
+package com.khoavdse170395.assignmentservice;
+
+import com.khoavdse170395.assignmentservice.model.QuizAssignment;
+import com.khoavdse170395.assignmentservice.repository.AssignmentAttemptCounterRepository;
+import com.khoavdse170395.assignmentservice.repository.QuizAssignmentRepository;
+import com.khoavdse170395.assignmentservice.service.AssignmentService;
+import com.khoavdse170395.assignmentservice.service.IdempotencyStore;
+import com.khoavdse170395.assignmentservice.service.impl.InMemoryIdempotencyStore;
+import com.khoavdse170395.assignmentservice.service.impl.JdbcIdempotencyStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class IdempotencyStoreTest {
+
+    @Autowired
+    private AssignmentService assignmentService;
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    @Autowired
+    private QuizAssignmentRepository quizAssignmentRepository;
+
+    @Autowired
+    private AssignmentAttemptCounterRepository attemptCounterRepository;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void testReplayedReserveAndReleaseApplyOnce() {
+        Long assignmentId = quizAssignmentRepository.save(QuizAssignment.builder()
+                .quizId(1L)
+                .openAt(Instant.now().minus(1, ChronoUnit.HOURS))
+                .maxAttempts(3)
+                .build()).getAssignmentId();
+        String userId = "idempotency-user";
+
+        assignmentService.reserveAttempt(assignmentId, userId, "replay-key");
+        assignmentService.reserveAttempt(assignmentId, userId, "replay-key");
+        assertEquals(1, attemptCounterRepository.findByAssignmentIdAndUserId(assignmentId, userId).orElseThrow().getUsed());
+        assertTrue(meterRegistry.get("assignment.idempotency.front.lookups").tag("result", "hit").counter().count() >= 1);
+
+        assignmentService.releaseAttempt(assignmentId, userId, "replay-key");
+        assignmentService.releaseAttempt(assignmentId, userId, "replay-key");
+        assertEquals(0, attemptCounterRepository.findByAssignmentIdAndUserId(assignmentId, userId).orElseThrow().getUsed());
+    }
+
+    @Test
+    public void testRejectedReserveDoesNotKeepKey() {
+        Long assignmentId = quizAssignmentRepository.save(QuizAssignment.builder()
+                .quizId(1L)
+                .openAt(Instant.now().plus(1, ChronoUnit.HOURS))
+                .maxAttempts(1)
+                .build()).getAssignmentId();
+
+        assertThrows(IllegalStateException.class,
+                () -> assignmentService.reserveAttempt(assignmentId, "early-user", "rolled-back-key"));
+
+        // The key went away with the rolled-back transaction, so a later retry is not mistaken for a replay
+        Boolean recordedAgain = transactionTemplate.execute(status -> {
+            status.setRollbackOnly();
+            return idempotencyStore.putIfAbsent("rolled-back-key");
+        });
+        assertTrue(recordedAgain);
+    }
+
+    @Test
+    public void testJdbcStorePurgesExpiredKeysInBatches() {
+        for (int i = 0; i < 7; i++) {
+            jdbcTemplate.getJdbcTemplate().update(
+                    "INSERT INTO reservation_idempotency_key (idempotency_key, created_at) VALUES (?, ?)",
+                    "expired-" + i, Instant.now().minus(2, ChronoUnit.DAYS).atOffset(ZoneOffset.UTC));
+        }
+        jdbcTemplate.getJdbcTemplate().update(
+                "INSERT INTO reservation_idempotency_key (idempotency_key, created_at) VALUES (?, ?)",
+                "fresh-key", Instant.now().atOffset(ZoneOffset.UTC));
+
+        JdbcIdempotencyStore store = new JdbcIdempotencyStore(jdbcTemplate, Duration.ofDays(1), 3, Clock.systemUTC());
+        assertEquals(7, store.purgeExpired());
+        assertFalse(store.putIfAbsent("fresh-key"));
+        assertTrue(store.remove("fresh-key"));
+    }
+
+    @Test
+    public void testInMemoryStoreIsBoundedAndExpires() {
+        MutableClock clock = new MutableClock();
+        InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(2, Duration.ofSeconds(10), clock, false);
+
+        assertTrue(store.putIfAbsent("a"));
+        assertTrue(store.putIfAbsent("b"));
+        assertFalse(store.putIfAbsent("a"));
+        assertTrue(store.putIfAbsent("c"));
+        assertEquals(2, store.size());
+        assertFalse(store.contains("a"));
+
+        clock.advance(Duration.ofSeconds(11));
+        assertEquals(0, store.size());
+        assertFalse(store.remove("c"));
+    }
+
+    @Test
+    public void testInMemoryStoreUndoesPutAndRemoveInReverseOrder() {
+        InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(10, Duration.ofMinutes(1), Clock.systemUTC(), true);
+        store.putIfAbsent("kept");
+
+        transactionTemplate.executeWithoutResult(status -> {
+            assertTrue(store.putIfAbsent("put-then-removed"));
+            assertTrue(store.remove("put-then-removed"));
+            assertTrue(store.remove("kept"));
+            status.setRollbackOnly();
+        });
+
+        assertFalse(store.contains("put-then-removed"));
+        assertTrue(store.contains("kept"));
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now = Instant.now();
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.khoavdse170395.assignmentservice;
+
+import com.khoavdse170395.assignmentservice.model.QuizAssignment;
+import com.khoavdse170395.assignmentservice.model.dto.CreateAssignmentRequest;
+import com.khoavdse170395.assignmentservice.repository.QuizAssignmentRepository;
+import com.khoavdse170395.assignmentservice.service.AssignmentService;
+import com.khoavdse170395.assignmentservice.service.QuizAssignmentCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class QuizAssignmentCacheTest {
+
+    @Autowired
+    private QuizAssignmentCache quizAssignmentCache;
+
+    @Autowired
+    private AssignmentService assignmentService;
+
+    @Autowired
+    private QuizAssignmentRepository quizAssignmentRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void testConcurrentMissesLoadOnce() throws Exception {
+        Long assignmentId = quizAssignmentRepository.save(QuizAssignment.builder()
+                .quizId(7L)
+                .maxAttempts(2)
+                .build()).getAssignmentId();
+
+        double missesBefore = cacheGets("miss");
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                barrier.await();
+                return quizAssignmentCache.find(assignmentId).orElseThrow().getMaxAttempts();
+            }));
+        }
+        for (Future<Integer> future : futures) {
+            assertEquals(2, future.get(30, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        assertEquals(1.0, cacheGets("miss") - missesBefore);
+    }
+
+    @Test
+    public void testCreateInvalidatesCachedMiss() {
+        // Identity ids are sequential, so a lookup of the next id can cache "not found" before the row exists
+        Long nextId = quizAssignmentRepository.save(QuizAssignment.builder().quizId(8L).maxAttempts(1).build())
+                .getAssignmentId() + 1;
+        assertTrue(quizAssignmentCache.find(nextId).isEmpty());
+
+        Long createdId = assignmentService.createAssignment(CreateAssignmentRequest.builder()
+                .quizId(8L)
+                .maxAttempts(3)
+                .build()).getAssignmentId();
+
+        assertEquals(nextId, createdId);
+        assertEquals(3, quizAssignmentCache.find(createdId).orElseThrow().getMaxAttempts());
+    }
+
+    private double cacheGets(String result) {
+        return meterRegistry.get("cache.gets")
+                .tag("cache", "quizAssignments")
+                .tag("result", result)
+                .functionCounter()
+                .count();
+    }
+}
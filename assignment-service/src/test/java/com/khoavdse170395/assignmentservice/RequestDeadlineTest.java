@@ -0,0 +1,126 @@
+package com.khoavdse170395.assignmentservice;
+
+import com.khoavdse170395.assignmentservice.config.DeadlineDataSource;
+import com.khoavdse170395.assignmentservice.config.RequestDeadline;
+import com.khoavdse170395.assignmentservice.model.QuizAssignment;
+import com.khoavdse170395.assignmentservice.repository.QuizAssignmentRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLTimeoutException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class RequestDeadlineTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private QuizAssignmentRepository quizAssignmentRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    public void clearDeadline() {
+        RequestDeadline.clear();
+    }
+
+    @Test
+    public void testExpiredRequestIsRefusedBeforeItRuns() throws Exception {
+        Long assignmentId = quizAssignmentRepository.save(QuizAssignment.builder()
+                .quizId(1L)
+                .openAt(Instant.now().minus(1, ChronoUnit.HOURS))
+                .closeAt(Instant.now().plus(1, ChronoUnit.HOURS))
+                .maxAttempts(1)
+                .build()).getAssignmentId();
+        double expiredBefore = expired("request");
+
+        mockMvc.perform(post("/assignments/{id}/reserve", assignmentId)
+                        .header(RequestDeadline.HEADER, "0")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userId\":\"late\",\"idempotencyKey\":\"late-key\"}"))
+                .andExpect(status().isGatewayTimeout());
+        assertEquals(expiredBefore + 1, expired("request"));
+
+        // Nothing was reserved: the student still has the one attempt
+        mockMvc.perform(post("/assignments/{id}/check-eligibility", assignmentId)
+                        .header(RequestDeadline.HEADER, "5000")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userId\":\"late\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.eligible").value(true));
+        assertTrue(dataSource.isWrapperFor(DeadlineDataSource.class));
+    }
+
+    @Test
+    public void testStatementsGetRemainingTimeAndAreRefusedAfterIt() throws Exception {
+        DataSource pool = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(pool.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        DeadlineDataSource deadlines = new DeadlineDataSource(pool);
+
+        // No deadline: the connection is not wrapped
+        assertSame(connection, deadlines.getConnection());
+
+        RequestDeadline.start(2500);
+        PreparedStatement bounded = deadlines.getConnection().prepareStatement("select 1");
+        bounded.executeQuery();
+        verify(statement).setQueryTimeout(3);
+        verify(statement).executeQuery();
+
+        RequestDeadline.start(-1);
+        assertThrows(SQLTimeoutException.class, bounded::executeQuery);
+        verify(statement, times(1)).executeQuery();
+        assertEquals(1, deadlines.getExpired());
+    }
+
+    @Test
+    public void testShorterQueryTimeoutOfTheStatementIsKept() throws Exception {
+        DataSource pool = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(pool.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.getQueryTimeout()).thenReturn(2);
+        DeadlineDataSource deadlines = new DeadlineDataSource(pool);
+
+        RequestDeadline.start(5000);
+        deadlines.getConnection().prepareStatement("select 1").executeQuery();
+        verify(statement).setQueryTimeout(2);
+
+        // A longer one is lowered to the time left
+        when(statement.getQueryTimeout()).thenReturn(30);
+        deadlines.getConnection().prepareStatement("select 1").executeQuery();
+        verify(statement).setQueryTimeout(5);
+    }
+
+    private double expired(String stage) {
+        return meterRegistry.get("assignment.deadline.expired").tag("stage", stage).counter().count();
+    }
+}
@@ -0,0 +1,41 @@
+package com.khoavdse170395.attemptservice.config;
+
+import com.khoavdse170395.attemptservice.service.AttemptService;
+import com.khoavdse170395.attemptservice.service.impl.AnswerAutosaveBuffer;
+import com.khoavdse170395.attemptservice.service.impl.AnswerAutosaveFlusher;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Autosaved answers are held per attempt for attempt.autosave.flushIntervalMs and written in one
+ * batch per attempt. attempt.autosave.flush.enabled=false leaves writing to the final submit and
+ * to callers of AnswerAutosaveFlusher.flushAll().
+ */
+@Configuration
+public class AutosaveConfig {
+
+    @Bean
+    public AnswerAutosaveBuffer answerAutosaveBuffer(@Value("${attempt.autosave.maxPending:100000}") int maxPending,
+                                                     @Value("${attempt.autosave.maxPendingPerAttempt:200}") int maxPendingPerAttempt,
+                                                     MeterRegistry meterRegistry) {
+        return new AnswerAutosaveBuffer(maxPending, maxPendingPerAttempt, meterRegistry);
+    }
+
+    @Bean
+    public AnswerAutosaveFlusher answerAutosaveFlusher(AttemptService attemptService,
+                                                       AnswerAutosaveBuffer answerAutosaveBuffer,
+                                                       @Value("${attempt.autosave.flush.enabled:true}") boolean enabled,
+                                                       @Value("${attempt.autosave.flushIntervalMs:500}") long flushIntervalMs,
+                                                       MeterRegistry meterRegistry) {
+        AnswerAutosaveFlusher flusher = new AnswerAutosaveFlusher(attemptService, answerAutosaveBuffer,
+                Duration.ofMillis(flushIntervalMs), meterRegistry);
+        if (enabled) {
+            flusher.start();
+        }
+        return flusher;
+    }
+}
@@ -0,0 +1,161 @@
+package com.khoavdse170395.attemptservice.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Honours the orchestrator's X-Request-Timeout-Ms on every endpoint. A request that arrives with no
+ * time left is refused with 504 before the controller runs; otherwise its deadline bounds the
+ * query timeouts of its statements (DeadlineDataSource). Whatever fails once the deadline has
+ * passed is answered with 504 too, the status the orchestrator gives a saga past its deadline.
+ * The orchestrator's circuit breaker and replica balancer do not count a 504 against this node.
+ *
+ * <p>Work avoided is counted in attempt.deadline.expired{stage=request|query}.
+ * attempt.deadline.enabled=false ignores the header.</p>
+ */
+@Configuration
+@Slf4j
+public class DeadlineConfig implements WebMvcConfigurer {
+
+    private final boolean enabled;
+    private final Counter expiredRequests;
+
+    public DeadlineConfig(Environment environment, MeterRegistry meterRegistry) {
+        this.enabled = enabled(environment);
+        this.expiredRequests = Counter.builder("attempt.deadline.expired")
+                .description("Work not done because the caller's deadline had passed")
+                .tag("stage", "request")
+                .register(meterRegistry);
+    }
+
+    // Inside the connection limiter, so that its metrics still see the limiter as the DataSource bean
+    @Bean
+    static BeanPostProcessor dataSourceDeadline(Environment environment) {
+        boolean enabled = enabled(environment);
+        return new OrderedBeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (enabled && bean instanceof DataSource dataSource && !(bean instanceof DeadlineDataSource)
+                        && !(bean instanceof ConcurrencyLimitedDataSource)) {
+                    return new DeadlineDataSource(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    MeterBinder dataSourceDeadlineMetrics(DataSource dataSource) {
+        return registry -> {
+            try {
+                if (dataSource.isWrapperFor(DeadlineDataSource.class)) {
+                    FunctionCounter.builder("attempt.deadline.expired", dataSource.unwrap(DeadlineDataSource.class),
+                                    DeadlineDataSource::getExpired)
+                            .description("Work not done because the caller's deadline had passed")
+                            .tag("stage", "query")
+                            .register(registry);
+                }
+            } catch (SQLException e) {
+                log.warn("No deadline metrics for the data source", e);
+            }
+        };
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (enabled) {
+            registry.addInterceptor(new DeadlineInterceptor());
+        }
+    }
+
+    @Override
+    public void extendHandlerExceptionResolvers(List<HandlerExceptionResolver> resolvers) {
+        if (enabled) {
+            resolvers.add(0, this::resolveExpired);
+        }
+    }
+
+    private ModelAndView resolveExpired(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                        Exception e) {
+        if (!RequestDeadline.isExpired()) {
+            return null;
+        }
+        try {
+            response.sendError(HttpStatus.GATEWAY_TIMEOUT.value(), "Deadline exceeded");
+        } catch (IOException sendFailed) {
+            log.debug("Could not answer expired request {}", request.getRequestURI(), sendFailed);
+        }
+        return new ModelAndView();
+    }
+
+    private class DeadlineInterceptor implements AsyncHandlerInterceptor {
+
+        @Override
+        public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+                throws IOException {
+            String header = request.getHeader(RequestDeadline.HEADER);
+            if (header == null) {
+                return true;
+            }
+            long timeoutMillis;
+            try {
+                timeoutMillis = Long.parseLong(header.trim());
+            } catch (NumberFormatException e) {
+                // A malformed deadline is no deadline
+                return true;
+            }
+            if (timeoutMillis <= 0) {
+                expiredRequests.increment();
+                log.debug("Refusing {} {}, its deadline has passed", request.getMethod(), request.getRequestURI());
+                response.sendError(HttpStatus.GATEWAY_TIMEOUT.value(), "Deadline exceeded");
+                return false;
+            }
+            RequestDeadline.start(timeoutMillis);
+            return true;
+        }
+
+        @Override
+        public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                                   Object handler) {
+            RequestDeadline.clear();
+        }
+
+        @Override
+        public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                    Exception ex) {
+            RequestDeadline.clear();
+        }
+    }
+
+    private interface OrderedBeanPostProcessor extends BeanPostProcessor, Ordered {
+        @Override
+        default int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+    }
+
+    private static boolean enabled(Environment environment) {
+        return environment.getProperty("attempt.deadline.enabled", Boolean.class, true);
+    }
+}
@@ -0,0 +1,53 @@
+package com.khoavdse170395.attemptservice.config;
+
+import com.khoavdse170395.attemptservice.repository.OutboxJdbcRepository;
+import com.khoavdse170395.attemptservice.service.EventSink;
+import com.khoavdse170395.attemptservice.service.impl.FileEventSink;
+import com.khoavdse170395.attemptservice.service.impl.InMemoryEventSink;
+import com.khoavdse170395.attemptservice.service.impl.OutboxRelay;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * attempt.outbox.sink=file (default): events appended to an NDJSON file.
+ * attempt.outbox.sink=memory: kept in memory, for tests and demos.
+ * attempt.outbox.relay.enabled=false keeps the relay bean but does not poll, e.g. on all replicas but one.
+ */
+@Configuration
+public class OutboxConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "attempt.outbox.sink", havingValue = "file", matchIfMissing = true)
+    public FileEventSink fileEventSink(@Value("${attempt.outbox.file.path:data/attempt-events.ndjson}") String path) {
+        return new FileEventSink(Path.of(path));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "attempt.outbox.sink", havingValue = "memory")
+    public InMemoryEventSink inMemoryEventSink(@Value("${attempt.outbox.memory.maxSize:10000}") int maxSize) {
+        return new InMemoryEventSink(maxSize);
+    }
+
+    @Bean
+    public OutboxRelay outboxRelay(OutboxJdbcRepository outboxJdbcRepository,
+                                   EventSink eventSink,
+                                   @Value("${attempt.outbox.relay.enabled:true}") boolean enabled,
+                                   @Value("${attempt.outbox.relay.batchSize:200}") int batchSize,
+                                   @Value("${attempt.outbox.relay.pollIntervalMs:200}") long pollIntervalMs,
+                                   @Value("${attempt.outbox.relay.initialBackoffMs:500}") long initialBackoffMs,
+                                   @Value("${attempt.outbox.relay.maxBackoffMs:30000}") long maxBackoffMs,
+                                   MeterRegistry meterRegistry) {
+        OutboxRelay relay = new OutboxRelay(outboxJdbcRepository, eventSink, batchSize, Duration.ofMillis(pollIntervalMs),
+                Duration.ofMillis(initialBackoffMs), Duration.ofMillis(maxBackoffMs), meterRegistry);
+        if (enabled) {
+            relay.start();
+        }
+        return relay;
+    }
+}
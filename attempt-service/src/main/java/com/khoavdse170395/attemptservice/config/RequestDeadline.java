@@ -0,0 +1,43 @@
+package com.khoavdse170395.attemptservice.config;
+
+/**
+ * The deadline of the request being handled on this thread, taken from the caller's
+ * X-Request-Timeout-Ms header by DeadlineConfig. The header carries the milliseconds the caller
+ * still waits rather than a point in time, so clock skew between hosts does not matter; it is
+ * turned into a local deadline when the request arrives.
+ */
+public final class RequestDeadline {
+
+    public static final String HEADER = "X-Request-Timeout-Ms";
+
+    private static final ThreadLocal<Long> EXPIRES_AT_NANOS = new ThreadLocal<>();
+
+    private RequestDeadline() {
+    }
+
+    public static void start(long timeoutMillis) {
+        EXPIRES_AT_NANOS.set(System.nanoTime() + timeoutMillis * 1_000_000);
+    }
+
+    public static void clear() {
+        EXPIRES_AT_NANOS.remove();
+    }
+
+    public static boolean isSet() {
+        return EXPIRES_AT_NANOS.get() != null;
+    }
+
+    // Long.MAX_VALUE without a deadline, 0 once it has passed
+    public static long remainingMillis() {
+        Long expiresAt = EXPIRES_AT_NANOS.get();
+        if (expiresAt == null) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, (expiresAt - System.nanoTime()) / 1_000_000);
+    }
+
+    public static boolean isExpired() {
+        Long expiresAt = EXPIRES_AT_NANOS.get();
+        return expiresAt != null && expiresAt - System.nanoTime() <= 0;
+    }
+}
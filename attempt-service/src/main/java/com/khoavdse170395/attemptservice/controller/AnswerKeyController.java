@@ -0,0 +1,40 @@
+package com.khoavdse170395.attemptservice.controller;
+
+import com.khoavdse170395.attemptservice.model.dto.SaveAnswerKeyRequest;
+import com.khoavdse170395.attemptservice.service.AnswerKeyService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/answer-keys")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Answer Keys", description = "APIs for managing the answer keys used by auto-scoring")
+public class AnswerKeyController {
+
+    private final AnswerKeyService answerKeyService;
+
+    @Operation(summary = "Replace answer key", description = "Replace the answer key of an assignment (options A-Z, multi-select as \"A,C\")")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Answer key saved"),
+            @ApiResponse(responseCode = "400", description = "Invalid or duplicate entries")
+    })
+    @PutMapping("/{assignmentId}")
+    public ResponseEntity<Void> replaceAnswerKey(
+            @Parameter(description = "Assignment ID", required = true) @PathVariable Long assignmentId,
+            @Valid @RequestBody SaveAnswerKeyRequest request) {
+        log.info("Received replace answer key request for assignmentId: {}", assignmentId);
+
+        answerKeyService.replaceAnswerKey(assignmentId, request);
+
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -1,5 +1,6 @@
 package com.khoavdse170395.attemptservice.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.khoavdse170395.attemptservice.model.dto.*;
 import com.khoavdse170395.attemptservice.service.AttemptService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -11,8 +12,18 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 
 @RestController
 @RequestMapping("/attempts")
@@ -22,6 +33,10 @@ import org.springframework.web.bind.annotation.*;
 public class AttemptController {
 
     private final AttemptService attemptService;
+    private final ObjectMapper objectMapper;
+
+    // Lines of an NDJSON autosave stream handed to the buffer at a time
+    private static final int STREAM_CHUNK_SIZE = 50;
 
     @Operation(summary = "Create attempt", description = "Create a new quiz attempt (idempotent)")
     @ApiResponses(value = {
@@ -38,6 +53,32 @@ public class AttemptController {
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
+    @Operation(summary = "Bulk create attempts", description = "Create many quiz attempts in one transaction (idempotent per item)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Attempts created or found, in request order"),
+            @ApiResponse(responseCode = "400", description = "Invalid request")
+    })
+    @PostMapping("/bulk")
+    public ResponseEntity<BulkCreateAttemptResponse> createAttempts(@Valid @RequestBody BulkCreateAttemptRequest request) {
+        log.info("Received bulk create attempt request for {} attempts", request.getAttempts().size());
+
+        BulkCreateAttemptResponse response = attemptService.createAttempts(request.getAttempts());
+
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    @Operation(summary = "Find attempts by idempotency key", description = "Look up the attempts created under these idempotency keys; never creates one")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "The keys that have an attempt, in request order"),
+            @ApiResponse(responseCode = "400", description = "Invalid request")
+    })
+    @PostMapping("/lookup")
+    public ResponseEntity<FindAttemptsResponse> findAttempts(@Valid @RequestBody FindAttemptsRequest request) {
+        log.info("Received attempt lookup for {} idempotency keys", request.getIdempotencyKeys().size());
+
+        return ResponseEntity.ok(attemptService.findAttempts(request.getIdempotencyKeys()));
+    }
+
     @Operation(summary = "Cancel attempt", description = "Cancel a pending quiz attempt")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "204", description = "Attempt canceled successfully"),
@@ -72,6 +113,79 @@ public class AttemptController {
         return ResponseEntity.noContent().build();
     }
 
+    @Operation(summary = "Autosave answers", description = "Buffer answer changes of a pending attempt; "
+            + "they are written in one batch per attempt shortly after, and at the latest by submit or auto-score")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Answers accepted"),
+            @ApiResponse(responseCode = "400", description = "Invalid request or attempt not pending"),
+            @ApiResponse(responseCode = "404", description = "Attempt not found"),
+            @ApiResponse(responseCode = "503", description = "Autosave buffer full, retry later")
+    })
+    @PatchMapping("/{attemptId}/answers")
+    public ResponseEntity<AutosaveAnswersResponse> autosaveAnswers(
+            @Parameter(description = "Attempt ID", required = true) @PathVariable Long attemptId,
+            @Valid @RequestBody SubmitAnswersRequest request) {
+        log.debug("Received autosave for attemptId: {}, answers count: {}", attemptId, request.getAnswers().size());
+
+        return ResponseEntity.accepted().body(attemptService.autosaveAnswers(attemptId, request.getAnswers()));
+    }
+
+    @Operation(summary = "Stream autosaved answers", description = "Newline-delimited JSON, one answer "
+            + "{questionId, selectedOption, answerText} per line, buffered as the lines arrive")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "All lines accepted"),
+            @ApiResponse(responseCode = "400", description = "Malformed line or attempt not pending; earlier lines are kept"),
+            @ApiResponse(responseCode = "404", description = "Attempt not found"),
+            @ApiResponse(responseCode = "503", description = "Autosave buffer full, retry later")
+    })
+    @PostMapping(value = "/{attemptId}/answers/stream", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<AutosaveAnswersResponse> streamAnswers(
+            @Parameter(description = "Attempt ID", required = true) @PathVariable Long attemptId,
+            InputStream body) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        List<SubmitAnswersRequest.AnswerDto> chunk = new ArrayList<>(STREAM_CHUNK_SIZE);
+        int accepted = 0;
+        int pending = 0;
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            chunk.add(parseAnswer(line, lineNumber));
+            if (chunk.size() == STREAM_CHUNK_SIZE) {
+                pending = attemptService.autosaveAnswers(attemptId, chunk).getPending();
+                accepted += chunk.size();
+                chunk = new ArrayList<>(STREAM_CHUNK_SIZE);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            pending = attemptService.autosaveAnswers(attemptId, chunk).getPending();
+            accepted += chunk.size();
+        }
+        log.debug("Streamed {} autosaved answers for attemptId: {}", accepted, attemptId);
+
+        return ResponseEntity.accepted().body(AutosaveAnswersResponse.builder()
+                .attemptId(attemptId)
+                .accepted(accepted)
+                .pending(pending)
+                .build());
+    }
+
+    private SubmitAnswersRequest.AnswerDto parseAnswer(String line, int lineNumber) {
+        SubmitAnswersRequest.AnswerDto answer;
+        try {
+            answer = objectMapper.readValue(line, SubmitAnswersRequest.AnswerDto.class);
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Line " + lineNumber + " is not a valid answer");
+        }
+        if (answer.getQuestionId() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Line " + lineNumber + ": Question ID is required");
+        }
+        return answer;
+    }
+
     @Operation(summary = "Auto-score attempt", description = "Automatically score a quiz attempt")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Auto-scoring completed"),
@@ -88,6 +202,19 @@ public class AttemptController {
         return ResponseEntity.ok(response);
     }
 
+    @Operation(summary = "Get score", description = "Score computed from the stored auto-score results, without re-scoring")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Score returned"),
+            @ApiResponse(responseCode = "404", description = "Attempt not found")
+    })
+    @GetMapping("/{attemptId}/score")
+    public ResponseEntity<AutoScoreResponse> getScore(
+            @Parameter(description = "Attempt ID", required = true) @PathVariable Long attemptId) {
+        log.info("Received get score request for attemptId: {}", attemptId);
+
+        return ResponseEntity.ok(attemptService.getScore(attemptId));
+    }
+
     @Operation(summary = "Finalize attempt", description = "Finalize a quiz attempt with final score")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "204", description = "Attempt finalized successfully"),
@@ -0,0 +1,43 @@
+package com.khoavdse170395.attemptservice.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+@Entity
+@Table(name = "answer_key_entry")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@IdClass(AnswerKeyEntry.AnswerKeyEntryId.class)
+public class AnswerKeyEntry {
+
+    // Đáp án gắn với assignment vì attempt chỉ biết assignmentId
+    @Id
+    @Column(name = "assignment_id")
+    private Long assignmentId;
+
+    @Id
+    @Column(name = "question_id")
+    private Long questionId;
+
+    // Nhãn đáp án đúng, nhiều lựa chọn thì cách nhau bởi dấu phẩy, ví dụ "A" hoặc "A,C"
+    @Column(name = "correct_options", nullable = false, length = 50)
+    private String correctOptions;
+
+    @Column(name = "weight", nullable = false, precision = 6, scale = 2)
+    @Builder.Default
+    private BigDecimal weight = BigDecimal.ONE;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class AnswerKeyEntryId implements Serializable {
+        private Long assignmentId;
+        private Long questionId;
+    }
+}
@@ -0,0 +1,7 @@
+package com.khoavdse170395.attemptservice.model;
+
+// Projection của user_answer dùng khi chấm điểm: chỉ lấy câu hỏi và lựa chọn
+public interface AnswerSelection {
+    Long getQuestionId();
+    String getSelectedOption();
+}
@@ -0,0 +1,7 @@
+package com.khoavdse170395.attemptservice.model;
+
+// Projection of quiz_attempt for the autosave check: status and answers version only
+public interface AttemptAnswersState {
+    String getStatus();
+    long getAnswersVersion();
+}
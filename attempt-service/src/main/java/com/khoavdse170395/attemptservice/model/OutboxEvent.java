@@ -0,0 +1,34 @@
+package com.khoavdse170395.attemptservice.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+// Một sự kiện chờ publish; relay xoá dòng sau khi sink đã nhận
+@Entity
+@Table(name = "attempt_outbox")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "event_id")
+    private Long eventId;
+
+    @Column(name = "event_type", nullable = false, length = 50)
+    private String eventType; // ATTEMPT_CREATED|ATTEMPT_CANCELED|ATTEMPT_SUBMITTED
+
+    @Column(name = "attempt_id", nullable = false)
+    private Long attemptId;
+
+    @Column(name = "payload", nullable = false, columnDefinition = "NVARCHAR(MAX)")
+    private String payload;   // AttemptEvent as JSON
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
@@ -42,4 +42,9 @@ public class QuizAttempt {
 
     @Column(name = "idempotency_key", length = 100, unique = true)
     private String idempotencyKey;
+
+    // Bumped by every submit of answers and only by queries, so autosaves buffered before one can be told apart
+    @Column(name = "answers_version", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "BIGINT DEFAULT 0 NOT NULL")
+    private long answersVersion;
 }
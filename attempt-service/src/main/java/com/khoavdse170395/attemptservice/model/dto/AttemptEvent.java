@@ -0,0 +1,27 @@
+package com.khoavdse170395.attemptservice.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Payload of an attempt lifecycle event. Delivery is at least once, so consumers dedupe on eventId.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AttemptEvent {
+    private String eventId;
+    private String type;
+    private Long attemptId;
+    private Long assignmentId;
+    private String userId;
+    private String status;
+    private BigDecimal score;
+    private Instant occurredAt;
+}
@@ -0,0 +1,18 @@
+package com.khoavdse170395.attemptservice.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AutosaveAnswersResponse {
+    private Long attemptId;
+    // Answers taken in by this request
+    private int accepted;
+    // Questions of the attempt buffered and not yet written
+    private int pending;
+}
@@ -0,0 +1,22 @@
+package com.khoavdse170395.attemptservice.model.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkCreateAttemptRequest {
+    @NotEmpty(message = "Attempts list cannot be empty")
+    @Size(max = 500, message = "At most 500 attempts per request")
+    @Valid
+    private List<CreateAttemptRequest> attempts;
+}
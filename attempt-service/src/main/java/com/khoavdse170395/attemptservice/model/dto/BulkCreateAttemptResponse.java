@@ -0,0 +1,27 @@
+package com.khoavdse170395.attemptservice.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkCreateAttemptResponse {
+    // Same order as the request
+    private List<AttemptResult> attempts;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class AttemptResult {
+        private String idempotencyKey;
+        private Long attemptId;
+        private String status;
+    }
+}
@@ -0,0 +1,20 @@
+package com.khoavdse170395.attemptservice.model.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FindAttemptsRequest {
+    @NotEmpty(message = "Idempotency keys cannot be empty")
+    @Size(max = 500, message = "At most 500 idempotency keys per request")
+    private List<String> idempotencyKeys;
+}
@@ -0,0 +1,17 @@
+package com.khoavdse170395.attemptservice.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FindAttemptsResponse {
+    // Only the keys that have an attempt, in request order
+    private List<BulkCreateAttemptResponse.AttemptResult> attempts;
+}
@@ -0,0 +1,39 @@
+package com.khoavdse170395.attemptservice.model.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SaveAnswerKeyRequest {
+    @NotEmpty(message = "Answer key cannot be empty")
+    @Valid
+    private List<EntryDto> entries;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class EntryDto {
+        @NotNull(message = "Question ID is required")
+        private Long questionId;
+
+        @NotBlank(message = "Correct options are required")
+        private String correctOptions;
+
+        @DecimalMin(value = "0.01", message = "Weight must be positive")
+        private BigDecimal weight;
+    }
+}
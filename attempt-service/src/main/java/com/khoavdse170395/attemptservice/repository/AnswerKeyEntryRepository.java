@@ -0,0 +1,20 @@
+package com.khoavdse170395.attemptservice.repository;
+
+import com.khoavdse170395.attemptservice.model.AnswerKeyEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface AnswerKeyEntryRepository extends JpaRepository<AnswerKeyEntry, AnswerKeyEntry.AnswerKeyEntryId> {
+
+    List<AnswerKeyEntry> findByAssignmentId(Long assignmentId);
+
+    @Modifying
+    @Query("DELETE FROM AnswerKeyEntry k WHERE k.assignmentId = :assignmentId")
+    int deleteByAssignmentId(@Param("assignmentId") Long assignmentId);
+}
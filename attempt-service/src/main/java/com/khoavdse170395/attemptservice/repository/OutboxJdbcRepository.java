@@ -0,0 +1,62 @@
+package com.khoavdse170395.attemptservice.repository;
+
+import com.khoavdse170395.attemptservice.model.OutboxEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * attempt_outbox through JDBC: inserts join the caller's transaction as one batch, and the relay
+ * reads and deletes by id without loading entities into a persistence context.
+ */
+@Repository
+@RequiredArgsConstructor
+public class OutboxJdbcRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO attempt_outbox (event_type, attempt_id, payload, created_at) " +
+            "VALUES (:eventType, :attemptId, :payload, :createdAt)";
+    private static final String SELECT_OLDEST_SQL =
+            "SELECT event_id, event_type, attempt_id, payload, created_at FROM attempt_outbox ORDER BY event_id";
+    private static final String DELETE_SQL =
+            "DELETE FROM attempt_outbox WHERE event_id IN (:ids)";
+
+    private static final RowMapper<OutboxEvent> ROW_MAPPER = (rs, rowNum) -> OutboxEvent.builder()
+            .eventId(rs.getLong("event_id"))
+            .eventType(rs.getString("event_type"))
+            .attemptId(rs.getLong("attempt_id"))
+            .payload(rs.getString("payload"))
+            .createdAt(rs.getObject("created_at", LocalDateTime.class).toInstant(ZoneOffset.UTC))
+            .build();
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void insertAll(Collection<OutboxEvent> events) {
+        SqlParameterSource[] params = events.stream()
+                .map(event -> new MapSqlParameterSource()
+                        .addValue("eventType", event.getEventType())
+                        .addValue("attemptId", event.getAttemptId())
+                        .addValue("payload", event.getPayload())
+                        .addValue("createdAt", LocalDateTime.ofInstant(event.getCreatedAt(), ZoneOffset.UTC)))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(INSERT_SQL, params);
+    }
+
+    // Oldest first, at most limit rows
+    public List<OutboxEvent> findOldest(int limit) {
+        return jdbcTemplate.getJdbcTemplate().query(SELECT_OLDEST_SQL, statement -> statement.setMaxRows(limit), ROW_MAPPER);
+    }
+
+    public int deleteAll(Collection<Long> eventIds) {
+        return jdbcTemplate.update(DELETE_SQL, Map.of("ids", eventIds));
+    }
+}
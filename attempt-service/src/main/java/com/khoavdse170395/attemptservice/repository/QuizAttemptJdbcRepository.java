@@ -0,0 +1,60 @@
+package com.khoavdse170395.attemptservice.repository;
+
+import com.khoavdse170395.attemptservice.model.dto.CreateAttemptRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Set-based inserts for quiz_attempt. Like user_answer, the IDENTITY key keeps Hibernate from
+ * batching, so a bulk create inserts through one JDBC batch and reads the ids back by idempotency key.
+ */
+@Repository
+@RequiredArgsConstructor
+public class QuizAttemptJdbcRepository {
+
+    private static final String INSERT_PENDING_SQL =
+            "INSERT INTO quiz_attempt (assignment_id, user_id, status, started_at, idempotency_key) " +
+            "VALUES (:assignmentId, :userId, 'PENDING', :startedAt, :idempotencyKey)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Inserts a PENDING attempt per request. A duplicate idempotency key means a concurrent create
+     * with the same key got there first, which is fine for an idempotent create; since the driver does
+     * not say which rows of the failed batch went in, the rows are then inserted one by one and
+     * duplicates skipped. Returns the requests whose row this call inserted.
+     */
+    public List<CreateAttemptRequest> batchInsertPending(List<CreateAttemptRequest> requests, Instant startedAt) {
+        SqlParameterSource[] params = requests.stream()
+                .map(request -> new MapSqlParameterSource()
+                        .addValue("assignmentId", request.getAssignmentId())
+                        .addValue("userId", request.getUserId())
+                        .addValue("startedAt", startedAt.atOffset(ZoneOffset.UTC))
+                        .addValue("idempotencyKey", request.getIdempotencyKey()))
+                .toArray(SqlParameterSource[]::new);
+        try {
+            jdbcTemplate.batchUpdate(INSERT_PENDING_SQL, params);
+            return requests;
+        } catch (DuplicateKeyException e) {
+            List<CreateAttemptRequest> inserted = new ArrayList<>();
+            for (int i = 0; i < params.length; i++) {
+                try {
+                    jdbcTemplate.update(INSERT_PENDING_SQL, params[i]);
+                    inserted.add(requests.get(i));
+                } catch (DuplicateKeyException duplicate) {
+                    // Created by the concurrent request
+                }
+            }
+            return inserted;
+        }
+    }
+}
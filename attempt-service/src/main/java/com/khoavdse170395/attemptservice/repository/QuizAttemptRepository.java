@@ -1,9 +1,14 @@
 package com.khoavdse170395.attemptservice.repository;
 
+import com.khoavdse170395.attemptservice.model.AttemptAnswersState;
 import com.khoavdse170395.attemptservice.model.QuizAttempt;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -11,12 +16,33 @@ import java.util.Optional;
 public interface QuizAttemptRepository extends JpaRepository<QuizAttempt, Long> {
     
     Optional<QuizAttempt> findByIdempotencyKey(String idempotencyKey);
+
+    List<QuizAttempt> findByIdempotencyKeyIn(Collection<String> idempotencyKeys);
     
     List<QuizAttempt> findByAssignmentIdAndUserId(Long assignmentId, String userId);
     
     List<QuizAttempt> findByUserId(String userId);
     
     List<QuizAttempt> findByStatus(String status);
+
+    // For the autosave check on every call: two columns by primary key, no managed entity
+    @Query("SELECT a.status AS status, a.answersVersion AS answersVersion FROM QuizAttempt a WHERE a.attemptId = :attemptId")
+    Optional<AttemptAnswersState> findAnswersStateById(@Param("attemptId") Long attemptId);
+
+    // Taken by every submit of answers before it writes them; holds the row lock until commit
+    @Modifying
+    @Query("UPDATE QuizAttempt a SET a.answersVersion = a.answersVersion + 1 WHERE a.attemptId = :attemptId")
+    int incrementAnswersVersion(@Param("attemptId") Long attemptId);
+
+    /**
+     * Locks the attempt row until commit if the attempt is still PENDING at answersVersion, returns 0
+     * otherwise. Autosaved answers are only written behind it, so a submit on any node either waits for
+     * them and overwrites them, or has already bumped the version and they are not written at all.
+     */
+    @Modifying
+    @Query("UPDATE QuizAttempt a SET a.answersVersion = a.answersVersion " +
+            "WHERE a.attemptId = :attemptId AND a.status = 'PENDING' AND a.answersVersion = :answersVersion")
+    int lockPendingAtAnswersVersion(@Param("attemptId") Long attemptId, @Param("answersVersion") long answersVersion);
 }
 
 
@@ -0,0 +1,46 @@
+package com.khoavdse170395.attemptservice.repository;
+
+import com.khoavdse170395.attemptservice.model.dto.SubmitAnswersRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+
+/**
+ * Set-based writes for user_answer. IDENTITY keys stop Hibernate from batching inserts, so
+ * these go through JDBC batches instead: one round trip per statement kind, not per answer.
+ */
+@Repository
+@RequiredArgsConstructor
+public class UserAnswerJdbcRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO user_answer (attempt_id, question_id, selected_option, answer_text) " +
+            "VALUES (:attemptId, :questionId, :selectedOption, :answerText)";
+    private static final String UPDATE_SQL =
+            "UPDATE user_answer SET selected_option = :selectedOption, answer_text = :answerText " +
+            "WHERE attempt_id = :attemptId AND question_id = :questionId";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public int[] batchInsert(Long attemptId, Collection<SubmitAnswersRequest.AnswerDto> answers) {
+        return jdbcTemplate.batchUpdate(INSERT_SQL, toParams(attemptId, answers));
+    }
+
+    public int[] batchUpdate(Long attemptId, Collection<SubmitAnswersRequest.AnswerDto> answers) {
+        return jdbcTemplate.batchUpdate(UPDATE_SQL, toParams(attemptId, answers));
+    }
+
+    private static SqlParameterSource[] toParams(Long attemptId, Collection<SubmitAnswersRequest.AnswerDto> answers) {
+        return answers.stream()
+                .map(answer -> new MapSqlParameterSource()
+                        .addValue("attemptId", attemptId)
+                        .addValue("questionId", answer.getQuestionId())
+                        .addValue("selectedOption", answer.getSelectedOption())
+                        .addValue("answerText", answer.getAnswerText()))
+                .toArray(SqlParameterSource[]::new);
+    }
+}
@@ -1,5 +1,6 @@
 package com.khoavdse170395.attemptservice.repository;
 
+import com.khoavdse170395.attemptservice.model.AnswerSelection;
 import com.khoavdse170395.attemptservice.model.UserAnswer;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
@@ -7,6 +8,8 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,6 +17,9 @@ import java.util.Optional;
 public interface UserAnswerRepository extends JpaRepository<UserAnswer, Long> {
     
     List<UserAnswer> findByAttemptId(Long attemptId);
+
+    // Projection for scoring: only the columns needed, no managed entities
+    List<AnswerSelection> findSelectionsByAttemptId(Long attemptId);
     
     Optional<UserAnswer> findByAttemptIdAndQuestionId(Long attemptId, Long questionId);
     
@@ -24,14 +30,22 @@ public interface UserAnswerRepository extends JpaRepository<UserAnswer, Long> {
                      @Param("selectedOption") String selectedOption,
                      @Param("answerText") String answerText);
     
+    @Modifying
+    @Query("UPDATE UserAnswer u SET u.isCorrect = false WHERE u.attemptId = :attemptId")
+    int markAllIncorrect(@Param("attemptId") Long attemptId);
+
+    @Modifying
+    @Query("UPDATE UserAnswer u SET u.isCorrect = true WHERE u.attemptId = :attemptId AND u.questionId IN :questionIds")
+    int markCorrect(@Param("attemptId") Long attemptId, @Param("questionIds") Collection<Long> questionIds);
+
     @Query("SELECT COUNT(u) FROM UserAnswer u WHERE u.attemptId = :attemptId AND u.isCorrect = true")
     long countCorrectAnswers(@Param("attemptId") Long attemptId);
     
     @Query("SELECT COUNT(u) FROM UserAnswer u WHERE u.attemptId = :attemptId")
     long countTotalAnswers(@Param("attemptId") Long attemptId);
-}
-
-
-
-
 
+    @Query("SELECT COALESCE(SUM(k.weight), 0) FROM UserAnswer u, AnswerKeyEntry k " +
+            "WHERE u.attemptId = :attemptId AND u.isCorrect = true " +
+            "AND k.assignmentId = :assignmentId AND k.questionId = u.questionId")
+    BigDecimal sumCorrectWeight(@Param("attemptId") Long attemptId, @Param("assignmentId") Long assignmentId);
+}
@@ -0,0 +1,7 @@
+package com.khoavdse170395.attemptservice.service;
+
+import com.khoavdse170395.attemptservice.model.dto.SaveAnswerKeyRequest;
+
+public interface AnswerKeyService {
+    void replaceAnswerKey(Long assignmentId, SaveAnswerKeyRequest request);
+}
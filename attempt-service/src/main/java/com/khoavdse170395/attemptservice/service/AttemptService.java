@@ -1,16 +1,29 @@
 package com.khoavdse170395.attemptservice.service;
 
 import com.khoavdse170395.attemptservice.model.dto.AutoScoreResponse;
+import com.khoavdse170395.attemptservice.model.dto.AutosaveAnswersResponse;
+import com.khoavdse170395.attemptservice.model.dto.BulkCreateAttemptResponse;
 import com.khoavdse170395.attemptservice.model.dto.CreateAttemptRequest;
 import com.khoavdse170395.attemptservice.model.dto.CreateAttemptResponse;
 import com.khoavdse170395.attemptservice.model.dto.FinalizeAttemptRequest;
+import com.khoavdse170395.attemptservice.model.dto.FindAttemptsResponse;
 import com.khoavdse170395.attemptservice.model.dto.SubmitAnswersRequest;
 
+import java.util.List;
+
 public interface AttemptService {
     CreateAttemptResponse createAttempt(CreateAttemptRequest request);
+    BulkCreateAttemptResponse createAttempts(List<CreateAttemptRequest> requests);
+    // Read-only: never creates an attempt, so callers can resolve an in-doubt create
+    FindAttemptsResponse findAttempts(List<String> idempotencyKeys);
     void cancelAttempt(Long attemptId);
     void submitAnswers(Long attemptId, SubmitAnswersRequest request);
+    // Buffers answers of a pending attempt; they are written by the next flush or the final submit
+    AutosaveAnswersResponse autosaveAnswers(Long attemptId, List<SubmitAnswersRequest.AnswerDto> answers);
+    // Writes the attempt's buffered answers, returns how many
+    int flushAutosavedAnswers(Long attemptId);
     AutoScoreResponse autoScore(Long attemptId);
+    AutoScoreResponse getScore(Long attemptId);
     void finalizeAttempt(Long attemptId, FinalizeAttemptRequest request);
 }
 
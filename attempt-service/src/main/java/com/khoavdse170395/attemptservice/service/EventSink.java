@@ -0,0 +1,15 @@
+package com.khoavdse170395.attemptservice.service;
+
+import com.khoavdse170395.attemptservice.model.OutboxEvent;
+
+import java.util.List;
+
+/**
+ * Where the outbox relay delivers attempt events. publish must only return once the batch is
+ * stored or handed off; if it throws, the whole batch stays in the outbox and is sent again,
+ * so a sink can see an event more than once.
+ */
+public interface EventSink {
+
+    void publish(List<OutboxEvent> events);
+}
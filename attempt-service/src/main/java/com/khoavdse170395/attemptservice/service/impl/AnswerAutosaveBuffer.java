@@ -0,0 +1,214 @@
+package com.khoavdse170395.attemptservice.service.impl;
+
+import com.khoavdse170395.attemptservice.model.dto.SubmitAnswersRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Autosaved answers not yet written, per attempt and question. A newer answer to the same question
+ * replaces the buffered one, so a student changing their mind five times between flushes costs one
+ * row write. Nothing here is durable: what is buffered when the process dies is lost, at most one
+ * flush interval of typing, and the final submit still carries every answer.
+ *
+ * <p>Every node has its own buffer, so a submit can land on another node while answers are still
+ * buffered here. Answers are therefore kept under the attempt's answers version at the time they were
+ * buffered, which every submit bumps: answers of an older version are stale and dropped, and writes
+ * only go through while the attempt row is still at their version (see
+ * {@code QuizAttemptRepository#lockPendingAtAnswersVersion}). No sticky routing is needed.
+ */
+public class AnswerAutosaveBuffer {
+
+    private final Map<Long, Pending> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final int maxPending;
+    private final int maxPendingPerAttempt;
+    private final Counter buffered;
+    private final Counter coalesced;
+    private final Counter discarded;
+
+    public AnswerAutosaveBuffer(int maxPending, int maxPendingPerAttempt, MeterRegistry meterRegistry) {
+        this.maxPending = maxPending;
+        this.maxPendingPerAttempt = maxPendingPerAttempt;
+        this.buffered = Counter.builder("attempt.autosave.answers")
+                .tag("result", "buffered")
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("attempt.autosave.answers")
+                .tag("result", "coalesced")
+                .register(meterRegistry);
+        this.discarded = Counter.builder("attempt.autosave.answers")
+                .tag("result", "discarded")
+                .register(meterRegistry);
+        Gauge.builder("attempt.autosave.pending", size, AtomicInteger::get)
+                .description("Autosaved answers waiting to be written")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Buffers the answers, checked against the attempt at answersVersion, and returns how many
+     * questions of the attempt are now pending. Answers buffered under an older version were
+     * submitted over and are dropped; answers checked against an older version than the buffered ones
+     * are dropped themselves. Throws 503 when the new questions do not fit in the buffer, so that
+     * clients back off instead of growing the heap. Room is reserved on size before anything is added,
+     * so concurrent adds cannot overshoot maxPending; answers that only replace buffered ones always fit.
+     */
+    public int add(Long attemptId, long answersVersion, List<SubmitAnswersRequest.AnswerDto> answers) {
+        int[] result = new int[3];
+        pending.compute(attemptId, (id, current) -> {
+            if (current != null && current.answersVersion > answersVersion) {
+                result[1] = current.answers.size();
+                result[2] = -1;
+                return current;
+            }
+            Pending entry = current != null && current.answersVersion == answersVersion ? current : new Pending(answersVersion);
+            int stale = entry != current && current != null ? current.answers.size() : 0;
+            Set<Long> newQuestions = new HashSet<>();
+            for (SubmitAnswersRequest.AnswerDto answer : answers) {
+                if (!entry.answers.containsKey(answer.getQuestionId())) {
+                    newQuestions.add(answer.getQuestionId());
+                }
+            }
+            // Throwing here leaves the attempt's entry as it was
+            reserve(newQuestions.size() - stale);
+            for (SubmitAnswersRequest.AnswerDto answer : answers) {
+                entry.answers.put(answer.getQuestionId(), answer);
+            }
+            result[0] = newQuestions.size();
+            result[1] = entry.answers.size();
+            result[2] = stale;
+            return entry;
+        });
+        if (result[2] < 0) {
+            discarded.increment(answers.size());
+            return result[1];
+        }
+        buffered.increment(answers.size());
+        coalesced.increment(answers.size() - result[0]);
+        discarded.increment(result[2]);
+        return result[1];
+    }
+
+    private void reserve(int questions) {
+        if (questions <= 0) {
+            size.addAndGet(questions);
+            return;
+        }
+        while (true) {
+            int current = size.get();
+            if (current + questions > maxPending) {
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Autosave buffer is full, retry later");
+            }
+            if (size.compareAndSet(current, current + questions)) {
+                return;
+            }
+        }
+    }
+
+    // Past this many pending questions an attempt is written at once instead of at the next flush
+    public int getMaxPendingPerAttempt() {
+        return maxPendingPerAttempt;
+    }
+
+    public boolean contains(Long attemptId) {
+        return pending.containsKey(attemptId);
+    }
+
+    // The answers version the attempt's pending answers were buffered under
+    public OptionalLong answersVersion(Long attemptId) {
+        Pending answers = pending.get(attemptId);
+        return answers != null ? OptionalLong.of(answers.answersVersion) : OptionalLong.empty();
+    }
+
+    /**
+     * Removes and returns the attempt's pending answers buffered under answersVersion, oldest question
+     * first. Answers buffered under an older version are dropped as stale; newer ones stay buffered.
+     */
+    public List<SubmitAnswersRequest.AnswerDto> drain(Long attemptId, long answersVersion) {
+        Pending[] removed = new Pending[1];
+        pending.computeIfPresent(attemptId, (id, current) -> {
+            if (current.answersVersion > answersVersion) {
+                return current;
+            }
+            removed[0] = current;
+            return null;
+        });
+        if (removed[0] == null) {
+            return List.of();
+        }
+        size.addAndGet(-removed[0].answers.size());
+        if (removed[0].answersVersion < answersVersion) {
+            discarded.increment(removed[0].answers.size());
+            return List.of();
+        }
+        return new ArrayList<>(removed[0].answers.values());
+    }
+
+    // For attempts that were canceled or finished before their buffered answers were written
+    public void discard(Long attemptId) {
+        Pending answers = pending.remove(attemptId);
+        if (answers != null) {
+            size.addAndGet(-answers.answers.size());
+            discarded.increment(answers.answers.size());
+        }
+    }
+
+    // For answers submitted over since they were buffered: drops them unless newer ones were buffered since
+    public void discardStale(Long attemptId, long answersVersion) {
+        drain(attemptId, answersVersion + 1);
+    }
+
+    // Puts back answers whose write failed; anything buffered since then is newer and wins
+    public void restore(Long attemptId, long answersVersion, Collection<SubmitAnswersRequest.AnswerDto> answers) {
+        int[] result = new int[2];
+        pending.compute(attemptId, (id, current) -> {
+            if (current != null && current.answersVersion > answersVersion) {
+                result[1] = answers.size();
+                return current;
+            }
+            Pending merged = new Pending(answersVersion);
+            for (SubmitAnswersRequest.AnswerDto answer : answers) {
+                merged.answers.put(answer.getQuestionId(), answer);
+            }
+            int before = current != null ? current.answers.size() : 0;
+            if (current != null && current.answersVersion == answersVersion) {
+                merged.answers.putAll(current.answers);
+            } else {
+                result[1] = before;
+            }
+            result[0] = merged.answers.size() - before;
+            return merged;
+        });
+        size.addAndGet(result[0]);
+        discarded.increment(result[1]);
+    }
+
+    public Set<Long> attemptIds() {
+        return Set.copyOf(pending.keySet());
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    private static final class Pending {
+        private final long answersVersion;
+        private final Map<Long, SubmitAnswersRequest.AnswerDto> answers = new LinkedHashMap<>();
+
+        private Pending(long answersVersion) {
+            this.answersVersion = answersVersion;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.khoavdse170395.attemptservice.service.impl;
+
+import com.khoavdse170395.attemptservice.service.AttemptService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the autosave buffer every flushInterval, one transaction per attempt so that a failing
+ * attempt only delays itself; its answers stay buffered for the next round. On shutdown whatever
+ * is still buffered is written once more.
+ */
+@Slf4j
+public class AnswerAutosaveFlusher implements AutoCloseable {
+
+    private final AttemptService attemptService;
+    private final AnswerAutosaveBuffer buffer;
+    private final long flushIntervalMs;
+    private final ScheduledExecutorService scheduler;
+    private final Timer flushTimer;
+    private final Counter written;
+    private final Counter failures;
+
+    public AnswerAutosaveFlusher(AttemptService attemptService, AnswerAutosaveBuffer buffer, Duration flushInterval,
+                                 MeterRegistry meterRegistry) {
+        this.attemptService = attemptService;
+        this.buffer = buffer;
+        this.flushIntervalMs = flushInterval.toMillis();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "autosave-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flushTimer = Timer.builder("attempt.autosave.flush")
+                .description("Time to write the whole autosave buffer")
+                .register(meterRegistry);
+        this.written = Counter.builder("attempt.autosave.answers")
+                .tag("result", "written")
+                .register(meterRegistry);
+        this.failures = Counter.builder("attempt.autosave.flush.failures")
+                .description("Attempts whose buffered answers could not be written and were kept for the next flush")
+                .register(meterRegistry);
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes every attempt that has buffered answers. Returns the number of answers written.
+     */
+    public int flushAll() {
+        long start = System.nanoTime();
+        int total = 0;
+        for (Long attemptId : buffer.attemptIds()) {
+            try {
+                total += attemptService.flushAutosavedAnswers(attemptId);
+            } catch (RuntimeException e) {
+                failures.increment();
+                log.warn("Could not write autosaved answers of attempt {}, retrying next flush: {}", attemptId, e.getMessage());
+            }
+        }
+        written.increment(total);
+        flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return total;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+    }
+
+    private void flushQuietly() {
+        try {
+            flushAll();
+        } catch (RuntimeException e) {
+            log.error("Autosave flush failed", e);
+        }
+    }
+}
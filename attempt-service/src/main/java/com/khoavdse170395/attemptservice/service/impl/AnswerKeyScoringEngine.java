@@ -0,0 +1,118 @@
+package com.khoavdse170395.attemptservice.service.impl;
+
+import com.khoavdse170395.attemptservice.model.AnswerSelection;
+import com.khoavdse170395.attemptservice.repository.AnswerKeyEntryRepository;
+import com.khoavdse170395.attemptservice.service.scoring.CompiledAnswerKey;
+import com.khoavdse170395.attemptservice.service.scoring.ScoringEngine;
+import com.khoavdse170395.attemptservice.service.scoring.ScoringResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Scores against the answer key stored for the assignment. Keys are compiled once and kept in an
+ * LRU map, so scoring an attempt costs no query beyond loading its answers.
+ *
+ * Assignments without an answer key keep the old mock rule (selectedOption "correct" is right,
+ * every answer weighs 1) so existing demo data still scores the same way.
+ */
+@Service
+@Slf4j
+public class AnswerKeyScoringEngine implements ScoringEngine {
+
+    private static final String MOCK_CORRECT_OPTION = "correct";
+
+    private final AnswerKeyEntryRepository answerKeyEntryRepository;
+    private final Map<Long, CompiledAnswerKey> compiledKeys;
+    // Bumped on every invalidation so a compile that raced with it is not cached
+    private long generation;
+
+    public AnswerKeyScoringEngine(AnswerKeyEntryRepository answerKeyEntryRepository,
+                                  @Value("${attempt.scoring.keyCacheSize:256}") int keyCacheSize) {
+        this.answerKeyEntryRepository = answerKeyEntryRepository;
+        this.compiledKeys = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CompiledAnswerKey> eldest) {
+                return size() > keyCacheSize;
+            }
+        };
+    }
+
+    @Override
+    public ScoringResult score(Long assignmentId, List<? extends AnswerSelection> answers) {
+        CompiledAnswerKey key = keyFor(assignmentId);
+        return key.isEmpty() ? scoreWithMockRule(answers) : score(key, answers);
+    }
+
+    @Override
+    public double maxWeight(Long assignmentId) {
+        CompiledAnswerKey key = keyFor(assignmentId);
+        return key.isEmpty() ? -1 : key.getMaxWeight();
+    }
+
+    @Override
+    public void invalidate(Long assignmentId) {
+        synchronized (compiledKeys) {
+            compiledKeys.remove(assignmentId);
+            generation++;
+        }
+    }
+
+    /**
+     * Unanswered and unkeyed questions earn nothing; the denominator is the whole key so skipping a
+     * question cannot raise the score.
+     */
+    static ScoringResult score(CompiledAnswerKey key, List<? extends AnswerSelection> answers) {
+        int size = answers.size();
+        long[] correct = new long[size];
+        int correctCount = 0;
+        double earned = 0;
+        // Indexed loop: no iterator, no boxing beyond what the projection already holds
+        for (int i = 0; i < size; i++) {
+            AnswerSelection answer = answers.get(i);
+            int index = key.indexOf(answer.getQuestionId());
+            if (index >= 0 && key.isCorrect(index, answer.getSelectedOption())) {
+                correct[correctCount++] = answer.getQuestionId();
+                earned += key.weight(index);
+            }
+        }
+        return new ScoringResult(correct, correctCount, earned, key.getMaxWeight());
+    }
+
+    private static ScoringResult scoreWithMockRule(List<? extends AnswerSelection> answers) {
+        int size = answers.size();
+        long[] correct = new long[size];
+        int correctCount = 0;
+        for (int i = 0; i < size; i++) {
+            AnswerSelection answer = answers.get(i);
+            if (MOCK_CORRECT_OPTION.equalsIgnoreCase(answer.getSelectedOption())) {
+                correct[correctCount++] = answer.getQuestionId();
+            }
+        }
+        return new ScoringResult(correct, correctCount, correctCount, size);
+    }
+
+    private CompiledAnswerKey keyFor(Long assignmentId) {
+        long seenGeneration;
+        synchronized (compiledKeys) {
+            CompiledAnswerKey cached = compiledKeys.get(assignmentId);
+            if (cached != null) {
+                return cached;
+            }
+            seenGeneration = generation;
+        }
+        // Compiled outside the lock; two threads racing on a cold key both compile the same result
+        CompiledAnswerKey compiled = CompiledAnswerKey.compile(answerKeyEntryRepository.findByAssignmentId(assignmentId));
+        log.debug("Compiled answer key for assignment {} with {} questions", assignmentId, compiled.size());
+        synchronized (compiledKeys) {
+            if (seenGeneration == generation) {
+                compiledKeys.putIfAbsent(assignmentId, compiled);
+            }
+        }
+        return compiled;
+    }
+}
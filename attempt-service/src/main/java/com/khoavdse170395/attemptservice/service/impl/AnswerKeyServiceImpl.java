@@ -0,0 +1,61 @@
+package com.khoavdse170395.attemptservice.service.impl;
+
+import com.khoavdse170395.attemptservice.model.AnswerKeyEntry;
+import com.khoavdse170395.attemptservice.model.dto.SaveAnswerKeyRequest;
+import com.khoavdse170395.attemptservice.repository.AnswerKeyEntryRepository;
+import com.khoavdse170395.attemptservice.service.AnswerKeyService;
+import com.khoavdse170395.attemptservice.service.scoring.CompiledAnswerKey;
+import com.khoavdse170395.attemptservice.service.scoring.ScoringEngine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AnswerKeyServiceImpl implements AnswerKeyService {
+
+    private final AnswerKeyEntryRepository answerKeyEntryRepository;
+    private final ScoringEngine scoringEngine;
+
+    @Override
+    @Transactional
+    public void replaceAnswerKey(Long assignmentId, SaveAnswerKeyRequest request) {
+        log.info("Replacing answer key for assignment {} with {} entries", assignmentId, request.getEntries().size());
+        List<AnswerKeyEntry> entries = request.getEntries().stream()
+                .map(dto -> AnswerKeyEntry.builder()
+                        .assignmentId(assignmentId)
+                        .questionId(dto.getQuestionId())
+                        .correctOptions(dto.getCorrectOptions())
+                        .weight(dto.getWeight() != null ? dto.getWeight() : BigDecimal.ONE)
+                        .build())
+                .toList();
+
+        // Compile up front so a malformed key is rejected before anything is written
+        try {
+            CompiledAnswerKey.compile(entries);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+
+        answerKeyEntryRepository.deleteByAssignmentId(assignmentId);
+        answerKeyEntryRepository.flush();
+        answerKeyEntryRepository.saveAll(entries);
+
+        // Evict after commit so no reader can re-cache the old key in between
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                scoringEngine.invalidate(assignmentId);
+            }
+        });
+    }
+}
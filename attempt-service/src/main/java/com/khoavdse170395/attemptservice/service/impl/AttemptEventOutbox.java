@@ -0,0 +1,71 @@
+package com.khoavdse170395.attemptservice.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.khoavdse170395.attemptservice.model.OutboxEvent;
+import com.khoavdse170395.attemptservice.model.QuizAttempt;
+import com.khoavdse170395.attemptservice.model.dto.AttemptEvent;
+import com.khoavdse170395.attemptservice.repository.OutboxJdbcRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Records attempt lifecycle events in attempt_outbox. Must run inside the transaction that changes
+ * the attempt, so the event exists if and only if the change is committed; OutboxRelay publishes it later.
+ */
+@Component
+@RequiredArgsConstructor
+public class AttemptEventOutbox {
+
+    public static final String ATTEMPT_CREATED = "ATTEMPT_CREATED";
+    public static final String ATTEMPT_CANCELED = "ATTEMPT_CANCELED";
+    public static final String ATTEMPT_SUBMITTED = "ATTEMPT_SUBMITTED";
+
+    private final OutboxJdbcRepository outboxJdbcRepository;
+    private final ObjectMapper objectMapper;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(String type, QuizAttempt attempt) {
+        recordAll(type, List.of(attempt));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordAll(String type, Collection<QuizAttempt> attempts) {
+        if (attempts.isEmpty()) {
+            return;
+        }
+        Instant now = Instant.now();
+        outboxJdbcRepository.insertAll(attempts.stream()
+                .map(attempt -> OutboxEvent.builder()
+                        .eventType(type)
+                        .attemptId(attempt.getAttemptId())
+                        .payload(toJson(AttemptEvent.builder()
+                                .eventId(UUID.randomUUID().toString())
+                                .type(type)
+                                .attemptId(attempt.getAttemptId())
+                                .assignmentId(attempt.getAssignmentId())
+                                .userId(attempt.getUserId())
+                                .status(attempt.getStatus())
+                                .score(attempt.getScore())
+                                .occurredAt(now)
+                                .build()))
+                        .createdAt(now)
+                        .build())
+                .toList());
+    }
+
+    private String toJson(AttemptEvent event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize attempt event", e);
+        }
+    }
+}
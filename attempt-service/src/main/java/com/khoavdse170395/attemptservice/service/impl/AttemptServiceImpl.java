@@ -1,26 +1,47 @@
 package com.khoavdse170395.attemptservice.service.impl;
 
 import com.khoavdse170395.attemptservice.model.dto.AutoScoreResponse;
+import com.khoavdse170395.attemptservice.model.dto.AutosaveAnswersResponse;
+import com.khoavdse170395.attemptservice.model.dto.BulkCreateAttemptResponse;
 import com.khoavdse170395.attemptservice.model.dto.CreateAttemptRequest;
 import com.khoavdse170395.attemptservice.model.dto.CreateAttemptResponse;
 import com.khoavdse170395.attemptservice.model.dto.FinalizeAttemptRequest;
+import com.khoavdse170395.attemptservice.model.dto.FindAttemptsResponse;
 import com.khoavdse170395.attemptservice.model.dto.SubmitAnswersRequest;
+import com.khoavdse170395.attemptservice.model.AnswerSelection;
+import com.khoavdse170395.attemptservice.model.AttemptAnswersState;
 import com.khoavdse170395.attemptservice.model.QuizAttempt;
 import com.khoavdse170395.attemptservice.model.UserAnswer;
+import com.khoavdse170395.attemptservice.repository.QuizAttemptJdbcRepository;
 import com.khoavdse170395.attemptservice.repository.QuizAttemptRepository;
+import com.khoavdse170395.attemptservice.repository.UserAnswerJdbcRepository;
 import com.khoavdse170395.attemptservice.repository.UserAnswerRepository;
 import com.khoavdse170395.attemptservice.service.AttemptService;
+import com.khoavdse170395.attemptservice.service.scoring.ScoringEngine;
+import com.khoavdse170395.attemptservice.service.scoring.ScoringResult;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -28,7 +49,14 @@ import java.util.Optional;
 public class AttemptServiceImpl implements AttemptService {
 
     private final QuizAttemptRepository quizAttemptRepository;
+    private final QuizAttemptJdbcRepository quizAttemptJdbcRepository;
     private final UserAnswerRepository userAnswerRepository;
+    private final UserAnswerJdbcRepository userAnswerJdbcRepository;
+    private final ScoringEngine scoringEngine;
+    private final AttemptEventOutbox attemptEventOutbox;
+    private final AnswerAutosaveBuffer answerAutosaveBuffer;
+
+    private static final int MAX_IN_LIST_SIZE = 1000;
 
     @Override
     @Transactional
@@ -55,6 +83,7 @@ public class AttemptServiceImpl implements AttemptService {
                 .build();
 
         quizAttemptRepository.save(newAttempt);
+        attemptEventOutbox.record(AttemptEventOutbox.ATTEMPT_CREATED, newAttempt);
         log.info("Successfully created attempt with ID: {}", newAttempt.getAttemptId());
 
         return CreateAttemptResponse.builder()
@@ -63,6 +92,83 @@ public class AttemptServiceImpl implements AttemptService {
                 .build();
     }
 
+    /**
+     * Batched {@link #createAttempt}, idempotent per key: one query for the keys that already exist,
+     * one JDBC batch for the rest and one query to read their ids, whatever the number of attempts.
+     */
+    @Override
+    @Transactional
+    public BulkCreateAttemptResponse createAttempts(List<CreateAttemptRequest> requests) {
+        log.info("Creating {} attempts in one batch", requests.size());
+
+        Map<String, CreateAttemptRequest> byKey = new LinkedHashMap<>();
+        for (CreateAttemptRequest request : requests) {
+            byKey.putIfAbsent(request.getIdempotencyKey(), request);
+        }
+        Map<String, QuizAttempt> attempts = findByIdempotencyKeys(byKey.keySet());
+        List<CreateAttemptRequest> missing = byKey.values().stream()
+                .filter(request -> !attempts.containsKey(request.getIdempotencyKey()))
+                .toList();
+        if (!missing.isEmpty()) {
+            List<CreateAttemptRequest> inserted = quizAttemptJdbcRepository.batchInsertPending(missing, Instant.now());
+            attempts.putAll(findByIdempotencyKeys(missing.stream().map(CreateAttemptRequest::getIdempotencyKey).toList()));
+            // Attempts a concurrent request created are announced by that request
+            attemptEventOutbox.recordAll(AttemptEventOutbox.ATTEMPT_CREATED, inserted.stream()
+                    .map(request -> attempts.get(request.getIdempotencyKey()))
+                    .toList());
+        }
+        log.info("Bulk create finished: {} attempts, {} created, {} already existed",
+                requests.size(), missing.size(), byKey.size() - missing.size());
+
+        List<BulkCreateAttemptResponse.AttemptResult> results = new ArrayList<>(requests.size());
+        for (CreateAttemptRequest request : requests) {
+            QuizAttempt attempt = attempts.get(request.getIdempotencyKey());
+            results.add(BulkCreateAttemptResponse.AttemptResult.builder()
+                    .idempotencyKey(request.getIdempotencyKey())
+                    .attemptId(attempt.getAttemptId())
+                    .status(attempt.getStatus())
+                    .build());
+        }
+        return BulkCreateAttemptResponse.builder().attempts(results).build();
+    }
+
+    /**
+     * The attempts created under these keys, without creating the missing ones: the orchestrator
+     * resolves a create it is unsure about with this rather than by replaying the create.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public FindAttemptsResponse findAttempts(List<String> idempotencyKeys) {
+        Collection<String> keys = new LinkedHashSet<>(idempotencyKeys);
+        Map<String, QuizAttempt> attempts = findByIdempotencyKeys(keys);
+        log.info("Looked up {} idempotency keys, {} have an attempt", idempotencyKeys.size(), attempts.size());
+
+        List<BulkCreateAttemptResponse.AttemptResult> results = new ArrayList<>(attempts.size());
+        for (String key : keys) {
+            QuizAttempt attempt = attempts.get(key);
+            if (attempt != null) {
+                results.add(BulkCreateAttemptResponse.AttemptResult.builder()
+                        .idempotencyKey(key)
+                        .attemptId(attempt.getAttemptId())
+                        .status(attempt.getStatus())
+                        .build());
+            }
+        }
+        return FindAttemptsResponse.builder().attempts(results).build();
+    }
+
+    private Map<String, QuizAttempt> findByIdempotencyKeys(Collection<String> keys) {
+        List<String> keyList = new ArrayList<>(keys);
+        Map<String, QuizAttempt> found = new HashMap<>();
+        // Chunked to stay well under SQL Server's 2100 parameter limit
+        for (int from = 0; from < keyList.size(); from += MAX_IN_LIST_SIZE) {
+            found.putAll(quizAttemptRepository.findByIdempotencyKeyIn(
+                            keyList.subList(from, Math.min(from + MAX_IN_LIST_SIZE, keyList.size()))).stream()
+                    .collect(Collectors.toMap(QuizAttempt::getIdempotencyKey, Function.identity())));
+        }
+        return found;
+    }
+
     @Override
     @Transactional
     public void cancelAttempt(Long attemptId) {
@@ -74,9 +180,11 @@ public class AttemptServiceImpl implements AttemptService {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Only PENDING attempts can be canceled");
         }
 
+        answerAutosaveBuffer.discard(attemptId);
         attempt.setStatus("CANCELED");
         attempt.setFinishedAt(Instant.now());
         quizAttemptRepository.save(attempt);
+        attemptEventOutbox.record(AttemptEventOutbox.ATTEMPT_CANCELED, attempt);
         log.info("Successfully canceled attempt: {}", attemptId);
     }
 
@@ -91,25 +199,121 @@ public class AttemptServiceImpl implements AttemptService {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Answers can only be submitted for PENDING attempts");
         }
 
-        for (SubmitAnswersRequest.AnswerDto answerDto : request.getAnswers()) {
-            Optional<UserAnswer> existingAnswer = userAnswerRepository.findByAttemptIdAndQuestionId(attemptId, answerDto.getQuestionId());
-
-            UserAnswer answer;
-            if (existingAnswer.isPresent()) {
-                answer = existingAnswer.get();
-                answer.setSelectedOption(answerDto.getSelectedOption());
-                answer.setAnswerText(answerDto.getAnswerText());
-            } else {
-                answer = UserAnswer.builder()
-                        .attemptId(attemptId)
-                        .questionId(answerDto.getQuestionId())
-                        .selectedOption(answerDto.getSelectedOption())
-                        .answerText(answerDto.getAnswerText())
-                        .build();
+        // Autosaved answers go first so that the submitted ones, which are newer, win. The bump makes
+        // whatever other nodes still have buffered stale and waits for a flush of theirs in progress.
+        List<SubmitAnswersRequest.AnswerDto> answers = new ArrayList<>(drainAutosaved(attemptId, attempt.getAnswersVersion()));
+        quizAttemptRepository.incrementAnswersVersion(attemptId);
+        answers.addAll(request.getAnswers());
+        upsertAnswers(attemptId, answers);
+        log.info("Successfully submitted {} answers for attempt: {}", request.getAnswers().size(), attemptId);
+    }
+
+    @Override
+    @Transactional
+    public AutosaveAnswersResponse autosaveAnswers(Long attemptId, List<SubmitAnswersRequest.AnswerDto> answers) {
+        // Checked on every call, also with answers already buffered: the attempt may have been finished or
+        // canceled since, on another node too, and the client must get a 400 rather than an accepted save
+        AttemptAnswersState state = quizAttemptRepository.findAnswersStateById(attemptId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Attempt not found"));
+        if (!"PENDING".equals(state.getStatus())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Answers can only be saved for PENDING attempts");
+        }
+
+        int pending = answerAutosaveBuffer.add(attemptId, state.getAnswersVersion(), answers);
+        if (pending >= answerAutosaveBuffer.getMaxPendingPerAttempt() && writeAutosaved(attemptId, state.getAnswersVersion()) >= 0) {
+            pending = 0;
+        }
+        return AutosaveAnswersResponse.builder()
+                .attemptId(attemptId)
+                .accepted(answers.size())
+                .pending(pending)
+                .build();
+    }
+
+    @Override
+    @Transactional
+    public int flushAutosavedAnswers(Long attemptId) {
+        OptionalLong answersVersion = answerAutosaveBuffer.answersVersion(attemptId);
+        if (answersVersion.isEmpty()) {
+            return 0;
+        }
+        int written = writeAutosaved(attemptId, answersVersion.getAsLong());
+        if (written < 0) {
+            log.warn("Dropping autosaved answers of attempt {}, it was submitted or left PENDING since they were buffered", attemptId);
+            answerAutosaveBuffer.discardStale(attemptId, answersVersion.getAsLong());
+            return 0;
+        }
+        return written;
+    }
+
+    /**
+     * Writes the answers buffered under answersVersion while holding the attempt row, so that a submit on
+     * another node cannot slip in between the check and the write. Returns -1 if the attempt was
+     * submitted to or left PENDING since, in which case nothing is written.
+     */
+    private int writeAutosaved(Long attemptId, long answersVersion) {
+        if (quizAttemptRepository.lockPendingAtAnswersVersion(attemptId, answersVersion) == 0) {
+            return -1;
+        }
+        List<SubmitAnswersRequest.AnswerDto> answers = drainAutosaved(attemptId, answersVersion);
+        upsertAnswers(attemptId, answers);
+        return answers.size();
+    }
+
+    /**
+     * Takes the attempt's answers out of the autosave buffer for writing in the current transaction.
+     * If the transaction does not commit they go back, behind anything buffered meanwhile.
+     */
+    private List<SubmitAnswersRequest.AnswerDto> drainAutosaved(Long attemptId, long answersVersion) {
+        List<SubmitAnswersRequest.AnswerDto> answers = answerAutosaveBuffer.drain(attemptId, answersVersion);
+        if (!answers.isEmpty() && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        answerAutosaveBuffer.restore(attemptId, answersVersion, answers);
+                    }
+                }
+            });
+        }
+        return answers;
+    }
+
+    private void upsertAnswers(Long attemptId, List<SubmitAnswersRequest.AnswerDto> answers) {
+        if (answers.isEmpty()) {
+            return;
+        }
+        // Later entries win when the same question appears twice, as with the old row-by-row upsert
+        Map<Long, SubmitAnswersRequest.AnswerDto> incoming = new LinkedHashMap<>();
+        for (SubmitAnswersRequest.AnswerDto answerDto : answers) {
+            incoming.put(answerDto.getQuestionId(), answerDto);
+        }
+
+        Map<Long, UserAnswer> existing = new HashMap<>();
+        for (UserAnswer answer : userAnswerRepository.findByAttemptId(attemptId)) {
+            existing.put(answer.getQuestionId(), answer);
+        }
+
+        List<SubmitAnswersRequest.AnswerDto> inserts = new ArrayList<>();
+        List<SubmitAnswersRequest.AnswerDto> updates = new ArrayList<>();
+        for (SubmitAnswersRequest.AnswerDto answerDto : incoming.values()) {
+            UserAnswer current = existing.get(answerDto.getQuestionId());
+            if (current == null) {
+                inserts.add(answerDto);
+            } else if (!Objects.equals(current.getSelectedOption(), answerDto.getSelectedOption())
+                    || !Objects.equals(current.getAnswerText(), answerDto.getAnswerText())) {
+                updates.add(answerDto);
             }
-            userAnswerRepository.save(answer);
         }
-        log.info("Successfully submitted {} answers for attempt: {}", request.getAnswers().size(), attemptId);
+
+        if (!inserts.isEmpty()) {
+            userAnswerJdbcRepository.batchInsert(attemptId, inserts);
+        }
+        if (!updates.isEmpty()) {
+            userAnswerJdbcRepository.batchUpdate(attemptId, updates);
+        }
+        log.debug("Attempt {}: {} answers inserted, {} updated, {} unchanged", attemptId,
+                inserts.size(), updates.size(), incoming.size() - inserts.size() - updates.size());
     }
 
     @Override
@@ -122,35 +326,55 @@ public class AttemptServiceImpl implements AttemptService {
         if (!"PENDING".equals(attempt.getStatus())) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Only PENDING attempts can be auto-scored");
         }
+        // Answers autosaved since the last flush count towards the score
+        upsertAnswers(attemptId, drainAutosaved(attemptId, attempt.getAnswersVersion()));
 
-        List<UserAnswer> answers = userAnswerRepository.findByAttemptId(attemptId);
+        List<AnswerSelection> answers = userAnswerRepository.findSelectionsByAttemptId(attemptId);
         if (answers.isEmpty()) {
             return AutoScoreResponse.builder().score(BigDecimal.ZERO).build();
         }
 
-        int correctCount = 0;
-        for (UserAnswer answer : answers) {
-            // Simple mock logic: if selectedOption is "correct", mark as correct
-            boolean isCorrect = "correct".equalsIgnoreCase(answer.getSelectedOption());
-            answer.setIsCorrect(isCorrect);
-            if (isCorrect) {
-                correctCount++;
-            }
-            userAnswerRepository.save(answer);
+        // Single pass through the scoring engine, then persist with bulk updates instead of one merge per row
+        ScoringResult result = scoringEngine.score(attempt.getAssignmentId(), answers);
+        List<Long> correctQuestionIds = new ArrayList<>(result.getCorrectCount());
+        for (int i = 0; i < result.getCorrectCount(); i++) {
+            correctQuestionIds.add(result.correctQuestionId(i));
         }
-        
-        // Calculate score (simple: correct answers / total answers * 10)
-        BigDecimal score = BigDecimal.valueOf(correctCount)
-                .divide(BigDecimal.valueOf(answers.size()), 2, java.math.RoundingMode.HALF_UP)
-                .multiply(BigDecimal.TEN);
-        
-        log.info("Auto-scored attempt {}: {}/{} correct, score: {}", attemptId, correctCount, answers.size(), score);
+
+        userAnswerRepository.markAllIncorrect(attemptId);
+        // Chunked to stay well under SQL Server's 2100 parameter limit
+        for (int from = 0; from < correctQuestionIds.size(); from += MAX_IN_LIST_SIZE) {
+            userAnswerRepository.markCorrect(attemptId,
+                    correctQuestionIds.subList(from, Math.min(from + MAX_IN_LIST_SIZE, correctQuestionIds.size())));
+        }
+
+        BigDecimal score = result.toScore();
+        log.info("Auto-scored attempt {}: {}/{} correct, score: {}", attemptId, correctQuestionIds.size(), answers.size(), score);
         
         return AutoScoreResponse.builder()
                 .score(score)
                 .build();
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public AutoScoreResponse getScore(Long attemptId) {
+        QuizAttempt attempt = quizAttemptRepository.findById(attemptId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Attempt not found"));
+        // Aggregates over the stored is_correct flags; answers are not hydrated
+        long total = userAnswerRepository.countTotalAnswers(attemptId);
+        if (total == 0) {
+            return AutoScoreResponse.builder().score(BigDecimal.ZERO).build();
+        }
+        double maxWeight = scoringEngine.maxWeight(attempt.getAssignmentId());
+        BigDecimal score = maxWeight < 0
+                ? ScoringResult.toScore(BigDecimal.valueOf(userAnswerRepository.countCorrectAnswers(attemptId)),
+                        BigDecimal.valueOf(total))
+                : ScoringResult.toScore(userAnswerRepository.sumCorrectWeight(attemptId, attempt.getAssignmentId()),
+                        BigDecimal.valueOf(maxWeight));
+        return AutoScoreResponse.builder().score(score).build();
+    }
+
     @Override
     @Transactional
     public void finalizeAttempt(Long attemptId, FinalizeAttemptRequest request) {
@@ -161,11 +385,14 @@ public class AttemptServiceImpl implements AttemptService {
         if (!"PENDING".equals(attempt.getStatus())) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Only PENDING attempts can be finalized");
         }
+        // Keep what came in after scoring; the score itself is the one passed in
+        upsertAnswers(attemptId, drainAutosaved(attemptId, attempt.getAnswersVersion()));
 
         attempt.setStatus("SUBMITTED");
         attempt.setFinishedAt(Instant.now());
         attempt.setScore(request.getScore());
         quizAttemptRepository.save(attempt);
+        attemptEventOutbox.record(AttemptEventOutbox.ATTEMPT_SUBMITTED, attempt);
         log.info("Successfully finalized attempt: {} with score: {}", attemptId, request.getScore());
     }
 }
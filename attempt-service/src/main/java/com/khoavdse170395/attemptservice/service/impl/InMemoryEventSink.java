@@ -0,0 +1,40 @@
+package com.khoavdse170395.attemptservice.service.impl;
+
+import com.khoavdse170395.attemptservice.model.OutboxEvent;
+import com.khoavdse170395.attemptservice.service.EventSink;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Keeps the last maxSize events in memory, for tests and local runs without a broker.
+ */
+public class InMemoryEventSink implements EventSink {
+
+    private final int maxSize;
+    private final Deque<OutboxEvent> events = new ArrayDeque<>();
+
+    public InMemoryEventSink(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public synchronized void publish(List<OutboxEvent> batch) {
+        for (OutboxEvent event : batch) {
+            events.addLast(event);
+            if (events.size() > maxSize) {
+                events.removeFirst();
+            }
+        }
+    }
+
+    public synchronized List<OutboxEvent> events() {
+        return new ArrayList<>(events);
+    }
+
+    public synchronized void clear() {
+        events.clear();
+    }
+}
@@ -0,0 +1,135 @@
+package com.khoavdse170395.attemptservice.service.impl;
+
+import com.khoavdse170395.attemptservice.model.OutboxEvent;
+import com.khoavdse170395.attemptservice.repository.OutboxJdbcRepository;
+import com.khoavdse170395.attemptservice.service.EventSink;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves events from attempt_outbox to the sink: read the oldest batchSize rows, publish them, delete
+ * them. A full batch is followed at once by the next one, an empty one waits pollInterval, and a
+ * failure backs off exponentially up to maxBackoff. Delivery is at least once: a crash between
+ * publish and delete sends the batch again.
+ *
+ * <p>Run it on one replica only; two relays on the same table would publish each event twice.
+ */
+@Slf4j
+public class OutboxRelay implements AutoCloseable {
+
+    private final OutboxJdbcRepository outboxJdbcRepository;
+    private final EventSink sink;
+    private final int batchSize;
+    private final long pollIntervalMs;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final ScheduledExecutorService scheduler;
+
+    private final Counter published;
+    private final Counter failures;
+    private final Timer delivery;
+
+    // Age of the oldest unpublished event when last polled
+    private volatile long lagMillis;
+    private volatile boolean running;
+    private long backoffMs;
+
+    public OutboxRelay(OutboxJdbcRepository outboxJdbcRepository, EventSink sink, int batchSize,
+                       Duration pollInterval, Duration initialBackoff, Duration maxBackoff, MeterRegistry meterRegistry) {
+        this.outboxJdbcRepository = outboxJdbcRepository;
+        this.sink = sink;
+        this.batchSize = batchSize;
+        this.pollIntervalMs = pollInterval.toMillis();
+        this.initialBackoffMs = initialBackoff.toMillis();
+        this.maxBackoffMs = maxBackoff.toMillis();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "outbox-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.published = Counter.builder("attempt.outbox.published")
+                .description("Attempt events delivered to the sink")
+                .register(meterRegistry);
+        this.failures = Counter.builder("attempt.outbox.failures")
+                .description("Relay batches that failed and were retried")
+                .register(meterRegistry);
+        this.delivery = Timer.builder("attempt.outbox.delivery")
+                .description("Time from writing an event to the outbox until the sink has it")
+                .register(meterRegistry);
+        Gauge.builder("attempt.outbox.lag", this, OutboxRelay::getLagMillis)
+                .baseUnit("milliseconds")
+                .description("Age of the oldest unpublished event at the last poll")
+                .register(meterRegistry);
+    }
+
+    public void start() {
+        running = true;
+        scheduler.schedule(this::run, pollIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Publishes and deletes one batch. Returns the number of events published.
+     */
+    public int relayOnce() {
+        List<OutboxEvent> batch = outboxJdbcRepository.findOldest(batchSize);
+        if (batch.isEmpty()) {
+            lagMillis = 0;
+            return 0;
+        }
+        Instant now = Instant.now();
+        lagMillis = Duration.between(batch.get(0).getCreatedAt(), now).toMillis();
+
+        sink.publish(batch);
+        outboxJdbcRepository.deleteAll(batch.stream().map(OutboxEvent::getEventId).toList());
+
+        Instant delivered = Instant.now();
+        for (OutboxEvent event : batch) {
+            delivery.record(Duration.between(event.getCreatedAt(), delivered));
+        }
+        published.increment(batch.size());
+        return batch.size();
+    }
+
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        long delayMs;
+        try {
+            int relayed = relayOnce();
+            backoffMs = 0;
+            delayMs = relayed == batchSize ? 0 : pollIntervalMs;
+        } catch (RuntimeException e) {
+            failures.increment();
+            backoffMs = backoffMs == 0 ? initialBackoffMs : Math.min(backoffMs * 2, maxBackoffMs);
+            delayMs = backoffMs;
+            log.warn("Outbox relay failed, retrying in {} ms: {}", delayMs, e.getMessage());
+        }
+        if (running) {
+            scheduler.schedule(this::run, delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.khoavdse170395.attemptservice.service.scoring;
+
+import com.khoavdse170395.attemptservice.model.AnswerKeyEntry;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Read-only answer key of one assignment, laid out as parallel primitive arrays sorted by question id.
+ * Lookups are a binary search and selected options are parsed into a bit mask in place, so checking an
+ * answer allocates nothing.
+ *
+ * <p>Options are single-letter labels A-Z (case-insensitive). A multi-select answer lists several labels
+ * separated by commas, e.g. "A,C"; it is correct only when it selects exactly the keyed options.</p>
+ */
+public final class CompiledAnswerKey {
+
+    public static final int INVALID = -1;
+
+    private final long[] questionIds;
+    private final int[] correctMasks;
+    private final double[] weights;
+    private final double maxWeight;
+
+    private CompiledAnswerKey(long[] questionIds, int[] correctMasks, double[] weights) {
+        this.questionIds = questionIds;
+        this.correctMasks = correctMasks;
+        this.weights = weights;
+        double sum = 0;
+        for (double weight : weights) {
+            sum += weight;
+        }
+        this.maxWeight = sum;
+    }
+
+    public static CompiledAnswerKey compile(List<AnswerKeyEntry> entries) {
+        AnswerKeyEntry[] sorted = entries.toArray(new AnswerKeyEntry[0]);
+        Arrays.sort(sorted, Comparator.comparing(AnswerKeyEntry::getQuestionId));
+
+        long[] questionIds = new long[sorted.length];
+        int[] correctMasks = new int[sorted.length];
+        double[] weights = new double[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            AnswerKeyEntry entry = sorted[i];
+            if (i > 0 && entry.getQuestionId() == questionIds[i - 1]) {
+                throw new IllegalArgumentException("Duplicate answer key entry for question " + entry.getQuestionId());
+            }
+            int mask = parseOptions(entry.getCorrectOptions());
+            if (mask == INVALID) {
+                throw new IllegalArgumentException("Invalid correct options for question " + entry.getQuestionId()
+                        + ": " + entry.getCorrectOptions());
+            }
+            questionIds[i] = entry.getQuestionId();
+            correctMasks[i] = mask;
+            weights[i] = entry.getWeight() != null ? entry.getWeight().doubleValue() : 1.0;
+        }
+        return new CompiledAnswerKey(questionIds, correctMasks, weights);
+    }
+
+    public boolean isEmpty() {
+        return questionIds.length == 0;
+    }
+
+    public int size() {
+        return questionIds.length;
+    }
+
+    // Index of the question in this key, or a negative value when the question is not keyed
+    public int indexOf(long questionId) {
+        return Arrays.binarySearch(questionIds, questionId);
+    }
+
+    public boolean isCorrect(int index, CharSequence selectedOptions) {
+        int mask = parseOptions(selectedOptions);
+        return mask != INVALID && mask == correctMasks[index];
+    }
+
+    public double weight(int index) {
+        return weights[index];
+    }
+
+    public double getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Parses "A", "b", "A,C", " a , c " into a bit mask (bit 0 = A). Returns INVALID for null, empty
+     * or malformed input so that unparseable answers simply score as wrong.
+     */
+    public static int parseOptions(CharSequence options) {
+        if (options == null) {
+            return INVALID;
+        }
+        int mask = 0;
+        boolean expectLabel = true;
+        for (int i = 0, n = options.length(); i < n; i++) {
+            char c = options.charAt(i);
+            if (c == ' ') {
+                continue;
+            }
+            if (expectLabel) {
+                int label = Character.toUpperCase(c) - 'A';
+                if (label < 0 || label >= 26) {
+                    return INVALID;
+                }
+                mask |= 1 << label;
+                expectLabel = false;
+            } else if (c == ',') {
+                expectLabel = true;
+            } else {
+                return INVALID;
+            }
+        }
+        return mask == 0 || expectLabel ? INVALID : mask;
+    }
+}
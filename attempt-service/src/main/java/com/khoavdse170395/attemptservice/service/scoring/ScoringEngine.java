@@ -0,0 +1,24 @@
+package com.khoavdse170395.attemptservice.service.scoring;
+
+import com.khoavdse170395.attemptservice.model.AnswerSelection;
+
+import java.util.List;
+
+/**
+ * Decides which answers of an attempt are correct and how much they are worth.
+ * Implementations must not touch the database per answer; anything they need is loaded once per
+ * assignment and reused across attempts.
+ */
+public interface ScoringEngine {
+
+    ScoringResult score(Long assignmentId, List<? extends AnswerSelection> answers);
+
+    /**
+     * Total weight an attempt can earn on this assignment, or a negative value when the assignment
+     * has no answer key and scores are relative to the number of submitted answers.
+     */
+    double maxWeight(Long assignmentId);
+
+    // Drops whatever was cached for the assignment, e.g. after its answer key changed
+    void invalidate(Long assignmentId);
+}
@@ -0,0 +1,51 @@
+package com.khoavdse170395.attemptservice.service.scoring;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Outcome of scoring one attempt. Correct question ids are kept in a primitive array sized for the
+ * attempt; only the first correctCount entries are meaningful.
+ */
+public final class ScoringResult {
+
+    private final long[] correctQuestionIds;
+    private final int correctCount;
+    private final double earnedWeight;
+    private final double maxWeight;
+
+    public ScoringResult(long[] correctQuestionIds, int correctCount, double earnedWeight, double maxWeight) {
+        this.correctQuestionIds = correctQuestionIds;
+        this.correctCount = correctCount;
+        this.earnedWeight = earnedWeight;
+        this.maxWeight = maxWeight;
+    }
+
+    public long correctQuestionId(int index) {
+        return correctQuestionIds[index];
+    }
+
+    public int getCorrectCount() {
+        return correctCount;
+    }
+
+    public double getEarnedWeight() {
+        return earnedWeight;
+    }
+
+    public double getMaxWeight() {
+        return maxWeight;
+    }
+
+    // Score on a 0-10 scale: earned weight / max weight * 10
+    public BigDecimal toScore() {
+        return toScore(BigDecimal.valueOf(earnedWeight), BigDecimal.valueOf(maxWeight));
+    }
+
+    public static BigDecimal toScore(BigDecimal earned, BigDecimal max) {
+        if (max.signum() == 0) {
+            return BigDecimal.ZERO;
+        }
+        return earned.divide(max, 2, RoundingMode.HALF_UP).multiply(BigDecimal.TEN);
+    }
+}
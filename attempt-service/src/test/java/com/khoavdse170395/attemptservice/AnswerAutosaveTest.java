@@ -0,0 +1,245 @@
+package com.khoavdse170395.attemptservice;
+
+import com.khoavdse170395.attemptservice.model.QuizAttempt;
+import com.khoavdse170395.attemptservice.model.UserAnswer;
+import com.khoavdse170395.attemptservice.model.dto.CreateAttemptRequest;
+import com.khoavdse170395.attemptservice.model.dto.SubmitAnswersRequest;
+import com.khoavdse170395.attemptservice.repository.QuizAttemptRepository;
+import com.khoavdse170395.attemptservice.repository.UserAnswerRepository;
+import com.khoavdse170395.attemptservice.service.AttemptService;
+import com.khoavdse170395.attemptservice.service.impl.AnswerAutosaveBuffer;
+import com.khoavdse170395.attemptservice.service.impl.AnswerAutosaveFlusher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class AnswerAutosaveTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AttemptService attemptService;
+
+    @Autowired
+    private AnswerAutosaveBuffer answerAutosaveBuffer;
+
+    @Autowired
+    private AnswerAutosaveFlusher answerAutosaveFlusher;
+
+    @Autowired
+    private UserAnswerRepository userAnswerRepository;
+
+    @Autowired
+    private QuizAttemptRepository quizAttemptRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    public void testStreamedAnswersAreCoalescedUntilFlush() throws Exception {
+        Long attemptId = createAttempt("autosave-stream");
+        String body = """
+                {"questionId":1,"selectedOption":"A"}
+                {"questionId":2,"selectedOption":"B"}
+
+                {"questionId":1,"selectedOption":"C"}
+                """;
+
+        mockMvc.perform(post("/attempts/{id}/answers/stream", attemptId)
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(body))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.accepted").value(3))
+                .andExpect(jsonPath("$.pending").value(2));
+        assertTrue(userAnswerRepository.findByAttemptId(attemptId).isEmpty());
+
+        answerAutosaveFlusher.flushAll();
+
+        assertFalse(answerAutosaveBuffer.contains(attemptId));
+        Map<Long, String> saved = selections(attemptId);
+        assertEquals(Map.of(1L, "C", 2L, "B"), saved);
+    }
+
+    @Test
+    public void testSubmitWritesBufferedAnswersAndOverridesThem() throws Exception {
+        Long attemptId = createAttempt("autosave-submit");
+        mockMvc.perform(patch("/attempts/{id}/answers", attemptId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"answers\":[{\"questionId\":1,\"selectedOption\":\"A\"},"
+                                + "{\"questionId\":2,\"selectedOption\":\"B\"}]}"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.pending").value(2));
+
+        attemptService.submitAnswers(attemptId, SubmitAnswersRequest.builder()
+                .answers(List.of(answer(2L, "D"), answer(3L, "A")))
+                .build());
+
+        assertFalse(answerAutosaveBuffer.contains(attemptId));
+        assertEquals(Map.of(1L, "A", 2L, "D", 3L, "A"), selections(attemptId));
+    }
+
+    @Test
+    public void testCanceledAttemptDropsBufferAndRejectsAutosave() throws Exception {
+        Long attemptId = createAttempt("autosave-cancel");
+        attemptService.autosaveAnswers(attemptId, List.of(answer(1L, "A")));
+        attemptService.cancelAttempt(attemptId);
+
+        assertFalse(answerAutosaveBuffer.contains(attemptId));
+        answerAutosaveFlusher.flushAll();
+        assertTrue(userAnswerRepository.findByAttemptId(attemptId).isEmpty());
+
+        mockMvc.perform(post("/attempts/{id}/answers/stream", attemptId)
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"questionId\":1,\"selectedOption\":\"B\"}\n"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/attempts/{id}/answers/stream", createAttempt("autosave-bad-line"))
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"selectedOption\":\"B\"}\n"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testAutosaveIsRejectedOnceAttemptLeftPendingWithAnswersBuffered() throws Exception {
+        Long attemptId = createAttempt("autosave-finished-elsewhere");
+        attemptService.autosaveAnswers(attemptId, List.of(answer(1L, "A")));
+        // Finished by another node: this one still has the answers buffered
+        QuizAttempt attempt = quizAttemptRepository.findById(attemptId).orElseThrow();
+        attempt.setStatus("SUBMITTED");
+        quizAttemptRepository.save(attempt);
+        assertTrue(answerAutosaveBuffer.contains(attemptId));
+
+        mockMvc.perform(patch("/attempts/{id}/answers", attemptId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"answers\":[{\"questionId\":2,\"selectedOption\":\"B\"}]}"))
+                .andExpect(status().isBadRequest());
+        answerAutosaveFlusher.flushAll();
+        assertTrue(userAnswerRepository.findByAttemptId(attemptId).isEmpty());
+    }
+
+    @Test
+    public void testAnswersBufferedBeforeASubmitOnAnotherNodeAreNotFlushedOverIt() throws Exception {
+        Long attemptId = createAttempt("autosave-submitted-elsewhere");
+        attemptService.autosaveAnswers(attemptId, List.of(answer(1L, "A"), answer(2L, "B")));
+        // Submitted through another node, which has none of this node's buffered answers
+        transactionTemplate.executeWithoutResult(tx -> {
+            quizAttemptRepository.incrementAnswersVersion(attemptId);
+            userAnswerRepository.save(UserAnswer.builder().attemptId(attemptId).questionId(1L).selectedOption("D").build());
+        });
+        assertTrue(answerAutosaveBuffer.contains(attemptId));
+
+        answerAutosaveFlusher.flushAll();
+        assertFalse(answerAutosaveBuffer.contains(attemptId));
+        assertEquals(Map.of(1L, "D"), selections(attemptId));
+
+        // Autosaves after the submit are newer and are written as usual
+        mockMvc.perform(patch("/attempts/{id}/answers", attemptId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"answers\":[{\"questionId\":2,\"selectedOption\":\"C\"}]}"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.pending").value(1));
+        answerAutosaveFlusher.flushAll();
+        assertEquals(Map.of(1L, "D", 2L, "C"), selections(attemptId));
+    }
+
+    @Test
+    public void testStaleBufferedAnswersAreReplacedByNewerVersion() {
+        AnswerAutosaveBuffer buffer = new AnswerAutosaveBuffer(10, 10, new SimpleMeterRegistry());
+        buffer.add(1L, 0, List.of(answer(1L, "A"), answer(2L, "B")));
+        assertEquals(1, buffer.add(1L, 1, List.of(answer(3L, "C"))));
+        assertEquals(1, buffer.size());
+        // Checked before the submit that the buffer has already seen
+        assertEquals(1, buffer.add(1L, 0, List.of(answer(4L, "D"))));
+
+        assertTrue(buffer.drain(1L, 0).isEmpty());
+        assertEquals(List.of(answer(3L, "C")), buffer.drain(1L, 1));
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void testConcurrentAddsNeverOvershootMaxPending() throws Exception {
+        AnswerAutosaveBuffer buffer = new AnswerAutosaveBuffer(100, 1000, new SimpleMeterRegistry());
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicLong bufferedAttempt = new AtomicLong(-1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            long attemptId = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (long question = 0; question < 50; question += 5) {
+                    List<SubmitAnswersRequest.AnswerDto> answers = new ArrayList<>();
+                    for (long q = question; q < question + 5; q++) {
+                        answers.add(answer(q, "A"));
+                    }
+                    try {
+                        buffer.add(attemptId, 0, answers);
+                        accepted.addAndGet(answers.size());
+                        bufferedAttempt.set(attemptId);
+                    } catch (ResponseStatusException e) {
+                        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+                    }
+                    assertTrue(buffer.size() <= 100, "buffer holds " + buffer.size());
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(100, buffer.size());
+        assertEquals(100, accepted.get());
+        // Answers to questions already buffered still fit; every attempt with any room got its question 0 in
+        buffer.add(bufferedAttempt.get(), 0, List.of(answer(0L, "B")));
+        assertEquals(100, buffer.size());
+    }
+
+    private Long createAttempt(String idempotencyKey) {
+        return attemptService.createAttempt(CreateAttemptRequest.builder()
+                .assignmentId(7L)
+                .userId("autosave-user")
+                .idempotencyKey(idempotencyKey)
+                .build()).getAttemptId();
+    }
+
+    private Map<Long, String> selections(Long attemptId) {
+        return userAnswerRepository.findByAttemptId(attemptId).stream()
+                .collect(Collectors.toMap(UserAnswer::getQuestionId, UserAnswer::getSelectedOption));
+    }
+
+    private static SubmitAnswersRequest.AnswerDto answer(Long questionId, String option) {
+        return SubmitAnswersRequest.AnswerDto.builder()
+                .questionId(questionId)
+                .selectedOption(option)
+                .build();
+    }
+}
@@ -123,6 +123,44 @@ public class AttemptServiceIntegrationTest {
         assertNotNull(attempt.getFinishedAt());
     }
 
+    @Test
+    public void testBulkCreateIsIdempotentPerItem() {
+        Long existingId = attemptService.createAttempt(CreateAttemptRequest.builder()
+                .assignmentId(7L).userId("bulk-user-0").idempotencyKey("bulk-key-0").build()).getAttemptId();
+
+        List<CreateAttemptRequest> requests = List.of(
+                CreateAttemptRequest.builder().assignmentId(7L).userId("bulk-user-0").idempotencyKey("bulk-key-0").build(),
+                CreateAttemptRequest.builder().assignmentId(7L).userId("bulk-user-1").idempotencyKey("bulk-key-1").build(),
+                CreateAttemptRequest.builder().assignmentId(7L).userId("bulk-user-2").idempotencyKey("bulk-key-2").build(),
+                CreateAttemptRequest.builder().assignmentId(7L).userId("bulk-user-1").idempotencyKey("bulk-key-1").build());
+
+        List<BulkCreateAttemptResponse.AttemptResult> results = attemptService.createAttempts(requests).getAttempts();
+        assertEquals(4, results.size());
+        assertEquals(existingId, results.get(0).getAttemptId());
+        assertEquals(results.get(1).getAttemptId(), results.get(3).getAttemptId());
+        assertNotEquals(results.get(1).getAttemptId(), results.get(2).getAttemptId());
+        assertEquals("bulk-user-2", quizAttemptRepository.findById(results.get(2).getAttemptId()).orElseThrow().getUserId());
+        assertEquals("PENDING", results.get(2).getStatus());
+
+        // Replaying the batch returns the same attempts
+        assertEquals(results, attemptService.createAttempts(requests).getAttempts());
+        assertEquals(1, quizAttemptRepository.findByAssignmentIdAndUserId(7L, "bulk-user-1").size());
+    }
+
+    @Test
+    public void testFindAttemptsNeverCreates() {
+        Long existingId = attemptService.createAttempt(CreateAttemptRequest.builder()
+                .assignmentId(7L).userId("lookup-user-0").idempotencyKey("lookup-key-0").build()).getAttemptId();
+
+        List<BulkCreateAttemptResponse.AttemptResult> found = attemptService
+                .findAttempts(List.of("lookup-key-1", "lookup-key-0", "lookup-key-0")).getAttempts();
+        assertEquals(1, found.size());
+        assertEquals("lookup-key-0", found.get(0).getIdempotencyKey());
+        assertEquals(existingId, found.get(0).getAttemptId());
+        assertEquals("PENDING", found.get(0).getStatus());
+        assertTrue(quizAttemptRepository.findByIdempotencyKey("lookup-key-1").isEmpty());
+    }
+
     @Test
     public void testCancelAttempt() {
         // Create attempt
@@ -196,4 +234,34 @@ public class AttemptServiceIntegrationTest {
         UserAnswer answer2 = userAnswerRepository.findByAttemptIdAndQuestionId(attemptId, 2L).orElseThrow();
         assertEquals("C", answer2.getSelectedOption());
     }
+
+    @Test
+    public void testGetScoreFromStoredResults() {
+        Long attemptId = attemptService.createAttempt(CreateAttemptRequest.builder()
+                .assignmentId(1L)
+                .userId("test-user-score")
+                .idempotencyKey("score-test-key")
+                .build()).getAttemptId();
+
+        attemptService.submitAnswers(attemptId, SubmitAnswersRequest.builder()
+                .answers(Arrays.asList(
+                        SubmitAnswersRequest.AnswerDto.builder().questionId(1L).selectedOption("correct").build(),
+                        SubmitAnswersRequest.AnswerDto.builder().questionId(2L).selectedOption("wrong").build(),
+                        SubmitAnswersRequest.AnswerDto.builder().questionId(3L).selectedOption("wrong").build(),
+                        SubmitAnswersRequest.AnswerDto.builder().questionId(4L).selectedOption("correct").build()
+                ))
+                .build());
+
+        assertEquals(new BigDecimal("5.00"), attemptService.autoScore(attemptId).getScore());
+        assertEquals(new BigDecimal("5.00"), attemptService.getScore(attemptId).getScore());
+
+        // Re-scoring after an answer changed resets the stale flags in bulk
+        attemptService.submitAnswers(attemptId, SubmitAnswersRequest.builder()
+                .answers(Arrays.asList(
+                        SubmitAnswersRequest.AnswerDto.builder().questionId(1L).selectedOption("wrong").build()
+                ))
+                .build());
+        assertEquals(new BigDecimal("2.50"), attemptService.autoScore(attemptId).getScore());
+        assertEquals(1, userAnswerRepository.countCorrectAnswers(attemptId));
+    }
 }
@@ -0,0 +1,89 @@
+package com.khoavdse170395.attemptservice;
+
+import com.khoavdse170395.attemptservice.config.ConcurrencyLimitedDataSource;
+import com.khoavdse170395.attemptservice.config.DataSourceLimiterConfig;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.mock.env.MockEnvironment;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * The same limiter as in assignment-service; also checks that it is wired from the attempt.*
+ * properties and reports under the attempt.* meters.
+ */
+public class ConcurrencyLimitedDataSourceTest {
+
+    @Test
+    public void testPermitsCapConnectionsAndCloseReleasesOnce() throws Exception {
+        DataSource pool = mock(DataSource.class);
+        when(pool.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+        ConcurrencyLimitedDataSource limiter = new ConcurrencyLimitedDataSource(pool, 2, 10, 5000);
+
+        Connection first = limiter.getConnection();
+        Connection second = limiter.getConnection();
+        assertEquals(2, limiter.getActive());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Connection> third = executor.submit(() -> limiter.getConnection());
+        while (limiter.getWaiting() == 0) {
+            Thread.sleep(1);
+        }
+        assertFalse(third.isDone());
+
+        first.close();
+        first.close();
+        third.get(5, TimeUnit.SECONDS).close();
+        second.close();
+        executor.shutdown();
+
+        assertEquals(0, limiter.getActive());
+        verify(pool, times(3)).getConnection();
+    }
+
+    @Test
+    public void testConfiguredFromAttemptPropertiesAndRejectionsAreCounted() throws Exception {
+        DataSource pool = mock(DataSource.class);
+        when(pool.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("attempt.datasource.limiter.enabled", "true")
+                .withProperty("attempt.datasource.limiter.maxConnections", "1")
+                .withProperty("attempt.datasource.limiter.maxWaiting", "0");
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ConcurrencyLimitedDataSource limiter;
+        try (AnnotationConfigApplicationContext context = context(environment, pool)) {
+            limiter = assertInstanceOf(ConcurrencyLimitedDataSource.class, context.getBean(DataSource.class));
+            context.getBean(MeterBinder.class).bindTo(registry);
+        }
+
+        Connection held = limiter.getConnection();
+        assertThrows(SQLTransientConnectionException.class, limiter::getConnection);
+        assertEquals(1.0, registry.get("attempt.datasource.limiter.active").gauge().value());
+        assertEquals(1.0, registry.get("attempt.datasource.limiter.rejected").functionCounter().count());
+        held.close();
+        assertEquals(0.0, registry.get("attempt.datasource.limiter.active").gauge().value());
+
+        MockEnvironment disabled = new MockEnvironment().withProperty("attempt.datasource.limiter.enabled", "false");
+        try (AnnotationConfigApplicationContext context = context(disabled, pool)) {
+            assertSame(pool, context.getBean(DataSource.class));
+        }
+    }
+
+    private static AnnotationConfigApplicationContext context(MockEnvironment environment, DataSource pool) {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.setEnvironment(environment);
+        context.registerBean(DataSource.class, () -> pool);
+        context.register(DataSourceLimiterConfig.class);
+        context.refresh();
+        return context;
+    }
+}
@@ -0,0 +1,114 @@
+package com.khoavdse170395.attemptservice;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.khoavdse170395.attemptservice.model.OutboxEvent;
+import com.khoavdse170395.attemptservice.model.dto.CreateAttemptRequest;
+import com.khoavdse170395.attemptservice.model.dto.FinalizeAttemptRequest;
+import com.khoavdse170395.attemptservice.repository.OutboxJdbcRepository;
+import com.khoavdse170395.attemptservice.service.AttemptService;
+import com.khoavdse170395.attemptservice.service.impl.FileEventSink;
+import com.khoavdse170395.attemptservice.service.impl.InMemoryEventSink;
+import com.khoavdse170395.attemptservice.service.impl.OutboxRelay;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class OutboxRelayTest {
+
+    @Autowired
+    private AttemptService attemptService;
+
+    @Autowired
+    private OutboxRelay outboxRelay;
+
+    @Autowired
+    private InMemoryEventSink eventSink;
+
+    @Autowired
+    private OutboxJdbcRepository outboxJdbcRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    public void drainOutbox() {
+        while (outboxRelay.relayOnce() > 0) {
+            // events left by other tests sharing the database
+        }
+        eventSink.clear();
+    }
+
+    @Test
+    public void testLifecycleTransitionsAreRelayedInOrder() throws Exception {
+        Long canceled = attemptService.createAttempt(request("outbox-1")).getAttemptId();
+        attemptService.cancelAttempt(canceled);
+        Long submitted = attemptService.createAttempt(request("outbox-2")).getAttemptId();
+        attemptService.finalizeAttempt(submitted, FinalizeAttemptRequest.builder().score(new BigDecimal("8.50")).build());
+        // Replayed create and rejected cancel change nothing, so they write no event
+        attemptService.createAttempt(request("outbox-1"));
+        assertThrows(ResponseStatusException.class, () -> attemptService.cancelAttempt(submitted));
+
+        assertEquals(4, outboxRelay.relayOnce());
+        assertEquals(0, outboxRelay.relayOnce());
+        assertTrue(outboxJdbcRepository.findOldest(10).isEmpty());
+        assertEquals(0, outboxRelay.getLagMillis());
+
+        List<OutboxEvent> events = eventSink.events();
+        assertEquals(List.of("ATTEMPT_CREATED", "ATTEMPT_CANCELED", "ATTEMPT_CREATED", "ATTEMPT_SUBMITTED"),
+                events.stream().map(OutboxEvent::getEventType).toList());
+        JsonNode last = objectMapper.readTree(events.get(3).getPayload());
+        assertEquals(submitted, last.get("attemptId").asLong());
+        assertEquals("SUBMITTED", last.get("status").asText());
+        assertEquals(0, new BigDecimal("8.50").compareTo(last.get("score").decimalValue()));
+        assertEquals("outbox-user", last.get("userId").asText());
+        assertFalse(last.get("eventId").asText().isEmpty());
+    }
+
+    @Test
+    public void testFailedPublishKeepsEventsAndFileSinkAppendsThem(@TempDir Path dir) throws Exception {
+        attemptService.createAttempts(List.of(request("outbox-bulk-1"), request("outbox-bulk-2"), request("outbox-bulk-1")));
+
+        OutboxRelay failing = new OutboxRelay(outboxJdbcRepository, events -> {
+            throw new IllegalStateException("sink down");
+        }, 10, Duration.ofSeconds(1), Duration.ofSeconds(1), Duration.ofSeconds(1), new SimpleMeterRegistry());
+        assertThrows(IllegalStateException.class, failing::relayOnce);
+        assertEquals(2, outboxJdbcRepository.findOldest(10).size());
+
+        Path file = dir.resolve("events.ndjson");
+        try (FileEventSink fileSink = new FileEventSink(file)) {
+            OutboxRelay relay = new OutboxRelay(outboxJdbcRepository, fileSink, 1, Duration.ofSeconds(1),
+                    Duration.ofSeconds(1), Duration.ofSeconds(1), new SimpleMeterRegistry());
+            // batchSize 1: one event per call
+            assertEquals(1, relay.relayOnce());
+            assertEquals(1, relay.relayOnce());
+            assertEquals(0, relay.relayOnce());
+        }
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(2, lines.size());
+        assertEquals("ATTEMPT_CREATED", objectMapper.readTree(lines.get(0)).get("type").asText());
+    }
+
+    private static CreateAttemptRequest request(String idempotencyKey) {
+        return CreateAttemptRequest.builder()
+                .assignmentId(5L)
+                .userId("outbox-user")
+                .idempotencyKey(idempotencyKey)
+                .build();
+    }
+}
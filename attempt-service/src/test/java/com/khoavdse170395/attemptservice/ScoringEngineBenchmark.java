@@ -0,0 +1,89 @@
+package com.khoavdse170395.attemptservice;
+
+import com.khoavdse170395.attemptservice.model.AnswerKeyEntry;
+import com.khoavdse170395.attemptservice.model.AnswerSelection;
+import com.khoavdse170395.attemptservice.repository.AnswerKeyEntryRepository;
+import com.khoavdse170395.attemptservice.service.impl.AnswerKeyScoringEngine;
+import com.khoavdse170395.attemptservice.service.scoring.ScoringEngine;
+import com.khoavdse170395.attemptservice.service.scoring.ScoringResult;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scoring throughput and allocation per attempt against a cached answer key. Not part of the test
+ * run; start it with
+ * <pre>
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.khoavdse170395.attemptservice.ScoringEngineBenchmark
+ * </pre>
+ * and read gc.alloc.rate.norm: it should stay at the size of the result (8 bytes per answer for the
+ * correct-id array plus a fixed header), not grow with per-answer garbage.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoringEngineBenchmark {
+
+    private static final long ASSIGNMENT_ID = 1L;
+
+    @Param({"10", "100", "1000"})
+    public int questions;
+
+    private ScoringEngine engine;
+    private List<AnswerSelection> answers;
+
+    @Setup
+    public void setUp() {
+        List<AnswerKeyEntry> key = new ArrayList<>();
+        answers = new ArrayList<>();
+        for (long q = 1; q <= questions; q++) {
+            key.add(AnswerKeyEntry.builder()
+                    .assignmentId(ASSIGNMENT_ID)
+                    .questionId(q)
+                    .correctOptions(q % 4 == 0 ? "A,C" : "B")
+                    .weight(BigDecimal.valueOf(1 + q % 3))
+                    .build());
+            String selected = q % 4 == 0 ? "C,A" : (q % 5 == 0 ? "D" : "B");
+            Long questionId = q;
+            answers.add(new AnswerSelection() {
+                @Override
+                public Long getQuestionId() {
+                    return questionId;
+                }
+
+                @Override
+                public String getSelectedOption() {
+                    return selected;
+                }
+            });
+        }
+        AnswerKeyEntryRepository repository = Mockito.mock(AnswerKeyEntryRepository.class);
+        Mockito.when(repository.findByAssignmentId(ASSIGNMENT_ID)).thenReturn(key);
+        engine = new AnswerKeyScoringEngine(repository, 16);
+        engine.score(ASSIGNMENT_ID, answers);
+    }
+
+    @Benchmark
+    public ScoringResult scoreAttempt() {
+        return engine.score(ASSIGNMENT_ID, answers);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ScoringEngineBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
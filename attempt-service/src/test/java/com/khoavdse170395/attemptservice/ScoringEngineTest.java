@@ -0,0 +1,154 @@
+package com.khoavdse170395.attemptservice;
+
+import com.khoavdse170395.attemptservice.model.AnswerSelection;
+import com.khoavdse170395.attemptservice.model.dto.CreateAttemptRequest;
+import com.khoavdse170395.attemptservice.model.dto.SaveAnswerKeyRequest;
+import com.khoavdse170395.attemptservice.model.dto.SubmitAnswersRequest;
+import com.khoavdse170395.attemptservice.service.AnswerKeyService;
+import com.khoavdse170395.attemptservice.service.AttemptService;
+import com.khoavdse170395.attemptservice.service.scoring.CompiledAnswerKey;
+import com.khoavdse170395.attemptservice.service.scoring.ScoringEngine;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Slf4j
+public class ScoringEngineTest {
+
+    @Autowired
+    private AttemptService attemptService;
+
+    @Autowired
+    private AnswerKeyService answerKeyService;
+
+    @Autowired
+    private ScoringEngine scoringEngine;
+
+    @Test
+    public void testWeightedMultiSelectScoring() {
+        Long assignmentId = 9001L;
+        answerKeyService.replaceAnswerKey(assignmentId, SaveAnswerKeyRequest.builder()
+                .entries(List.of(
+                        entry(1L, "A", "1"),
+                        entry(2L, "B,D", "2"),
+                        entry(3L, "C", "1")))
+                .build());
+
+        Long attemptId = newAttempt(assignmentId);
+        attemptService.submitAnswers(attemptId, SubmitAnswersRequest.builder()
+                .answers(List.of(
+                        answer(1L, "a"),
+                        answer(2L, "D, B"),
+                        answer(3L, "A"),
+                        answer(99L, "A")))
+                .build());
+
+        // (1 + 2) / 4 keyed weight; question 99 is not in the key and earns nothing
+        assertEquals(new BigDecimal("7.50"), attemptService.autoScore(attemptId).getScore());
+        assertEquals(new BigDecimal("7.50"), attemptService.getScore(attemptId).getScore());
+    }
+
+    @Test
+    public void testReplacedKeyIsPickedUp() {
+        Long assignmentId = 9002L;
+        answerKeyService.replaceAnswerKey(assignmentId, SaveAnswerKeyRequest.builder()
+                .entries(List.of(entry(1L, "A", null), entry(2L, "B", null)))
+                .build());
+        assertEquals(2.0, scoringEngine.maxWeight(assignmentId));
+
+        answerKeyService.replaceAnswerKey(assignmentId, SaveAnswerKeyRequest.builder()
+                .entries(List.of(entry(1L, "C", "3")))
+                .build());
+        assertEquals(3.0, scoringEngine.maxWeight(assignmentId));
+
+        Long attemptId = newAttempt(assignmentId);
+        attemptService.submitAnswers(attemptId, SubmitAnswersRequest.builder()
+                .answers(List.of(answer(1L, "C")))
+                .build());
+        assertEquals(new BigDecimal("10.00"), attemptService.autoScore(attemptId).getScore());
+    }
+
+    @Test
+    public void testParseOptions() {
+        assertEquals(0b1, CompiledAnswerKey.parseOptions("A"));
+        assertEquals(0b101, CompiledAnswerKey.parseOptions(" c , a "));
+        assertEquals(CompiledAnswerKey.INVALID, CompiledAnswerKey.parseOptions("correct"));
+        assertEquals(CompiledAnswerKey.INVALID, CompiledAnswerKey.parseOptions("A,"));
+        assertEquals(CompiledAnswerKey.INVALID, CompiledAnswerKey.parseOptions(""));
+        assertEquals(CompiledAnswerKey.INVALID, CompiledAnswerKey.parseOptions(null));
+    }
+
+    @Test
+    public void testScoringDoesNotAllocatePerAnswer() {
+        Long assignmentId = 9003L;
+        int questions = 200;
+        List<SaveAnswerKeyRequest.EntryDto> entries = new ArrayList<>();
+        List<AnswerSelection> answers = new ArrayList<>();
+        for (long q = 1; q <= questions; q++) {
+            entries.add(entry(q, q % 2 == 0 ? "A,C" : "B", null));
+            answers.add(new Selection(q, q % 3 == 0 ? "B" : "C,A"));
+        }
+        answerKeyService.replaceAnswerKey(assignmentId, SaveAnswerKeyRequest.builder().entries(entries).build());
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < 20_000; i++) {
+            scoringEngine.score(assignmentId, answers);
+        }
+
+        int calls = 10_000;
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < calls; i++) {
+            scoringEngine.score(assignmentId, answers);
+        }
+        long bytesPerCall = (threads.getThreadAllocatedBytes(threadId) - before) / calls;
+        log.info("Scoring {} answers: {} bytes allocated per attempt", questions, bytesPerCall);
+
+        // Only the per-attempt result: a long[] of answers.size() plus the result object
+        assertTrue(bytesPerCall <= 8L * questions + 128, "allocated " + bytesPerCall + " bytes per attempt");
+    }
+
+    private Long newAttempt(Long assignmentId) {
+        return attemptService.createAttempt(CreateAttemptRequest.builder()
+                .assignmentId(assignmentId)
+                .userId("scoring-user")
+                .idempotencyKey(UUID.randomUUID().toString())
+                .build()).getAttemptId();
+    }
+
+    private static SaveAnswerKeyRequest.EntryDto entry(Long questionId, String options, String weight) {
+        return SaveAnswerKeyRequest.EntryDto.builder()
+                .questionId(questionId)
+                .correctOptions(options)
+                .weight(weight != null ? new BigDecimal(weight) : null)
+                .build();
+    }
+
+    private static SubmitAnswersRequest.AnswerDto answer(Long questionId, String option) {
+        return SubmitAnswersRequest.AnswerDto.builder().questionId(questionId).selectedOption(option).build();
+    }
+
+    private record Selection(Long questionId, String selectedOption) implements AnswerSelection {
+        @Override
+        public Long getQuestionId() {
+            return questionId;
+        }
+
+        @Override
+        public String getSelectedOption() {
+            return selectedOption;
+        }
+    }
+}
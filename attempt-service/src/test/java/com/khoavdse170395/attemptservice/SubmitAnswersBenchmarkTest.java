@@ -0,0 +1,167 @@
+package com.khoavdse170395.attemptservice;
+
+import com.khoavdse170395.attemptservice.model.UserAnswer;
+import com.khoavdse170395.attemptservice.model.dto.CreateAttemptRequest;
+import com.khoavdse170395.attemptservice.model.dto.SubmitAnswersRequest;
+import com.khoavdse170395.attemptservice.repository.UserAnswerRepository;
+import com.khoavdse170395.attemptservice.service.AttemptService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the old row-by-row upsert (findByAttemptIdAndQuestionId + save per answer) with the
+ * set-based submitAnswers: statements sent to the database and wall-clock time, for a first
+ * submit (all inserts) followed by a resubmit that changes every answer (all updates).
+ */
+@SpringBootTest(properties = {
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.org.hibernate.orm.jdbc.bind=WARN",
+        "logging.level.com.khoavdse170395.attemptservice=WARN"
+})
+@ActiveProfiles("test")
+@Slf4j
+@Tag("benchmark")
+public class SubmitAnswersBenchmarkTest {
+
+    private static final AtomicLong STATEMENTS = new AtomicLong();
+    private static final Set<String> EXECUTE_METHODS =
+            Set.of("execute", "executeQuery", "executeUpdate", "executeLargeUpdate", "executeBatch");
+
+    @TestConfiguration
+    static class StatementCountingConfig {
+        @Bean
+        static BeanPostProcessor statementCountingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? countingProxy(DataSource.class, dataSource) : bean;
+                }
+            };
+        }
+    }
+
+    @Autowired
+    private AttemptService attemptService;
+
+    @Autowired
+    private UserAnswerRepository userAnswerRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    public void benchmarkSubmitPaths() {
+        // Warm up both paths so the first measured size does not pay for JIT and statement caches
+        runRowByRow(newAttempt(), answers(50, "w"));
+        attemptService.submitAnswers(newAttempt(), answers(50, "w"));
+
+        for (int size : new int[]{10, 100, 1000}) {
+            long rowAttempt = newAttempt();
+            Measurement rowInsert = measure(() -> runRowByRow(rowAttempt, answers(size, "A")));
+            Measurement rowUpdate = measure(() -> runRowByRow(rowAttempt, answers(size, "B")));
+
+            long batchAttempt = newAttempt();
+            Measurement batchInsert = measure(() -> attemptService.submitAnswers(batchAttempt, answers(size, "A")));
+            Measurement batchUpdate = measure(() -> attemptService.submitAnswers(batchAttempt, answers(size, "B")));
+
+            log.info("{} answers, row-by-row: insert {} statements in {} ms, update {} statements in {} ms",
+                    size, rowInsert.statements, rowInsert.millis, rowUpdate.statements, rowUpdate.millis);
+            log.info("{} answers, set-based: insert {} statements in {} ms, update {} statements in {} ms",
+                    size, batchInsert.statements, batchInsert.millis, batchUpdate.statements, batchUpdate.millis);
+
+            // attempt lookup + answers version bump + existing answers + one batch, independent of the answer count
+            assertTrue(batchInsert.statements <= 4, "set-based insert used " + batchInsert.statements);
+            assertTrue(batchUpdate.statements <= 4, "set-based update used " + batchUpdate.statements);
+            assertTrue(rowInsert.statements >= 2L * size, "row-by-row insert used " + rowInsert.statements);
+
+            List<UserAnswer> saved = userAnswerRepository.findByAttemptId(batchAttempt);
+            assertEquals(size, saved.size());
+            assertTrue(saved.stream().allMatch(a -> a.getSelectedOption().startsWith("B")));
+        }
+    }
+
+    // The submitAnswers loop as it was before the set-based rewrite
+    private void runRowByRow(long attemptId, SubmitAnswersRequest request) {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (SubmitAnswersRequest.AnswerDto dto : request.getAnswers()) {
+                UserAnswer answer = userAnswerRepository.findByAttemptIdAndQuestionId(attemptId, dto.getQuestionId())
+                        .orElseGet(() -> UserAnswer.builder().attemptId(attemptId).questionId(dto.getQuestionId()).build());
+                answer.setSelectedOption(dto.getSelectedOption());
+                answer.setAnswerText(dto.getAnswerText());
+                userAnswerRepository.save(answer);
+            }
+        });
+    }
+
+    private long newAttempt() {
+        return attemptService.createAttempt(CreateAttemptRequest.builder()
+                .assignmentId(1L)
+                .userId("bench-user")
+                .idempotencyKey(UUID.randomUUID().toString())
+                .build()).getAttemptId();
+    }
+
+    private static SubmitAnswersRequest answers(int count, String optionPrefix) {
+        List<SubmitAnswersRequest.AnswerDto> answers = new ArrayList<>(count);
+        for (long q = 1; q <= count; q++) {
+            answers.add(SubmitAnswersRequest.AnswerDto.builder()
+                    .questionId(q)
+                    .selectedOption(optionPrefix + q)
+                    .build());
+        }
+        return SubmitAnswersRequest.builder().answers(answers).build();
+    }
+
+    private static Measurement measure(Runnable action) {
+        long statementsBefore = STATEMENTS.get();
+        long start = System.nanoTime();
+        action.run();
+        return new Measurement(STATEMENTS.get() - statementsBefore, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private record Measurement(long statements, long millis) {
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T countingProxy(Class<T> type, T target) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (target instanceof Statement && EXECUTE_METHODS.contains(method.getName())) {
+                STATEMENTS.incrementAndGet();
+            }
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof Connection connection && method.getReturnType() == Connection.class) {
+                return countingProxy(Connection.class, connection);
+            }
+            if (result instanceof Statement statement && Statement.class.isAssignableFrom(method.getReturnType())) {
+                return countingProxy((Class<Statement>) method.getReturnType(), statement);
+            }
+            return result;
+        });
+    }
+}
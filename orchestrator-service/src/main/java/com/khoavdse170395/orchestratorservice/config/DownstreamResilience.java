@@ -0,0 +1,163 @@
+package com.khoavdse170395.orchestratorservice.config;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.InterceptingClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * A circuit breaker and a bulkhead per downstream service, applied to every HTTP call on its
+ * transport. The bulkhead caps the calls in flight to one downstream, so a slow attempt-service can
+ * hold at most maxConcurrentCalls saga threads and assignment calls keep flowing. The breaker opens
+ * on the failure rate (I/O errors and 5xx) or the slow-call rate over the last slidingWindowSize
+ * calls; while open, calls fail at once with CallNotPermittedException, which the saga retry policy
+ * treats as final, so the saga goes straight to compensation instead of waiting for read timeouts.
+ * 4xx answers are the caller's fault and count as successes.
+ *
+ * <p>resilience4j.circuitbreaker.state, .calls and .not.permitted.calls and
+ * resilience4j.bulkhead.available.concurrent.calls are published per downstream, plus
+ * orchestrator.downstream.breaker.transitions{from,to} and orchestrator.downstream.rejected{reason}.</p>
+ */
+@Component
+@Slf4j
+public class DownstreamResilience {
+
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final BulkheadRegistry bulkheadRegistry;
+
+    public DownstreamResilience(MeterRegistry meterRegistry,
+                                @Value("${orchestrator.resilience.enabled:true}") boolean enabled,
+                                @Value("${orchestrator.resilience.breaker.slidingWindowSize:50}") int slidingWindowSize,
+                                @Value("${orchestrator.resilience.breaker.minimumCalls:20}") int minimumCalls,
+                                @Value("${orchestrator.resilience.breaker.failureRateThreshold:50}") float failureRateThreshold,
+                                @Value("${orchestrator.resilience.breaker.slowCallMs:2000}") long slowCallMs,
+                                @Value("${orchestrator.resilience.breaker.slowCallRateThreshold:80}") float slowCallRateThreshold,
+                                @Value("${orchestrator.resilience.breaker.openMs:10000}") long openMs,
+                                @Value("${orchestrator.resilience.breaker.halfOpenCalls:5}") int halfOpenCalls,
+                                @Value("${orchestrator.resilience.bulkhead.maxConcurrentCalls:40}") int maxConcurrentCalls,
+                                @Value("${orchestrator.resilience.bulkhead.maxWaitMs:0}") long maxWaitMs) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.circuitBreakerRegistry = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+                .slidingWindowSize(slidingWindowSize)
+                .minimumNumberOfCalls(minimumCalls)
+                .failureRateThreshold(failureRateThreshold)
+                .slowCallDurationThreshold(Duration.ofMillis(slowCallMs))
+                .slowCallRateThreshold(slowCallRateThreshold)
+                .waitDurationInOpenState(Duration.ofMillis(openMs))
+                .permittedNumberOfCallsInHalfOpenState(halfOpenCalls)
+                .automaticTransitionFromOpenToHalfOpenEnabled(false)
+                .build());
+        this.bulkheadRegistry = BulkheadRegistry.of(BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrentCalls)
+                .maxWaitDuration(Duration.ofMillis(maxWaitMs))
+                .build());
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakerRegistry).bindTo(meterRegistry);
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheadRegistry).bindTo(meterRegistry);
+    }
+
+    /**
+     * Wraps the downstream's transport so that every request goes through its bulkhead and breaker.
+     */
+    public ClientHttpRequestFactory decorate(String downstream, ClientHttpRequestFactory requestFactory) {
+        if (!enabled) {
+            return requestFactory;
+        }
+        return new InterceptingClientHttpRequestFactory(requestFactory, List.of(interceptor(downstream)));
+    }
+
+    public CircuitBreaker circuitBreaker(String downstream) {
+        return circuitBreakerRegistry.circuitBreaker(downstream);
+    }
+
+    public Bulkhead bulkhead(String downstream) {
+        return bulkheadRegistry.bulkhead(downstream);
+    }
+
+    private ClientHttpRequestInterceptor interceptor(String downstream) {
+        CircuitBreaker circuitBreaker = circuitBreaker(downstream);
+        Bulkhead bulkhead = bulkhead(downstream);
+        Counter breakerRejected = rejectedCounter(downstream, "circuit_open");
+        Counter bulkheadRejected = rejectedCounter(downstream, "bulkhead_full");
+        circuitBreaker.getEventPublisher().onStateTransition(event -> {
+            log.warn("Circuit breaker for {} went {}", downstream, event.getStateTransition());
+            Counter.builder("orchestrator.downstream.breaker.transitions")
+                    .tag("downstream", downstream)
+                    .tag("from", event.getStateTransition().getFromState().name())
+                    .tag("to", event.getStateTransition().getToState().name())
+                    .register(meterRegistry)
+                    .increment();
+        });
+
+        return (request, body, execution) -> {
+            try {
+                bulkhead.acquirePermission();
+            } catch (BulkheadFullException e) {
+                bulkheadRejected.increment();
+                throw e;
+            }
+            try {
+                try {
+                    circuitBreaker.acquirePermission();
+                } catch (CallNotPermittedException e) {
+                    breakerRejected.increment();
+                    throw e;
+                }
+                long start = circuitBreaker.getCurrentTimestamp();
+                ClientHttpResponse response;
+                try {
+                    response = execution.execute(request, body);
+                } catch (IOException | RuntimeException e) {
+                    circuitBreaker.onError(circuitBreaker.getCurrentTimestamp() - start, circuitBreaker.getTimestampUnit(), e);
+                    throw e;
+                }
+                long elapsed = circuitBreaker.getCurrentTimestamp() - start;
+                if (response.getStatusCode().isSameCodeAs(HttpStatus.GATEWAY_TIMEOUT)) {
+                    // The downstream refused work whose deadline had passed; that says nothing about its health
+                    circuitBreaker.releasePermission();
+                } else if (response.getStatusCode().is5xxServerError()) {
+                    circuitBreaker.onError(elapsed, circuitBreaker.getTimestampUnit(),
+                            HttpServerErrorException.create(response.getStatusCode(), response.getStatusText(),
+                                    response.getHeaders(), null, null));
+                } else {
+                    circuitBreaker.onSuccess(elapsed, circuitBreaker.getTimestampUnit());
+                }
+                return response;
+            } finally {
+                bulkhead.onComplete();
+            }
+        };
+    }
+
+    private Counter rejectedCounter(String downstream, String reason) {
+        return Counter.builder("orchestrator.downstream.rejected")
+                .description("Calls refused before reaching the downstream service")
+                .tag("downstream", downstream)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,147 @@
+package com.khoavdse170395.orchestratorservice.config;
+
+import com.khoavdse170395.orchestratorservice.service.impl.AbortableCall;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the HTTP transport for each downstream service. Every downstream gets its own connection
+ * pool, so a slow service can only exhaust its own connections, and the configured timeouts are
+ * applied to connect, pool lease and response read.
+ *
+ * <p>With orchestrator.http.http2=true the JDK HttpClient is used instead; it negotiates HTTP/2
+ * (h2c upgrade on plain http) and multiplexes requests over one connection, but exposes no pool
+ * to size or measure.</p>
+ */
+@Component
+@Slf4j
+public class HttpTransportFactory implements DisposableBean {
+
+    private final MeterRegistry meterRegistry;
+    private final int connectTimeoutMs;
+    private final int readTimeoutMs;
+    private final int connectionRequestTimeoutMs;
+    private final int maxConnectionsPerRoute;
+    private final int maxConnectionsTotal;
+    private final long keepAliveMs;
+    private final long idleEvictMs;
+    private final boolean http2;
+    private final List<CloseableHttpClient> clients = new ArrayList<>();
+
+    public HttpTransportFactory(MeterRegistry meterRegistry,
+                                @Value("${orchestrator.http.connectTimeoutMs}") int connectTimeoutMs,
+                                @Value("${orchestrator.http.readTimeoutMs}") int readTimeoutMs,
+                                @Value("${orchestrator.http.connectionRequestTimeoutMs:2000}") int connectionRequestTimeoutMs,
+                                @Value("${orchestrator.http.maxConnectionsPerRoute:50}") int maxConnectionsPerRoute,
+                                @Value("${orchestrator.http.maxConnectionsTotal:100}") int maxConnectionsTotal,
+                                @Value("${orchestrator.http.keepAliveMs:30000}") long keepAliveMs,
+                                @Value("${orchestrator.http.idleEvictMs:60000}") long idleEvictMs,
+                                @Value("${orchestrator.http.http2:false}") boolean http2) {
+        this.meterRegistry = meterRegistry;
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.readTimeoutMs = readTimeoutMs;
+        this.connectionRequestTimeoutMs = connectionRequestTimeoutMs;
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        this.maxConnectionsTotal = maxConnectionsTotal;
+        this.keepAliveMs = keepAliveMs;
+        this.idleEvictMs = idleEvictMs;
+        this.http2 = http2;
+    }
+
+    public ClientHttpRequestFactory requestFactory(String downstream) {
+        if (http2) {
+            log.info("Using JDK HTTP/2 transport for downstream {}", downstream);
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                    .build();
+            JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(client);
+            factory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+            return factory;
+        }
+
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setMaxConnTotal(maxConnectionsTotal)
+                .setPoolConcurrencyPolicy(PoolConcurrencyPolicy.STRICT)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        // Re-check connections that sat idle, the server may have closed them meanwhile
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+        CloseableHttpClient client = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(connectionRequestTimeoutMs))
+                        .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        // Used when the server does not send Keep-Alive itself
+                        .setConnectionKeepAlive(TimeValue.ofMilliseconds(keepAliveMs))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(idleEvictMs))
+                .disableAutomaticRetries()
+                .build();
+        synchronized (clients) {
+            clients.add(client);
+        }
+
+        // httpcomponents.httpclient.pool.total.connections{state=leased|available}, .total.pending, .total.max
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, downstream, Tags.of("downstream", downstream))
+                .bindTo(meterRegistry);
+        log.info("Pooled HTTP transport for downstream {}: maxPerRoute={}, maxTotal={}, connect={}ms, read={}ms",
+                downstream, maxConnectionsPerRoute, maxConnectionsTotal, connectTimeoutMs, readTimeoutMs);
+        return new HttpComponentsClientHttpRequestFactory(client) {
+            // Cancellable, so that a hedged read can drop the primary once the hedge has answered
+            @Override
+            protected ClassicHttpRequest createHttpUriRequest(HttpMethod httpMethod, URI uri) {
+                ClassicHttpRequest request = super.createHttpUriRequest(httpMethod, uri);
+                if (request instanceof Cancellable cancellable) {
+                    AbortableCall.register(cancellable::cancel);
+                }
+                return request;
+            }
+        };
+    }
+
+    @Override
+    public void destroy() {
+        synchronized (clients) {
+            for (CloseableHttpClient client : clients) {
+                try {
+                    client.close();
+                } catch (IOException e) {
+                    log.warn("Failed to close HTTP client", e);
+                }
+            }
+        }
+    }
+}
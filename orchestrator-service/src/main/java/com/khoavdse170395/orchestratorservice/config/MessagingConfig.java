@@ -0,0 +1,68 @@
+package com.khoavdse170395.orchestratorservice.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.khoavdse170395.orchestratorservice.service.MessageBroker;
+import com.khoavdse170395.orchestratorservice.service.impl.InMemoryMessageBroker;
+import com.khoavdse170395.orchestratorservice.service.impl.MessagingAssignmentServiceClient;
+import com.khoavdse170395.orchestratorservice.service.impl.MessagingAttemptServiceClient;
+import com.khoavdse170395.orchestratorservice.service.impl.RequestReplyChannel;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * orchestrator.transport=messaging replaces the HTTP clients with clients that send commands over
+ * a MessageBroker and wait for replies without holding a thread. Every orchestrator instance reads
+ * its replies from its own topic, orchestrator.replies.{instanceId}.
+ *
+ * Only the in-memory broker exists so far (orchestrator.messaging.broker=memory), and neither
+ * assignment-service nor attempt-service subscribes to it: the command handlers must run in the
+ * same JVM. It therefore only starts under the test profile; anywhere else the context fails to
+ * start rather than every saga step timing out.
+ */
+@Configuration
+@ConditionalOnProperty(name = "orchestrator.transport", havingValue = "messaging")
+@Slf4j
+public class MessagingConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "orchestrator.messaging.broker", havingValue = "memory", matchIfMissing = true)
+    public InMemoryMessageBroker messageBroker(@Value("${orchestrator.messaging.memory.dispatchThreads:4}") int dispatchThreads,
+                                               MeterRegistry meterRegistry, Environment environment) {
+        if (!environment.acceptsProfiles(Profiles.of("test"))) {
+            throw new IllegalStateException("orchestrator.transport=messaging has no broker the downstream services "
+                    + "listen on; the in-memory broker only runs under the test profile");
+        }
+        return new InMemoryMessageBroker(dispatchThreads, meterRegistry);
+    }
+
+    @Bean
+    public RequestReplyChannel requestReplyChannel(MessageBroker messageBroker,
+                                                   @Value("${orchestrator.messaging.instanceId:}") String instanceId,
+                                                   @Value("${orchestrator.messaging.replyTimeoutMs:5000}") long replyTimeoutMs,
+                                                   MeterRegistry meterRegistry) {
+        String replyTopic = "orchestrator.replies." + (instanceId.isBlank() ? UUID.randomUUID() : instanceId);
+        log.info("Message transport: replies on {}, timeout {}ms", replyTopic, replyTimeoutMs);
+        return new RequestReplyChannel(messageBroker, replyTopic, Duration.ofMillis(replyTimeoutMs), meterRegistry);
+    }
+
+    @Bean
+    public MessagingAssignmentServiceClient messagingAssignmentServiceClient(RequestReplyChannel requestReplyChannel,
+                                                                             ObjectMapper objectMapper) {
+        return new MessagingAssignmentServiceClient(requestReplyChannel, objectMapper);
+    }
+
+    @Bean
+    public MessagingAttemptServiceClient messagingAttemptServiceClient(RequestReplyChannel requestReplyChannel,
+                                                                       ObjectMapper objectMapper) {
+        return new MessagingAttemptServiceClient(requestReplyChannel, objectMapper);
+    }
+}
@@ -1,34 +1,82 @@
 package com.khoavdse170395.orchestratorservice.config;
 
+import com.khoavdse170395.orchestratorservice.service.impl.ReplicaBalancer;
+import com.khoavdse170395.orchestratorservice.service.saga.Deadline;
+import com.khoavdse170395.orchestratorservice.service.saga.DeadlineExceededException;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestClient;
 
-import java.time.Duration;
+import java.io.IOException;
 
 @Configuration
 public class RestClientConfig {
 
-    @Value("${orchestrator.http.connectTimeoutMs}")
-    private int connectTimeoutMs;
-
-    @Value("${orchestrator.http.readTimeoutMs}")
-    private int readTimeoutMs;
-
+    // Shared defaults only; each client clones it and plugs in its own transport below
     @Bean
     public RestClient.Builder restClientBuilder() {
         return RestClient.builder()
+                .requestInterceptor(RestClientConfig::propagateDeadline)
                 .defaultStatusHandler(
                         httpStatusCode -> httpStatusCode.is4xxClientError() || httpStatusCode.is5xxServerError(),
                         (request, response) -> {
-                            throw new RuntimeException("HTTP error: " + response.getStatusCode());
+                            // Typed, with status and headers, so the saga retry policy can tell a 5xx or a 429
+                            // (and its Retry-After) from a final 4xx
+                            String message = "HTTP error: " + response.getStatusCode();
+                            byte[] body = response.getBody().readAllBytes();
+                            if (response.getStatusCode().is5xxServerError()) {
+                                throw HttpServerErrorException.create(message, response.getStatusCode(),
+                                        response.getStatusText(), response.getHeaders(), body, null);
+                            }
+                            throw HttpClientErrorException.create(message, response.getStatusCode(),
+                                    response.getStatusText(), response.getHeaders(), body, null);
                         }
                 );
     }
-}
-
 
+    /*
+     * Tells the downstream how long the saga step calling it will still wait, so that it can refuse
+     * work that would be answered too late and bound its queries by it. A call made after the
+     * deadline is not sent at all.
+     */
+    private static ClientHttpResponse propagateDeadline(HttpRequest request, byte[] body,
+                                                        ClientHttpRequestExecution execution) throws IOException {
+        Deadline deadline = Deadline.current();
+        if (deadline != null) {
+            if (deadline.isExpired()) {
+                throw new DeadlineExceededException("Deadline exceeded before calling " + request.getURI());
+            }
+            request.getHeaders().set(Deadline.HEADER, Long.toString(deadline.remainingMillis()));
+        }
+        return execution.execute(request, body);
+    }
 
+    @Bean
+    public ClientHttpRequestFactory assignmentRequestFactory(HttpTransportFactory httpTransportFactory,
+                                                             DownstreamResilience downstreamResilience) {
+        return downstreamResilience.decorate("assignment", httpTransportFactory.requestFactory("assignment"));
+    }
 
+    @Bean
+    public ClientHttpRequestFactory attemptRequestFactory(HttpTransportFactory httpTransportFactory,
+                                                          DownstreamResilience downstreamResilience) {
+        return downstreamResilience.decorate("attempt", httpTransportFactory.requestFactory("attempt"));
+    }
 
+    // Passive health tracking for both downstreams when they list more than one replica
+    @Bean
+    public ReplicaBalancer.Ejection replicaEjection(
+            @Value("${orchestrator.loadbalancer.ejection.consecutiveFailures:5}") int consecutiveFailures,
+            @Value("${orchestrator.loadbalancer.ejection.slowCallMs:2000}") long slowCallMs,
+            @Value("${orchestrator.loadbalancer.ejection.ejectMs:10000}") long ejectMs,
+            @Value("${orchestrator.loadbalancer.ejection.maxEjectedPercent:50}") int maxEjectedPercent) {
+        return new ReplicaBalancer.Ejection(consecutiveFailures, slowCallMs, ejectMs, maxEjectedPercent);
+    }
+}
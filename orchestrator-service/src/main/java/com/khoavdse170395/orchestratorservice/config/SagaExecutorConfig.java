@@ -0,0 +1,178 @@
+package com.khoavdse170395.orchestratorservice.config;
+
+import com.khoavdse170395.orchestratorservice.model.SagaStep;
+import com.khoavdse170395.orchestratorservice.service.impl.MessageReplyException;
+import com.khoavdse170395.orchestratorservice.service.impl.MessageTimeoutException;
+import com.khoavdse170395.orchestratorservice.service.saga.RetryBudget;
+import com.khoavdse170395.orchestratorservice.service.saga.RetryPolicy;
+import com.khoavdse170395.orchestratorservice.service.saga.SagaEngine;
+import com.khoavdse170395.orchestratorservice.service.saga.SagaStepTimeoutException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dedicated pool for saga steps so request threads return as soon as the saga is recorded.
+ * The queue absorbs bursts at exam start; once it is full new sagas are rejected instead of
+ * piling up without bound.
+ *
+ * With spring.threads.virtual.enabled=true on Java 21+ every step runs on its own virtual thread
+ * instead, still capped at maxSize + queueCapacity steps at a time so the 503 behaviour stays.
+ */
+@Configuration
+@Slf4j
+public class SagaExecutorConfig {
+
+    @Value("${orchestrator.saga.executor.coreSize:16}")
+    private int coreSize;
+
+    @Value("${orchestrator.saga.executor.maxSize:64}")
+    private int maxSize;
+
+    @Value("${orchestrator.saga.executor.queueCapacity:1000}")
+    private int queueCapacity;
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService sagaExecutor(MeterRegistry meterRegistry, Environment environment) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            log.info("Saga executor uses virtual threads, max {} steps at a time", maxSize + queueCapacity);
+        }
+        ThreadPoolExecutor executor = Threading.VIRTUAL.isActive(environment)
+                ? virtualThreadExecutor(maxSize + queueCapacity)
+                : platformThreadExecutor(coreSize, maxSize, queueCapacity);
+        // Publishes executor.active, executor.queued, executor.pool.size... tagged name=sagaExecutor
+        return ExecutorServiceMetrics.monitor(meterRegistry, executor, "sagaExecutor", List.of());
+    }
+
+    /**
+     * Drives sagas as state machines on the saga executor: every step attempt is a task there, and
+     * no thread is held while a saga waits for a retry or between steps.
+     */
+    @Bean
+    public SagaEngine sagaEngine(@Qualifier("sagaExecutor") ExecutorService sagaExecutor, MeterRegistry meterRegistry) {
+        SagaEngine engine = new SagaEngine(sagaExecutor, meterRegistry);
+        Gauge.builder("orchestrator.saga.engine.inflight", engine, SagaEngine::getInFlight)
+                .description("Sagas started and not yet completed or compensated")
+                .register(meterRegistry);
+        return engine;
+    }
+
+    /**
+     * One budget for every step of every saga: retries may add at most ratio of the first attempts,
+     * plus maxTokens in a burst, so an outage does not get maxAttempts times the traffic.
+     */
+    @Bean
+    public RetryBudget sagaRetryBudget(@Value("${orchestrator.saga.retry.budget.ratio:0.1}") double ratio,
+                                       @Value("${orchestrator.saga.retry.budget.maxTokens:20}") int maxTokens,
+                                       MeterRegistry meterRegistry) {
+        RetryBudget budget = new RetryBudget(ratio, maxTokens);
+        Gauge.builder("orchestrator.saga.retry.budget.tokens", budget, RetryBudget::getTokens)
+                .description("Retries that may go out right now")
+                .register(meterRegistry);
+        return budget;
+    }
+
+    // Timeouts, connection failures, 5xx and 429 (over HTTP or as a message reply) and a saturated executor are
+    // retried; another 4xx, "not eligible", an open circuit breaker or a full bulkhead is final. Create and
+    // reserve carry the saga's idempotency key, so a retry of a call that did land is replayed, not repeated.
+    @Bean
+    public RetryPolicy sagaRetryPolicy(@Value("${orchestrator.saga.retry.maxAttempts:3}") int maxAttempts,
+                                       @Value("${orchestrator.saga.retry.initialBackoffMs:100}") long initialBackoffMs,
+                                       @Value("${orchestrator.saga.retry.multiplier:2.0}") double multiplier,
+                                       @Value("${orchestrator.saga.retry.maxBackoffMs:2000}") long maxBackoffMs,
+                                       @Value("${orchestrator.saga.retry.jitter:0.5}") double jitter,
+                                       RetryBudget sagaRetryBudget) {
+        return RetryPolicy.exponential(maxAttempts, Duration.ofMillis(initialBackoffMs), multiplier,
+                        Duration.ofMillis(maxBackoffMs))
+                .retryOn(SagaExecutorConfig::isTransientFailure)
+                .withJitter(jitter)
+                .withBudget(sagaRetryBudget)
+                .withRetryAfter(SagaExecutorConfig::retryAfter);
+    }
+
+    // orchestrator.saga.retry.step.<STEP>.maxAttempts overrides the attempts of that step
+    @Bean
+    public Map<SagaStep, RetryPolicy> sagaStepRetryPolicies(@Qualifier("sagaRetryPolicy") RetryPolicy sagaRetryPolicy,
+                                                           Environment environment) {
+        Map<SagaStep, RetryPolicy> policies = new EnumMap<>(SagaStep.class);
+        for (SagaStep step : SagaStep.values()) {
+            Integer maxAttempts = environment.getProperty("orchestrator.saga.retry.step." + step.name() + ".maxAttempts",
+                    Integer.class);
+            if (maxAttempts != null) {
+                policies.put(step, sagaRetryPolicy.withMaxAttempts(maxAttempts));
+            }
+        }
+        return policies;
+    }
+
+    static boolean isTransientFailure(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SagaStepTimeoutException || cause instanceof ResourceAccessException
+                    || cause instanceof HttpServerErrorException || cause instanceof HttpClientErrorException.TooManyRequests
+                    || cause instanceof RejectedExecutionException || cause instanceof MessageTimeoutException
+                    || (cause instanceof MessageReplyException reply
+                            && (reply.isServerError() || reply.getStatus() == HttpStatus.TOO_MANY_REQUESTS.value()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Retry-After in seconds on a 429 or 503, as sent by assignment-service admission control
+    static Duration retryAfter(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RestClientResponseException response && response.getResponseHeaders() != null) {
+                String value = response.getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+                if (value != null && value.trim().matches("\\d+")) {
+                    return Duration.ofSeconds(Long.parseLong(value.trim()));
+                }
+            }
+        }
+        return null;
+    }
+
+    public static ThreadPoolExecutor platformThreadExecutor(int coreSize, int maxSize, int queueCapacity) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(coreSize, maxSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("saga-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * A thread per saga, handed off through a SynchronousQueue: no queueing, and the pool size is the
+     * in-flight limit. Virtual threads are cheap, so reusing idle ones for a second is just a bonus.
+     * Only callable on Java 21+.
+     */
+    public static ThreadPoolExecutor virtualThreadExecutor(int maxInFlight) {
+        return new ThreadPoolExecutor(0, maxInFlight, 1, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                new VirtualThreadTaskExecutor("saga-vt-").getVirtualThreadFactory(),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+}
@@ -0,0 +1,54 @@
+package com.khoavdse170395.orchestratorservice.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.khoavdse170395.orchestratorservice.service.SagaLog;
+import com.khoavdse170395.orchestratorservice.service.impl.FileSagaLog;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * orchestrator.saga.log.enabled=false turns the log (and with it crash recovery) off.
+ * Fsync policies trade latency for durability, see FileSagaLog; GROUP is the default.
+ */
+@Configuration
+public class SagaLogConfig {
+
+    @Value("${orchestrator.saga.log.enabled:true}")
+    private boolean enabled;
+
+    @Value("${orchestrator.saga.log.path:data/saga.log}")
+    private String path;
+
+    @Value("${orchestrator.saga.log.fsync:GROUP}")
+    private FileSagaLog.FsyncPolicy fsyncPolicy;
+
+    @Value("${orchestrator.saga.log.maxBatch:256}")
+    private int maxBatch;
+
+    @Value("${orchestrator.saga.log.intervalMs:50}")
+    private long intervalMs;
+
+    @Value("${orchestrator.saga.log.compactThresholdBytes:67108864}")
+    private long compactThresholdBytes;
+
+    // close() is inferred for the file log, which drains pending appends and fsyncs on shutdown
+    @Bean
+    public SagaLog sagaLog(ObjectMapper objectMapper, MeterRegistry meterRegistry) throws IOException {
+        if (!enabled) {
+            return SagaLog.NOOP;
+        }
+        FileSagaLog sagaLog = new FileSagaLog(Path.of(path), fsyncPolicy, maxBatch, Duration.ofMillis(intervalMs),
+                compactThresholdBytes, objectMapper);
+        Gauge.builder("orchestrator.saga.log.open", sagaLog, FileSagaLog::openSagaCount)
+                .description("Sagas with a STARTED record and no terminal record in the saga log")
+                .register(meterRegistry);
+        return sagaLog;
+    }
+}
@@ -1,19 +1,31 @@
 package com.khoavdse170395.orchestratorservice.controller;
 
+import com.khoavdse170395.orchestratorservice.dto.BulkStartAttemptRequest;
+import com.khoavdse170395.orchestratorservice.dto.BulkStartAttemptResponse;
 import com.khoavdse170395.orchestratorservice.dto.StartAttemptRequest;
 import com.khoavdse170395.orchestratorservice.dto.StartAttemptResponse;
+import com.khoavdse170395.orchestratorservice.dto.SagaStatusResponse;
 import com.khoavdse170395.orchestratorservice.dto.SubmitAttemptRequest;
+import com.khoavdse170395.orchestratorservice.model.SagaInstance;
 import com.khoavdse170395.orchestratorservice.service.SagaOrchestrationService;
+import com.khoavdse170395.orchestratorservice.service.saga.Deadline;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.net.URI;
+import java.time.Duration;
 
 @RestController
 @RequestMapping("/saga")
@@ -22,20 +34,44 @@ import org.springframework.web.bind.annotation.*;
 @Tag(name = "SAGA Orchestration", description = "SAGA Pattern APIs for orchestrating quiz attempt workflows")
 public class SagaController {
 
+    private static final long MAX_WAIT_MS = 30_000;
+
     private final SagaOrchestrationService sagaOrchestrationService;
 
-    @Operation(summary = "Start attempt SAGA", description = "Orchestrate the complete flow to start a quiz attempt with compensation")
+    @Value("${orchestrator.saga.startAsync:false}")
+    private boolean startAsync;
+
+    // Deadline of a saga whose caller sends no X-Request-Timeout-Ms; 0 = none
+    @Value("${orchestrator.saga.deadlineMs:0}")
+    private long defaultDeadlineMs;
+
+    @Operation(summary = "Start attempt SAGA", description = "Orchestrate the complete flow to start a quiz attempt with compensation. "
+            + "With orchestrator.saga.startAsync=true only the saga is recorded; poll GET /saga/{sagaId} for progress and the attemptId")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "202", description = "SAGA started successfully"),
+            @ApiResponse(responseCode = "202", description = "SAGA accepted (async) or completed (sync)"),
             @ApiResponse(responseCode = "400", description = "Invalid request or user not eligible"),
-            @ApiResponse(responseCode = "500", description = "SAGA failed with compensation executed")
+            @ApiResponse(responseCode = "500", description = "SAGA failed with compensation executed"),
+            @ApiResponse(responseCode = "503", description = "Too many sagas in progress (async)"),
+            @ApiResponse(responseCode = "504", description = "Deadline passed before the SAGA finished (sync), compensation executed")
     })
     @PostMapping("/start-attempt")
-    public ResponseEntity<StartAttemptResponse> startAttempt(@Valid @RequestBody StartAttemptRequest request) {
+    public ResponseEntity<StartAttemptResponse> startAttempt(@Valid @RequestBody StartAttemptRequest request,
+            @Parameter(description = "Time the caller waits for the saga, in ms; steps are not started after it. "
+                    + "Sync mode only: an async saga is not bound by its request")
+            @RequestHeader(value = Deadline.HEADER, required = false) Long timeoutMs) {
         log.info("Received start attempt request: {}", request);
         
+        if (startAsync) {
+            // The caller only waits for the saga to be queued; it runs under orchestrator.saga.asyncDeadlineMs
+            StartAttemptResponse response = sagaOrchestrationService.startAttemptAsync(request);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .location(URI.create("/saga/" + response.getSagaId()))
+                    .body(response);
+        }
+
         try {
-            StartAttemptResponse response = sagaOrchestrationService.startAttempt(request);
+            StartAttemptResponse response = Deadline.callWith(deadline(timeoutMs),
+                    () -> sagaOrchestrationService.startAttempt(request));
             log.info("Start attempt SAGA completed successfully: {}", response);
             return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
         } catch (Exception e) {
@@ -44,20 +80,42 @@ public class SagaController {
         }
     }
 
+    @Operation(summary = "Start attempt SAGA for many students", description = "Class-wide launch: one saga per "
+            + "(assignmentId, userId) item, run with a single bulk reserve and a single bulk create. "
+            + "Answers once every item is finished, with the status and attemptId of each saga in request order")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Per-item results; failed items were compensated on their own"),
+            @ApiResponse(responseCode = "400", description = "Invalid request")
+    })
+    @PostMapping("/start-attempt/bulk")
+    public ResponseEntity<BulkStartAttemptResponse> startAttempts(@Valid @RequestBody BulkStartAttemptRequest request,
+            @Parameter(description = "Time the caller waits for the saga, in ms; steps are not started after it")
+            @RequestHeader(value = Deadline.HEADER, required = false) Long timeoutMs) {
+        log.info("Received bulk start attempt request for {} students", request.getItems().size());
+
+        BulkStartAttemptResponse response = Deadline.callWith(deadline(timeoutMs),
+                () -> sagaOrchestrationService.startAttempts(request));
+        log.info("Bulk start attempt SAGA finished: {} completed, {} failed", response.getCompleted(), response.getFailed());
+        return ResponseEntity.ok(response);
+    }
+
     @Operation(summary = "Submit attempt SAGA", description = "Orchestrate the complete flow to submit and finalize a quiz attempt")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "SAGA completed successfully"),
             @ApiResponse(responseCode = "400", description = "Invalid request or attempt not pending"),
             @ApiResponse(responseCode = "404", description = "Attempt not found"),
-            @ApiResponse(responseCode = "500", description = "SAGA failed")
+            @ApiResponse(responseCode = "500", description = "SAGA failed"),
+            @ApiResponse(responseCode = "504", description = "Deadline passed before the SAGA finished")
     })
     @PostMapping("/submit-attempt")
-    public ResponseEntity<Void> submitAttempt(@Valid @RequestBody SubmitAttemptRequest request) {
+    public ResponseEntity<Void> submitAttempt(@Valid @RequestBody SubmitAttemptRequest request,
+            @Parameter(description = "Time the caller waits for the saga, in ms; steps are not started after it")
+            @RequestHeader(value = Deadline.HEADER, required = false) Long timeoutMs) {
         log.info("Received submit attempt request for attemptId: {}, answers count: {}", 
                 request.getAttemptId(), request.getAnswers().size());
         
         try {
-            sagaOrchestrationService.submitAttempt(request);
+            Deadline.runWith(deadline(timeoutMs), () -> sagaOrchestrationService.submitAttempt(request));
             log.info("Submit attempt SAGA completed successfully for attemptId: {}", request.getAttemptId());
             return ResponseEntity.ok().build();
         } catch (Exception e) {
@@ -65,4 +123,38 @@ public class SagaController {
             throw e;
         }
     }
+
+    @Operation(summary = "Get SAGA status", description = "Current status, step and attemptId of a saga. "
+            + "With waitMs the request is held until the saga finishes or the wait elapses (long-poll)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Saga status"),
+            @ApiResponse(responseCode = "404", description = "Saga not found or already expired")
+    })
+    @GetMapping("/{sagaId}")
+    public DeferredResult<SagaStatusResponse> getSaga(
+            @Parameter(description = "Saga ID", required = true) @PathVariable String sagaId,
+            @Parameter(description = "Max time to wait for the saga to finish, in ms (0 = answer now)")
+            @RequestParam(defaultValue = "0") long waitMs) {
+        SagaInstance saga = sagaOrchestrationService.findSaga(sagaId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Saga not found"));
+
+        long timeout = Math.min(Math.max(waitMs, 0), MAX_WAIT_MS);
+        DeferredResult<SagaStatusResponse> result = new DeferredResult<>(timeout > 0 ? timeout : null);
+        if (timeout == 0 || saga.getStatus().isFinished()) {
+            result.setResult(saga.toResponse());
+            return result;
+        }
+        // Released from the servlet thread while waiting; answers with the current state on timeout
+        result.onTimeout(() -> result.setResult(saga.toResponse()));
+        saga.getCompletion().thenAccept(result::setResult);
+        return result;
+    }
+
+    // The caller's own timeout if it sends one, else the configured default
+    private Deadline deadline(Long timeoutMs) {
+        if (timeoutMs != null) {
+            return Deadline.after(Duration.ofMillis(Math.max(timeoutMs, 0)));
+        }
+        return defaultDeadlineMs > 0 ? Deadline.after(Duration.ofMillis(defaultDeadlineMs)) : null;
+    }
 }
@@ -0,0 +1,17 @@
+package com.khoavdse170395.orchestratorservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One student of a bulk call to assignment-service or attempt-service
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkAttemptItem {
+    private Long assignmentId;
+    private String userId;
+    private String idempotencyKey;
+}
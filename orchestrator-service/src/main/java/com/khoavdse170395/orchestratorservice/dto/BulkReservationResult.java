@@ -0,0 +1,21 @@
+package com.khoavdse170395.orchestratorservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkReservationResult {
+    private String idempotencyKey;
+    // RESERVED | ALREADY_RESERVED | REJECTED from a bulk reserve, RELEASED | NOT_RESERVED from a bulk release
+    private String status;
+    private String reason;
+
+    public boolean isReserved() {
+        return "RESERVED".equals(status) || "ALREADY_RESERVED".equals(status);
+    }
+}
@@ -0,0 +1,36 @@
+package com.khoavdse170395.orchestratorservice.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkStartAttemptRequest {
+    @NotEmpty(message = "Items list cannot be empty")
+    @Size(max = 500, message = "At most 500 items per request")
+    @Valid
+    private List<Item> items;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        @NotNull(message = "Assignment ID is required")
+        private Long assignmentId;
+
+        @NotBlank(message = "User ID is required")
+        private String userId;
+    }
+}
@@ -0,0 +1,19 @@
+package com.khoavdse170395.orchestratorservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkStartAttemptResponse {
+    private int completed;
+    private int failed;
+    // One saga per item, in request order; each can also be looked up with GET /saga/{sagaId}
+    private List<SagaStatusResponse> sagas;
+}
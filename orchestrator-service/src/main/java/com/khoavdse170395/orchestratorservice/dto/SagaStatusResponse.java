@@ -0,0 +1,23 @@
+package com.khoavdse170395.orchestratorservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SagaStatusResponse {
+    private String sagaId;
+    private String status;
+    private String step;
+    private Long assignmentId;
+    private Long attemptId;
+    private String error;
+    private Instant createdAt;
+    private Instant updatedAt;
+}
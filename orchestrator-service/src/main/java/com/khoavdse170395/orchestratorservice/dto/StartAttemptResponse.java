@@ -10,6 +10,8 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 public class StartAttemptResponse {
+    // Set when the saga runs asynchronously; poll GET /saga/{sagaId} for the attemptId
+    private String sagaId;
     private Long attemptId;
     private String status;
 }
@@ -0,0 +1,17 @@
+package com.khoavdse170395.orchestratorservice.model;
+
+// Commands the orchestrator sends over the message transport; a reply carries the command it answers
+public enum SagaCommand {
+    CHECK_ELIGIBILITY,
+    RESERVE_ATTEMPT,
+    RELEASE_ATTEMPT,
+    RESERVE_ATTEMPTS,
+    RELEASE_ATTEMPTS,
+    CREATE_ATTEMPT,
+    CREATE_ATTEMPTS,
+    FIND_ATTEMPTS,
+    CANCEL_ATTEMPT,
+    SUBMIT_ANSWERS,
+    AUTO_SCORE,
+    FINALIZE_ATTEMPT
+}
@@ -0,0 +1,145 @@
+package com.khoavdse170395.orchestratorservice.model;
+
+import com.khoavdse170395.orchestratorservice.dto.SagaStatusResponse;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * State of one start-attempt saga. Written by the saga executor thread, read by status requests,
+ * so every transition goes through a synchronized method and readers take a snapshot.
+ */
+public class SagaInstance {
+
+    @Getter
+    private final String sagaId;
+    @Getter
+    private final Long assignmentId;
+    @Getter
+    private final String userId;
+    @Getter
+    private final String idempotencyKey;
+    private final Instant createdAt;
+    private final CompletableFuture<SagaStatusResponse> completion = new CompletableFuture<>();
+
+    private SagaStatus status = SagaStatus.QUEUED;
+    private SagaStep currentStep;
+    private Long attemptId;
+    // Create calls that may have reached attempt-service: sent and not answered with a refusal
+    private int createsInDoubt;
+    // A compensating call of this saga failed, so it cannot be recorded as compensated
+    private boolean compensationIncomplete;
+    private String error;
+    private Instant updatedAt;
+
+    public SagaInstance(String sagaId, Long assignmentId, String userId, String idempotencyKey) {
+        this.sagaId = sagaId;
+        this.assignmentId = assignmentId;
+        this.userId = userId;
+        this.idempotencyKey = idempotencyKey;
+        this.createdAt = Instant.now();
+        this.updatedAt = createdAt;
+    }
+
+    public synchronized void startStep(SagaStep step) {
+        status = SagaStatus.RUNNING;
+        currentStep = step;
+        updatedAt = Instant.now();
+    }
+
+    public synchronized void attemptCreated(Long attemptId) {
+        this.attemptId = attemptId;
+        updatedAt = Instant.now();
+    }
+
+    public synchronized void createSent() {
+        createsInDoubt++;
+    }
+
+    public synchronized void createRefused() {
+        createsInDoubt--;
+    }
+
+    // Whether a create may have produced an attempt whose id the saga never received
+    public synchronized boolean isCreateInDoubt() {
+        return attemptId == null && createsInDoubt > 0;
+    }
+
+    public synchronized void compensationCallFailed() {
+        compensationIncomplete = true;
+    }
+
+    public synchronized boolean isCompensationIncomplete() {
+        return compensationIncomplete;
+    }
+
+    // Used when replaying the saga log after a restart
+    public synchronized void restore(SagaStep step, Long attemptId) {
+        this.status = SagaStatus.RUNNING;
+        this.currentStep = step;
+        this.attemptId = attemptId;
+        this.updatedAt = Instant.now();
+    }
+
+    public synchronized SagaStep getCurrentStep() {
+        return currentStep;
+    }
+
+    public synchronized Long getAttemptId() {
+        return attemptId;
+    }
+
+    public void complete() {
+        finish(SagaStatus.COMPLETED, null);
+    }
+
+    public void compensated(String error) {
+        finish(SagaStatus.COMPENSATED, error);
+    }
+
+    public void compensationFailed(String error) {
+        finish(SagaStatus.COMPENSATION_FAILED, error);
+    }
+
+    public void rejected(String error) {
+        finish(SagaStatus.REJECTED, error);
+    }
+
+    public synchronized SagaStatus getStatus() {
+        return status;
+    }
+
+    public synchronized Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    // Completes with the final snapshot once the saga reaches a terminal status
+    public CompletableFuture<SagaStatusResponse> getCompletion() {
+        return completion;
+    }
+
+    public synchronized SagaStatusResponse toResponse() {
+        return SagaStatusResponse.builder()
+                .sagaId(sagaId)
+                .status(status.name())
+                .step(currentStep != null ? currentStep.name() : null)
+                .assignmentId(assignmentId)
+                .attemptId(attemptId)
+                .error(error)
+                .createdAt(createdAt)
+                .updatedAt(updatedAt)
+                .build();
+    }
+
+    private void finish(SagaStatus finalStatus, String error) {
+        SagaStatusResponse snapshot;
+        synchronized (this) {
+            this.status = finalStatus;
+            this.error = error;
+            this.updatedAt = Instant.now();
+            snapshot = toResponse();
+        }
+        completion.complete(snapshot);
+    }
+}
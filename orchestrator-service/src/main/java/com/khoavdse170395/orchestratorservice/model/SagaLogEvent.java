@@ -0,0 +1,17 @@
+package com.khoavdse170395.orchestratorservice.model;
+
+public enum SagaLogEvent {
+    STARTED,
+    // Written before the step's remote call, so a crash leaves the in-flight step on record
+    STEP,
+    ATTEMPT_CREATED,
+    COMPLETED,
+    COMPENSATED,
+    // Compensation ran but a call of it failed; the saga stays open so recovery compensates it again
+    COMPENSATION_FAILED,
+    REJECTED;
+
+    public boolean isTerminal() {
+        return this == COMPLETED || this == COMPENSATED || this == REJECTED;
+    }
+}
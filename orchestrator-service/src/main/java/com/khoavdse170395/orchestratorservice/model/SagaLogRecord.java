@@ -0,0 +1,62 @@
+package com.khoavdse170395.orchestratorservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One line of the saga log. STARTED carries the saga's inputs; later records only carry what changed.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SagaLogRecord {
+    private String sagaId;
+    private SagaLogEvent event;
+    private SagaStep step;
+    private Long assignmentId;
+    private String userId;
+    private String idempotencyKey;
+    private Long attemptId;
+    private long timestamp;
+
+    public static SagaLogRecord started(SagaInstance saga) {
+        return SagaLogRecord.builder()
+                .sagaId(saga.getSagaId())
+                .event(SagaLogEvent.STARTED)
+                .assignmentId(saga.getAssignmentId())
+                .userId(saga.getUserId())
+                .idempotencyKey(saga.getIdempotencyKey())
+                .timestamp(System.currentTimeMillis())
+                .build();
+    }
+
+    public static SagaLogRecord step(SagaInstance saga, SagaStep step) {
+        return of(saga, SagaLogEvent.STEP, step, null);
+    }
+
+    public static SagaLogRecord attemptCreated(SagaInstance saga, Long attemptId) {
+        return of(saga, SagaLogEvent.ATTEMPT_CREATED, null, attemptId);
+    }
+
+    // Not terminal: on replay the saga is open at COMPENSATION, which recovery compensates again
+    public static SagaLogRecord compensationFailed(SagaInstance saga) {
+        return of(saga, SagaLogEvent.COMPENSATION_FAILED, SagaStep.COMPENSATION, null);
+    }
+
+    public static SagaLogRecord finished(SagaInstance saga, SagaLogEvent event) {
+        return of(saga, event, null, null);
+    }
+
+    private static SagaLogRecord of(SagaInstance saga, SagaLogEvent event, SagaStep step, Long attemptId) {
+        return SagaLogRecord.builder()
+                .sagaId(saga.getSagaId())
+                .event(event)
+                .step(step)
+                .attemptId(attemptId)
+                .timestamp(System.currentTimeMillis())
+                .build();
+    }
+}
@@ -0,0 +1,68 @@
+package com.khoavdse170395.orchestratorservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A command or a reply on the message transport. The payload holds JSON-compatible values only
+ * (strings, numbers, booleans, lists and maps), so a real broker can send it as JSON.
+ *
+ * Replies copy the command and correlationId of the command they answer. status follows HTTP:
+ * 200 for success, 4xx when the command was refused, 5xx when it failed and may be sent again.
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class SagaMessage {
+    private String messageId;
+    private SagaCommand command;
+    // The saga's idempotency key for commands that have one, otherwise unique per request
+    private String correlationId;
+    // Topic the reply goes to; empty on replies
+    private String replyTo;
+    private int status;
+    private String error;
+    private Map<String, Object> payload;
+    private long timestamp;
+
+    public static SagaMessage command(SagaCommand command, String correlationId, String replyTo, Map<String, Object> payload) {
+        return SagaMessage.builder()
+                .messageId(UUID.randomUUID().toString())
+                .command(command)
+                .correlationId(correlationId)
+                .replyTo(replyTo)
+                .payload(payload)
+                .timestamp(System.currentTimeMillis())
+                .build();
+    }
+
+    public SagaMessage reply(Map<String, Object> payload) {
+        return reply(200, null, payload);
+    }
+
+    public SagaMessage failure(int status, String error) {
+        return reply(status, error, Map.of());
+    }
+
+    public boolean isSuccess() {
+        return status < 400;
+    }
+
+    private SagaMessage reply(int status, String error, Map<String, Object> payload) {
+        return SagaMessage.builder()
+                .messageId(UUID.randomUUID().toString())
+                .command(command)
+                .correlationId(correlationId)
+                .status(status)
+                .error(error)
+                .payload(payload)
+                .timestamp(System.currentTimeMillis())
+                .build();
+    }
+}
@@ -0,0 +1,17 @@
+package com.khoavdse170395.orchestratorservice.model;
+
+public enum SagaStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    // A step failed and compensation has run
+    COMPENSATED,
+    // A step failed and a compensating call failed too; recovery repeats the compensation after a restart
+    COMPENSATION_FAILED,
+    // Never started because the saga executor was saturated
+    REJECTED;
+
+    public boolean isFinished() {
+        return this == COMPLETED || this == COMPENSATED || this == COMPENSATION_FAILED || this == REJECTED;
+    }
+}
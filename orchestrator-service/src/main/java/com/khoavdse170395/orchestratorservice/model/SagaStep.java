@@ -0,0 +1,11 @@
+package com.khoavdse170395.orchestratorservice.model;
+
+public enum SagaStep {
+    CHECK_ELIGIBILITY,
+    CREATE_ATTEMPT,
+    RESERVE_ATTEMPT,
+    SUBMIT_ANSWERS,
+    AUTO_SCORE,
+    FINALIZE_ATTEMPT,
+    COMPENSATION
+}
@@ -1,7 +1,15 @@
 package com.khoavdse170395.orchestratorservice.service;
 
+import com.khoavdse170395.orchestratorservice.dto.BulkAttemptItem;
+import com.khoavdse170395.orchestratorservice.dto.BulkReservationResult;
+
+import java.util.List;
+
 public interface AssignmentServiceClient {
     boolean checkEligibility(Long assignmentId, String userId);
     void reserveAttempt(Long assignmentId, String userId, String idempotencyKey);
     void releaseAttempt(Long assignmentId, String userId, String idempotencyKey);
+    // Eligibility check and reserve for many students in one call; results in the order of the items
+    List<BulkReservationResult> reserveAttempts(List<BulkAttemptItem> items);
+    void releaseAttempts(List<BulkAttemptItem> items);
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package com.khoavdse170395.orchestratorservice.service;
+
+import java.util.concurrent.CompletableFuture;
+
+// Implemented by transports that do not block: saga steps then wait for the future instead of a thread
+public interface AsyncAssignmentServiceClient extends AssignmentServiceClient {
+    CompletableFuture<Boolean> checkEligibilityAsync(Long assignmentId, String userId);
+    CompletableFuture<Void> reserveAttemptAsync(Long assignmentId, String userId, String idempotencyKey);
+}
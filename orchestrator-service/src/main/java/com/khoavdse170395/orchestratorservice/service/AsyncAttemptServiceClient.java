@@ -0,0 +1,13 @@
+package com.khoavdse170395.orchestratorservice.service;
+
+import com.khoavdse170395.orchestratorservice.dto.SubmitAttemptRequest;
+
+import java.util.concurrent.CompletableFuture;
+
+// Implemented by transports that do not block: saga steps then wait for the future instead of a thread
+public interface AsyncAttemptServiceClient extends AttemptServiceClient {
+    CompletableFuture<Long> createAttemptAsync(Long assignmentId, String userId, String idempotencyKey);
+    CompletableFuture<Void> submitAnswersAsync(Long attemptId, SubmitAttemptRequest request);
+    CompletableFuture<Double> autoScoreAsync(Long attemptId);
+    CompletableFuture<Void> finalizeAttemptAsync(Long attemptId, Double score);
+}
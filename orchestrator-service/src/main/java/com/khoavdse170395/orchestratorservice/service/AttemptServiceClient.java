@@ -1,9 +1,17 @@
 package com.khoavdse170395.orchestratorservice.service;
 
+import com.khoavdse170395.orchestratorservice.dto.BulkAttemptItem;
 import com.khoavdse170395.orchestratorservice.dto.SubmitAttemptRequest;
 
+import java.util.List;
+import java.util.Map;
+
 public interface AttemptServiceClient {
     Long createAttempt(Long assignmentId, String userId, String idempotencyKey);
+    // attemptId by idempotency key
+    Map<String, Long> createAttempts(List<BulkAttemptItem> items);
+    // attemptId by idempotency key, only for the keys that have an attempt; never creates one
+    Map<String, Long> findAttempts(List<String> idempotencyKeys);
     void cancelAttempt(Long attemptId);
     void submitAnswers(Long attemptId, SubmitAttemptRequest request);
     Double autoScore(Long attemptId);
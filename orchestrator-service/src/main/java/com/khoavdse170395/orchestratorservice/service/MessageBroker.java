@@ -0,0 +1,16 @@
+package com.khoavdse170395.orchestratorservice.service;
+
+import com.khoavdse170395.orchestratorservice.model.SagaMessage;
+
+import java.util.function.Consumer;
+
+/**
+ * Topic-based transport for saga commands and replies. Publishing returns once the broker has the
+ * message; handlers are called later on the broker's own threads and must not block for long.
+ */
+public interface MessageBroker {
+
+    void publish(String topic, SagaMessage message);
+
+    void subscribe(String topic, Consumer<SagaMessage> handler);
+}
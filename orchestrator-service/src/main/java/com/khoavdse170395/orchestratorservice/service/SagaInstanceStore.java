@@ -0,0 +1,17 @@
+package com.khoavdse170395.orchestratorservice.service;
+
+import com.khoavdse170395.orchestratorservice.model.SagaInstance;
+
+import java.util.Optional;
+
+/**
+ * Where running and recently finished sagas are kept so that GET /saga/{id} can report on them.
+ */
+public interface SagaInstanceStore {
+
+    void save(SagaInstance instance);
+
+    Optional<SagaInstance> find(String sagaId);
+
+    int size();
+}
@@ -0,0 +1,41 @@
+package com.khoavdse170395.orchestratorservice.service;
+
+import com.khoavdse170395.orchestratorservice.model.SagaInstance;
+import com.khoavdse170395.orchestratorservice.model.SagaLogRecord;
+
+import java.util.List;
+
+/**
+ * Append-only record of saga transitions, used to finish or compensate sagas that were in flight
+ * when the orchestrator stopped.
+ */
+public interface SagaLog {
+
+    /**
+     * Appends the record and returns once it is as durable as the configured fsync policy promises.
+     * Throws UncheckedIOException when the record could not be written.
+     */
+    void append(SagaLogRecord record);
+
+    /**
+     * Appends several records and returns once all of them are durable. Bulk sagas use it so that
+     * a whole class is covered by one write instead of one per student.
+     */
+    default void appendAll(List<SagaLogRecord> records) {
+        records.forEach(this::append);
+    }
+
+    // Sagas that have a STARTED record but no terminal one, rebuilt at their last recorded step
+    List<SagaInstance> unfinishedSagas();
+
+    SagaLog NOOP = new SagaLog() {
+        @Override
+        public void append(SagaLogRecord record) {
+        }
+
+        @Override
+        public List<SagaInstance> unfinishedSagas() {
+            return List.of();
+        }
+    };
+}
@@ -1,10 +1,23 @@
 package com.khoavdse170395.orchestratorservice.service;
 
+import com.khoavdse170395.orchestratorservice.dto.BulkStartAttemptRequest;
+import com.khoavdse170395.orchestratorservice.dto.BulkStartAttemptResponse;
 import com.khoavdse170395.orchestratorservice.dto.StartAttemptRequest;
 import com.khoavdse170395.orchestratorservice.dto.StartAttemptResponse;
 import com.khoavdse170395.orchestratorservice.dto.SubmitAttemptRequest;
+import com.khoavdse170395.orchestratorservice.model.SagaInstance;
 
+import java.util.Optional;
+
+// Sagas started from a thread with a current Deadline run against it; recovered sagas have none
 public interface SagaOrchestrationService {
     StartAttemptResponse startAttempt(StartAttemptRequest request);
+    // Records the saga and runs its steps on the saga executor; returns before any remote call
+    StartAttemptResponse startAttemptAsync(StartAttemptRequest request);
+    // One saga per item, but the downstream calls and saga log writes are shared by the whole batch
+    BulkStartAttemptResponse startAttempts(BulkStartAttemptRequest request);
+    Optional<SagaInstance> findSaga(String sagaId);
+    // Finishes a saga rebuilt from the saga log, either driving it forward or compensating it
+    void recoverStartAttempt(SagaInstance saga, boolean compensate);
     void submitAttempt(SubmitAttemptRequest request);
 }
\ No newline at end of file
@@ -0,0 +1,69 @@
+package com.khoavdse170395.orchestratorservice.service.impl;
+
+/**
+ * A blocking downstream call that another thread can end early, used to drop the primary of a
+ * hedged read once the hedge has answered. Open it on the calling thread before the call and close
+ * it after. The pooled HTTP transport registers each request it creates on that thread, and abort
+ * cancels it, which closes its connection. Without a registered request the thread is interrupted
+ * instead; the JDK client answers that by cancelling the exchange. close clears an interrupt that
+ * abort caused, so it does not leak into whatever the thread does next.
+ */
+public final class AbortableCall implements AutoCloseable {
+
+    private static final ThreadLocal<AbortableCall> CURRENT = new ThreadLocal<>();
+
+    private final Thread thread;
+    private Runnable cancel;
+    private boolean open = true;
+    private boolean aborted;
+    private boolean interrupted;
+
+    private AbortableCall(Thread thread) {
+        this.thread = thread;
+    }
+
+    public static AbortableCall open() {
+        AbortableCall call = new AbortableCall(Thread.currentThread());
+        CURRENT.set(call);
+        return call;
+    }
+
+    // Called by a transport for each request it creates; a no-op outside an open call
+    public static void register(Runnable cancel) {
+        AbortableCall call = CURRENT.get();
+        if (call != null) {
+            call.attach(cancel);
+        }
+    }
+
+    private synchronized void attach(Runnable cancel) {
+        this.cancel = cancel;
+        if (aborted) {
+            cancel.run();
+        }
+    }
+
+    // False if the call had already returned
+    public synchronized boolean abort() {
+        if (!open || aborted) {
+            return false;
+        }
+        aborted = true;
+        if (cancel != null) {
+            cancel.run();
+        } else {
+            interrupted = true;
+            thread.interrupt();
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void close() {
+        open = false;
+        CURRENT.remove();
+        if (interrupted) {
+            Thread.interrupted();
+        }
+    }
+}
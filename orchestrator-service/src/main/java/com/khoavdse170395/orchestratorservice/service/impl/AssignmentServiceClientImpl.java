@@ -1,70 +1,308 @@
 package com.khoavdse170395.orchestratorservice.service.impl;
 
+import com.khoavdse170395.orchestratorservice.dto.BulkAttemptItem;
+import com.khoavdse170395.orchestratorservice.dto.BulkReservationResult;
 import com.khoavdse170395.orchestratorservice.service.AssignmentServiceClient;
+import com.khoavdse170395.orchestratorservice.service.saga.Deadline;
+import com.khoavdse170395.orchestratorservice.service.saga.RetryBudget;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestClient;
 
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @Service
+@ConditionalOnProperty(name = "orchestrator.transport", havingValue = "http", matchIfMissing = true)
 @Slf4j
-public class AssignmentServiceClientImpl implements AssignmentServiceClient {
+public class AssignmentServiceClientImpl implements AssignmentServiceClient, DisposableBean {
 
     @Value("${orchestrator.endpoints.assignment}")
     private String assignmentServiceUrl;
 
-    @Value("${orchestrator.http.connectTimeoutMs}")
-    private int connectTimeoutMs;
+    // One client per replica; orchestrator.endpoints.assignment may list several, comma-separated
+    private final ReplicaBalancer<RestClient> replicas;
+    // Calls for one assignment go to the same replica, where its QuizAssignment is cached
+    private final boolean sticky;
+    // Sagas of the same student started together (retries, double clicks) share one eligibility call
+    private final SingleFlight<String, Boolean> eligibilitySingleFlight;
+    private final HedgeDelay hedgeDelay;
+    // Fires the hedge after the delay while the caller's thread is in the primary call
+    private final ScheduledExecutorService hedgeTimer;
+    // Runs hedges only, at most hedgeMaxInFlight at a time
+    private final ThreadPoolExecutor hedgeExecutor;
+    // A hedge is a second request for the same read, so it is paid for like a retry
+    private final RetryBudget hedgeBudget;
+    private final Counter hedgeNotNeeded;
+    private final Counter hedgePrimaryWon;
+    private final Counter hedgeWon;
+    private final Counter hedgeSkippedBusy;
+    private final Counter hedgeSkippedBudget;
 
-    @Value("${orchestrator.http.readTimeoutMs}")
-    private int readTimeoutMs;
+    public AssignmentServiceClientImpl(RestClient.Builder restClientBuilder,
+                                     ClientHttpRequestFactory requestFactory,
+                                     String assignmentServiceUrl) {
+        this(restClientBuilder, requestFactory, assignmentServiceUrl, new SimpleMeterRegistry());
+    }
+
+    public AssignmentServiceClientImpl(RestClient.Builder restClientBuilder,
+                                     ClientHttpRequestFactory requestFactory,
+                                     String assignmentServiceUrl,
+                                     MeterRegistry meterRegistry) {
+        this(restClientBuilder, requestFactory, assignmentServiceUrl, meterRegistry, false, 0.95, 5, 200);
+    }
 
-    private final RestClient restClient;
+    public AssignmentServiceClientImpl(RestClient.Builder restClientBuilder,
+                                     ClientHttpRequestFactory requestFactory,
+                                     String assignmentServiceUrl,
+                                     MeterRegistry meterRegistry,
+                                     boolean hedgeEnabled,
+                                     double hedgePercentile,
+                                     long hedgeMinDelayMs,
+                                     long hedgeMaxDelayMs) {
+        this(restClientBuilder, requestFactory, assignmentServiceUrl, meterRegistry, hedgeEnabled, hedgePercentile,
+                hedgeMinDelayMs, hedgeMaxDelayMs, 16, null);
+    }
+
+    public AssignmentServiceClientImpl(RestClient.Builder restClientBuilder,
+                                     ClientHttpRequestFactory requestFactory,
+                                     String assignmentServiceUrl,
+                                     MeterRegistry meterRegistry,
+                                     boolean hedgeEnabled,
+                                     double hedgePercentile,
+                                     long hedgeMinDelayMs,
+                                     long hedgeMaxDelayMs,
+                                     int hedgeMaxInFlight,
+                                     RetryBudget hedgeBudget) {
+        this(restClientBuilder, requestFactory, assignmentServiceUrl, meterRegistry, hedgeEnabled, hedgePercentile,
+                hedgeMinDelayMs, hedgeMaxDelayMs, hedgeMaxInFlight, new StandardEnvironment(), hedgeBudget,
+                ReplicaBalancer.Ejection.DISABLED, false);
+    }
 
+    @Autowired
     public AssignmentServiceClientImpl(RestClient.Builder restClientBuilder,
+                                     @Qualifier("assignmentRequestFactory") ClientHttpRequestFactory requestFactory,
                                      @Value("${orchestrator.endpoints.assignment}") String assignmentServiceUrl,
-                                     @Value("${orchestrator.http.connectTimeoutMs}") int connectTimeoutMs,
-                                     @Value("${orchestrator.http.readTimeoutMs}") int readTimeoutMs) {
+                                     MeterRegistry meterRegistry,
+                                     @Value("${orchestrator.assignment.hedge.enabled:false}") boolean hedgeEnabled,
+                                     @Value("${orchestrator.assignment.hedge.percentile:0.95}") double hedgePercentile,
+                                     @Value("${orchestrator.assignment.hedge.minDelayMs:5}") long hedgeMinDelayMs,
+                                     @Value("${orchestrator.assignment.hedge.maxDelayMs:200}") long hedgeMaxDelayMs,
+                                     @Value("${orchestrator.assignment.hedge.maxInFlight:16}") int hedgeMaxInFlight,
+                                     Environment environment,
+                                     @Qualifier("sagaRetryBudget") RetryBudget hedgeBudget,
+                                     ReplicaBalancer.Ejection ejection,
+                                     @Value("${orchestrator.loadbalancer.sticky:true}") boolean sticky) {
         this.assignmentServiceUrl = assignmentServiceUrl;
-        this.connectTimeoutMs = connectTimeoutMs;
-        this.readTimeoutMs = readTimeoutMs;
-        this.restClient = restClientBuilder
-                .baseUrl(assignmentServiceUrl)
-                .defaultHeader("Content-Type", "application/json")
-                .build();
+        this.sticky = sticky;
+        this.eligibilitySingleFlight = new SingleFlight<>("orchestrator.assignment.eligibility", meterRegistry);
+        Map<String, RestClient> clients = new LinkedHashMap<>();
+        for (String url : assignmentServiceUrl.split(",")) {
+            if (!url.isBlank()) {
+                clients.put(url.trim(), restClientBuilder.clone()
+                        .requestFactory(requestFactory)
+                        .baseUrl(url.trim())
+                        .defaultHeader("Content-Type", "application/json")
+                        .build());
+            }
+        }
+        this.replicas = new ReplicaBalancer<>("assignment", clients, meterRegistry, ejection);
+
+        // Hedging needs a second replica to go to
+        if (hedgeEnabled && clients.size() > 1) {
+            CustomizableThreadFactory timerThreadFactory = new CustomizableThreadFactory("assignment-hedge-timer-");
+            timerThreadFactory.setDaemon(true);
+            ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, timerThreadFactory);
+            timer.setRemoveOnCancelPolicy(true);
+            this.hedgeTimer = timer;
+            ThreadFactory threadFactory;
+            if (Threading.VIRTUAL.isActive(environment)) {
+                threadFactory = new VirtualThreadTaskExecutor("assignment-hedge-").getVirtualThreadFactory();
+            } else {
+                CustomizableThreadFactory platformThreadFactory = new CustomizableThreadFactory("assignment-hedge-");
+                platformThreadFactory.setDaemon(true);
+                threadFactory = platformThreadFactory;
+            }
+            // No queue: a hedge that cannot start at once is skipped, it would be late anyway
+            this.hedgeExecutor = new ThreadPoolExecutor(0, hedgeMaxInFlight, 60, TimeUnit.SECONDS,
+                    new SynchronousQueue<>(), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+            this.hedgeDelay = new HedgeDelay(hedgePercentile, hedgeMinDelayMs, hedgeMaxDelayMs, 1000);
+            log.info("Hedging eligibility checks over {} assignment replicas at p{} of latency, max {} hedges in flight",
+                    clients.size(), Math.round(hedgePercentile * 100), hedgeMaxInFlight);
+        } else {
+            this.hedgeTimer = null;
+            this.hedgeExecutor = null;
+            this.hedgeDelay = null;
+        }
+        this.hedgeBudget = hedgeBudget;
+        this.hedgeNotNeeded = hedgeCounter(meterRegistry, "not_needed");
+        this.hedgePrimaryWon = hedgeCounter(meterRegistry, "primary_won");
+        this.hedgeWon = hedgeCounter(meterRegistry, "hedge_won");
+        this.hedgeSkippedBusy = hedgeCounter(meterRegistry, "skipped_busy");
+        this.hedgeSkippedBudget = hedgeCounter(meterRegistry, "skipped_budget");
     }
 
     @Override
     public boolean checkEligibility(Long assignmentId, String userId) {
+        return eligibilitySingleFlight.execute(assignmentId + ":" + userId, () -> fetchEligibility(assignmentId, userId));
+    }
+
+    private boolean fetchEligibility(Long assignmentId, String userId) {
         log.info("Checking eligibility for assignmentId: {}, userId: {}", assignmentId, userId);
         
         try {
-            Map<String, Object> request = Map.of("userId", userId);
-            
-            ResponseEntity<Map> response = restClient.post()
-                    .uri("/assignments/{assignmentId}/check-eligibility", assignmentId)
-                    .body(request)
-                    .retrieve()
-                    .toEntity(Map.class);
-            
-            if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                Boolean eligible = (Boolean) response.getBody().get("eligible");
-                log.info("Eligibility check result: {}", eligible);
-                return Boolean.TRUE.equals(eligible);
+            if (hedgeExecutor != null) {
+                return hedgedEligibility(assignmentId, userId);
             }
-            
-            log.warn("Eligibility check failed with status: {}", response.getStatusCode());
-            return false;
+            return replicas.callFor(affinity(assignmentId), client -> requestEligibility(client, assignmentId, userId));
         } catch (Exception e) {
             log.error("Error checking eligibility for assignmentId: {}, userId: {}", assignmentId, userId, e);
             throw new RuntimeException("Failed to check eligibility", e);
         }
     }
 
+    /**
+     * Sends the check to one replica on the caller's thread and, if it has not answered within the
+     * hedge delay, the same check to another replica from the hedge pool; the first answer wins. A
+     * winning hedge aborts the primary, so the caller returns at once. Eligibility is a read, so the
+     * duplicate costs a replica some work and nothing else. A primary that fails before the delay
+     * is not hedged; that is for the saga retry to handle. The hedge is skipped when the pool is full
+     * or the retry budget is spent, so a slow replica cannot multiply threads or load.
+     */
+    private boolean hedgedEligibility(Long assignmentId, String userId) throws Exception {
+        long start = System.nanoTime();
+        // The hedge thread passes the saga's deadline on like the caller's thread does
+        Deadline deadline = Deadline.current();
+        ReplicaBalancer.Replica<RestClient> primary = replicas.chooseFor(affinity(assignmentId));
+        CompletableFuture<Boolean> winner = new CompletableFuture<>();
+        // Completed by the hedge with its answer or error, cancelled if it was skipped
+        CompletableFuture<Boolean> hedge = new CompletableFuture<>();
+        AbortableCall primaryCall = AbortableCall.open();
+        ScheduledFuture<?> timer = hedgeTimer.schedule(
+                () -> sendHedge(primary, primaryCall, winner, hedge, deadline, assignmentId, userId),
+                hedgeDelay.delayNanos(), TimeUnit.NANOSECONDS);
+        boolean eligible = false;
+        Exception primaryError = null;
+        try {
+            eligible = replicas.call(primary, client -> requestEligibility(client, assignmentId, userId));
+        } catch (Exception e) {
+            primaryError = e;
+        } finally {
+            primaryCall.close();
+            // Every primary latency counts, also those the hedge beat, or the delay would drift down
+            hedgeDelay.record(System.nanoTime() - start);
+        }
+
+        if (timer.cancel(false)) {
+            if (primaryError != null) {
+                throw primaryError;
+            }
+            hedgeNotNeeded.increment();
+            return eligible;
+        }
+        if (primaryError != null) {
+            // The hedge answered and aborted the primary, or is still out: its outcome decides
+            return awaitHedge(hedge, primaryError);
+        }
+        if (winner.complete(eligible)) {
+            if (!hedge.isCancelled()) {
+                hedgePrimaryWon.increment();
+            }
+            return eligible;
+        }
+        // The hedge answered first but the primary finished before it could be aborted
+        return winner.join();
+    }
+
+    private void sendHedge(ReplicaBalancer.Replica<RestClient> primary, AbortableCall primaryCall,
+                           CompletableFuture<Boolean> winner, CompletableFuture<Boolean> hedge,
+                           Deadline deadline, Long assignmentId, String userId) {
+        if (hedgeBudget != null && !hedgeBudget.tryAcquireRetry()) {
+            hedgeSkippedBudget.increment();
+            hedge.cancel(false);
+            return;
+        }
+        try {
+            hedgeExecutor.execute(() -> {
+                try {
+                    ReplicaBalancer.Replica<RestClient> secondary = replicas.choose(primary);
+                    log.debug("Eligibility check on {} is slow, hedging on {}", primary, secondary);
+                    boolean eligible = Deadline.callWith(deadline,
+                            () -> replicas.call(secondary, client -> requestEligibility(client, assignmentId, userId)));
+                    if (winner.complete(eligible)) {
+                        hedgeWon.increment();
+                        primaryCall.abort();
+                    }
+                    hedge.complete(eligible);
+                } catch (Throwable e) {
+                    hedge.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            hedgeSkippedBusy.increment();
+            hedge.cancel(false);
+        }
+    }
+
+    private static boolean awaitHedge(CompletableFuture<Boolean> hedge, Exception primaryError) throws Exception {
+        try {
+            return hedge.get();
+        } catch (CancellationException skipped) {
+            throw primaryError;
+        } catch (ExecutionException e) {
+            // Both failed; report the later error
+            throw unwrap(e);
+        }
+    }
+
+    private boolean requestEligibility(RestClient restClient, Long assignmentId, String userId) {
+        Map<String, Object> request = Map.of("userId", userId);
+
+        ResponseEntity<Map> response = restClient.post()
+                .uri("/assignments/{assignmentId}/check-eligibility", assignmentId)
+                .body(request)
+                .retrieve()
+                .toEntity(Map.class);
+
+        if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
+            Boolean eligible = (Boolean) response.getBody().get("eligible");
+            log.info("Eligibility check result: {}", eligible);
+            return Boolean.TRUE.equals(eligible);
+        }
+
+        log.warn("Eligibility check failed with status: {}", response.getStatusCode());
+        return false;
+    }
+
     @Override
     public void reserveAttempt(Long assignmentId, String userId, String idempotencyKey) {
         log.info("Reserving attempt for assignmentId: {}, userId: {}, idempotencyKey: {}", 
@@ -76,11 +314,11 @@ public class AssignmentServiceClientImpl implements AssignmentServiceClient {
                     "idempotencyKey", idempotencyKey
             );
             
-            restClient.post()
+            replicas.callFor(affinity(assignmentId), restClient -> restClient.post()
                     .uri("/assignments/{assignmentId}/reserve", assignmentId)
                     .body(request)
                     .retrieve()
-                    .toBodilessEntity();
+                    .toBodilessEntity());
             
             log.info("Successfully reserved attempt for assignmentId: {}", assignmentId);
         } catch (Exception e) {
@@ -100,21 +338,78 @@ public class AssignmentServiceClientImpl implements AssignmentServiceClient {
                     "idempotencyKey", idempotencyKey
             );
             
-            restClient.post()
+            replicas.callFor(affinity(assignmentId), restClient -> restClient.post()
                     .uri("/assignments/{assignmentId}/release", assignmentId)
                     .body(request)
                     .retrieve()
-                    .toBodilessEntity();
+                    .toBodilessEntity());
             
             log.info("Successfully released attempt for assignmentId: {}", assignmentId);
         } catch (Exception e) {
             log.error("Error releasing attempt for assignmentId: {}, userId: {}", assignmentId, userId, e);
-            // Don't throw exception for compensation - best effort
+            throw new RuntimeException("Failed to release attempt", e);
         }
     }
-}
 
+    @Override
+    public List<BulkReservationResult> reserveAttempts(List<BulkAttemptItem> items) {
+        log.info("Reserving {} attempts in one batch", items.size());
 
+        try {
+            Map<String, List<BulkReservationResult>> response = replicas.call(restClient -> restClient.post()
+                    .uri("/assignments/bulk/reserve")
+                    .body(Map.of("items", items))
+                    .retrieve()
+                    .body(new ParameterizedTypeReference<Map<String, List<BulkReservationResult>>>() {}));
 
+            if (response == null || response.get("results") == null || response.get("results").size() != items.size()) {
+                throw new RuntimeException("Bulk reserve returned no result for some items");
+            }
+            return response.get("results");
+        } catch (Exception e) {
+            log.error("Error reserving {} attempts in one batch", items.size(), e);
+            throw new RuntimeException("Failed to reserve attempts", e);
+        }
+    }
 
+    @Override
+    public void releaseAttempts(List<BulkAttemptItem> items) {
+        log.info("Releasing {} attempts in one batch", items.size());
+
+        try {
+            replicas.call(restClient -> restClient.post()
+                    .uri("/assignments/bulk/release")
+                    .body(Map.of("items", items))
+                    .retrieve()
+                    .toBodilessEntity());
+
+            log.info("Successfully released {} attempts", items.size());
+        } catch (Exception e) {
+            log.error("Error releasing {} attempts in one batch", items.size(), e);
+            throw new RuntimeException("Failed to release attempts", e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (hedgeExecutor != null) {
+            hedgeTimer.shutdownNow();
+            hedgeExecutor.shutdownNow();
+        }
+    }
+
+    private Object affinity(Long assignmentId) {
+        return sticky ? assignmentId : null;
+    }
 
+    private static Exception unwrap(ExecutionException e) {
+        return e.getCause() instanceof Exception cause ? cause : e;
+    }
+
+    private static Counter hedgeCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("orchestrator.assignment.eligibility.hedge")
+                .description("Hedged eligibility checks by which request answered first")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -1,32 +1,66 @@
 package com.khoavdse170395.orchestratorservice.service.impl;
 
+import com.khoavdse170395.orchestratorservice.dto.BulkAttemptItem;
 import com.khoavdse170395.orchestratorservice.dto.SubmitAttemptRequest;
 import com.khoavdse170395.orchestratorservice.service.AttemptServiceClient;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestClient;
 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 @Service
+@ConditionalOnProperty(name = "orchestrator.transport", havingValue = "http", matchIfMissing = true)
 @Slf4j
 public class AttemptServiceClientImpl implements AttemptServiceClient {
 
     @Value("${orchestrator.endpoints.attempt}")
     private String attemptServiceUrl;
 
-    private final RestClient restClient;
+    // One client per replica; orchestrator.endpoints.attempt may list several, comma-separated
+    private final ReplicaBalancer<RestClient> replicas;
+    // Calls for one attempt go to the same replica, where its autosaved answers are buffered
+    private final boolean sticky;
 
     public AttemptServiceClientImpl(RestClient.Builder restClientBuilder,
-                                  @Value("${orchestrator.endpoints.attempt}") String attemptServiceUrl) {
+                                  ClientHttpRequestFactory requestFactory,
+                                  String attemptServiceUrl) {
+        this(restClientBuilder, requestFactory, attemptServiceUrl, new SimpleMeterRegistry(),
+                ReplicaBalancer.Ejection.DISABLED, false);
+    }
+
+    @Autowired
+    public AttemptServiceClientImpl(RestClient.Builder restClientBuilder,
+                                  @Qualifier("attemptRequestFactory") ClientHttpRequestFactory requestFactory,
+                                  @Value("${orchestrator.endpoints.attempt}") String attemptServiceUrl,
+                                  MeterRegistry meterRegistry,
+                                  ReplicaBalancer.Ejection ejection,
+                                  @Value("${orchestrator.loadbalancer.sticky:true}") boolean sticky) {
         this.attemptServiceUrl = attemptServiceUrl;
-        this.restClient = restClientBuilder
-                .baseUrl(attemptServiceUrl)
-                .defaultHeader("Content-Type", "application/json")
-                .build();
+        this.sticky = sticky;
+        Map<String, RestClient> clients = new LinkedHashMap<>();
+        for (String url : attemptServiceUrl.split(",")) {
+            if (!url.isBlank()) {
+                clients.put(url.trim(), restClientBuilder.clone()
+                        .requestFactory(requestFactory)
+                        .baseUrl(url.trim())
+                        .defaultHeader("Content-Type", "application/json")
+                        .build());
+            }
+        }
+        this.replicas = new ReplicaBalancer<>("attempt", clients, meterRegistry, ejection);
     }
 
     @Override
@@ -41,11 +75,11 @@ public class AttemptServiceClientImpl implements AttemptServiceClient {
                     "idempotencyKey", idempotencyKey
             );
             
-            ResponseEntity<Map> response = restClient.post()
+            ResponseEntity<Map> response = replicas.call(restClient -> restClient.post()
                     .uri("/attempts")
                     .body(request)
                     .retrieve()
-                    .toEntity(Map.class);
+                    .toEntity(Map.class));
             
             if (response.getStatusCode() == HttpStatus.CREATED && response.getBody() != null) {
                 Long attemptId = ((Number) response.getBody().get("attemptId")).longValue();
@@ -60,20 +94,76 @@ public class AttemptServiceClientImpl implements AttemptServiceClient {
         }
     }
 
+    @Override
+    public Map<String, Long> createAttempts(List<BulkAttemptItem> items) {
+        log.info("Creating {} attempts in one batch", items.size());
+
+        try {
+            ResponseEntity<Map> response = replicas.call(restClient -> restClient.post()
+                    .uri("/attempts/bulk")
+                    .body(Map.of("attempts", items))
+                    .retrieve()
+                    .toEntity(Map.class));
+
+            if (response.getStatusCode() == HttpStatus.CREATED && response.getBody() != null) {
+                Map<String, Long> attemptIds = new HashMap<>();
+                for (Object attempt : (List<?>) response.getBody().get("attempts")) {
+                    Map<?, ?> fields = (Map<?, ?>) attempt;
+                    attemptIds.put((String) fields.get("idempotencyKey"), ((Number) fields.get("attemptId")).longValue());
+                }
+                log.info("Successfully created {} attempts", attemptIds.size());
+                return attemptIds;
+            }
+
+            throw new RuntimeException("Failed to create attempts, status: " + response.getStatusCode());
+        } catch (Exception e) {
+            log.error("Error creating {} attempts in one batch", items.size(), e);
+            throw new RuntimeException("Failed to create attempts", e);
+        }
+    }
+
+    @Override
+    public Map<String, Long> findAttempts(List<String> idempotencyKeys) {
+        log.info("Looking up attempts of {} idempotency keys", idempotencyKeys.size());
+
+        try {
+            ResponseEntity<Map> response = replicas.call(restClient -> restClient.post()
+                    .uri("/attempts/lookup")
+                    .body(Map.of("idempotencyKeys", idempotencyKeys))
+                    .retrieve()
+                    .toEntity(Map.class));
+
+            if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
+                Map<String, Long> attemptIds = new HashMap<>();
+                for (Object attempt : (List<?>) response.getBody().get("attempts")) {
+                    Map<?, ?> fields = (Map<?, ?>) attempt;
+                    attemptIds.put((String) fields.get("idempotencyKey"), ((Number) fields.get("attemptId")).longValue());
+                }
+                log.info("Found {} attempts", attemptIds.size());
+                return attemptIds;
+            }
+
+            throw new RuntimeException("Failed to look up attempts, status: " + response.getStatusCode());
+        } catch (Exception e) {
+            log.error("Error looking up attempts of {} idempotency keys", idempotencyKeys.size(), e);
+            throw new RuntimeException("Failed to look up attempts", e);
+        }
+    }
+
     @Override
     public void cancelAttempt(Long attemptId) {
         log.info("Canceling attempt: {}", attemptId);
         
         try {
-            restClient.post()
+            replicas.callFor(affinity(attemptId), restClient -> restClient.post()
                     .uri("/attempts/{attemptId}/cancel", attemptId)
                     .retrieve()
-                    .toBodilessEntity();
+                    .toBodilessEntity());
             
             log.info("Successfully canceled attempt: {}", attemptId);
         } catch (Exception e) {
             log.error("Error canceling attempt: {}", attemptId, e);
-            // Don't throw exception for compensation - best effort
+            throw new RuntimeException("Failed to cancel attempt", e);
         }
     }
 
@@ -87,11 +177,11 @@ public class AttemptServiceClientImpl implements AttemptServiceClient {
                     "answers", request.getAnswers()
             );
             
-            restClient.post()
+            replicas.callFor(affinity(attemptId), restClient -> restClient.post()
                     .uri("/attempts/{attemptId}/answers", attemptId)
                     .body(requestBody)
                     .retrieve()
-                    .toBodilessEntity();
+                    .toBodilessEntity());
             
             log.info("Successfully submitted answers for attempt: {}", attemptId);
         } catch (Exception e) {
@@ -105,10 +195,10 @@ public class AttemptServiceClientImpl implements AttemptServiceClient {
         log.info("Auto-scoring attempt: {}", attemptId);
         
         try {
-            ResponseEntity<Map> response = restClient.post()
+            ResponseEntity<Map> response = replicas.callFor(affinity(attemptId), restClient -> restClient.post()
                     .uri("/attempts/{attemptId}/autoscore", attemptId)
                     .retrieve()
-                    .toEntity(Map.class);
+                    .toEntity(Map.class));
             
             if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
                 Double score = ((Number) response.getBody().get("score")).doubleValue();
@@ -130,11 +220,11 @@ public class AttemptServiceClientImpl implements AttemptServiceClient {
         try {
             Map<String, Object> request = Map.of("score", score);
             
-            restClient.post()
+            replicas.callFor(affinity(attemptId), restClient -> restClient.post()
                     .uri("/attempts/{attemptId}/finalize", attemptId)
                     .body(request)
                     .retrieve()
-                    .toBodilessEntity();
+                    .toBodilessEntity());
             
             log.info("Successfully finalized attempt: {} with score: {}", attemptId, score);
         } catch (Exception e) {
@@ -142,9 +232,8 @@ public class AttemptServiceClientImpl implements AttemptServiceClient {
             throw new RuntimeException("Failed to finalize attempt", e);
         }
     }
-}
-
-
-
-
 
+    private Object affinity(Long attemptId) {
+        return sticky ? attemptId : null;
+    }
+}
@@ -0,0 +1,341 @@
+package com.khoavdse170395.orchestratorservice.service.impl;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.khoavdse170395.orchestratorservice.model.SagaInstance;
+import com.khoavdse170395.orchestratorservice.model.SagaLogEvent;
+import com.khoavdse170395.orchestratorservice.model.SagaLogRecord;
+import com.khoavdse170395.orchestratorservice.service.SagaLog;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saga log kept as a local file with one JSON record per line.
+ *
+ * <p>All writes go through a single writer thread. Callers enqueue their record and wait; the writer
+ * drains whatever has queued up, writes it in one go and, depending on the policy, forces it to disk:
+ * <ul>
+ *   <li>ALWAYS - fsync after every record</li>
+ *   <li>GROUP - one fsync per drained batch, callers return after it (group commit)</li>
+ *   <li>INTERVAL - callers return after the write, fsync at most every interval</li>
+ *   <li>NONE - leave flushing to the OS</li>
+ * </ul>
+ * Once the file grows past the compaction threshold it is rewritten with the records of the sagas
+ * that are still open and atomically swapped in.</p>
+ */
+@Slf4j
+public class FileSagaLog implements SagaLog, Closeable {
+
+    public enum FsyncPolicy { ALWAYS, GROUP, INTERVAL, NONE }
+
+    private static final long IDLE_POLL_MS = 100;
+
+    private final Path path;
+    private final FsyncPolicy policy;
+    private final int maxBatch;
+    private final long intervalNanos;
+    private final long compactThresholdBytes;
+    private final ObjectMapper objectMapper;
+    private final BlockingQueue<PendingAppend> queue = new LinkedBlockingQueue<>();
+    // Records needed to rebuild each open saga; only the writer thread touches it once started
+    private final Map<String, OpenSaga> openSagas = new LinkedHashMap<>();
+    private final List<SagaInstance> recovered;
+    private final Thread writer;
+
+    private FileChannel channel;
+    private long nextCompactionAt;
+    private long lastForceNanos = System.nanoTime();
+    private boolean dirty;
+    private volatile int openCount;
+    private volatile boolean running = true;
+
+    public FileSagaLog(Path path, FsyncPolicy policy, int maxBatch, Duration interval,
+                       long compactThresholdBytes, ObjectMapper objectMapper) throws IOException {
+        this.path = path;
+        this.policy = policy;
+        this.maxBatch = maxBatch;
+        this.intervalNanos = interval.toNanos();
+        this.compactThresholdBytes = compactThresholdBytes;
+        this.objectMapper = objectMapper.copy().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.recovered = replay();
+        this.channel.position(channel.size());
+        this.nextCompactionAt = Math.max(compactThresholdBytes, channel.size() * 2);
+        this.writer = new Thread(this::writeLoop, "saga-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void append(SagaLogRecord record) {
+        if (!running) {
+            throw new IllegalStateException("Saga log is closed");
+        }
+        PendingAppend pending = new PendingAppend(record, serialize(record));
+        queue.add(pending);
+        try {
+            pending.done.get();
+        } catch (ExecutionException e) {
+            throw new UncheckedIOException("Failed to append saga log record", (IOException) e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while appending saga log record", e);
+        }
+    }
+
+    // Enqueued together, so the writer usually takes them in one batch and one fsync
+    @Override
+    public void appendAll(List<SagaLogRecord> records) {
+        if (!running) {
+            throw new IllegalStateException("Saga log is closed");
+        }
+        List<PendingAppend> appends = new ArrayList<>(records.size());
+        for (SagaLogRecord record : records) {
+            appends.add(new PendingAppend(record, serialize(record)));
+        }
+        queue.addAll(appends);
+        try {
+            for (PendingAppend pending : appends) {
+                pending.done.get();
+            }
+        } catch (ExecutionException e) {
+            throw new UncheckedIOException("Failed to append saga log record", (IOException) e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while appending saga log record", e);
+        }
+    }
+
+    @Override
+    public List<SagaInstance> unfinishedSagas() {
+        return recovered;
+    }
+
+    public int openSagaCount() {
+        return openCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.force(false);
+        channel.close();
+    }
+
+    private void writeLoop() {
+        List<PendingAppend> batch = new ArrayList<>(maxBatch);
+        long pollMs = policy == FsyncPolicy.INTERVAL ? Math.max(1, TimeUnit.NANOSECONDS.toMillis(intervalNanos)) : IDLE_POLL_MS;
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingAppend first = queue.poll(pollMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    forceIfIntervalElapsed();
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                writeBatch(batch);
+                for (PendingAppend pending : batch) {
+                    pending.done.complete(null);
+                }
+                compactIfNeeded();
+            } catch (IOException e) {
+                log.error("Saga log write failed, failing {} pending appends", batch.size(), e);
+                for (PendingAppend pending : batch) {
+                    pending.done.completeExceptionally(e);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<PendingAppend> batch) throws IOException {
+        for (PendingAppend pending : batch) {
+            ByteBuffer buffer = ByteBuffer.wrap(pending.line);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (policy == FsyncPolicy.ALWAYS) {
+                channel.force(false);
+            }
+        }
+        dirty = true;
+        if (policy == FsyncPolicy.GROUP) {
+            force();
+        } else {
+            forceIfIntervalElapsed();
+        }
+        for (PendingAppend pending : batch) {
+            track(pending.record);
+        }
+    }
+
+    private void forceIfIntervalElapsed() throws IOException {
+        if (policy == FsyncPolicy.INTERVAL && dirty && System.nanoTime() - lastForceNanos >= intervalNanos) {
+            force();
+        }
+    }
+
+    private void force() throws IOException {
+        channel.force(false);
+        dirty = false;
+        lastForceNanos = System.nanoTime();
+    }
+
+    private void compactIfNeeded() throws IOException {
+        if (channel.size() < nextCompactionAt) {
+            return;
+        }
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (OpenSaga saga : openSagas.values()) {
+                for (SagaLogRecord record : saga.records()) {
+                    ByteBuffer buffer = ByteBuffer.wrap(serialize(record));
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+                }
+            }
+            out.force(false);
+        }
+        long before = channel.size();
+        channel.close();
+        Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        dirty = false;
+        // Many long-running sagas can keep the compacted file large; do not rewrite it on every batch
+        nextCompactionAt = Math.max(compactThresholdBytes, channel.size() * 2);
+        log.info("Compacted saga log from {} to {} bytes ({} open sagas)", before, channel.size(), openSagas.size());
+    }
+
+    private List<SagaInstance> replay() throws IOException {
+        byte[] data = Files.readAllBytes(path);
+        int lineStart = 0;
+        int lineNumber = 0;
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] != '\n') {
+                continue;
+            }
+            lineNumber++;
+            if (i > lineStart) {
+                try {
+                    track(objectMapper.readValue(data, lineStart, i - lineStart, SagaLogRecord.class));
+                } catch (IOException e) {
+                    log.warn("Skipping unreadable saga log line {} in {}", lineNumber, path, e);
+                }
+            }
+            lineStart = i + 1;
+        }
+        if (lineStart < data.length) {
+            // A write torn by a crash; drop it so the next record starts on a clean line
+            log.warn("Truncating {} bytes of incomplete saga log record in {}", data.length - lineStart, path);
+            channel.truncate(lineStart);
+        }
+
+        List<SagaInstance> unfinished = new ArrayList<>();
+        for (OpenSaga saga : openSagas.values()) {
+            SagaInstance instance = new SagaInstance(saga.started.getSagaId(), saga.started.getAssignmentId(),
+                    saga.started.getUserId(), saga.started.getIdempotencyKey());
+            instance.restore(saga.lastStep != null ? saga.lastStep.getStep() : null,
+                    saga.attemptCreated != null ? saga.attemptCreated.getAttemptId() : null);
+            unfinished.add(instance);
+        }
+        log.info("Replayed saga log {}: {} unfinished sagas", path, unfinished.size());
+        return unfinished;
+    }
+
+    private void track(SagaLogRecord record) {
+        if (record.getEvent() == SagaLogEvent.STARTED) {
+            openSagas.put(record.getSagaId(), new OpenSaga(record));
+        } else if (record.getEvent().isTerminal()) {
+            openSagas.remove(record.getSagaId());
+        } else {
+            OpenSaga saga = openSagas.get(record.getSagaId());
+            if (saga != null && record.getEvent() == SagaLogEvent.ATTEMPT_CREATED) {
+                saga.attemptCreated = record;
+            } else if (saga != null) {
+                saga.lastStep = record;
+            }
+        }
+        openCount = openSagas.size();
+    }
+
+    private byte[] serialize(SagaLogRecord record) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(record);
+            byte[] line = new byte[json.length + 1];
+            System.arraycopy(json, 0, line, 0, json.length);
+            line[json.length] = '\n';
+            return line;
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialize saga log record " + record, e);
+        }
+    }
+
+    private static final class OpenSaga {
+        private final SagaLogRecord started;
+        private SagaLogRecord attemptCreated;
+        private SagaLogRecord lastStep;
+
+        private OpenSaga(SagaLogRecord started) {
+            this.started = started;
+        }
+
+        private List<SagaLogRecord> records() {
+            List<SagaLogRecord> records = new ArrayList<>(3);
+            records.add(started);
+            if (attemptCreated != null) {
+                records.add(attemptCreated);
+            }
+            if (lastStep != null) {
+                records.add(lastStep);
+            }
+            return records;
+        }
+    }
+
+    private static final class PendingAppend {
+        private final SagaLogRecord record;
+        private final byte[] line;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private PendingAppend(SagaLogRecord record, byte[] line) {
+            this.record = record;
+            this.line = line;
+        }
+    }
+}
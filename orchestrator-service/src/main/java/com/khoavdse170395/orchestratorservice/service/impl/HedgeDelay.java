@@ -0,0 +1,48 @@
+package com.khoavdse170395.orchestratorservice.service.impl;
+
+import java.util.Arrays;
+
+/**
+ * How long to wait for a read before sending a hedge: the given percentile of recent latencies, so
+ * that only the slowest (1 - percentile) of calls are duplicated, bounded by minDelay and maxDelay.
+ * Until enough samples are in, maxDelay is used. With percentile 0 the delay is always maxDelay.
+ */
+public class HedgeDelay {
+
+    private static final int MIN_SAMPLES = 50;
+
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+    private final long[] samples;
+    private int next;
+    private int count;
+    private long sinceRecompute;
+    private volatile long delayNanos;
+
+    public HedgeDelay(double percentile, long minDelayMillis, long maxDelayMillis, int window) {
+        this.percentile = percentile;
+        this.minDelayNanos = minDelayMillis * 1_000_000;
+        this.maxDelayNanos = maxDelayMillis * 1_000_000;
+        this.samples = new long[window];
+        this.delayNanos = maxDelayNanos;
+    }
+
+    public synchronized void record(long latencyNanos) {
+        samples[next] = latencyNanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+        // Sorting the window on every call would cost more than the hedge saves
+        if (percentile > 0 && count >= MIN_SAMPLES && ++sinceRecompute >= Math.max(1, samples.length / 10)) {
+            sinceRecompute = 0;
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            long value = sorted[(int) Math.min(count - 1, Math.ceil(percentile * count) - 1)];
+            delayNanos = Math.max(minDelayNanos, Math.min(maxDelayNanos, value));
+        }
+    }
+
+    public long delayNanos() {
+        return delayNanos;
+    }
+}
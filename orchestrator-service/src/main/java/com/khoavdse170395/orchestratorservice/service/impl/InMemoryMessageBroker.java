@@ -0,0 +1,82 @@
+package com.khoavdse170395.orchestratorservice.service.impl;
+
+import com.khoavdse170395.orchestratorservice.model.SagaMessage;
+import com.khoavdse170395.orchestratorservice.service.MessageBroker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Broker inside the JVM, for tests and single-process demos. Every subscriber of a topic gets
+ * every message, on a small pool of dispatch threads; messages wait in the pool's queue, not in a
+ * thread. Nothing is persisted, and publishing to a topic nobody subscribes to fails at once with
+ * a NoSubscriberException, so a saga step fails instead of waiting out its reply timeout. Messages are handed over as is, so neither side may change one after
+ * publishing it.
+ */
+@Slf4j
+public class InMemoryMessageBroker implements MessageBroker, AutoCloseable {
+
+    private final Map<String, List<Consumer<SagaMessage>>> subscribers = new ConcurrentHashMap<>();
+    private final ExecutorService dispatcher;
+    private final Counter published;
+    private final Counter undeliverable;
+
+    public InMemoryMessageBroker(int dispatchThreads, MeterRegistry meterRegistry) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("broker-");
+        threadFactory.setDaemon(true);
+        this.dispatcher = Executors.newFixedThreadPool(dispatchThreads, threadFactory);
+        this.published = Counter.builder("orchestrator.messaging.broker.messages")
+                .tag("result", "published")
+                .register(meterRegistry);
+        this.undeliverable = Counter.builder("orchestrator.messaging.broker.messages")
+                .tag("result", "undeliverable")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void publish(String topic, SagaMessage message) {
+        List<Consumer<SagaMessage>> handlers = subscribers.get(topic);
+        if (handlers == null || handlers.isEmpty()) {
+            undeliverable.increment();
+            log.warn("No subscriber for topic {}, refusing {} {}", topic, message.getCommand(), message.getCorrelationId());
+            throw new NoSubscriberException(topic);
+        }
+        published.increment();
+        for (Consumer<SagaMessage> handler : handlers) {
+            dispatcher.execute(() -> deliver(topic, handler, message));
+        }
+    }
+
+    @Override
+    public void subscribe(String topic, Consumer<SagaMessage> handler) {
+        subscribers.computeIfAbsent(topic, t -> new CopyOnWriteArrayList<>()).add(handler);
+    }
+
+    @Override
+    public void close() {
+        dispatcher.shutdown();
+        try {
+            dispatcher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void deliver(String topic, Consumer<SagaMessage> handler, SagaMessage message) {
+        try {
+            handler.accept(message);
+        } catch (RuntimeException e) {
+            log.error("Handler on topic {} failed for {} {}", topic, message.getCommand(), message.getCorrelationId(), e);
+        }
+    }
+}
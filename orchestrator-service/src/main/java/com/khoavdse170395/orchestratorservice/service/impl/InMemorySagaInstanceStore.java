@@ -0,0 +1,73 @@
+package com.khoavdse170395.orchestratorservice.service.impl;
+
+import com.khoavdse170395.orchestratorservice.model.SagaInstance;
+import com.khoavdse170395.orchestratorservice.service.SagaInstanceStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Keeps sagas in insertion order. Finished sagas are dropped once they are older than the retention
+ * or when the store is over its size limit; unfinished ones are never dropped, so a status poll
+ * cannot lose a saga that is still running.
+ */
+@Component
+public class InMemorySagaInstanceStore implements SagaInstanceStore {
+
+    private final Map<String, SagaInstance> instances = new LinkedHashMap<>();
+    private final int maxSize;
+    private final Duration retention;
+    private final Clock clock;
+
+    @Autowired
+    public InMemorySagaInstanceStore(@Value("${orchestrator.saga.store.maxSize:10000}") int maxSize,
+                                     @Value("${orchestrator.saga.store.retentionMinutes:60}") long retentionMinutes) {
+        this(maxSize, Duration.ofMinutes(retentionMinutes), Clock.systemUTC());
+    }
+
+    public InMemorySagaInstanceStore(int maxSize, Duration retention, Clock clock) {
+        this.maxSize = maxSize;
+        this.retention = retention;
+        this.clock = clock;
+    }
+
+    @Override
+    public synchronized void save(SagaInstance instance) {
+        instances.put(instance.getSagaId(), instance);
+        evict();
+    }
+
+    @Override
+    public synchronized Optional<SagaInstance> find(String sagaId) {
+        return Optional.ofNullable(instances.get(sagaId));
+    }
+
+    @Override
+    public synchronized int size() {
+        return instances.size();
+    }
+
+    private void evict() {
+        Instant expiredBefore = clock.instant().minus(retention);
+        Iterator<SagaInstance> iterator = instances.values().iterator();
+        while (iterator.hasNext()) {
+            SagaInstance instance = iterator.next();
+            boolean overSize = instances.size() > maxSize;
+            boolean expired = instance.getUpdatedAt().isBefore(expiredBefore);
+            if (!overSize && !expired) {
+                break;
+            }
+            if (instance.getStatus().isFinished()) {
+                iterator.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.khoavdse170395.orchestratorservice.service.impl;
+
+import com.khoavdse170395.orchestratorservice.model.SagaCommand;
+import lombok.Getter;
+
+// A downstream service answered a command with an error status
+@Getter
+public class MessageReplyException extends RuntimeException {
+
+    private final SagaCommand command;
+    private final int status;
+
+    public MessageReplyException(SagaCommand command, int status, String error) {
+        super(command + " failed with status " + status + (error != null ? ": " + error : ""));
+        this.command = command;
+        this.status = status;
+    }
+
+    public boolean isServerError() {
+        return status >= 500;
+    }
+}
@@ -0,0 +1,13 @@
+package com.khoavdse170395.orchestratorservice.service.impl;
+
+import com.khoavdse170395.orchestratorservice.model.SagaCommand;
+
+import java.time.Duration;
+
+// No reply arrived in time; the command may still have been carried out
+public class MessageTimeoutException extends RuntimeException {
+
+    public MessageTimeoutException(SagaCommand command, String correlationId, Duration timeout) {
+        super("No reply to " + command + " " + correlationId + " within " + timeout.toMillis() + "ms");
+    }
+}
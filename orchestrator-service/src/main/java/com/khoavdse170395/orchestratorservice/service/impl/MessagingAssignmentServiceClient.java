@@ -0,0 +1,90 @@
+package com.khoavdse170395.orchestratorservice.service.impl;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.khoavdse170395.orchestratorservice.dto.BulkAttemptItem;
+import com.khoavdse170395.orchestratorservice.dto.BulkReservationResult;
+import com.khoavdse170395.orchestratorservice.model.SagaCommand;
+import com.khoavdse170395.orchestratorservice.service.AsyncAssignmentServiceClient;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * AssignmentServiceClient over the message transport. Commands go to assignment.commands; reserve
+ * and release are correlated by the saga's idempotency key, the other commands by a fresh id.
+ *
+ * <pre>
+ * CHECK_ELIGIBILITY {assignmentId, userId}                 -> {eligible}
+ * RESERVE_ATTEMPT   {assignmentId, userId, idempotencyKey} -> {}
+ * RELEASE_ATTEMPT   {assignmentId, userId, idempotencyKey} -> {}
+ * RESERVE_ATTEMPTS  {items: [BulkAttemptItem]}             -> {results: [BulkReservationResult]}
+ * RELEASE_ATTEMPTS  {items: [BulkAttemptItem]}             -> {results: [BulkReservationResult]}
+ * </pre>
+ */
+public class MessagingAssignmentServiceClient implements AsyncAssignmentServiceClient {
+
+    public static final String COMMAND_TOPIC = "assignment.commands";
+
+    private final RequestReplyChannel channel;
+    private final ObjectMapper objectMapper;
+
+    public MessagingAssignmentServiceClient(RequestReplyChannel channel, ObjectMapper objectMapper) {
+        this.channel = channel;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> checkEligibilityAsync(Long assignmentId, String userId) {
+        return channel.request(COMMAND_TOPIC, SagaCommand.CHECK_ELIGIBILITY, UUID.randomUUID().toString(),
+                        Map.of("assignmentId", assignmentId, "userId", userId))
+                .thenApply(reply -> Boolean.TRUE.equals(reply.getPayload().get("eligible")));
+    }
+
+    @Override
+    public CompletableFuture<Void> reserveAttemptAsync(Long assignmentId, String userId, String idempotencyKey) {
+        return channel.request(COMMAND_TOPIC, SagaCommand.RESERVE_ATTEMPT, idempotencyKey,
+                        Map.of("assignmentId", assignmentId, "userId", userId, "idempotencyKey", idempotencyKey))
+                .thenApply(reply -> null);
+    }
+
+    @Override
+    public boolean checkEligibility(Long assignmentId, String userId) {
+        return RequestReplyChannel.await(checkEligibilityAsync(assignmentId, userId));
+    }
+
+    @Override
+    public void reserveAttempt(Long assignmentId, String userId, String idempotencyKey) {
+        RequestReplyChannel.await(reserveAttemptAsync(assignmentId, userId, idempotencyKey));
+    }
+
+    @Override
+    public void releaseAttempt(Long assignmentId, String userId, String idempotencyKey) {
+        RequestReplyChannel.await(channel.request(COMMAND_TOPIC, SagaCommand.RELEASE_ATTEMPT, idempotencyKey,
+                Map.of("assignmentId", assignmentId, "userId", userId, "idempotencyKey", idempotencyKey)));
+    }
+
+    @Override
+    public List<BulkReservationResult> reserveAttempts(List<BulkAttemptItem> items) {
+        List<BulkReservationResult> results = RequestReplyChannel.await(
+                channel.request(COMMAND_TOPIC, SagaCommand.RESERVE_ATTEMPTS, UUID.randomUUID().toString(), bulkPayload(items))
+                        .thenApply(reply -> objectMapper.convertValue(reply.getPayload().get("results"),
+                                new TypeReference<List<BulkReservationResult>>() {})));
+        if (results == null || results.size() != items.size()) {
+            throw new RuntimeException("Bulk reserve returned no result for some items");
+        }
+        return results;
+    }
+
+    @Override
+    public void releaseAttempts(List<BulkAttemptItem> items) {
+        RequestReplyChannel.await(channel.request(COMMAND_TOPIC, SagaCommand.RELEASE_ATTEMPTS,
+                UUID.randomUUID().toString(), bulkPayload(items)));
+    }
+
+    private Map<String, Object> bulkPayload(List<BulkAttemptItem> items) {
+        return Map.of("items", objectMapper.convertValue(items, new TypeReference<List<Map<String, Object>>>() {}));
+    }
+}
@@ -0,0 +1,120 @@
+package com.khoavdse170395.orchestratorservice.service.impl;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.khoavdse170395.orchestratorservice.dto.BulkAttemptItem;
+import com.khoavdse170395.orchestratorservice.dto.SubmitAttemptRequest;
+import com.khoavdse170395.orchestratorservice.model.SagaCommand;
+import com.khoavdse170395.orchestratorservice.model.SagaMessage;
+import com.khoavdse170395.orchestratorservice.service.AsyncAttemptServiceClient;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * AttemptServiceClient over the message transport. Commands go to attempt.commands; create is
+ * correlated by the saga's idempotency key, the other commands by a fresh id.
+ *
+ * <pre>
+ * CREATE_ATTEMPT   {assignmentId, userId, idempotencyKey} -> {attemptId}
+ * CREATE_ATTEMPTS  {attempts: [BulkAttemptItem]}          -> {attempts: [{idempotencyKey, attemptId}]}
+ * FIND_ATTEMPTS    {idempotencyKeys: [String]}            -> {attempts: [{idempotencyKey, attemptId}]}
+ * CANCEL_ATTEMPT   {attemptId}                            -> {}
+ * SUBMIT_ANSWERS   {attemptId, answers: [AnswerDto]}      -> {}
+ * AUTO_SCORE       {attemptId}                            -> {score}
+ * FINALIZE_ATTEMPT {attemptId, score}                     -> {}
+ * </pre>
+ */
+public class MessagingAttemptServiceClient implements AsyncAttemptServiceClient {
+
+    public static final String COMMAND_TOPIC = "attempt.commands";
+
+    private final RequestReplyChannel channel;
+    private final ObjectMapper objectMapper;
+
+    public MessagingAttemptServiceClient(RequestReplyChannel channel, ObjectMapper objectMapper) {
+        this.channel = channel;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public CompletableFuture<Long> createAttemptAsync(Long assignmentId, String userId, String idempotencyKey) {
+        return channel.request(COMMAND_TOPIC, SagaCommand.CREATE_ATTEMPT, idempotencyKey,
+                        Map.of("assignmentId", assignmentId, "userId", userId, "idempotencyKey", idempotencyKey))
+                .thenApply(reply -> ((Number) reply.getPayload().get("attemptId")).longValue());
+    }
+
+    @Override
+    public CompletableFuture<Void> submitAnswersAsync(Long attemptId, SubmitAttemptRequest request) {
+        return channel.request(COMMAND_TOPIC, SagaCommand.SUBMIT_ANSWERS, UUID.randomUUID().toString(),
+                        Map.of("attemptId", attemptId, "answers",
+                                objectMapper.convertValue(request.getAnswers(), new TypeReference<List<Map<String, Object>>>() {})))
+                .thenApply(reply -> null);
+    }
+
+    @Override
+    public CompletableFuture<Double> autoScoreAsync(Long attemptId) {
+        return channel.request(COMMAND_TOPIC, SagaCommand.AUTO_SCORE, UUID.randomUUID().toString(),
+                        Map.of("attemptId", attemptId))
+                .thenApply(reply -> ((Number) reply.getPayload().get("score")).doubleValue());
+    }
+
+    @Override
+    public CompletableFuture<Void> finalizeAttemptAsync(Long attemptId, Double score) {
+        return channel.request(COMMAND_TOPIC, SagaCommand.FINALIZE_ATTEMPT, UUID.randomUUID().toString(),
+                        Map.of("attemptId", attemptId, "score", score))
+                .thenApply(reply -> null);
+    }
+
+    @Override
+    public Long createAttempt(Long assignmentId, String userId, String idempotencyKey) {
+        return RequestReplyChannel.await(createAttemptAsync(assignmentId, userId, idempotencyKey));
+    }
+
+    @Override
+    public Map<String, Long> createAttempts(List<BulkAttemptItem> items) {
+        return RequestReplyChannel.await(channel.request(COMMAND_TOPIC, SagaCommand.CREATE_ATTEMPTS, UUID.randomUUID().toString(),
+                        Map.of("attempts", objectMapper.convertValue(items, new TypeReference<List<Map<String, Object>>>() {})))
+                .thenApply(MessagingAttemptServiceClient::attemptIds));
+    }
+
+    @Override
+    public Map<String, Long> findAttempts(List<String> idempotencyKeys) {
+        return RequestReplyChannel.await(channel.request(COMMAND_TOPIC, SagaCommand.FIND_ATTEMPTS, UUID.randomUUID().toString(),
+                        Map.of("idempotencyKeys", idempotencyKeys))
+                .thenApply(MessagingAttemptServiceClient::attemptIds));
+    }
+
+    @Override
+    public void cancelAttempt(Long attemptId) {
+        RequestReplyChannel.await(channel.request(COMMAND_TOPIC, SagaCommand.CANCEL_ATTEMPT, UUID.randomUUID().toString(),
+                Map.of("attemptId", attemptId)));
+    }
+
+    @Override
+    public void submitAnswers(Long attemptId, SubmitAttemptRequest request) {
+        RequestReplyChannel.await(submitAnswersAsync(attemptId, request));
+    }
+
+    @Override
+    public Double autoScore(Long attemptId) {
+        return RequestReplyChannel.await(autoScoreAsync(attemptId));
+    }
+
+    @Override
+    public void finalizeAttempt(Long attemptId, Double score) {
+        RequestReplyChannel.await(finalizeAttemptAsync(attemptId, score));
+    }
+
+    private static Map<String, Long> attemptIds(SagaMessage reply) {
+        Map<String, Long> attemptIds = new HashMap<>();
+        for (Object attempt : (List<?>) reply.getPayload().get("attempts")) {
+            Map<?, ?> fields = (Map<?, ?>) attempt;
+            attemptIds.put((String) fields.get("idempotencyKey"), ((Number) fields.get("attemptId")).longValue());
+        }
+        return attemptIds;
+    }
+}
@@ -0,0 +1,9 @@
+package com.khoavdse170395.orchestratorservice.service.impl;
+
+// The broker has nobody to hand the message to; unlike a timeout, the command was certainly not carried out
+public class NoSubscriberException extends RuntimeException {
+
+    public NoSubscriberException(String topic) {
+        super("No subscriber for topic " + topic);
+    }
+}
@@ -0,0 +1,293 @@
+package com.khoavdse170395.orchestratorservice.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Client-side load balancing over the replicas of one downstream service by power of two choices:
+ * two replicas are picked at random and the call goes to the one with fewer requests in flight.
+ * That avoids the herd behaviour of always picking the global minimum and still steers away from a
+ * replica that is stalled (GC pause, slow disk), since its outstanding count only grows.
+ *
+ * <p>Health is tracked passively from the calls themselves: after Ejection.consecutiveFailures
+ * failed or slow calls in a row a replica is ejected for ejectMillis, longer each time it is ejected
+ * again without a success in between. At most maxEjectedPercent of the replicas are ejected at once,
+ * and if every replica is ejected all of them are used anyway.</p>
+ *
+ * <p>With an affinity key (callFor) the same key goes to the same replica by rendezvous hashing, so
+ * per-key caches on the replica stay warm; when that replica is ejected or holds more than
+ * BOUNDED_LOAD times its share of the requests in flight, the key goes to its next replica.</p>
+ *
+ * <p>Publishes orchestrator.downstream.outstanding, orchestrator.downstream.calls,
+ * orchestrator.downstream.ejected and orchestrator.downstream.ejections per replica.</p>
+ */
+@Slf4j
+public class ReplicaBalancer<T> {
+
+    private static final double BOUNDED_LOAD = 1.25;
+    private static final int MAX_EJECTION_MULTIPLIER = 8;
+
+    private final String downstream;
+    private final List<Replica<T>> replicas;
+    private final Ejection ejection;
+
+    public ReplicaBalancer(String downstream, Map<String, T> clientsByUrl, MeterRegistry meterRegistry) {
+        this(downstream, clientsByUrl, meterRegistry, Ejection.DISABLED);
+    }
+
+    public ReplicaBalancer(String downstream, Map<String, T> clientsByUrl, MeterRegistry meterRegistry,
+                           Ejection ejection) {
+        if (clientsByUrl.isEmpty()) {
+            throw new IllegalArgumentException("No replica configured for " + downstream);
+        }
+        this.downstream = downstream;
+        this.ejection = ejection;
+        List<Replica<T>> replicas = new ArrayList<>();
+        clientsByUrl.forEach((url, client) -> {
+            Replica<T> replica = new Replica<>(url, client,
+                    Counter.builder("orchestrator.downstream.calls")
+                            .tag("downstream", downstream)
+                            .tag("replica", url)
+                            .register(meterRegistry),
+                    Counter.builder("orchestrator.downstream.ejections")
+                            .description("Times the replica was ejected for failed or slow calls")
+                            .tag("downstream", downstream)
+                            .tag("replica", url)
+                            .register(meterRegistry));
+            Gauge.builder("orchestrator.downstream.outstanding", replica.outstanding, AtomicInteger::get)
+                    .description("Requests in flight to the replica")
+                    .tag("downstream", downstream)
+                    .tag("replica", url)
+                    .register(meterRegistry);
+            Gauge.builder("orchestrator.downstream.ejected", replica, r -> r.isEjected(System.nanoTime()) ? 1 : 0)
+                    .description("1 while the replica is ejected")
+                    .tag("downstream", downstream)
+                    .tag("replica", url)
+                    .register(meterRegistry);
+            replicas.add(replica);
+        });
+        this.replicas = Collections.unmodifiableList(replicas);
+    }
+
+    public Replica<T> choose() {
+        return choose(null);
+    }
+
+    // Any replica but the excluded one, if there is another; used to send a hedge elsewhere
+    public Replica<T> choose(Replica<T> exclude) {
+        List<Replica<T>> candidates = available(exclude);
+        int size = candidates.size();
+        if (size == 1) {
+            return candidates.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        Replica<T> a = candidates.get(first);
+        Replica<T> b = candidates.get(second);
+        return b.outstanding.get() < a.outstanding.get() ? b : a;
+    }
+
+    // The replica the key sticks to, unless it is ejected or overloaded; no key = power of two choices
+    public Replica<T> chooseFor(Object affinityKey) {
+        if (affinityKey == null) {
+            return choose();
+        }
+        List<Replica<T>> candidates = available(null);
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        int inFlight = 0;
+        for (Replica<T> replica : candidates) {
+            inFlight += replica.outstanding.get();
+        }
+        long maxLoad = (long) Math.ceil(BOUNDED_LOAD * (inFlight + 1) / candidates.size());
+        long keyHash = affinityKey.hashCode();
+        Replica<T> best = null;
+        long bestScore = 0;
+        for (Replica<T> replica : candidates) {
+            long score = mix(keyHash * 31 + replica.urlHash);
+            if (replica.outstanding.get() + 1 <= maxLoad && (best == null || Long.compareUnsigned(score, bestScore) > 0)) {
+                best = replica;
+                bestScore = score;
+            }
+        }
+        return best != null ? best : choose();
+    }
+
+    // Runs the call against the replica, counting it as outstanding while it runs
+    public <R> R call(Replica<T> replica, Function<T, R> call) {
+        replica.outstanding.incrementAndGet();
+        replica.calls.increment();
+        long start = System.nanoTime();
+        boolean healthy = false;
+        try {
+            R result = call.apply(replica.client);
+            healthy = true;
+            return result;
+        } catch (RuntimeException e) {
+            // A 4xx is the request's fault, not the replica's
+            healthy = !isReplicaFault(e);
+            throw e;
+        } finally {
+            replica.outstanding.decrementAndGet();
+            long end = System.nanoTime();
+            record(replica, healthy && end - start <= ejection.slowCallNanos, end);
+        }
+    }
+
+    public <R> R call(Function<T, R> call) {
+        return call(choose(), call);
+    }
+
+    public <R> R callFor(Object affinityKey, Function<T, R> call) {
+        return call(chooseFor(affinityKey), call);
+    }
+
+    public List<Replica<T>> replicas() {
+        return replicas;
+    }
+
+    private List<Replica<T>> available(Replica<T> exclude) {
+        long now = System.nanoTime();
+        List<Replica<T>> available = new ArrayList<>(replicas.size());
+        for (Replica<T> replica : replicas) {
+            if (replica != exclude && !replica.isEjected(now)) {
+                available.add(replica);
+            }
+        }
+        if (available.isEmpty()) {
+            // Better a replica that may be down than none at all
+            for (Replica<T> replica : replicas) {
+                if (replica != exclude) {
+                    available.add(replica);
+                }
+            }
+        }
+        return available.isEmpty() ? replicas : available;
+    }
+
+    private void record(Replica<T> replica, boolean success, long now) {
+        if (ejection.consecutiveFailures <= 0) {
+            return;
+        }
+        if (success) {
+            replica.failures.set(0);
+            replica.ejections.set(0);
+            return;
+        }
+        if (replica.failures.incrementAndGet() < ejection.consecutiveFailures || replica.isEjected(now)) {
+            return;
+        }
+        synchronized (this) {
+            long ejected = replicas.stream().filter(r -> r.isEjected(now)).count();
+            if ((ejected + 1) * 100 > (long) replicas.size() * ejection.maxEjectedPercent || replica.isEjected(now)) {
+                return;
+            }
+            int times = Math.min(replica.ejections.incrementAndGet(), MAX_EJECTION_MULTIPLIER);
+            replica.ejectedUntil.set(now + ejection.ejectNanos * times);
+            replica.failures.set(0);
+            replica.ejectionCount.increment();
+            log.warn("Ejecting {} replica {} for {}ms after {} failed or slow calls", downstream, replica,
+                    ejection.ejectNanos * times / 1_000_000, ejection.consecutiveFailures);
+        }
+    }
+
+    // I/O errors and timeouts, and 5xx answers other than a 504 for a deadline that had passed
+    private static boolean isReplicaFault(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            if (t instanceof ResourceAccessException
+                    || (t instanceof HttpServerErrorException && !(t instanceof HttpServerErrorException.GatewayTimeout))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // murmur3 finalizer, so that neighbouring keys do not all rank the replicas alike
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * When to take a replica out of rotation. consecutiveFailures 0 turns passive health tracking off;
+     * a call slower than slowCallMillis counts as failed even if it succeeded.
+     */
+    public static final class Ejection {
+
+        public static final Ejection DISABLED = new Ejection(0, Long.MAX_VALUE / 1_000_000, 0, 0);
+
+        private final int consecutiveFailures;
+        private final long slowCallNanos;
+        private final long ejectNanos;
+        private final int maxEjectedPercent;
+
+        public Ejection(int consecutiveFailures, long slowCallMillis, long ejectMillis, int maxEjectedPercent) {
+            this.consecutiveFailures = consecutiveFailures;
+            this.slowCallNanos = slowCallMillis * 1_000_000;
+            this.ejectNanos = ejectMillis * 1_000_000;
+            this.maxEjectedPercent = maxEjectedPercent;
+        }
+    }
+
+    public static final class Replica<T> {
+
+        private final String url;
+        private final long urlHash;
+        private final T client;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final Counter calls;
+        private final Counter ejectionCount;
+        private final AtomicInteger failures = new AtomicInteger();
+        // Ejections since the last success; each one lasts longer
+        private final AtomicInteger ejections = new AtomicInteger();
+        private final AtomicLong ejectedUntil;
+
+        private Replica(String url, T client, Counter calls, Counter ejectionCount) {
+            this.url = url;
+            this.urlHash = mix(url.hashCode());
+            this.client = client;
+            this.calls = calls;
+            this.ejectionCount = ejectionCount;
+            this.ejectedUntil = new AtomicLong(System.nanoTime());
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public int getOutstanding() {
+            return outstanding.get();
+        }
+
+        public boolean isEjected(long now) {
+            return now - ejectedUntil.get() < 0;
+        }
+
+        @Override
+        public String toString() {
+            return url;
+        }
+    }
+}
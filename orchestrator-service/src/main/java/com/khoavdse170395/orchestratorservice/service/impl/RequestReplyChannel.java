@@ -0,0 +1,138 @@
+package com.khoavdse170395.orchestratorservice.service.impl;
+
+import com.khoavdse170395.orchestratorservice.model.SagaCommand;
+import com.khoavdse170395.orchestratorservice.model.SagaMessage;
+import com.khoavdse170395.orchestratorservice.service.MessageBroker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request/reply over a MessageBroker. A command goes to the downstream's command topic with this
+ * orchestrator's reply topic in replyTo, and the returned future completes when the reply with the
+ * same command and correlationId arrives, or fails after replyTimeout. Waiting costs a map entry
+ * and a timer entry, not a thread.
+ *
+ * Sending a command whose correlationId is already awaiting a reply (a retry after a step timeout)
+ * sends it again but shares the first future: the commands are idempotent on that key, so either
+ * reply answers both.
+ */
+@Slf4j
+public class RequestReplyChannel implements AutoCloseable {
+
+    private final MessageBroker broker;
+    private final String replyTopic;
+    private final Duration replyTimeout;
+    private final Map<String, CompletableFuture<SagaMessage>> pending = new ConcurrentHashMap<>();
+    private final ScheduledThreadPoolExecutor timer;
+    private final Counter replied;
+    private final Counter failed;
+    private final Counter timedOut;
+    private final Counter unmatched;
+
+    public RequestReplyChannel(MessageBroker broker, String replyTopic, Duration replyTimeout, MeterRegistry meterRegistry) {
+        this.broker = broker;
+        this.replyTopic = replyTopic;
+        this.replyTimeout = replyTimeout;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("reply-timer-");
+        threadFactory.setDaemon(true);
+        this.timer = new ScheduledThreadPoolExecutor(1, threadFactory);
+        this.timer.setRemoveOnCancelPolicy(true);
+
+        this.replied = counter(meterRegistry, "ok");
+        this.failed = counter(meterRegistry, "error");
+        this.timedOut = counter(meterRegistry, "timeout");
+        // Replies that came after their timeout, or twice for a resent command
+        this.unmatched = counter(meterRegistry, "unmatched");
+        Gauge.builder("orchestrator.messaging.pending", pending, Map::size)
+                .description("Commands waiting for a reply")
+                .register(meterRegistry);
+
+        broker.subscribe(replyTopic, this::onReply);
+    }
+
+    public String getReplyTopic() {
+        return replyTopic;
+    }
+
+    public CompletableFuture<SagaMessage> request(String topic, SagaCommand command, String correlationId,
+                                                  Map<String, Object> payload) {
+        String key = command + ":" + correlationId;
+        CompletableFuture<SagaMessage> reply = new CompletableFuture<>();
+        CompletableFuture<SagaMessage> existing = pending.putIfAbsent(key, reply);
+        if (existing != null) {
+            reply = existing;
+        } else {
+            CompletableFuture<SagaMessage> awaiting = reply;
+            ScheduledFuture<?> timeout = timer.schedule(() -> {
+                if (pending.remove(key, awaiting)) {
+                    timedOut.increment();
+                    awaiting.completeExceptionally(new MessageTimeoutException(command, correlationId, replyTimeout));
+                }
+            }, replyTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            awaiting.whenComplete((message, error) -> timeout.cancel(false));
+        }
+
+        try {
+            broker.publish(topic, SagaMessage.command(command, correlationId, replyTopic, payload));
+        } catch (RuntimeException e) {
+            if (existing == null && pending.remove(key, reply)) {
+                reply.completeExceptionally(e);
+            }
+        }
+        return reply;
+    }
+
+    /**
+     * For the blocking client methods: waits for the future and rethrows what it failed with.
+     */
+    public static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+
+    private void onReply(SagaMessage message) {
+        CompletableFuture<SagaMessage> reply = pending.remove(message.getCommand() + ":" + message.getCorrelationId());
+        if (reply == null) {
+            unmatched.increment();
+            log.debug("Dropping reply to {} {}, nobody is waiting for it", message.getCommand(), message.getCorrelationId());
+            return;
+        }
+        if (message.isSuccess()) {
+            replied.increment();
+            reply.complete(message);
+        } else {
+            failed.increment();
+            reply.completeExceptionally(new MessageReplyException(message.getCommand(), message.getStatus(), message.getError()));
+        }
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("orchestrator.messaging.replies")
+                .description("Commands sent over the message transport, by outcome")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -1,15 +1,58 @@
 package com.khoavdse170395.orchestratorservice.service.impl;
 
+import com.khoavdse170395.orchestratorservice.dto.BulkAttemptItem;
+import com.khoavdse170395.orchestratorservice.dto.BulkReservationResult;
+import com.khoavdse170395.orchestratorservice.dto.BulkStartAttemptRequest;
+import com.khoavdse170395.orchestratorservice.dto.BulkStartAttemptResponse;
+import com.khoavdse170395.orchestratorservice.dto.SagaStatusResponse;
 import com.khoavdse170395.orchestratorservice.dto.StartAttemptRequest;
 import com.khoavdse170395.orchestratorservice.dto.StartAttemptResponse;
 import com.khoavdse170395.orchestratorservice.dto.SubmitAttemptRequest;
+import com.khoavdse170395.orchestratorservice.model.SagaInstance;
+import com.khoavdse170395.orchestratorservice.model.SagaLogEvent;
+import com.khoavdse170395.orchestratorservice.model.SagaLogRecord;
+import com.khoavdse170395.orchestratorservice.model.SagaStatus;
+import com.khoavdse170395.orchestratorservice.model.SagaStep;
 import com.khoavdse170395.orchestratorservice.service.AssignmentServiceClient;
+import com.khoavdse170395.orchestratorservice.service.AsyncAssignmentServiceClient;
+import com.khoavdse170395.orchestratorservice.service.AsyncAttemptServiceClient;
 import com.khoavdse170395.orchestratorservice.service.AttemptServiceClient;
+import com.khoavdse170395.orchestratorservice.service.SagaInstanceStore;
+import com.khoavdse170395.orchestratorservice.service.SagaLog;
 import com.khoavdse170395.orchestratorservice.service.SagaOrchestrationService;
+import com.khoavdse170395.orchestratorservice.service.saga.Deadline;
+import com.khoavdse170395.orchestratorservice.service.saga.DeadlineExceededException;
+import com.khoavdse170395.orchestratorservice.service.saga.RetryPolicy;
+import com.khoavdse170395.orchestratorservice.service.saga.SagaDefinition;
+import com.khoavdse170395.orchestratorservice.service.saga.SagaEngine;
+import com.khoavdse170395.orchestratorservice.service.saga.SagaListener;
+import com.khoavdse170395.orchestratorservice.service.saga.SagaStepException;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Service
 @Slf4j
@@ -17,115 +60,723 @@ public class SagaOrchestrationServiceImpl implements SagaOrchestrationService {
 
     private final AssignmentServiceClient assignmentServiceClient;
     private final AttemptServiceClient attemptServiceClient;
-    
+    private final SagaInstanceStore sagaInstanceStore;
+    private final SagaEngine sagaEngine;
+    private final SagaLog sagaLog;
+    private final SagaDefinition<SagaInstance> startAttemptSaga;
+    private final SagaDefinition<SagaInstance> resumeStartAttemptSaga;
+    private final SagaDefinition<SubmitContext> submitAttemptSaga;
+    private final SagaDefinition<BulkStartContext> bulkStartAttemptSaga;
+    // Deadline of an async saga, counted from when it leaves the executor's queue; null = none
+    private final Duration asyncBudget;
+
     // Hard-coded demo user as per requirements
     private static final String DEMO_USER_ID = "demo-user";
 
     public SagaOrchestrationServiceImpl(AssignmentServiceClient assignmentServiceClient,
-                                      AttemptServiceClient attemptServiceClient) {
+                                      AttemptServiceClient attemptServiceClient,
+                                      SagaInstanceStore sagaInstanceStore,
+                                      Executor sagaExecutor,
+                                      SagaLog sagaLog) {
+        this(assignmentServiceClient, attemptServiceClient, sagaInstanceStore, new SagaEngine(sagaExecutor), sagaLog,
+                true, RetryPolicy.NONE, 0);
+    }
+
+    public SagaOrchestrationServiceImpl(AssignmentServiceClient assignmentServiceClient,
+                                      AttemptServiceClient attemptServiceClient,
+                                      SagaInstanceStore sagaInstanceStore,
+                                      SagaEngine sagaEngine,
+                                      SagaLog sagaLog,
+                                      boolean parallelSteps,
+                                      RetryPolicy retryPolicy,
+                                      long stepTimeoutMs) {
+        this(assignmentServiceClient, attemptServiceClient, sagaInstanceStore, sagaEngine, sagaLog, parallelSteps,
+                retryPolicy, Map.of(), stepTimeoutMs, 0);
+    }
+
+    @Autowired
+    public SagaOrchestrationServiceImpl(AssignmentServiceClient assignmentServiceClient,
+                                      AttemptServiceClient attemptServiceClient,
+                                      SagaInstanceStore sagaInstanceStore,
+                                      SagaEngine sagaEngine,
+                                      SagaLog sagaLog,
+                                      @Value("${orchestrator.saga.parallelSteps:true}") boolean parallelSteps,
+                                      @Qualifier("sagaRetryPolicy") RetryPolicy defaultRetryPolicy,
+                                      @Qualifier("sagaStepRetryPolicies") Map<SagaStep, RetryPolicy> stepRetryPolicies,
+                                      @Value("${orchestrator.saga.stepTimeoutMs:0}") long stepTimeoutMs,
+                                      @Value("${orchestrator.saga.asyncDeadlineMs:0}") long asyncDeadlineMs) {
+        // Steps without an override of their own use the default policy
+        Function<SagaStep, RetryPolicy> retryPolicy = step -> stepRetryPolicies.getOrDefault(step, defaultRetryPolicy);
         this.assignmentServiceClient = assignmentServiceClient;
         this.attemptServiceClient = attemptServiceClient;
+        this.sagaInstanceStore = sagaInstanceStore;
+        this.sagaEngine = sagaEngine;
+        this.sagaLog = sagaLog;
+        Duration stepTimeout = stepTimeoutMs > 0 ? Duration.ofMillis(stepTimeoutMs) : null;
+        this.startAttemptSaga = startAttemptDefinition(false, parallelSteps, retryPolicy, stepTimeout);
+        this.resumeStartAttemptSaga = startAttemptDefinition(true, parallelSteps, retryPolicy, stepTimeout);
+        this.submitAttemptSaga = submitAttemptDefinition(retryPolicy, stepTimeout);
+        this.bulkStartAttemptSaga = bulkStartAttemptDefinition(retryPolicy, stepTimeout);
+        this.asyncBudget = asyncDeadlineMs > 0 ? Duration.ofMillis(asyncDeadlineMs) : null;
     }
 
     @Override
     public StartAttemptResponse startAttempt(StartAttemptRequest request) {
-        log.info("Starting SAGA for assignmentId: {}", request.getAssignmentId());
-        
-        Long assignmentId = request.getAssignmentId();
-        String idempotencyKey = UUID.randomUUID().toString();
-        Long attemptId = null;
-        
+        SagaInstance saga = newSaga(request);
+        try {
+            // The caller waits for the outcome anyway, so the saga runs on its thread rather than the executor
+            sagaEngine.run(startAttemptSaga, saga, Deadline.current()).join();
+        } catch (CompletionException e) {
+            throw failed("SAGA failed: ", e);
+        }
+        return StartAttemptResponse.builder()
+                .sagaId(saga.getSagaId())
+                .attemptId(saga.getAttemptId())
+                .status("PENDING")
+                .build();
+    }
+
+    @Override
+    public StartAttemptResponse startAttemptAsync(StartAttemptRequest request) {
+        SagaInstance saga = newSaga(request);
+        try {
+            // The outcome is reported through the saga instance and GET /saga/{id}. Nobody waits for it, so the
+            // request's deadline does not apply; the async budget only starts once the saga leaves the queue
+            sagaEngine.startWithBudget(startAttemptSaga, saga, asyncBudget);
+        } catch (RejectedExecutionException e) {
+            throw reject(saga);
+        }
+        log.info("Queued SAGA {} for assignmentId: {}", saga.getSagaId(), request.getAssignmentId());
+        return StartAttemptResponse.builder()
+                .sagaId(saga.getSagaId())
+                .status(saga.getStatus().name())
+                .build();
+    }
+
+    @Override
+    public BulkStartAttemptResponse startAttempts(BulkStartAttemptRequest request) {
+        List<SagaInstance> sagas = request.getItems().stream()
+                .map(item -> new SagaInstance(UUID.randomUUID().toString(), item.getAssignmentId(),
+                        item.getUserId(), UUID.randomUUID().toString()))
+                .toList();
+        sagaLog.appendAll(sagas.stream().map(SagaLogRecord::started).toList());
+        sagas.forEach(sagaInstanceStore::save);
+        log.info("Starting bulk SAGA for {} students", sagas.size());
+
         try {
-            // Step 1: Check eligibility
-            log.info("Step 1: Checking eligibility for assignmentId: {}", assignmentId);
-            boolean eligible = assignmentServiceClient.checkEligibility(assignmentId, DEMO_USER_ID);
-            if (!eligible) {
-                throw new RuntimeException("User not eligible for assignment: " + assignmentId);
+            sagaEngine.run(bulkStartAttemptSaga, new BulkStartContext(sagas), Deadline.current()).join();
+        } catch (CompletionException e) {
+            // Every saga of the batch has been compensated and carries the error
+            log.error("Bulk SAGA failed: {}", e.getCause().getMessage());
+        }
+
+        List<SagaStatusResponse> results = sagas.stream().map(SagaInstance::toResponse).toList();
+        int completed = (int) results.stream().filter(r -> SagaStatus.COMPLETED.name().equals(r.getStatus())).count();
+        return BulkStartAttemptResponse.builder()
+                .completed(completed)
+                .failed(results.size() - completed)
+                .sagas(results)
+                .build();
+    }
+
+    @Override
+    public Optional<SagaInstance> findSaga(String sagaId) {
+        return sagaInstanceStore.find(sagaId);
+    }
+
+    @Override
+    public void recoverStartAttempt(SagaInstance saga, boolean compensate) {
+        sagaInstanceStore.save(saga);
+        SagaStep step = saga.getCurrentStep();
+        log.warn("Recovering SAGA {} for assignmentId: {} stopped at step {} (attemptId: {}), {}", saga.getSagaId(),
+                saga.getAssignmentId(), step, saga.getAttemptId(), compensate ? "compensating" : "driving forward");
+
+        if (compensate || step == SagaStep.COMPENSATION) {
+            // With parallel steps the last step on record can be RESERVE_ATTEMPT while the create is still unanswered,
+            // and a saga whose earlier compensation failed is at COMPENSATION; the lookup creates nothing either way
+            boolean createSent = step != null && step != SagaStep.CHECK_ELIGIBILITY;
+            saga.startStep(SagaStep.COMPENSATION);
+            appendQuietly(SagaLogRecord.step(saga, SagaStep.COMPENSATION));
+            compensateAttempt(saga, createSent ? createdAttemptId(saga) : saga.getAttemptId());
+            releaseReservation(saga);
+            finishCompensation(saga, "Recovered after restart");
+            return;
+        }
+
+        // Nothing irreversible happens before CREATE_ATTEMPT. Create and reserve are idempotent on the saga's
+        // key, so they are replayed as is; eligibility is not re-checked because our own reservation may
+        // already count against it.
+        SagaDefinition<SagaInstance> definition = step == null || step == SagaStep.CHECK_ELIGIBILITY
+                ? startAttemptSaga : resumeStartAttemptSaga;
+        while (true) {
+            try {
+                sagaEngine.start(definition, saga);
+                return;
+            } catch (RejectedExecutionException e) {
+                // At startup a full executor should slow recovery down, not drop sagas
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
             }
-            log.info("Step 1 completed: User is eligible");
-            
-            // Step 2: Create attempt
-            log.info("Step 2: Creating attempt for assignmentId: {}", assignmentId);
-            attemptId = attemptServiceClient.createAttempt(assignmentId, DEMO_USER_ID, idempotencyKey);
-            log.info("Step 2 completed: Created attempt with ID: {}", attemptId);
-            
-            // Step 3: Reserve attempt
-            log.info("Step 3: Reserving attempt for assignmentId: {}", assignmentId);
-            assignmentServiceClient.reserveAttempt(assignmentId, DEMO_USER_ID, idempotencyKey);
-            log.info("Step 3 completed: Reserved attempt");
-            
-            log.info("SAGA completed successfully for assignmentId: {}, attemptId: {}", assignmentId, attemptId);
-            return StartAttemptResponse.builder()
-                    .attemptId(attemptId)
-                    .status("PENDING")
-                    .build();
-                    
-        } catch (Exception e) {
-            log.error("SAGA failed for assignmentId: {}, attemptId: {}", assignmentId, attemptId, e);
-            
-            // Compensation logic
-            performCompensation(assignmentId, attemptId, idempotencyKey);
-            
-            throw new RuntimeException("SAGA failed: " + e.getMessage(), e);
         }
     }
 
     @Override
     public void submitAttempt(SubmitAttemptRequest request) {
         log.info("Submitting attempt for attemptId: {}", request.getAttemptId());
-        
-        Long attemptId = request.getAttemptId();
-        
         try {
-            // Step 1: Submit answers
-            log.info("Step 1: Submitting answers for attemptId: {}", attemptId);
-            attemptServiceClient.submitAnswers(attemptId, request);
-            log.info("Step 1 completed: Submitted answers");
-            
-            // Step 2: Auto-score
-            log.info("Step 2: Auto-scoring attemptId: {}", attemptId);
-            Double score = attemptServiceClient.autoScore(attemptId);
-            log.info("Step 2 completed: Auto-scored with score: {}", score);
-            
-            // Step 3: Finalize attempt
-            log.info("Step 3: Finalizing attemptId: {} with score: {}", attemptId, score);
-            attemptServiceClient.finalizeAttempt(attemptId, score);
-            log.info("Step 3 completed: Finalized attempt");
-            
-            log.info("Submit attempt SAGA completed successfully for attemptId: {}", attemptId);
-            
+            sagaEngine.run(submitAttemptSaga, new SubmitContext(request), Deadline.current()).join();
+        } catch (CompletionException e) {
+            throw failed("Submit attempt SAGA failed: ", e);
+        }
+    }
+
+    /**
+     * Check eligibility, then create the attempt and reserve it. Create and reserve only need the
+     * idempotency key, which exists up front, so both depend on the eligibility check alone and run
+     * side by side; with parallelSteps=false reserve waits for create. The resumed variant used by
+     * recovery leaves out the eligibility check.
+     */
+    private SagaDefinition<SagaInstance> startAttemptDefinition(boolean resume, boolean parallelSteps,
+                                                                Function<SagaStep, RetryPolicy> retryPolicy, Duration stepTimeout) {
+        SagaDefinition.Builder<SagaInstance> saga = SagaDefinition.builder(resume ? "resume-start-attempt" : "start-attempt");
+        if (!resume) {
+            saga.step(SagaStep.CHECK_ELIGIBILITY)
+                    .asyncAction(instance -> {
+                        log.info("Step 1: Checking eligibility for assignmentId: {}", instance.getAssignmentId());
+                        return checkEligibility(instance).thenAccept(eligible -> {
+                            if (!eligible) {
+                                throw new RuntimeException("User not eligible for assignment: " + instance.getAssignmentId());
+                            }
+                            log.info("Step 1 completed: User is eligible");
+                        });
+                    })
+                    .retry(retryPolicy.apply(SagaStep.CHECK_ELIGIBILITY))
+                    .timeout(stepTimeout)
+                    .add();
+        }
+        SagaStep[] createDependsOn = resume ? new SagaStep[0] : new SagaStep[]{SagaStep.CHECK_ELIGIBILITY};
+        SagaStep[] reserveDependsOn = parallelSteps ? createDependsOn : new SagaStep[]{SagaStep.CREATE_ATTEMPT};
+        return saga
+                .step(SagaStep.CREATE_ATTEMPT)
+                .asyncAction(instance -> {
+                    log.info("Step 2: Creating attempt for assignmentId: {}", instance.getAssignmentId());
+                    // Recorded in the listener's stepCompleted, which a reply after a timeout never reaches
+                    instance.createSent();
+                    return createAttempt(instance).whenComplete((attemptId, error) -> {
+                        if (error != null && isRefused(error)) {
+                            instance.createRefused();
+                        }
+                    });
+                })
+                .compensation(instance -> compensateAttempt(instance, instance.isCreateInDoubt()
+                        ? createdAttemptId(instance) : instance.getAttemptId()))
+                .retry(retryPolicy.apply(SagaStep.CREATE_ATTEMPT))
+                .timeout(stepTimeout)
+                .dependsOn(createDependsOn)
+                .add()
+                .step(SagaStep.RESERVE_ATTEMPT)
+                .asyncAction(instance -> {
+                    log.info("Step 3: Reserving attempt for assignmentId: {}", instance.getAssignmentId());
+                    return reserveAttempt(instance).thenRun(() -> log.info("Step 3 completed: Reserved attempt"));
+                })
+                .compensation(instance -> releaseReservation(instance))
+                .retry(retryPolicy.apply(SagaStep.RESERVE_ATTEMPT))
+                .timeout(stepTimeout)
+                .dependsOn(reserveDependsOn)
+                .add()
+                .listener(new StartAttemptListener())
+                .build();
+    }
+
+    /**
+     * Start-attempt for a whole class with two downstream calls: a bulk reserve, which also checks
+     * eligibility, then a bulk create for the students that got a reservation. Each student keeps
+     * its own saga and saga log records, so GET /saga/{id} and recovery work per student; a student
+     * that is rejected or gets no attempt is compensated on its own while the rest go on.
+     */
+    private SagaDefinition<BulkStartContext> bulkStartAttemptDefinition(Function<SagaStep, RetryPolicy> retryPolicy,
+                                                                        Duration stepTimeout) {
+        return SagaDefinition.<BulkStartContext>builder("bulk-start-attempt")
+                .step(SagaStep.RESERVE_ATTEMPT)
+                .action(context -> {
+                    List<SagaInstance> sagas = context.unfinished();
+                    log.info("Step 1: Reserving attempts for {} students", sagas.size());
+                    List<BulkReservationResult> results = assignmentServiceClient.reserveAttempts(
+                            sagas.stream().map(SagaOrchestrationServiceImpl::toItem).toList());
+                    Map<SagaInstance, String> rejected = new LinkedHashMap<>();
+                    for (int i = 0; i < sagas.size(); i++) {
+                        if (!results.get(i).isReserved()) {
+                            rejected.put(sagas.get(i), results.get(i).getReason());
+                        }
+                    }
+                    // Nothing was reserved for these, so there is nothing to compensate either
+                    finishAll(new ArrayList<>(rejected.keySet()), SagaLogEvent.COMPENSATED,
+                            saga -> saga.compensated("User not eligible for assignment: " + rejected.get(saga)));
+                    log.info("Step 1 completed: {} reserved, {} rejected", sagas.size() - rejected.size(), rejected.size());
+                })
+                .compensation(context -> releaseReservations(context.unfinished()))
+                .retry(retryPolicy.apply(SagaStep.RESERVE_ATTEMPT))
+                .timeout(stepTimeout)
+                .add()
+                .step(SagaStep.CREATE_ATTEMPT)
+                .asyncAction(context -> {
+                    List<SagaInstance> sagas = context.unfinished();
+                    if (sagas.isEmpty()) {
+                        return CompletableFuture.completedFuture(Map.of());
+                    }
+                    log.info("Step 2: Creating attempts for {} students", sagas.size());
+                    // Recorded in the listener's stepCompleted, which a reply after a timeout never reaches
+                    sagas.forEach(SagaInstance::createSent);
+                    try {
+                        return CompletableFuture.completedFuture(attemptServiceClient.createAttempts(
+                                sagas.stream().map(SagaOrchestrationServiceImpl::toItem).toList()));
+                    } catch (RuntimeException e) {
+                        if (isRefused(e)) {
+                            sagas.forEach(SagaInstance::createRefused);
+                        }
+                        throw e;
+                    }
+                })
+                .compensation(context -> cancelAttempts(context.unfinished()))
+                .retry(retryPolicy.apply(SagaStep.CREATE_ATTEMPT))
+                .timeout(stepTimeout)
+                .dependsOn(SagaStep.RESERVE_ATTEMPT)
+                .add()
+                .listener(new BulkStartAttemptListener())
+                .build();
+    }
+
+    /**
+     * Submit answers, auto-score, finalize. There is nothing to compensate: answers are upserts and
+     * scoring and finalizing can be repeated, so a failed submit is retried rather than rolled back,
+     * and cancelling the attempt would throw the student's answers away.
+     */
+    private SagaDefinition<SubmitContext> submitAttemptDefinition(Function<SagaStep, RetryPolicy> retryPolicy,
+                                                                  Duration stepTimeout) {
+        return SagaDefinition.<SubmitContext>builder("submit-attempt")
+                .step(SagaStep.SUBMIT_ANSWERS)
+                .asyncAction(context -> {
+                    log.info("Step 1: Submitting answers for attemptId: {}", context.attemptId());
+                    return submitAnswers(context).thenRun(() -> log.info("Step 1 completed: Submitted answers"));
+                })
+                .retry(retryPolicy.apply(SagaStep.SUBMIT_ANSWERS))
+                .timeout(stepTimeout)
+                .add()
+                .step(SagaStep.AUTO_SCORE)
+                .asyncAction(context -> {
+                    log.info("Step 2: Auto-scoring attemptId: {}", context.attemptId());
+                    return autoScore(context).thenAccept(score -> {
+                        context.score = score;
+                        log.info("Step 2 completed: Auto-scored with score: {}", score);
+                    });
+                })
+                .retry(retryPolicy.apply(SagaStep.AUTO_SCORE))
+                .timeout(stepTimeout)
+                .dependsOn(SagaStep.SUBMIT_ANSWERS)
+                .add()
+                .step(SagaStep.FINALIZE_ATTEMPT)
+                .asyncAction(context -> {
+                    log.info("Step 3: Finalizing attemptId: {} with score: {}", context.attemptId(), context.score);
+                    return finalizeAttempt(context).thenRun(() -> log.info("Step 3 completed: Finalized attempt"));
+                })
+                .retry(retryPolicy.apply(SagaStep.FINALIZE_ATTEMPT))
+                .timeout(stepTimeout)
+                .dependsOn(SagaStep.AUTO_SCORE)
+                .add()
+                .listener(new SagaListener<>() {
+                    @Override
+                    public void completed(SubmitContext context) {
+                        log.info("Submit attempt SAGA completed successfully for attemptId: {}", context.attemptId());
+                    }
+
+                    @Override
+                    public void compensated(SubmitContext context, SagaStepException failure) {
+                        log.error("Submit attempt SAGA failed at step {} for attemptId: {}",
+                                failure.getFailedStep(), context.attemptId(), failure.getCause());
+                    }
+                })
+                .build();
+    }
+
+    // Saga log and saga instance bookkeeping around the start-attempt steps
+    private class StartAttemptListener implements SagaListener<SagaInstance> {
+
+        // The step is on record before its remote call goes out; if that write fails the call is not made
+        @Override
+        public void stepStarting(SagaInstance saga, SagaStep step, int attempt) {
+            saga.startStep(step);
+            sagaLog.append(SagaLogRecord.step(saga, step));
+        }
+
+        @Override
+        public void stepCompleted(SagaInstance saga, SagaStep step, Object result) {
+            if (step == SagaStep.CREATE_ATTEMPT) {
+                Long attemptId = (Long) result;
+                saga.attemptCreated(attemptId);
+                sagaLog.append(SagaLogRecord.attemptCreated(saga, attemptId));
+                log.info("Step 2 completed: Created attempt with ID: {}", attemptId);
+            }
+        }
+
+        @Override
+        public void completed(SagaInstance saga) {
+            appendQuietly(SagaLogRecord.finished(saga, SagaLogEvent.COMPLETED));
+            saga.complete();
+            log.info("SAGA completed successfully for assignmentId: {}, attemptId: {}",
+                    saga.getAssignmentId(), saga.getAttemptId());
+        }
+
+        @Override
+        public void compensating(SagaInstance saga, SagaStepException failure) {
+            log.error("SAGA failed at step {} for assignmentId: {}, attemptId: {}",
+                    failure.getFailedStep(), saga.getAssignmentId(), saga.getAttemptId(), failure.getCause());
+            log.info("Performing compensation for assignmentId: {}, attemptId: {}, idempotencyKey: {}",
+                    saga.getAssignmentId(), saga.getAttemptId(), saga.getIdempotencyKey());
+            saga.startStep(SagaStep.COMPENSATION);
+            appendQuietly(SagaLogRecord.step(saga, SagaStep.COMPENSATION));
+        }
+
+        @Override
+        public void compensated(SagaInstance saga, SagaStepException failure) {
+            finishCompensation(saga, failure.getMessage());
+        }
+    }
+
+    // Same bookkeeping as StartAttemptListener, for the students of a bulk saga that are still open
+    private class BulkStartAttemptListener implements SagaListener<BulkStartContext> {
+
+        @Override
+        public void stepStarting(BulkStartContext context, SagaStep step, int attempt) {
+            List<SagaInstance> sagas = context.unfinished();
+            sagas.forEach(saga -> saga.startStep(step));
+            sagaLog.appendAll(sagas.stream().map(saga -> SagaLogRecord.step(saga, step)).toList());
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void stepCompleted(BulkStartContext context, SagaStep step, Object result) {
+            if (step != SagaStep.CREATE_ATTEMPT) {
+                return;
+            }
+            Map<String, Long> attemptIds = (Map<String, Long>) result;
+            List<SagaLogRecord> records = new ArrayList<>();
+            List<SagaInstance> missing = new ArrayList<>();
+            for (SagaInstance saga : context.unfinished()) {
+                Long attemptId = attemptIds.get(saga.getIdempotencyKey());
+                if (attemptId != null) {
+                    saga.attemptCreated(attemptId);
+                    records.add(SagaLogRecord.attemptCreated(saga, attemptId));
+                } else {
+                    missing.add(saga);
+                }
+            }
+            sagaLog.appendAll(records);
+            if (!missing.isEmpty()) {
+                // Per-student compensation: only these reservations are given back
+                log.warn("Step 2: No attempt created for {} students, releasing their reservations", missing.size());
+                releaseReservations(missing);
+                missing.forEach(saga -> finishCompensation(saga, "Attempt was not created"));
+            }
+            log.info("Step 2 completed: Created {} attempts", records.size());
+        }
+
+        @Override
+        public void completed(BulkStartContext context) {
+            List<SagaInstance> sagas = context.unfinished();
+            finishAll(sagas, SagaLogEvent.COMPLETED, SagaInstance::complete);
+            log.info("Bulk SAGA completed: {} of {} students have an attempt", sagas.size(), context.sagas.size());
+        }
+
+        @Override
+        public void compensating(BulkStartContext context, SagaStepException failure) {
+            List<SagaInstance> sagas = context.unfinished();
+            log.error("Bulk SAGA failed at step {}, compensating {} students",
+                    failure.getFailedStep(), sagas.size(), failure.getCause());
+            sagas.forEach(saga -> saga.startStep(SagaStep.COMPENSATION));
+            appendAllQuietly(sagas.stream().map(saga -> SagaLogRecord.step(saga, SagaStep.COMPENSATION)).toList());
+        }
+
+        @Override
+        public void compensated(BulkStartContext context, SagaStepException failure) {
+            context.unfinished().forEach(saga -> finishCompensation(saga, failure.getMessage()));
+            log.info("Compensation finished for bulk SAGA of {} students", context.sagas.size());
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static final class BulkStartContext {
+        private final List<SagaInstance> sagas;
+
+        // Students that were neither rejected nor compensated individually
+        List<SagaInstance> unfinished() {
+            return sagas.stream().filter(saga -> !saga.getStatus().isFinished()).toList();
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static final class SubmitContext {
+        private final SubmitAttemptRequest request;
+        private volatile Double score;
+
+        Long attemptId() {
+            return request.getAttemptId();
+        }
+    }
+
+    /*
+     * Remote calls of the forward steps. With a non-blocking transport the step waits for the reply
+     * without a thread; the HTTP clients block, and their result comes back as a completed stage.
+     */
+    private CompletionStage<Boolean> checkEligibility(SagaInstance saga) {
+        if (assignmentServiceClient instanceof AsyncAssignmentServiceClient client) {
+            return client.checkEligibilityAsync(saga.getAssignmentId(), saga.getUserId());
+        }
+        return CompletableFuture.completedFuture(
+                assignmentServiceClient.checkEligibility(saga.getAssignmentId(), saga.getUserId()));
+    }
+
+    private CompletionStage<Void> reserveAttempt(SagaInstance saga) {
+        if (assignmentServiceClient instanceof AsyncAssignmentServiceClient client) {
+            return client.reserveAttemptAsync(saga.getAssignmentId(), saga.getUserId(), saga.getIdempotencyKey());
+        }
+        assignmentServiceClient.reserveAttempt(saga.getAssignmentId(), saga.getUserId(), saga.getIdempotencyKey());
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private CompletionStage<Long> createAttempt(SagaInstance saga) {
+        if (attemptServiceClient instanceof AsyncAttemptServiceClient client) {
+            return client.createAttemptAsync(saga.getAssignmentId(), saga.getUserId(), saga.getIdempotencyKey());
+        }
+        try {
+            return CompletableFuture.completedFuture(
+                    attemptServiceClient.createAttempt(saga.getAssignmentId(), saga.getUserId(), saga.getIdempotencyKey()));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private CompletionStage<Void> submitAnswers(SubmitContext context) {
+        if (attemptServiceClient instanceof AsyncAttemptServiceClient client) {
+            return client.submitAnswersAsync(context.attemptId(), context.request);
+        }
+        attemptServiceClient.submitAnswers(context.attemptId(), context.request);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private CompletionStage<Double> autoScore(SubmitContext context) {
+        if (attemptServiceClient instanceof AsyncAttemptServiceClient client) {
+            return client.autoScoreAsync(context.attemptId());
+        }
+        return CompletableFuture.completedFuture(attemptServiceClient.autoScore(context.attemptId()));
+    }
+
+    private CompletionStage<Void> finalizeAttempt(SubmitContext context) {
+        if (attemptServiceClient instanceof AsyncAttemptServiceClient client) {
+            return client.finalizeAttemptAsync(context.attemptId(), context.score);
+        }
+        attemptServiceClient.finalizeAttempt(context.attemptId(), context.score);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private SagaInstance newSaga(StartAttemptRequest request) {
+        SagaInstance saga = new SagaInstance(UUID.randomUUID().toString(), request.getAssignmentId(),
+                DEMO_USER_ID, UUID.randomUUID().toString());
+        sagaLog.append(SagaLogRecord.started(saga));
+        sagaInstanceStore.save(saga);
+        return saga;
+    }
+
+    // A saga that ran out of time is a 504, the caller may try again; anything else stays a 500
+    private static RuntimeException failed(String message, CompletionException e) {
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof DeadlineExceededException) {
+                return new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, message + cause.getMessage(), cause);
+            }
+        }
+        return new RuntimeException(message + e.getCause().getMessage(), e.getCause());
+    }
+
+    private ResponseStatusException reject(SagaInstance saga) {
+        log.warn("Saga executor saturated, rejecting saga {} for assignmentId: {}",
+                saga.getSagaId(), saga.getAssignmentId());
+        appendQuietly(SagaLogRecord.finished(saga, SagaLogEvent.REJECTED));
+        saga.rejected("Saga executor is saturated");
+        return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many sagas in progress, retry later");
+    }
+
+    /**
+     * For compensation and terminal records: a failed write must not stop the compensation itself.
+     * The saga then stays open in the log and recovery repeats the (idempotent) compensation, as it
+     * does after COMPENSATION_FAILED.
+     */
+    private void appendQuietly(SagaLogRecord record) {
+        try {
+            sagaLog.append(record);
+        } catch (RuntimeException e) {
+            log.error("Failed to record {} for SAGA {}", record.getEvent(), record.getSagaId(), e);
+        }
+    }
+
+    /**
+     * Records the end of a saga's compensation. If one of its compensating calls failed, the saga log
+     * gets COMPENSATION_FAILED instead of COMPENSATED and the saga stays open in it, so recovery
+     * compensates it again after a restart.
+     */
+    private void finishCompensation(SagaInstance saga, String error) {
+        if (saga.isCompensationIncomplete()) {
+            appendQuietly(SagaLogRecord.compensationFailed(saga));
+            saga.compensationFailed(error);
+            log.warn("Compensation incomplete for assignmentId: {}, attemptId: {}; SAGA {} is left to recovery",
+                    saga.getAssignmentId(), saga.getAttemptId(), saga.getSagaId());
+            return;
+        }
+        appendQuietly(SagaLogRecord.finished(saga, SagaLogEvent.COMPENSATED));
+        saga.compensated(error);
+        log.info("Compensation completed for assignmentId: {}, attemptId: {}",
+                saga.getAssignmentId(), saga.getAttemptId());
+    }
+
+    private void finishAll(List<SagaInstance> sagas, SagaLogEvent event, Consumer<SagaInstance> finish) {
+        appendAllQuietly(sagas.stream().map(saga -> SagaLogRecord.finished(saga, event)).toList());
+        sagas.forEach(finish);
+    }
+
+    private void appendAllQuietly(List<SagaLogRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        try {
+            sagaLog.appendAll(records);
+        } catch (RuntimeException e) {
+            log.error("Failed to record {} saga log records", records.size(), e);
+        }
+    }
+
+    /**
+     * The attempt a saga's create produced. A create that timed out or lost its reply may still have
+     * landed without the saga learning the id, so it is looked up by the saga's key; nothing is created
+     * if it never landed. A failed lookup leaves the saga's compensation incomplete.
+     */
+    private Long createdAttemptId(SagaInstance saga) {
+        if (saga.getAttemptId() == null) {
+            findAttempts(List.of(saga));
+        }
+        return saga.getAttemptId();
+    }
+
+    // Same as createdAttemptId, with one lookup for the students whose attempt id is in doubt
+    private void cancelAttempts(List<SagaInstance> sagas) {
+        findAttempts(sagas.stream().filter(SagaInstance::isCreateInDoubt).toList());
+        sagas.forEach(saga -> compensateAttempt(saga, saga.getAttemptId()));
+    }
+
+    private void findAttempts(List<SagaInstance> sagas) {
+        if (sagas.isEmpty()) {
+            return;
+        }
+        try {
+            Map<String, Long> attemptIds = attemptServiceClient.findAttempts(
+                    sagas.stream().map(SagaInstance::getIdempotencyKey).toList());
+            for (SagaInstance saga : sagas) {
+                Long attemptId = attemptIds.get(saga.getIdempotencyKey());
+                if (attemptId != null) {
+                    saga.attemptCreated(attemptId);
+                }
+            }
         } catch (Exception e) {
-            log.error("Submit attempt SAGA failed for attemptId: {}", attemptId, e);
-            throw new RuntimeException("Submit attempt SAGA failed: " + e.getMessage(), e);
+            log.error("Compensation failed: Could not look up attempts of {} sagas", sagas.size(), e);
+            sagas.forEach(SagaInstance::compensationCallFailed);
         }
     }
 
-    private void performCompensation(Long assignmentId, Long attemptId, String idempotencyKey) {
-        log.info("Performing compensation for assignmentId: {}, attemptId: {}, idempotencyKey: {}", 
-                assignmentId, attemptId, idempotencyKey);
-        
-        // Compensation Step 1: Cancel attempt (if created)
-        if (attemptId != null) {
-            try {
-                log.info("Compensation Step 1: Canceling attempt: {}", attemptId);
-                attemptServiceClient.cancelAttempt(attemptId);
-                log.info("Compensation Step 1 completed: Canceled attempt");
-            } catch (Exception e) {
-                log.error("Compensation Step 1 failed: Failed to cancel attempt: {}", attemptId, e);
+    // Refused before it was sent (open breaker, full bulkhead) or answered with a 4xx: nothing was created
+    private static boolean isRefused(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof CallNotPermittedException || cause instanceof BulkheadFullException
+                    || cause instanceof HttpClientErrorException
+                    || (cause instanceof MessageReplyException reply && !reply.isServerError())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void compensateAttempt(SagaInstance saga, Long attemptId) {
+        if (!cancelAttempt(attemptId)) {
+            saga.compensationCallFailed();
+        }
+    }
+
+    /**
+     * False if the attempt may still be PENDING. An attempt that is gone or no longer PENDING (a 4xx
+     * answer, e.g. because an earlier compensation cancelled it) has nothing left to undo.
+     */
+    private boolean cancelAttempt(Long attemptId) {
+        if (attemptId == null) {
+            return true;
+        }
+        try {
+            log.info("Compensation: Canceling attempt: {}", attemptId);
+            attemptServiceClient.cancelAttempt(attemptId);
+            log.info("Compensation completed: Canceled attempt");
+            return true;
+        } catch (Exception e) {
+            if (isAnsweredWithClientError(e)) {
+                log.info("Compensation: Attempt {} is no longer PENDING, nothing to cancel", attemptId);
+                return true;
             }
+            log.error("Compensation failed: Failed to cancel attempt: {}", attemptId, e);
+            return false;
         }
-        
-        // Compensation Step 2: Release assignment reservation (best effort)
+    }
+
+    // Release is keyed by the saga's idempotency key, so it is a no-op if the reserve never landed or was released
+    private void releaseReservation(SagaInstance saga) {
         try {
-            log.info("Compensation Step 2: Releasing assignment reservation for assignmentId: {}", assignmentId);
-            assignmentServiceClient.releaseAttempt(assignmentId, DEMO_USER_ID, idempotencyKey);
-            log.info("Compensation Step 2 completed: Released assignment reservation");
+            log.info("Compensation: Releasing assignment reservation for assignmentId: {}", saga.getAssignmentId());
+            assignmentServiceClient.releaseAttempt(saga.getAssignmentId(), saga.getUserId(), saga.getIdempotencyKey());
+            log.info("Compensation completed: Released assignment reservation");
         } catch (Exception e) {
-            log.error("Compensation Step 2 failed: Failed to release assignment reservation for assignmentId: {}", 
-                    assignmentId, e);
+            log.error("Compensation failed: Failed to release assignment reservation for assignmentId: {}",
+                    saga.getAssignmentId(), e);
+            saga.compensationCallFailed();
         }
-        
-        log.info("Compensation completed for assignmentId: {}, attemptId: {}", assignmentId, attemptId);
     }
-}
 
+    private void releaseReservations(List<SagaInstance> sagas) {
+        if (sagas.isEmpty()) {
+            return;
+        }
+        try {
+            log.info("Compensation: Releasing {} assignment reservations", sagas.size());
+            assignmentServiceClient.releaseAttempts(sagas.stream().map(SagaOrchestrationServiceImpl::toItem).toList());
+        } catch (Exception e) {
+            log.error("Compensation failed: Failed to release {} assignment reservations", sagas.size(), e);
+            sagas.forEach(SagaInstance::compensationCallFailed);
+        }
+    }
+
+    // A 4xx other than 429: the service looked at the request and said no, trying again changes nothing
+    private static boolean isAnsweredWithClientError(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if ((cause instanceof HttpClientErrorException && !(cause instanceof HttpClientErrorException.TooManyRequests))
+                    || (cause instanceof MessageReplyException reply && !reply.isServerError()
+                            && reply.getStatus() != HttpStatus.TOO_MANY_REQUESTS.value())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static BulkAttemptItem toItem(SagaInstance saga) {
+        return BulkAttemptItem.builder()
+                .assignmentId(saga.getAssignmentId())
+                .userId(saga.getUserId())
+                .idempotencyKey(saga.getIdempotencyKey())
+                .build();
+    }
+}
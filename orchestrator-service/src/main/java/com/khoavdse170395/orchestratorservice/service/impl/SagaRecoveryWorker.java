@@ -0,0 +1,66 @@
+package com.khoavdse170395.orchestratorservice.service.impl;
+
+import com.khoavdse170395.orchestratorservice.model.SagaInstance;
+import com.khoavdse170395.orchestratorservice.service.SagaLog;
+import com.khoavdse170395.orchestratorservice.service.SagaOrchestrationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Picks up the sagas the saga log still shows as open once the application is ready. They run on
+ * the saga executor like new sagas, so recovery does not delay startup.
+ * orchestrator.saga.recovery.mode=forward (default) finishes them, compensate rolls them all back.
+ */
+@Component
+@Slf4j
+public class SagaRecoveryWorker {
+
+    private final SagaLog sagaLog;
+    private final SagaOrchestrationService sagaOrchestrationService;
+    private final Executor sagaExecutor;
+    private final boolean compensate;
+
+    public SagaRecoveryWorker(SagaLog sagaLog,
+                              SagaOrchestrationService sagaOrchestrationService,
+                              @Qualifier("sagaExecutor") Executor sagaExecutor,
+                              @Value("${orchestrator.saga.recovery.mode:forward}") String mode) {
+        this.sagaLog = sagaLog;
+        this.sagaOrchestrationService = sagaOrchestrationService;
+        this.sagaExecutor = sagaExecutor;
+        this.compensate = "compensate".equalsIgnoreCase(mode);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverUnfinishedSagas() {
+        List<SagaInstance> unfinished = sagaLog.unfinishedSagas();
+        if (unfinished.isEmpty()) {
+            return;
+        }
+        log.warn("Recovering {} unfinished sagas from the saga log", unfinished.size());
+        for (SagaInstance saga : unfinished) {
+            // Blocking hand-off: at startup a full queue should slow recovery down, not drop sagas
+            boolean submitted = false;
+            while (!submitted) {
+                try {
+                    sagaExecutor.execute(() -> sagaOrchestrationService.recoverStartAttempt(saga, compensate));
+                    submitted = true;
+                } catch (RejectedExecutionException e) {
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException interrupted) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+    }
+}
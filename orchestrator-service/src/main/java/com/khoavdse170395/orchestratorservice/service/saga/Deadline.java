@@ -0,0 +1,68 @@
+package com.khoavdse170395.orchestratorservice.service.saga;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * The point in time by which the caller of a saga stops waiting for it. Set once at SagaController
+ * and carried through the saga: the engine does not start or retry a step after it, and while a
+ * step runs it is the current deadline of that thread, so the HTTP clients can pass the time that
+ * is left on to the downstream service in the HEADER.
+ */
+public final class Deadline {
+
+    // Milliseconds left, relative so that clock skew between hosts does not matter
+    public static final String HEADER = "X-Request-Timeout-Ms";
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long expiresAtNanos;
+
+    private Deadline(long expiresAtNanos) {
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    public static Deadline after(Duration timeout) {
+        return new Deadline(System.nanoTime() + timeout.toNanos());
+    }
+
+    // The deadline of the saga step running on this thread, or null
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    public static <T> T callWith(Deadline deadline, Supplier<T> call) {
+        Deadline previous = swap(deadline);
+        try {
+            return call.get();
+        } finally {
+            swap(previous);
+        }
+    }
+
+    public static void runWith(Deadline deadline, Runnable task) {
+        callWith(deadline, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    // Makes the deadline current and returns the one it replaces, to be swapped back in a finally
+    static Deadline swap(Deadline deadline) {
+        Deadline previous = CURRENT.get();
+        if (deadline != null) {
+            CURRENT.set(deadline);
+        } else {
+            CURRENT.remove();
+        }
+        return previous;
+    }
+
+    public long remainingMillis() {
+        return Math.max(0, (expiresAtNanos - System.nanoTime()) / 1_000_000);
+    }
+
+    public boolean isExpired() {
+        return expiresAtNanos - System.nanoTime() <= 0;
+    }
+}
@@ -0,0 +1,15 @@
+package com.khoavdse170395.orchestratorservice.service.saga;
+
+import com.khoavdse170395.orchestratorservice.model.SagaStep;
+
+// Not a timeout of the step itself: there is no time left to retry it in either
+public class DeadlineExceededException extends RuntimeException {
+
+    public DeadlineExceededException(SagaStep step) {
+        super("Deadline exceeded before step " + step + " finished");
+    }
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
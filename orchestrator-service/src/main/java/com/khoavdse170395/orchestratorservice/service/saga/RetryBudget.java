@@ -0,0 +1,56 @@
+package com.khoavdse170395.orchestratorservice.service.saga;
+
+/**
+ * Caps retries at a fraction of first attempts, shared by every step that uses it. Each first
+ * attempt deposits ratio tokens, each retry takes one, and the balance never exceeds maxTokens. In
+ * steady state almost nothing is retried and the budget stays full; in an outage where every call
+ * fails, at most ratio * calls + maxTokens retries go out instead of (maxAttempts - 1) * calls,
+ * so retries cannot multiply the load on a service that is already down.
+ */
+public final class RetryBudget {
+
+    // Tokens are kept in thousandths so that a deposit of 0.1 stays exact
+    private static final long SCALE = 1000;
+
+    private final long deposit;
+    private final long maxBalance;
+    private long balance;
+    private long retries;
+    private long exhausted;
+
+    public RetryBudget(double ratio, int maxTokens) {
+        if (ratio < 0 || maxTokens < 1) {
+            throw new IllegalArgumentException("ratio must be >= 0 and maxTokens >= 1");
+        }
+        this.deposit = Math.round(ratio * SCALE);
+        this.maxBalance = maxTokens * SCALE;
+        this.balance = maxBalance;
+    }
+
+    public synchronized void recordAttempt() {
+        balance = Math.min(maxBalance, balance + deposit);
+    }
+
+    // True if a retry may go out now; false means the budget is spent and the failure is final
+    public synchronized boolean tryAcquireRetry() {
+        if (balance < SCALE) {
+            exhausted++;
+            return false;
+        }
+        balance -= SCALE;
+        retries++;
+        return true;
+    }
+
+    public synchronized double getTokens() {
+        return (double) balance / SCALE;
+    }
+
+    public synchronized long getRetries() {
+        return retries;
+    }
+
+    public synchronized long getExhausted() {
+        return exhausted;
+    }
+}
@@ -0,0 +1,119 @@
+package com.khoavdse170395.orchestratorservice.service.saga;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * How often a saga step is attempted and how long to back off in between. Backoff waits are timer
+ * callbacks, so a saga waiting to retry does not hold a thread.
+ *
+ * <p>With jitter j each wait is drawn from [backoff * (1 - j), backoff], so sagas that failed
+ * together do not retry together. A RetryBudget, if set, is shared with other policies and can deny
+ * a retry the policy would otherwise allow. A retryAfter hint taken from the failure (e.g. a
+ * Retry-After header) lengthens the wait, up to maxBackoff.</p>
+ */
+public final class RetryPolicy {
+
+    public static final RetryPolicy NONE = new RetryPolicy(1, Duration.ZERO, 1.0, Duration.ZERO, failure -> false,
+            0.0, null, failure -> null);
+
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final double multiplier;
+    private final Duration maxBackoff;
+    private final Predicate<Throwable> retryOn;
+    private final double jitter;
+    private final RetryBudget budget;
+    private final Function<Throwable, Duration> retryAfter;
+
+    private RetryPolicy(int maxAttempts, Duration initialBackoff, double multiplier, Duration maxBackoff,
+                        Predicate<Throwable> retryOn, double jitter, RetryBudget budget,
+                        Function<Throwable, Duration> retryAfter) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("jitter must be between 0 and 1");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.multiplier = multiplier;
+        this.maxBackoff = maxBackoff;
+        this.retryOn = retryOn;
+        this.jitter = jitter;
+        this.budget = budget;
+        this.retryAfter = retryAfter;
+    }
+
+    public static RetryPolicy exponential(int maxAttempts, Duration initialBackoff, double multiplier, Duration maxBackoff) {
+        return new RetryPolicy(maxAttempts, initialBackoff, multiplier, maxBackoff, failure -> true, 0.0, null,
+                failure -> null);
+    }
+
+    // Only failures matching the predicate are retried, e.g. timeouts and 5xx but not a 400
+    public RetryPolicy retryOn(Predicate<Throwable> retryOn) {
+        return new RetryPolicy(maxAttempts, initialBackoff, multiplier, maxBackoff, retryOn, jitter, budget, retryAfter);
+    }
+
+    public RetryPolicy withJitter(double jitter) {
+        return new RetryPolicy(maxAttempts, initialBackoff, multiplier, maxBackoff, retryOn, jitter, budget, retryAfter);
+    }
+
+    public RetryPolicy withBudget(RetryBudget budget) {
+        return new RetryPolicy(maxAttempts, initialBackoff, multiplier, maxBackoff, retryOn, jitter, budget, retryAfter);
+    }
+
+    // Minimum wait asked for by the failure itself, or null
+    public RetryPolicy withRetryAfter(Function<Throwable, Duration> retryAfter) {
+        return new RetryPolicy(maxAttempts, initialBackoff, multiplier, maxBackoff, retryOn, jitter, budget, retryAfter);
+    }
+
+    // Same backoff, predicate and budget with another number of attempts, for per-step overrides
+    public RetryPolicy withMaxAttempts(int maxAttempts) {
+        return new RetryPolicy(maxAttempts, initialBackoff, multiplier, maxBackoff, retryOn, jitter, budget, retryAfter);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public RetryBudget getBudget() {
+        return budget;
+    }
+
+    public boolean shouldRetry(int attempt, Throwable failure) {
+        return attempt < maxAttempts && retryOn.test(failure);
+    }
+
+    // Called for the first attempt of a step, which is what the budget is a fraction of
+    public void firstAttempt() {
+        if (budget != null) {
+            budget.recordAttempt();
+        }
+    }
+
+    // Takes a retry from the budget; without a budget every retry is allowed
+    public boolean acquireRetry() {
+        return budget == null || budget.tryAcquireRetry();
+    }
+
+    // Wait before attempt + 1
+    public long backoffMillis(int attempt) {
+        double backoff = Math.min(initialBackoff.toMillis() * Math.pow(multiplier, attempt - 1), maxBackoff.toMillis());
+        if (jitter > 0) {
+            backoff -= backoff * jitter * ThreadLocalRandom.current().nextDouble();
+        }
+        return (long) backoff;
+    }
+
+    public long backoffMillis(int attempt, Throwable failure) {
+        long backoff = backoffMillis(attempt);
+        Duration hint = retryAfter.apply(failure);
+        if (hint != null) {
+            backoff = Math.max(backoff, Math.min(hint.toMillis(), maxBackoff.toMillis()));
+        }
+        return backoff;
+    }
+}
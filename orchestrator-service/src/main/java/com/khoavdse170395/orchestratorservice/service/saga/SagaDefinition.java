@@ -0,0 +1,249 @@
+package com.khoavdse170395.orchestratorservice.service.saga;
+
+import com.khoavdse170395.orchestratorservice.model.SagaStep;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Immutable description of a saga: its steps, what each one depends on, and per step an action,
+ * an optional compensation, a retry policy and a timeout. Built once and shared by every execution;
+ * SagaEngine keeps the per-execution state.
+ *
+ * <pre>
+ * SagaDefinition.&lt;Ctx&gt;builder("start-attempt")
+ *         .step(SagaStep.CHECK_ELIGIBILITY).action(ctx -> ...).retry(retry).add()
+ *         .step(SagaStep.CREATE_ATTEMPT).action(ctx -> ...).compensation(ctx -> ...)
+ *                 .timeout(Duration.ofSeconds(5)).dependsOn(SagaStep.CHECK_ELIGIBILITY).add()
+ *         .build();
+ * </pre>
+ *
+ * Steps without dependencies start right away; the others start once all their dependencies
+ * have completed, so independent steps overlap.
+ */
+public final class SagaDefinition<C> {
+
+    private static final int MAX_STEPS = 64;
+
+    @FunctionalInterface
+    public interface StepAction<C> {
+        void execute(C context) throws Exception;
+    }
+
+    // For clients that do not block: the step completes with the returned stage
+    @FunctionalInterface
+    public interface AsyncStepAction<C> {
+        CompletionStage<?> execute(C context) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Compensation<C> {
+        void compensate(C context) throws Exception;
+    }
+
+    record StepDefinition<C>(SagaStep step, AsyncStepAction<C> action, Compensation<C> compensation,
+                             RetryPolicy retry, Duration timeout) {
+    }
+
+    private final String name;
+    private final List<StepDefinition<C>> steps;
+    private final int[] dependencyCounts;
+    private final int[][] dependents;
+    private final int[] roots;
+    private final SagaListener<C> listener;
+
+    private SagaDefinition(String name, List<StepDefinition<C>> steps, int[] dependencyCounts, int[][] dependents,
+                           int[] roots, SagaListener<C> listener) {
+        this.name = name;
+        this.steps = steps;
+        this.dependencyCounts = dependencyCounts;
+        this.dependents = dependents;
+        this.roots = roots;
+        this.listener = listener;
+    }
+
+    public static <C> Builder<C> builder(String name) {
+        return new Builder<>(name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    int size() {
+        return steps.size();
+    }
+
+    StepDefinition<C> step(int index) {
+        return steps.get(index);
+    }
+
+    int dependencyCount(int index) {
+        return dependencyCounts[index];
+    }
+
+    int[] dependents(int index) {
+        return dependents[index];
+    }
+
+    int[] roots() {
+        return roots;
+    }
+
+    SagaListener<C> listener() {
+        return listener;
+    }
+
+    public static final class Builder<C> {
+
+        private final String name;
+        private final List<StepBuilder<C>> steps = new ArrayList<>();
+        private SagaListener<C> listener = new SagaListener<>() {
+        };
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        public StepBuilder<C> step(SagaStep step) {
+            return new StepBuilder<>(this, step);
+        }
+
+        public Builder<C> listener(SagaListener<C> listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        public SagaDefinition<C> build() {
+            int size = steps.size();
+            if (size == 0 || size > MAX_STEPS) {
+                throw new IllegalStateException("Saga " + name + " must have between 1 and " + MAX_STEPS + " steps");
+            }
+            Map<SagaStep, Integer> indexes = new EnumMap<>(SagaStep.class);
+            for (int i = 0; i < size; i++) {
+                if (indexes.put(steps.get(i).step, i) != null) {
+                    throw new IllegalStateException("Step " + steps.get(i).step + " declared twice in saga " + name);
+                }
+            }
+
+            int[] dependencyCounts = new int[size];
+            List<List<Integer>> dependentLists = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                dependentLists.add(new ArrayList<>());
+            }
+            for (int i = 0; i < size; i++) {
+                for (SagaStep dependency : steps.get(i).dependsOn) {
+                    Integer index = indexes.get(dependency);
+                    if (index == null) {
+                        throw new IllegalStateException("Step " + steps.get(i).step + " depends on undeclared step " + dependency);
+                    }
+                    dependencyCounts[i]++;
+                    dependentLists.get(index).add(i);
+                }
+            }
+            int[][] dependents = new int[size][];
+            for (int i = 0; i < size; i++) {
+                dependents[i] = dependentLists.get(i).stream().mapToInt(Integer::intValue).toArray();
+            }
+            checkAcyclic(dependencyCounts, dependents);
+
+            List<StepDefinition<C>> definitions = new ArrayList<>(size);
+            List<Integer> roots = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                StepBuilder<C> step = steps.get(i);
+                if (step.action == null) {
+                    throw new IllegalStateException("Step " + step.step + " has no action");
+                }
+                definitions.add(new StepDefinition<>(step.step, step.action, step.compensation, step.retry, step.timeout));
+                if (dependencyCounts[i] == 0) {
+                    roots.add(i);
+                }
+            }
+            return new SagaDefinition<>(name, List.copyOf(definitions), dependencyCounts, dependents,
+                    roots.stream().mapToInt(Integer::intValue).toArray(), listener);
+        }
+
+        private void checkAcyclic(int[] dependencyCounts, int[][] dependents) {
+            int[] pending = dependencyCounts.clone();
+            int[] queue = new int[pending.length];
+            int head = 0;
+            int tail = 0;
+            for (int i = 0; i < pending.length; i++) {
+                if (pending[i] == 0) {
+                    queue[tail++] = i;
+                }
+            }
+            while (head < tail) {
+                for (int dependent : dependents[queue[head++]]) {
+                    if (--pending[dependent] == 0) {
+                        queue[tail++] = dependent;
+                    }
+                }
+            }
+            if (tail < pending.length) {
+                throw new IllegalStateException("Steps of saga " + name + " have a dependency cycle");
+            }
+        }
+    }
+
+    public static final class StepBuilder<C> {
+
+        private final Builder<C> parent;
+        private final SagaStep step;
+        private AsyncStepAction<C> action;
+        private Compensation<C> compensation;
+        private RetryPolicy retry = RetryPolicy.NONE;
+        private Duration timeout;
+        private SagaStep[] dependsOn = new SagaStep[0];
+
+        private StepBuilder(Builder<C> parent, SagaStep step) {
+            this.parent = parent;
+            this.step = step;
+        }
+
+        // A blocking action; it occupies an executor thread while it runs
+        public StepBuilder<C> action(StepAction<C> action) {
+            this.action = context -> {
+                action.execute(context);
+                return CompletableFuture.completedFuture(null);
+            };
+            return this;
+        }
+
+        public StepBuilder<C> asyncAction(AsyncStepAction<C> action) {
+            this.action = action;
+            return this;
+        }
+
+        public StepBuilder<C> compensation(Compensation<C> compensation) {
+            this.compensation = compensation;
+            return this;
+        }
+
+        public StepBuilder<C> retry(RetryPolicy retry) {
+            this.retry = retry;
+            return this;
+        }
+
+        // Per attempt; a late result of a timed-out attempt is ignored
+        public StepBuilder<C> timeout(Duration timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        public StepBuilder<C> dependsOn(SagaStep... steps) {
+            this.dependsOn = steps.clone();
+            return this;
+        }
+
+        public Builder<C> add() {
+            parent.steps.add(this);
+            return parent;
+        }
+    }
+}
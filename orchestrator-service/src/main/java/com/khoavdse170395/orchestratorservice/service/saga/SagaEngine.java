@@ -0,0 +1,510 @@
+package com.khoavdse170395.orchestratorservice.service.saga;
+
+import com.khoavdse170395.orchestratorservice.model.SagaStep;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs SagaDefinitions as event-driven state machines. A saga holds no thread of its own: each step
+ * attempt is a task on the shared executor, and a finished step only schedules the steps it
+ * unblocks. Retry backoffs and step timeouts are callbacks on one timer thread. What an in-flight
+ * saga costs is its Execution - a few small arrays sized to the definition - plus its context.
+ *
+ * After the first failure no new step is started and the steps still running are waited for.
+ * Then every started step is compensated in reverse start order, one after the other. The step
+ * that failed is included, since its remote call may have landed before the error came back.
+ * Compensation failures are logged and the next compensation runs anyway.
+ *
+ * Retries are counted per saga and step in orchestrator.saga.step.retries{result=retried|budget_exhausted},
+ * and sagas that needed a retry in orchestrator.saga.retried{outcome=saved|compensated}.
+ *
+ * A saga started with a Deadline fails with DeadlineExceededException once it is past: a step is
+ * not started or retried after it, and a running step is timed out at it. Compensation still runs
+ * in full and without the deadline. Steps cut short this way are counted in
+ * orchestrator.saga.deadline.exceeded{phase=before_step|during_step|before_retry}. A saga nobody
+ * waits for can be given a budget instead, which becomes its deadline when its first step runs, so
+ * that time spent queued for the executor does not count against it.
+ */
+@Slf4j
+public class SagaEngine implements Closeable {
+
+    private static final byte PENDING = 0;
+    private static final byte RUNNING = 1;
+    private static final byte DONE = 2;
+    private static final byte FAILED = 3;
+    // Outcome accepted, listener.stepCompleted running; a timeout firing meanwhile is too late
+    private static final byte COMPLETING = 4;
+    private static final long REJECTED_RETRY_DELAY_MS = 50;
+
+    private final Executor executor;
+    private final ScheduledThreadPoolExecutor timer;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final MeterRegistry meterRegistry;
+
+    public SagaEngine(Executor executor) {
+        this(executor, new SimpleMeterRegistry());
+    }
+
+    public SagaEngine(Executor executor, MeterRegistry meterRegistry) {
+        this.executor = executor;
+        this.meterRegistry = meterRegistry;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("saga-timer-");
+        threadFactory.setDaemon(true);
+        this.timer = new ScheduledThreadPoolExecutor(1, threadFactory);
+        // Most timeouts are cancelled because the step finished; drop them instead of letting them wait out
+        this.timer.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Starts the saga and returns at once. The future completes when the saga has completed, or
+     * exceptionally with a SagaStepException once its compensation has run. Throws
+     * RejectedExecutionException, with nothing started, if the executor does not take the first step.
+     */
+    public <C> CompletableFuture<Void> start(SagaDefinition<C> definition, C context) {
+        return start(definition, context, null);
+    }
+
+    // With a null deadline the saga has as long as its steps take
+    public <C> CompletableFuture<Void> start(SagaDefinition<C> definition, C context, Deadline deadline) {
+        return start(new Execution<>(definition, context, deadline, null, executor));
+    }
+
+    // The budget starts when the first step is taken off the executor's queue; null = no deadline
+    public <C> CompletableFuture<Void> startWithBudget(SagaDefinition<C> definition, C context, Duration budget) {
+        return start(new Execution<>(definition, context, null, budget, executor));
+    }
+
+    /**
+     * Runs the saga on the calling thread and returns its result once it has completed or been
+     * compensated, as start would. Steps, retries and compensations run here, timers only hand them
+     * back to this thread, so a caller that waits anyway does not tie up an executor thread as well.
+     * Only a step that becomes ready while another one is already waiting for this thread goes to the
+     * executor, so that parallel steps still overlap; if the executor rejects it, it waits here too.
+     * The saga itself is never rejected.
+     */
+    public <C> CompletableFuture<Void> run(SagaDefinition<C> definition, C context, Deadline deadline) {
+        LinkedBlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+        Executor caller = task -> {
+            if (!tasks.isEmpty()) {
+                try {
+                    executor.execute(task);
+                    return;
+                } catch (RejectedExecutionException e) {
+                    // Runs after the task ahead of it instead
+                }
+            }
+            tasks.add(task);
+        };
+        Execution<C> execution = new Execution<>(definition, context, deadline, null, caller);
+        execution.result.whenComplete((ignored, error) -> tasks.add(() -> { }));
+        // Steps get the saga's deadline while they run; compensations, as on the executor, get none
+        Deadline previous = Deadline.swap(null);
+        boolean interrupted = false;
+        try {
+            start(execution);
+            while (!execution.result.isDone()) {
+                try {
+                    tasks.take().run();
+                } catch (InterruptedException e) {
+                    // A saga that has started must still finish or be compensated
+                    interrupted = true;
+                }
+            }
+        } finally {
+            Deadline.swap(previous);
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return execution.result;
+    }
+
+    private <C> CompletableFuture<Void> start(Execution<C> execution) {
+        SagaDefinition<C> definition = execution.definition;
+        int[] roots = definition.roots();
+        synchronized (execution) {
+            for (int root : roots) {
+                execution.begin(root);
+            }
+        }
+        inFlight.incrementAndGet();
+        try {
+            execution.executor.execute(() -> runAttempt(execution, roots[0], 1));
+        } catch (RejectedExecutionException e) {
+            inFlight.decrementAndGet();
+            throw e;
+        }
+        for (int i = 1; i < roots.length; i++) {
+            dispatch(execution, roots[i], 1);
+        }
+        return execution.result;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * Only a saga's first step is subject to admission control. Once a saga runs, a step the executor
+     * rejects runs on the thread that finished the step before it, and a retry that comes due while
+     * the executor is full waits a little longer; neither fails the saga.
+     */
+    private <C> void dispatch(Execution<C> execution, int index, int attempt) {
+        try {
+            execution.executor.execute(() -> runAttempt(execution, index, attempt));
+        } catch (RejectedExecutionException e) {
+            runAttempt(execution, index, attempt);
+        }
+    }
+
+    private <C> void dispatchRetry(Execution<C> execution, int index, int attempt, long delayMillis) {
+        try {
+            execution.executor.execute(() -> runAttempt(execution, index, attempt));
+        } catch (RejectedExecutionException e) {
+            scheduleRetry(execution, index, attempt, Math.max(delayMillis, REJECTED_RETRY_DELAY_MS));
+        }
+    }
+
+    private <C> void runAttempt(Execution<C> execution, int index, int attempt) {
+        SagaDefinition.StepDefinition<C> step = execution.definition.step(index);
+        boolean abandoned;
+        boolean compensate = false;
+        synchronized (execution) {
+            // A retry that came due after another step had failed is not run
+            abandoned = execution.failure != null;
+            if (abandoned) {
+                execution.state[index] = FAILED;
+                compensate = --execution.running == 0;
+            }
+        }
+        if (abandoned) {
+            if (compensate) {
+                startCompensation(execution);
+            }
+            return;
+        }
+
+        Deadline deadline = execution.deadline();
+        if (deadline != null && deadline.isExpired()) {
+            deadlineExceeded(execution.definition, step, "before_step");
+            attemptFinished(execution, index, attempt, null, new DeadlineExceededException(step.step()));
+            return;
+        }
+
+        ScheduledFuture<?> timeout = null;
+        // Whichever comes first, the step's own timeout or the saga's deadline
+        if (deadline != null && (step.timeout() == null || deadline.remainingMillis() < step.timeout().toMillis())) {
+            timeout = timer.schedule(() -> {
+                deadlineExceeded(execution.definition, step, "during_step");
+                attemptFinished(execution, index, attempt, null, new DeadlineExceededException(step.step()));
+            }, deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+        } else if (step.timeout() != null) {
+            timeout = timer.schedule(() -> attemptFinished(execution, index, attempt, null,
+                    new SagaStepTimeoutException(step.step(), step.timeout())), step.timeout().toMillis(), TimeUnit.MILLISECONDS);
+        }
+        ScheduledFuture<?> pendingTimeout = timeout;
+        Deadline previous = Deadline.swap(deadline);
+        try {
+            if (attempt == 1) {
+                step.retry().firstAttempt();
+            }
+            execution.definition.listener().stepStarting(execution.context, step.step(), attempt);
+            // Current while the action runs, so that a blocking client call can pass it on
+            CompletionStage<?> stage = step.action().execute(execution.context);
+            stage.whenComplete((result, error) -> {
+                if (pendingTimeout != null) {
+                    pendingTimeout.cancel(false);
+                }
+                attemptFinished(execution, index, attempt, result, unwrap(error));
+            });
+        } catch (Throwable e) {
+            if (pendingTimeout != null) {
+                pendingTimeout.cancel(false);
+            }
+            attemptFinished(execution, index, attempt, null, e);
+        } finally {
+            Deadline.swap(previous);
+        }
+    }
+
+    private <C> void attemptFinished(Execution<C> execution, int index, int attempt, Object result, Throwable error) {
+        SagaDefinition<C> definition = execution.definition;
+        SagaDefinition.StepDefinition<C> step = definition.step(index);
+        // A success is claimed first, so that the listener only ever sees the outcome the saga goes on with
+        boolean claimed = error == null;
+        if (claimed) {
+            synchronized (execution) {
+                if (execution.attempts[index] != attempt || execution.state[index] != RUNNING) {
+                    return;
+                }
+                execution.state[index] = COMPLETING;
+            }
+            try {
+                definition.listener().stepCompleted(execution.context, step.step(), result);
+            } catch (RuntimeException e) {
+                error = e;
+            }
+        }
+        List<Integer> ready = null;
+        long retryDelay = -1;
+        // Drawn once: with jitter every call gives another wait
+        long backoff = error != null && step.retry().shouldRetry(attempt, error) ? step.retry().backoffMillis(attempt, error) : -1;
+        boolean completed = false;
+        boolean compensate = false;
+
+        synchronized (execution) {
+            if (!claimed && (execution.attempts[index] != attempt || execution.state[index] != RUNNING)) {
+                // Late outcome of an attempt that already timed out
+                return;
+            } else if (error == null) {
+                execution.state[index] = DONE;
+                execution.running--;
+                execution.done++;
+                if (execution.failure == null) {
+                    for (int dependent : definition.dependents(index)) {
+                        if (--execution.pending[dependent] == 0) {
+                            execution.begin(dependent);
+                            if (ready == null) {
+                                ready = new ArrayList<>(2);
+                            }
+                            ready.add(dependent);
+                        }
+                    }
+                }
+            } else if (execution.failure == null && backoff >= 0
+                    && timeToRetry(execution, step, error, backoff) && acquireRetry(definition, step)) {
+                execution.state[index] = RUNNING;
+                execution.attempts[index] = attempt + 1;
+                execution.retried = true;
+                retryDelay = backoff;
+            } else {
+                execution.state[index] = FAILED;
+                execution.running--;
+                if (execution.failure == null) {
+                    execution.failure = error;
+                    execution.failedStep = index;
+                }
+            }
+
+            if (execution.running == 0) {
+                compensate = execution.failure != null;
+                completed = !compensate && execution.done == definition.size();
+            }
+        }
+
+        if (retryDelay >= 0) {
+            log.warn("Step {} of saga {} failed on attempt {}, retrying in {}ms: {}",
+                    step.step(), definition.getName(), attempt, retryDelay, error.getMessage());
+            scheduleRetry(execution, index, attempt + 1, retryDelay);
+        }
+        if (ready != null) {
+            for (int next : ready) {
+                dispatch(execution, next, 1);
+            }
+        }
+        if (completed) {
+            inFlight.decrementAndGet();
+            if (execution.retried) {
+                retriedSaga(definition, "saved");
+            }
+            notifyListener(() -> definition.listener().completed(execution.context));
+            execution.result.complete(null);
+        } else if (compensate) {
+            startCompensation(execution);
+        }
+    }
+
+    private <C> void startCompensation(Execution<C> execution) {
+        SagaStepException failure = execution.toException();
+        if (execution.retried) {
+            retriedSaga(execution.definition, "compensated");
+        }
+        notifyListener(() -> execution.definition.listener().compensating(execution.context, failure));
+        compensate(execution, failure, failure.getStartedSteps().size() - 1);
+    }
+
+    private <C> void scheduleRetry(Execution<C> execution, int index, int attempt, long delayMillis) {
+        try {
+            timer.schedule(() -> dispatchRetry(execution, index, attempt, delayMillis), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            attemptFinished(execution, index, attempt, null, e);
+        }
+    }
+
+    private <C> void compensate(Execution<C> execution, SagaStepException failure, int position) {
+        int next = position;
+        while (next >= 0 && execution.definition.step(execution.startOrder[next]).compensation() == null) {
+            next--;
+        }
+        if (next < 0) {
+            inFlight.decrementAndGet();
+            notifyListener(() -> execution.definition.listener().compensated(execution.context, failure));
+            execution.result.completeExceptionally(failure);
+            return;
+        }
+
+        int current = next;
+        SagaDefinition.StepDefinition<C> step = execution.definition.step(execution.startOrder[current]);
+        Runnable task = () -> {
+            try {
+                step.compensation().compensate(execution.context);
+            } catch (Exception e) {
+                log.error("Compensation of step {} in saga {} failed", step.step(), execution.definition.getName(), e);
+            }
+            compensate(execution, failure, current - 1);
+        };
+        try {
+            execution.executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Compensation must not be dropped; run it here instead
+            task.run();
+        }
+    }
+
+    // A retry that would only start after the deadline is not worth its budget token
+    private <C> boolean timeToRetry(Execution<C> execution, SagaDefinition.StepDefinition<C> step, Throwable error,
+                                    long backoff) {
+        Deadline deadline = execution.deadline();
+        if (deadline == null || (!(error instanceof DeadlineExceededException) && backoff < deadline.remainingMillis())) {
+            return true;
+        }
+        if (!(error instanceof DeadlineExceededException)) {
+            deadlineExceeded(execution.definition, step, "before_retry");
+        }
+        return false;
+    }
+
+    private void deadlineExceeded(SagaDefinition<?> definition, SagaDefinition.StepDefinition<?> step, String phase) {
+        Counter.builder("orchestrator.saga.deadline.exceeded")
+                .description("Saga steps not started, cut short or not retried because the saga's deadline had passed")
+                .tag("saga", definition.getName())
+                .tag("step", step.step().name())
+                .tag("phase", phase)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    // A retry the step's policy allows still needs its budget; without one the failure is final
+    private boolean acquireRetry(SagaDefinition<?> definition, SagaDefinition.StepDefinition<?> step) {
+        boolean acquired = step.retry().acquireRetry();
+        Counter.builder("orchestrator.saga.step.retries")
+                .tag("saga", definition.getName())
+                .tag("step", step.step().name())
+                .tag("result", acquired ? "retried" : "budget_exhausted")
+                .register(meterRegistry)
+                .increment();
+        if (!acquired) {
+            log.warn("Retry budget exhausted, step {} of saga {} fails without retry", step.step(), definition.getName());
+        }
+        return acquired;
+    }
+
+    private void retriedSaga(SagaDefinition<?> definition, String outcome) {
+        Counter.builder("orchestrator.saga.retried")
+                .description("Sagas that needed at least one step retry, by how they ended")
+                .tag("saga", definition.getName())
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private static void notifyListener(Runnable callback) {
+        try {
+            callback.run();
+        } catch (RuntimeException e) {
+            log.error("Saga listener failed", e);
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    private static final class Execution<C> {
+
+        final SagaDefinition<C> definition;
+        final C context;
+        final Duration budget;
+        // Where the saga's steps and compensations run: the engine's executor, or the caller of run
+        final Executor executor;
+        Deadline deadline;
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+        final int[] pending;
+        final int[] attempts;
+        final byte[] state;
+        final byte[] startOrder;
+        int started;
+        int running;
+        int done;
+        Throwable failure;
+        int failedStep = -1;
+        boolean retried;
+
+        Execution(SagaDefinition<C> definition, C context, Deadline deadline, Duration budget, Executor executor) {
+            int size = definition.size();
+            this.executor = executor;
+            this.definition = definition;
+            this.context = context;
+            this.deadline = deadline;
+            this.budget = budget;
+            this.pending = new int[size];
+            for (int i = 0; i < size; i++) {
+                pending[i] = definition.dependencyCount(i);
+            }
+            this.attempts = new int[size];
+            this.state = new byte[size];
+            this.startOrder = new byte[size];
+        }
+
+        // Caller holds the lock
+        void begin(int index) {
+            state[index] = RUNNING;
+            attempts[index] = 1;
+            startOrder[started++] = (byte) index;
+            running++;
+        }
+
+        // Starts the budget on first use, i.e. when the first step runs
+        synchronized Deadline deadline() {
+            if (deadline == null && budget != null) {
+                deadline = Deadline.after(budget);
+            }
+            return deadline;
+        }
+
+        synchronized SagaStepException toException() {
+            List<SagaStep> steps = new ArrayList<>(started);
+            for (int i = 0; i < started; i++) {
+                steps.add(definition.step(startOrder[i]).step());
+            }
+            return new SagaStepException(definition.step(failedStep).step(), steps, failure);
+        }
+    }
+}
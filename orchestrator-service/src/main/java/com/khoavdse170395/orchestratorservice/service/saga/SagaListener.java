@@ -0,0 +1,29 @@
+package com.khoavdse170395.orchestratorservice.service.saga;
+
+import com.khoavdse170395.orchestratorservice.model.SagaStep;
+
+/**
+ * Callbacks of a saga definition, e.g. to record transitions in the saga log. They run on the
+ * thread that drives the saga at that moment. An exception from stepStarting fails the attempt
+ * before its action runs, one from stepCompleted fails it as if the action had failed; exceptions
+ * from the other callbacks are logged and ignored.
+ */
+public interface SagaListener<C> {
+
+    default void stepStarting(C context, SagaStep step, int attempt) {
+    }
+
+    // With the result of the action's stage; never called for the late reply of an attempt that timed out
+    default void stepCompleted(C context, SagaStep step, Object result) {
+    }
+
+    default void completed(C context) {
+    }
+
+    // The saga failed and, once every started step has stopped, compensation is about to run
+    default void compensating(C context, SagaStepException failure) {
+    }
+
+    default void compensated(C context, SagaStepException failure) {
+    }
+}
@@ -0,0 +1,23 @@
+package com.khoavdse170395.orchestratorservice.service.saga;
+
+import com.khoavdse170395.orchestratorservice.model.SagaStep;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * A step of a SagaStepGraph failed. Carries the steps that had been started by then, in start
+ * order, which is what has to be compensated.
+ */
+@Getter
+public class SagaStepException extends RuntimeException {
+
+    private final SagaStep failedStep;
+    private final List<SagaStep> startedSteps;
+
+    public SagaStepException(SagaStep failedStep, List<SagaStep> startedSteps, Throwable cause) {
+        super(cause.getMessage(), cause);
+        this.failedStep = failedStep;
+        this.startedSteps = List.copyOf(startedSteps);
+    }
+}
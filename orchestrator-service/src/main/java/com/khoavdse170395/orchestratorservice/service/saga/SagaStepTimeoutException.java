@@ -0,0 +1,12 @@
+package com.khoavdse170395.orchestratorservice.service.saga;
+
+import com.khoavdse170395.orchestratorservice.model.SagaStep;
+
+import java.time.Duration;
+
+public class SagaStepTimeoutException extends RuntimeException {
+
+    public SagaStepTimeoutException(SagaStep step, Duration timeout) {
+        super("Step " + step + " timed out after " + timeout.toMillis() + "ms");
+    }
+}
@@ -0,0 +1,213 @@
+package com.khoavdse170395.orchestratorservice;
+
+import com.khoavdse170395.orchestratorservice.config.HttpTransportFactory;
+import com.khoavdse170395.orchestratorservice.service.impl.AssignmentServiceClientImpl;
+import com.khoavdse170395.orchestratorservice.service.saga.RetryBudget;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Three local assignment-service replicas, one of which stalls for 300ms on a few percent of its
+ * requests, as in a GC pause. The same eligibility checks are run without and with hedging and the
+ * latency percentiles compared: without hedging every stalled request shows up in p99, with it
+ * the check is answered by another replica shortly after the hedge delay. Also checks that hedges
+ * are skipped once the hedge pool is full or the retry budget is spent.
+ */
+@Slf4j
+public class AssignmentHedgingTest {
+
+    private static final int CHECKS = 600;
+    private static final int THREADS = 4;
+    private static final long PAUSE_MS = 300;
+
+    static {
+        // Without it the stub's header and body writes wait on delayed ACKs and every check takes ~40ms
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final List<HttpServer> servers = new ArrayList<>();
+    private final AtomicLong pauses = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    // Every replica stalls on every request
+    private volatile boolean stallAll;
+    private String urls;
+
+    @BeforeEach
+    public void startReplicas() throws IOException {
+        List<String> baseUrls = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            boolean pausing = i == 0;
+            HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 256);
+            server.setExecutor(Executors.newFixedThreadPool(16));
+            server.createContext("/", exchange -> handle(exchange, pausing));
+            server.start();
+            servers.add(server);
+            baseUrls.add("http://127.0.0.1:" + server.getAddress().getPort());
+        }
+        urls = String.join(",", baseUrls);
+    }
+
+    @AfterEach
+    public void stopReplicas() {
+        for (HttpServer server : servers) {
+            server.stop(0);
+            ((ExecutorService) server.getExecutor()).shutdownNow();
+        }
+    }
+
+    @Test
+    public void testHedgingCutsTailLatency() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        HttpTransportFactory transport = new HttpTransportFactory(registry, 1000, 2000, 2000, 32, 96, 30_000, 60_000, false);
+        try {
+            AssignmentServiceClientImpl plain = new AssignmentServiceClientImpl(RestClient.builder(),
+                    transport.requestFactory("plain"), urls, registry, false, 0.95, 5, 200);
+            long[] unhedged = run(plain, 0);
+            long plainPauses = pauses.getAndSet(0);
+
+            AssignmentServiceClientImpl hedged = new AssignmentServiceClientImpl(RestClient.builder(),
+                    transport.requestFactory("hedged"), urls, registry, true, 0.95, 5, 200);
+            long[] withHedging = run(hedged, CHECKS);
+            hedged.destroy();
+
+            double hedgeWon = registry.get("orchestrator.assignment.eligibility.hedge").tag("result", "hedge_won").counter().count();
+            double primaryWon = registry.get("orchestrator.assignment.eligibility.hedge").tag("result", "primary_won").counter().count();
+            double notNeeded = registry.get("orchestrator.assignment.eligibility.hedge").tag("result", "not_needed").counter().count();
+            log.info("no hedging: {} checks, p50 {} ms, p90 {} ms, p99 {} ms, max {} ms, {} stalls", CHECKS,
+                    rounded(unhedged, 0.50), rounded(unhedged, 0.90), rounded(unhedged, 0.99),
+                    rounded(unhedged, 1.0), plainPauses);
+            log.info("hedged (p95): {} checks, p50 {} ms, p90 {} ms, p99 {} ms, max {} ms, {} stalls", CHECKS,
+                    rounded(withHedging, 0.50), rounded(withHedging, 0.90), rounded(withHedging, 0.99),
+                    rounded(withHedging, 1.0), pauses.get());
+            log.info("hedges: not needed={}, primary won={}, hedge won={}",
+                    (long) notNeeded, (long) primaryWon, (long) hedgeWon);
+
+            assertTrue(plainPauses > CHECKS / 100, "too few stalls to see in p99: " + plainPauses);
+            assertTrue(percentile(unhedged, 0.99) >= PAUSE_MS);
+            assertTrue(percentile(withHedging, 0.99) < percentile(unhedged, 0.99) / 2,
+                    "hedged p99 " + percentile(withHedging, 0.99) + " ms");
+            assertTrue(hedgeWon > 0);
+            // Only the slow tail is duplicated
+            assertTrue(hedgeWon + primaryWon < CHECKS * 0.2, "hedged " + (hedgeWon + primaryWon) + " of " + CHECKS);
+            // All three replicas took a share
+            for (String url : urls.split(",")) {
+                assertTrue(registry.get("orchestrator.downstream.calls").tag("replica", url).counter().count() > CHECKS / 10.0);
+            }
+        } finally {
+            transport.destroy();
+        }
+    }
+
+    @Test
+    public void testHedgeIsSkippedWhenPoolIsFullOrBudgetIsSpent() throws Exception {
+        stallAll = true;
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        HttpTransportFactory transport = new HttpTransportFactory(registry, 1000, 2000, 2000, 32, 96, 30_000, 60_000, false);
+        try {
+            // Budget to spare, one hedge at a time: four slow checks send one hedge between them
+            AssignmentServiceClientImpl bounded = new AssignmentServiceClientImpl(RestClient.builder(),
+                    transport.requestFactory("bounded"), urls, registry, true, 0.95, 5, 20, 1, new RetryBudget(1.0, 100));
+            checkConcurrently(bounded, 4, 1);
+            bounded.destroy();
+            assertEquals(3.0, hedges(registry, "skipped_busy"));
+            assertEquals(5, requests.getAndSet(0));
+
+            // Pool to spare, budget for one hedge
+            SimpleMeterRegistry budgetRegistry = new SimpleMeterRegistry();
+            AssignmentServiceClientImpl budgeted = new AssignmentServiceClientImpl(RestClient.builder(),
+                    transport.requestFactory("budgeted"), urls, budgetRegistry, true, 0.95, 5, 20, 16, new RetryBudget(0.0, 1));
+            checkConcurrently(budgeted, 4, 101);
+            budgeted.destroy();
+            assertEquals(3.0, hedges(budgetRegistry, "skipped_budget"));
+            assertEquals(0.0, hedges(budgetRegistry, "skipped_busy"));
+            assertEquals(5, requests.get());
+        } finally {
+            transport.destroy();
+        }
+    }
+
+    private static void checkConcurrently(AssignmentServiceClientImpl client, int checks, long firstAssignmentId) throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(checks);
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < checks; i++) {
+            long assignmentId = firstAssignmentId + i;
+            futures.add(threads.submit(() -> client.checkEligibility(assignmentId, "student")));
+        }
+        for (Future<Boolean> future : futures) {
+            assertTrue(future.get(10, TimeUnit.SECONDS));
+        }
+        threads.shutdown();
+    }
+
+    private static double hedges(SimpleMeterRegistry registry, String result) {
+        return registry.get("orchestrator.assignment.eligibility.hedge").tag("result", result).counter().count();
+    }
+
+    private long[] run(AssignmentServiceClientImpl client, int offset) throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < CHECKS; i++) {
+            // Distinct assignments, so the checks are not coalesced
+            long assignmentId = offset + i + 1;
+            futures.add(threads.submit(() -> {
+                long start = System.nanoTime();
+                assertTrue(client.checkEligibility(assignmentId, "student"));
+                return System.nanoTime() - start;
+            }));
+        }
+        long[] latencies = new long[CHECKS];
+        for (int i = 0; i < CHECKS; i++) {
+            latencies[i] = futures.get(i).get(30, TimeUnit.SECONDS);
+        }
+        threads.shutdown();
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+        return sorted[index] / 1_000_000.0;
+    }
+
+    private static double rounded(long[] sorted, double percentile) {
+        return Math.round(percentile(sorted, percentile) * 10) / 10.0;
+    }
+
+    private void handle(HttpExchange exchange, boolean pausing) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        requests.incrementAndGet();
+        if (stallAll || pausing && ThreadLocalRandom.current().nextInt(100) < 8) {
+            pauses.incrementAndGet();
+            try {
+                Thread.sleep(PAUSE_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        byte[] bytes = "{\"eligible\":true,\"reason\":\"Eligible\"}".getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.khoavdse170395.orchestratorservice;
+
+import com.khoavdse170395.orchestratorservice.config.DownstreamResilience;
+import com.khoavdse170395.orchestratorservice.config.HttpTransportFactory;
+import com.khoavdse170395.orchestratorservice.dto.StartAttemptRequest;
+import com.khoavdse170395.orchestratorservice.service.SagaLog;
+import com.khoavdse170395.orchestratorservice.service.impl.AssignmentServiceClientImpl;
+import com.khoavdse170395.orchestratorservice.service.impl.AttemptServiceClientImpl;
+import com.khoavdse170395.orchestratorservice.service.impl.InMemorySagaInstanceStore;
+import com.khoavdse170395.orchestratorservice.service.impl.SagaOrchestrationServiceImpl;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Fault injection against a stub of both downstream services: attempt-service endpoints can be
+ * made slow or failing while assignment-service stays healthy. Checks that the attempt breaker opens
+ * and sagas then compensate without calling attempt-service, that it closes again once the service
+ * recovers, and that the bulkhead keeps a slow attempt-service from taking every saga thread.
+ */
+@Slf4j
+public class DownstreamResilienceTest {
+
+    private HttpServer server;
+    private String baseUrl;
+    private HttpTransportFactory transport;
+    private SimpleMeterRegistry registry;
+
+    // Faults injected into the attempt-service endpoints
+    private volatile long attemptDelayMs;
+    private volatile int attemptStatus;
+
+    private final AtomicInteger attemptRequests = new AtomicInteger();
+    private final AtomicInteger attemptInFlight = new AtomicInteger();
+    private final AtomicInteger attemptMaxInFlight = new AtomicInteger();
+    private final AtomicInteger releases = new AtomicInteger();
+    private final AtomicLong attemptIds = new AtomicLong();
+
+    @BeforeEach
+    public void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 256);
+        server.setExecutor(Executors.newFixedThreadPool(32));
+        server.createContext("/", this::handle);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        registry = new SimpleMeterRegistry();
+        transport = new HttpTransportFactory(registry, 1000, 2000, 2000, 20, 40, 30_000, 60_000, false);
+    }
+
+    @AfterEach
+    public void stopStub() {
+        transport.destroy();
+        server.stop(0);
+        ((ExecutorService) server.getExecutor()).shutdownNow();
+    }
+
+    @Test
+    public void testSlowAttemptServiceOpensBreakerAndSagasCompensateFast() throws Exception {
+        // Calls over 100ms are slow; 5 of them in a window of 10 open the breaker for 2s
+        DownstreamResilience resilience = new DownstreamResilience(registry, true, 10, 5, 50, 100, 50, 2000, 2, 10, 0);
+        SagaOrchestrationServiceImpl service = service(resilience);
+        CircuitBreaker attemptBreaker = resilience.circuitBreaker("attempt");
+
+        attemptDelayMs = 150;
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(service.startAttempt(request(i)).getAttemptId());
+        }
+        assertEquals(CircuitBreaker.State.OPEN, attemptBreaker.getState());
+        assertEquals(CircuitBreaker.State.CLOSED, resilience.circuitBreaker("assignment").getState());
+
+        int attemptCallsBeforeOpen = attemptRequests.get();
+        long start = System.nanoTime();
+        for (int i = 5; i < 10; i++) {
+            long assignmentId = i;
+            assertThrows(RuntimeException.class, () -> service.startAttempt(request(assignmentId)));
+        }
+        long failFastMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("5 sagas against an open breaker failed in {} ms", failFastMillis);
+        assertEquals(attemptCallsBeforeOpen, attemptRequests.get(), "open breaker must not reach attempt-service");
+        assertEquals(5, releases.get(), "every failed saga releases its reservation");
+        assertTrue(failFastMillis < 5 * attemptDelayMs, "sagas waited for attempt-service: " + failFastMillis + " ms");
+        assertEquals(5.0, registry.get("orchestrator.downstream.rejected")
+                .tag("downstream", "attempt").tag("reason", "circuit_open").counter().count());
+        assertEquals(1.0, registry.get("resilience4j.circuitbreaker.state")
+                .tag("name", "attempt").tag("state", "open").gauge().value());
+
+        // attempt-service recovers: after openMs the trial calls succeed and the breaker closes
+        attemptDelayMs = 0;
+        Thread.sleep(2100);
+        for (int i = 10; i < 12; i++) {
+            assertNotNull(service.startAttempt(request(i)).getAttemptId());
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, attemptBreaker.getState());
+        for (String[] transition : new String[][]{{"CLOSED", "OPEN"}, {"OPEN", "HALF_OPEN"}, {"HALF_OPEN", "CLOSED"}}) {
+            assertEquals(1.0, registry.get("orchestrator.downstream.breaker.transitions")
+                    .tag("downstream", "attempt").tag("from", transition[0]).tag("to", transition[1])
+                    .counter().count());
+        }
+    }
+
+    @Test
+    public void testServerErrorsOpenBreaker() throws Exception {
+        DownstreamResilience resilience = new DownstreamResilience(registry, true, 10, 4, 50, 10_000, 100, 60_000, 2, 10, 0);
+        SagaOrchestrationServiceImpl service = service(resilience);
+
+        attemptStatus = 503;
+        for (int i = 0; i < 4; i++) {
+            long assignmentId = i;
+            assertThrows(RuntimeException.class, () -> service.startAttempt(request(assignmentId)));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, resilience.circuitBreaker("attempt").getState());
+        assertEquals(4, attemptRequests.get());
+        assertThrows(RuntimeException.class, () -> service.startAttempt(request(4)));
+        assertEquals(4, attemptRequests.get());
+        assertEquals(5, releases.get());
+    }
+
+    @Test
+    public void testDeadlineRefusalsDoNotOpenBreaker() throws Exception {
+        DownstreamResilience resilience = new DownstreamResilience(registry, true, 10, 4, 50, 10_000, 100, 60_000, 2, 10, 0);
+        SagaOrchestrationServiceImpl service = service(resilience);
+
+        // What attempt-service answers to a request whose deadline has passed
+        attemptStatus = 504;
+        for (int i = 0; i < 6; i++) {
+            long assignmentId = i;
+            assertThrows(RuntimeException.class, () -> service.startAttempt(request(assignmentId)));
+        }
+        CircuitBreaker attemptBreaker = resilience.circuitBreaker("attempt");
+        assertEquals(CircuitBreaker.State.CLOSED, attemptBreaker.getState());
+        assertEquals(0, attemptBreaker.getMetrics().getNumberOfFailedCalls());
+        assertEquals(6, releases.get());
+    }
+
+    @Test
+    public void testBulkheadKeepsSlowAttemptServiceFromStarvingAssignmentCalls() throws Exception {
+        // Breaker thresholds out of reach, only the bulkhead acts: 3 calls per downstream, waiting up to
+        // 100ms for a slot, which fast assignment calls get and 300ms attempt calls do not
+        DownstreamResilience resilience = new DownstreamResilience(registry, true, 100, 100, 100, 10_000, 100, 60_000, 2, 3, 100);
+        SagaOrchestrationServiceImpl service = service(resilience);
+        AssignmentServiceClientImpl assignmentClient = new AssignmentServiceClientImpl(RestClient.builder(),
+                resilience.decorate("assignment", transport.requestFactory("assignment-probe")), baseUrl);
+
+        attemptDelayMs = 300;
+        int sagas = 12;
+        ExecutorService sagaThreads = Executors.newFixedThreadPool(sagas);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < sagas; i++) {
+            long assignmentId = i;
+            futures.add(sagaThreads.submit(() -> service.startAttempt(request(assignmentId))));
+        }
+        Thread.sleep(100);
+        // attempt-service is saturated; assignment-service calls still go through at once
+        long probeStart = System.nanoTime();
+        assertTrue(assignmentClient.checkEligibility(999L, "probe"));
+        long probeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - probeStart);
+
+        int succeeded = 0;
+        for (Future<?> future : futures) {
+            try {
+                future.get(10, TimeUnit.SECONDS);
+                succeeded++;
+            } catch (ExecutionException e) {
+                // refused by the bulkhead
+            }
+        }
+        sagaThreads.shutdown();
+
+        double rejected = registry.get("orchestrator.downstream.rejected")
+                .tag("downstream", "attempt").tag("reason", "bulkhead_full").counter().count();
+        log.info("sagas={} succeeded={} bulkheadRejected={} attemptMaxInFlight={} probe={} ms",
+                sagas, succeeded, (long) rejected, attemptMaxInFlight.get(), probeMillis);
+        assertTrue(attemptMaxInFlight.get() <= 3, "attempt-service saw " + attemptMaxInFlight.get() + " concurrent calls");
+        assertTrue(succeeded >= 3);
+        assertEquals(sagas - succeeded, (int) rejected);
+        assertEquals(sagas - succeeded, releases.get());
+        assertTrue(probeMillis < attemptDelayMs, "assignment call waited " + probeMillis + " ms");
+    }
+
+    private SagaOrchestrationServiceImpl service(DownstreamResilience resilience) {
+        RestClient.Builder builder = RestClient.builder();
+        AssignmentServiceClientImpl assignmentClient = new AssignmentServiceClientImpl(builder,
+                resilience.decorate("assignment", transport.requestFactory("assignment")), baseUrl);
+        AttemptServiceClientImpl attemptClient = new AttemptServiceClientImpl(builder,
+                resilience.decorate("attempt", transport.requestFactory("attempt")), baseUrl);
+        return new SagaOrchestrationServiceImpl(assignmentClient, attemptClient,
+                new InMemorySagaInstanceStore(1000, Duration.ofMinutes(5), Clock.systemUTC()), Runnable::run, SagaLog.NOOP);
+    }
+
+    private static StartAttemptRequest request(long assignmentId) {
+        // One assignment per saga so that eligibility checks are not coalesced
+        return StartAttemptRequest.builder().assignmentId(assignmentId + 1).build();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        String path = exchange.getRequestURI().getPath();
+        int status = 200;
+        String body = "{}";
+        if (path.startsWith("/attempts")) {
+            attemptRequests.incrementAndGet();
+            int inFlight = attemptInFlight.incrementAndGet();
+            attemptMaxInFlight.accumulateAndGet(inFlight, Math::max);
+            try {
+                if (attemptDelayMs > 0) {
+                    Thread.sleep(attemptDelayMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                attemptInFlight.decrementAndGet();
+            }
+            if (attemptStatus != 0) {
+                status = attemptStatus;
+            } else if (path.equals("/attempts")) {
+                status = 201;
+                body = "{\"attemptId\":" + attemptIds.incrementAndGet() + ",\"status\":\"PENDING\"}";
+            }
+        } else if (path.endsWith("/check-eligibility")) {
+            body = "{\"eligible\":true,\"reason\":\"Eligible\"}";
+        } else if (path.endsWith("/release")) {
+            releases.incrementAndGet();
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
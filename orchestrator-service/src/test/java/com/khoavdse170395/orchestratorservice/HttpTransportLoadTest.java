@@ -0,0 +1,163 @@
+package com.khoavdse170395.orchestratorservice;
+
+import com.khoavdse170395.orchestratorservice.config.HttpTransportFactory;
+import com.khoavdse170395.orchestratorservice.dto.StartAttemptRequest;
+import com.khoavdse170395.orchestratorservice.service.SagaLog;
+import com.khoavdse170395.orchestratorservice.service.impl.AssignmentServiceClientImpl;
+import com.khoavdse170395.orchestratorservice.service.impl.AttemptServiceClientImpl;
+import com.khoavdse170395.orchestratorservice.service.impl.InMemorySagaInstanceStore;
+import com.khoavdse170395.orchestratorservice.service.impl.SagaOrchestrationServiceImpl;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs 1000 start-attempt sagas at once against a stub of both downstream services and counts the
+ * TCP connections the stub sees (one per distinct client port). The pooled transport must serve
+ * all 3000 calls over at most its per-route limit per downstream; the previous default (JDK client,
+ * unbounded, no timeouts) is run for comparison.
+ */
+@Slf4j
+@Tag("benchmark")
+public class HttpTransportLoadTest {
+
+    private static final int SAGAS = 1000;
+    private static final int MAX_PER_ROUTE = 20;
+
+    private HttpServer server;
+    private String baseUrl;
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicLong attemptIds = new AtomicLong();
+
+    @BeforeEach
+    public void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2048);
+        server.setExecutor(Executors.newFixedThreadPool(64));
+        server.createContext("/", this::handle);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    public void stopStub() {
+        server.stop(0);
+        ((ExecutorService) server.getExecutor()).shutdownNow();
+    }
+
+    @Test
+    public void testPooledTransportReusesConnections() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        HttpTransportFactory transport = new HttpTransportFactory(registry, 3000, 5000, 30_000,
+                MAX_PER_ROUTE, 2 * MAX_PER_ROUTE, 30_000, 60_000, false);
+        try {
+            Result pooled = runSagas(transport.requestFactory("assignment"), transport.requestFactory("attempt"));
+            Result unpooled = runSagas(new JdkClientHttpRequestFactory(), new JdkClientHttpRequestFactory());
+
+            log.info("pooled (hc5): {} sagas, {} requests over {} connections in {} ms",
+                    SAGAS, pooled.requests, pooled.connections, pooled.millis);
+            log.info("default (jdk): {} sagas, {} requests over {} connections in {} ms",
+                    SAGAS, unpooled.requests, unpooled.connections, unpooled.millis);
+
+            assertEquals(3 * SAGAS, pooled.requests);
+            assertTrue(pooled.connections <= 2 * MAX_PER_ROUTE, "pooled transport opened " + pooled.connections + " connections");
+            for (String downstream : List.of("assignment", "attempt")) {
+                assertEquals(0.0, registry.get("httpcomponents.httpclient.pool.total.connections")
+                        .tag("httpclient", downstream).tag("state", "leased").gauge().value());
+                assertTrue(registry.get("httpcomponents.httpclient.pool.total.connections")
+                        .tag("httpclient", downstream).tag("state", "available").gauge().value() > 0);
+                assertEquals(0.0, registry.get("httpcomponents.httpclient.pool.total.pending")
+                        .tag("httpclient", downstream).gauge().value());
+            }
+        } finally {
+            transport.destroy();
+        }
+    }
+
+    private Result runSagas(ClientHttpRequestFactory assignmentTransport, ClientHttpRequestFactory attemptTransport)
+            throws Exception {
+        clientPorts.clear();
+        requests.set(0);
+        RestClient.Builder builder = RestClient.builder();
+        AssignmentServiceClientImpl assignmentClient = new AssignmentServiceClientImpl(builder,
+                assignmentTransport, baseUrl);
+        AttemptServiceClientImpl attemptClient = new AttemptServiceClientImpl(builder,
+                attemptTransport, baseUrl);
+        SagaOrchestrationServiceImpl service = new SagaOrchestrationServiceImpl(assignmentClient, attemptClient,
+                new InMemorySagaInstanceStore(2 * SAGAS, Duration.ofMinutes(5), Clock.systemUTC()), Runnable::run, SagaLog.NOOP);
+
+        ExecutorService sagaThreads = Executors.newFixedThreadPool(SAGAS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < SAGAS; i++) {
+            // One assignment per saga, so identical eligibility checks are not coalesced and every step is a request
+            long assignmentId = i + 1;
+            futures.add(sagaThreads.submit(() -> {
+                start.await();
+                return service.startAttempt(StartAttemptRequest.builder().assignmentId(assignmentId).build());
+            }));
+        }
+        long startNanos = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(120, TimeUnit.SECONDS);
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        sagaThreads.shutdown();
+        return new Result(requests.get(), clientPorts.size(), millis);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+        exchange.getRequestBody().readAllBytes();
+        String path = exchange.getRequestURI().getPath();
+        int status = 200;
+        String body = "{}";
+        if (path.endsWith("/check-eligibility")) {
+            body = "{\"eligible\":true,\"reason\":\"Eligible\"}";
+        } else if (path.equals("/attempts")) {
+            status = 201;
+            body = "{\"attemptId\":" + attemptIds.incrementAndGet() + ",\"status\":\"PENDING\"}";
+        }
+        try {
+            // Some server-side work so that calls overlap and the pool is actually contended
+            Thread.sleep(2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private record Result(int requests, int connections, long millis) {
+    }
+}
@@ -0,0 +1,278 @@
+package com.khoavdse170395.orchestratorservice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.khoavdse170395.orchestratorservice.config.HttpTransportFactory;
+import com.khoavdse170395.orchestratorservice.config.MessagingConfig;
+import com.khoavdse170395.orchestratorservice.config.SagaExecutorConfig;
+import com.khoavdse170395.orchestratorservice.dto.SagaStatusResponse;
+import com.khoavdse170395.orchestratorservice.dto.StartAttemptRequest;
+import com.khoavdse170395.orchestratorservice.model.SagaCommand;
+import com.khoavdse170395.orchestratorservice.model.SagaInstance;
+import com.khoavdse170395.orchestratorservice.model.SagaMessage;
+import com.khoavdse170395.orchestratorservice.model.SagaStatus;
+import com.khoavdse170395.orchestratorservice.service.AssignmentServiceClient;
+import com.khoavdse170395.orchestratorservice.service.AttemptServiceClient;
+import com.khoavdse170395.orchestratorservice.service.SagaLog;
+import com.khoavdse170395.orchestratorservice.service.impl.AssignmentServiceClientImpl;
+import com.khoavdse170395.orchestratorservice.service.impl.AttemptServiceClientImpl;
+import com.khoavdse170395.orchestratorservice.service.impl.InMemoryMessageBroker;
+import com.khoavdse170395.orchestratorservice.service.impl.InMemorySagaInstanceStore;
+import com.khoavdse170395.orchestratorservice.service.impl.MessageTimeoutException;
+import com.khoavdse170395.orchestratorservice.service.impl.MessagingAssignmentServiceClient;
+import com.khoavdse170395.orchestratorservice.service.impl.MessagingAttemptServiceClient;
+import com.khoavdse170395.orchestratorservice.service.impl.NoSubscriberException;
+import com.khoavdse170395.orchestratorservice.service.impl.RequestReplyChannel;
+import com.khoavdse170395.orchestratorservice.service.impl.SagaOrchestrationServiceImpl;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Start-attempt sagas over the message transport, with both downstream services stubbed as command
+ * handlers on the in-memory broker, and a throughput comparison with the HTTP transport: the same
+ * burst of sagas, the same 10ms per downstream call, the same 8 saga threads.
+ */
+@Slf4j
+public class MessagingTransportTest {
+
+    private static final int SAGAS = 1000;
+    private static final long CALL_MS = 10;
+    private static final int SAGA_THREADS = 8;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong attemptIds = new AtomicLong();
+    private final Queue<SagaMessage> commands = new ConcurrentLinkedQueue<>();
+    // Stub services answer after CALL_MS without holding a thread meanwhile
+    private final ScheduledExecutorService stubReplies = Executors.newScheduledThreadPool(2);
+    private volatile boolean refuseReserves;
+    private InMemoryMessageBroker broker;
+    private RequestReplyChannel channel;
+    private HttpServer server;
+
+    @BeforeEach
+    public void setUp() {
+        broker = new InMemoryMessageBroker(4, meterRegistry);
+        channel = new RequestReplyChannel(broker, "orchestrator.replies.test", Duration.ofSeconds(2), meterRegistry);
+        broker.subscribe(MessagingAssignmentServiceClient.COMMAND_TOPIC, this::handleCommand);
+        broker.subscribe(MessagingAttemptServiceClient.COMMAND_TOPIC, this::handleCommand);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        channel.close();
+        broker.close();
+        stubReplies.shutdownNow();
+        if (server != null) {
+            server.stop(0);
+            ((ExecutorService) server.getExecutor()).shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSagaStepsAreCorrelatedByIdempotencyKey() throws Exception {
+        SagaOrchestrationServiceImpl service = messagingService(Executors.newFixedThreadPool(2));
+
+        String sagaId = service.startAttemptAsync(StartAttemptRequest.builder().assignmentId(1L).build()).getSagaId();
+        SagaInstance saga = service.findSaga(sagaId).orElseThrow();
+        SagaStatusResponse finished = saga.getCompletion().get(10, TimeUnit.SECONDS);
+
+        assertEquals(SagaStatus.COMPLETED.name(), finished.getStatus());
+        assertEquals(attemptIds.get(), finished.getAttemptId());
+        for (SagaCommand command : List.of(SagaCommand.CREATE_ATTEMPT, SagaCommand.RESERVE_ATTEMPT)) {
+            SagaMessage sent = commands.stream().filter(m -> m.getCommand() == command).findFirst().orElseThrow();
+            assertEquals(saga.getIdempotencyKey(), sent.getCorrelationId());
+            assertEquals("orchestrator.replies.test", sent.getReplyTo());
+        }
+        assertEquals(3.0, meterRegistry.get("orchestrator.messaging.replies").tag("result", "ok").counter().count());
+    }
+
+    @Test
+    public void testRefusedReserveIsCompensatedOverMessages() throws Exception {
+        SagaOrchestrationServiceImpl service = messagingService(Executors.newFixedThreadPool(2));
+        refuseReserves = true;
+
+        String sagaId = service.startAttemptAsync(StartAttemptRequest.builder().assignmentId(1L).build()).getSagaId();
+        SagaStatusResponse finished = service.findSaga(sagaId).orElseThrow().getCompletion().get(10, TimeUnit.SECONDS);
+
+        assertEquals(SagaStatus.COMPENSATED.name(), finished.getStatus());
+        assertTrue(finished.getError().contains("409"), finished.getError());
+        List<SagaCommand> sent = commands.stream().map(SagaMessage::getCommand).toList();
+        assertTrue(sent.contains(SagaCommand.CANCEL_ATTEMPT), sent.toString());
+        assertTrue(sent.contains(SagaCommand.RELEASE_ATTEMPT), sent.toString());
+    }
+
+    @Test
+    public void testUnansweredCommandTimesOut() {
+        RequestReplyChannel shortChannel = new RequestReplyChannel(broker, "orchestrator.replies.short",
+                Duration.ofMillis(50), meterRegistry);
+        try {
+            // The subscriber never replies
+            broker.subscribe("silent", command -> { });
+            CompletableFuture<SagaMessage> reply = shortChannel.request("silent", SagaCommand.AUTO_SCORE, "k1", Map.of());
+            assertThrows(MessageTimeoutException.class, () -> RequestReplyChannel.await(reply));
+            assertEquals(1.0, meterRegistry.get("orchestrator.messaging.replies").tag("result", "timeout").counter().count());
+        } finally {
+            shortChannel.close();
+        }
+    }
+
+    @Test
+    public void testCommandWithoutSubscriberFailsFastAndSagaCompensates() throws Exception {
+        InMemoryMessageBroker empty = new InMemoryMessageBroker(1, meterRegistry);
+        RequestReplyChannel emptyChannel = new RequestReplyChannel(empty, "orchestrator.replies.empty",
+                Duration.ofSeconds(30), meterRegistry);
+        try {
+            CompletableFuture<SagaMessage> reply = emptyChannel.request("nowhere", SagaCommand.AUTO_SCORE, "k1", Map.of());
+            assertThrows(NoSubscriberException.class, () -> RequestReplyChannel.await(reply));
+            assertEquals(1.0, meterRegistry.get("orchestrator.messaging.broker.messages").tag("result", "undeliverable").counter().count());
+
+            // Far inside the 30s reply timeout
+            SagaOrchestrationServiceImpl service = new SagaOrchestrationServiceImpl(
+                    new MessagingAssignmentServiceClient(emptyChannel, objectMapper),
+                    new MessagingAttemptServiceClient(emptyChannel, objectMapper),
+                    new InMemorySagaInstanceStore(100, Duration.ofMinutes(5), Clock.systemUTC()),
+                    Executors.newFixedThreadPool(2), SagaLog.NOOP);
+            String sagaId = service.startAttemptAsync(StartAttemptRequest.builder().assignmentId(1L).build()).getSagaId();
+            SagaStatusResponse finished = service.findSaga(sagaId).orElseThrow().getCompletion().get(5, TimeUnit.SECONDS);
+            assertEquals(SagaStatus.COMPENSATED.name(), finished.getStatus());
+            assertEquals(0.0, meterRegistry.get("orchestrator.messaging.replies").tag("result", "timeout").counter().count());
+        } finally {
+            emptyChannel.close();
+            empty.close();
+        }
+    }
+
+    @Test
+    public void testInMemoryBrokerOnlyStartsUnderTestProfile() {
+        MessagingConfig config = new MessagingConfig();
+        MockEnvironment environment = new MockEnvironment();
+        assertThrows(IllegalStateException.class, () -> config.messageBroker(1, meterRegistry, environment));
+
+        environment.setActiveProfiles("test");
+        config.messageBroker(1, meterRegistry, environment).close();
+    }
+
+    @Test
+    @Tag("benchmark")
+    public void benchmarkHttpVersusMessaging() throws Exception {
+        startHttpStub();
+        HttpTransportFactory transport = new HttpTransportFactory(meterRegistry, 3000, 5000, 30_000, 100, 200, 30_000, 60_000, false);
+        try {
+            RestClient.Builder builder = RestClient.builder();
+            String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+            double http = run("http", new AssignmentServiceClientImpl(builder, transport.requestFactory("assignment"), baseUrl),
+                    new AttemptServiceClientImpl(builder, transport.requestFactory("attempt"), baseUrl));
+            double messaging = run("messaging", new MessagingAssignmentServiceClient(channel, objectMapper),
+                    new MessagingAttemptServiceClient(channel, objectMapper));
+
+            // Over HTTP every call holds one of the 8 threads for 10ms, three calls per saga
+            assertTrue(http < SAGA_THREADS * 1000.0 / (3 * CALL_MS) * 1.2, "http " + http);
+            assertTrue(messaging > 2 * http, "messaging " + messaging + " vs http " + http);
+        } finally {
+            transport.destroy();
+        }
+    }
+
+    private double run(String label, AssignmentServiceClient assignmentClient, AttemptServiceClient attemptClient)
+            throws Exception {
+        ThreadPoolExecutor executor = SagaExecutorConfig.platformThreadExecutor(SAGA_THREADS, SAGA_THREADS, 3 * SAGAS);
+        SagaOrchestrationServiceImpl service = new SagaOrchestrationServiceImpl(assignmentClient, attemptClient,
+                new InMemorySagaInstanceStore(SAGAS, Duration.ofMinutes(5), Clock.systemUTC()), executor, SagaLog.NOOP);
+        try {
+            long start = System.nanoTime();
+            List<CompletableFuture<SagaStatusResponse>> completions = new ArrayList<>(SAGAS);
+            for (int i = 0; i < SAGAS; i++) {
+                // One assignment per saga, so identical eligibility checks are not coalesced
+                String sagaId = service.startAttemptAsync(StartAttemptRequest.builder().assignmentId(i + 1L).build()).getSagaId();
+                completions.add(service.findSaga(sagaId).orElseThrow().getCompletion());
+            }
+            for (CompletableFuture<SagaStatusResponse> completion : completions) {
+                assertEquals(SagaStatus.COMPLETED.name(), completion.get(60, TimeUnit.SECONDS).getStatus());
+            }
+            long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            double perSecond = SAGAS * 1000.0 / millis;
+            log.info("{}: {} sagas in {} ms, {} sagas/s, saga threads {}",
+                    label, SAGAS, millis, Math.round(perSecond), executor.getLargestPoolSize());
+            return perSecond;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private SagaOrchestrationServiceImpl messagingService(ExecutorService executor) {
+        return new SagaOrchestrationServiceImpl(new MessagingAssignmentServiceClient(channel, objectMapper),
+                new MessagingAttemptServiceClient(channel, objectMapper),
+                new InMemorySagaInstanceStore(100, Duration.ofMinutes(5), Clock.systemUTC()), executor, SagaLog.NOOP);
+    }
+
+    private void handleCommand(SagaMessage command) {
+        commands.add(command);
+        SagaMessage reply = switch (command.getCommand()) {
+            case CHECK_ELIGIBILITY -> command.reply(Map.of("eligible", true));
+            case CREATE_ATTEMPT -> command.reply(Map.of("attemptId", attemptIds.incrementAndGet()));
+            case FIND_ATTEMPTS -> command.reply(Map.of("attempts", List.of()));
+            case RESERVE_ATTEMPT -> refuseReserves
+                    ? command.failure(409, "Maximum attempts reached")
+                    : command.reply(Map.of());
+            default -> command.reply(Map.of());
+        };
+        stubReplies.schedule(() -> broker.publish(command.getReplyTo(), reply), CALL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void startHttpStub() throws IOException {
+        // Without it the stub's header and body writes wait on delayed ACKs and HTTP looks far slower than it is
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2048);
+        server.setExecutor(Executors.newFixedThreadPool(64));
+        server.createContext("/", this::handleHttp);
+        server.start();
+    }
+
+    private void handleHttp(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        String path = exchange.getRequestURI().getPath();
+        int status = 200;
+        String body = "{}";
+        if (path.endsWith("/check-eligibility")) {
+            body = "{\"eligible\":true,\"reason\":\"Eligible\"}";
+        } else if (path.equals("/attempts")) {
+            status = 201;
+            body = "{\"attemptId\":" + attemptIds.incrementAndGet() + ",\"status\":\"PENDING\"}";
+        }
+        try {
+            Thread.sleep(CALL_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.khoavdse170395.orchestratorservice;
+
+import com.khoavdse170395.orchestratorservice.service.impl.ReplicaBalancer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Replica selection without a network: replicas are plain names and the call decides whether the
+ * replica failed. Covers ejection after consecutive failures and readmission after the cooldown,
+ * the cap on ejected replicas, and sticky routing by key.
+ */
+public class ReplicaBalancerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    public void testFailingReplicaIsEjectedAndReadmitted() throws InterruptedException {
+        ReplicaBalancer<String> balancer = balancer(new ReplicaBalancer.Ejection(3, 1000, 200, 50));
+        Set<String> down = Set.of("a");
+
+        for (int i = 0; i < 200; i++) {
+            try {
+                balancer.call(name -> {
+                    if (down.contains(name)) {
+                        throw HttpServerErrorException.create(HttpStatus.SERVICE_UNAVAILABLE, "down", null, null, null);
+                    }
+                    return name;
+                });
+            } catch (HttpServerErrorException e) {
+                // Only until a is ejected
+            }
+        }
+
+        double callsToA = registry.get("orchestrator.downstream.calls").tag("replica", "a").counter().count();
+        assertEquals(3.0, callsToA, "calls to a before ejection");
+        assertEquals(1.0, registry.get("orchestrator.downstream.ejections").tag("replica", "a").counter().count());
+        assertEquals(1.0, registry.get("orchestrator.downstream.ejected").tag("replica", "a").gauge().value());
+
+        Thread.sleep(250);
+        assertEquals(0.0, registry.get("orchestrator.downstream.ejected").tag("replica", "a").gauge().value());
+        for (int i = 0; i < 60; i++) {
+            balancer.call(name -> name);
+        }
+        assertTrue(registry.get("orchestrator.downstream.calls").tag("replica", "a").counter().count() > callsToA);
+    }
+
+    @Test
+    public void testClientErrorsDoNotEjectAndNotAllReplicasAreEjected() {
+        ReplicaBalancer<String> balancer = balancer(new ReplicaBalancer.Ejection(2, 1000, 60_000, 50));
+
+        for (int i = 0; i < 50; i++) {
+            assertThrows(HttpClientErrorException.class, () -> balancer.call(name -> {
+                throw HttpClientErrorException.create(HttpStatus.NOT_FOUND, "no such assignment", null, null, null);
+            }));
+        }
+        assertEquals(0, ejected());
+
+        // Everything down: 50% of 3 replicas is one replica
+        for (int i = 0; i < 50; i++) {
+            assertThrows(HttpServerErrorException.class, () -> balancer.call(name -> {
+                throw HttpServerErrorException.create(HttpStatus.INTERNAL_SERVER_ERROR, "boom", null, null, null);
+            }));
+        }
+        assertEquals(1, ejected());
+    }
+
+    @Test
+    public void testSameKeyGoesToSameReplicaUntilItIsEjected() {
+        ReplicaBalancer<String> balancer = balancer(new ReplicaBalancer.Ejection(1, 1000, 60_000, 50));
+        Map<String, Integer> keysPerReplica = new HashMap<>();
+        for (long assignmentId = 1; assignmentId <= 300; assignmentId++) {
+            String first = balancer.chooseFor(assignmentId).getUrl();
+            for (int i = 0; i < 5; i++) {
+                assertEquals(first, balancer.chooseFor(assignmentId).getUrl());
+            }
+            keysPerReplica.merge(first, 1, Integer::sum);
+        }
+        // Spread over all replicas
+        assertEquals(3, keysPerReplica.size());
+        keysPerReplica.values().forEach(keys -> assertTrue(keys > 50, keysPerReplica.toString()));
+
+        long assignmentId = 42;
+        String home = balancer.chooseFor(assignmentId).getUrl();
+        assertThrows(HttpServerErrorException.class, () -> balancer.callFor(assignmentId, name -> {
+            throw HttpServerErrorException.create(HttpStatus.BAD_GATEWAY, "down", null, null, null);
+        }));
+        String fallback = balancer.chooseFor(assignmentId).getUrl();
+        assertNotEquals(home, fallback);
+        assertEquals(fallback, balancer.chooseFor(assignmentId).getUrl());
+    }
+
+    private ReplicaBalancer<String> balancer(ReplicaBalancer.Ejection ejection) {
+        Map<String, String> replicas = new LinkedHashMap<>();
+        for (String name : new String[]{"a", "b", "c"}) {
+            replicas.put(name, name);
+        }
+        return new ReplicaBalancer<>("assignment", replicas, registry, ejection);
+    }
+
+    private long ejected() {
+        return registry.get("orchestrator.downstream.ejected").gauges().stream()
+                .filter(gauge -> gauge.value() == 1.0)
+                .count();
+    }
+}
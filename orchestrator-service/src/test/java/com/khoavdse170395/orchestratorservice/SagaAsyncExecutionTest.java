@@ -0,0 +1,138 @@
+package com.khoavdse170395.orchestratorservice;
+
+import com.khoavdse170395.orchestratorservice.dto.SagaStatusResponse;
+import com.khoavdse170395.orchestratorservice.dto.StartAttemptRequest;
+import com.khoavdse170395.orchestratorservice.dto.StartAttemptResponse;
+import com.khoavdse170395.orchestratorservice.model.SagaInstance;
+import com.khoavdse170395.orchestratorservice.model.SagaStatus;
+import com.khoavdse170395.orchestratorservice.service.AssignmentServiceClient;
+import com.khoavdse170395.orchestratorservice.service.AttemptServiceClient;
+import com.khoavdse170395.orchestratorservice.service.SagaLog;
+import com.khoavdse170395.orchestratorservice.service.impl.InMemorySagaInstanceStore;
+import com.khoavdse170395.orchestratorservice.service.impl.SagaOrchestrationServiceImpl;
+import com.khoavdse170395.orchestratorservice.service.saga.Deadline;
+import com.khoavdse170395.orchestratorservice.service.saga.RetryPolicy;
+import com.khoavdse170395.orchestratorservice.service.saga.SagaEngine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class SagaAsyncExecutionTest {
+
+    private final AssignmentServiceClient assignmentClient = mock(AssignmentServiceClient.class);
+    private final AttemptServiceClient attemptClient = mock(AttemptServiceClient.class);
+    private final InMemorySagaInstanceStore store = new InMemorySagaInstanceStore(100, Duration.ofMinutes(5), Clock.systemUTC());
+    private ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testStartReturnsBeforeRemoteCallsAndReportsAttempt() throws Exception {
+        CountDownLatch eligibilityRelease = new CountDownLatch(1);
+        when(assignmentClient.checkEligibility(eq(1L), anyString())).thenAnswer(invocation -> {
+            eligibilityRelease.await(10, TimeUnit.SECONDS);
+            return true;
+        });
+        when(attemptClient.createAttempt(eq(1L), anyString(), anyString())).thenReturn(1001L);
+        SagaOrchestrationServiceImpl service = new SagaOrchestrationServiceImpl(assignmentClient, attemptClient, store, executor, SagaLog.NOOP);
+
+        StartAttemptResponse response = service.startAttemptAsync(StartAttemptRequest.builder().assignmentId(1L).build());
+
+        // The eligibility call is still blocked, yet the caller already has its saga id
+        assertNotNull(response.getSagaId());
+        assertNull(response.getAttemptId());
+        SagaInstance saga = service.findSaga(response.getSagaId()).orElseThrow();
+        assertFalse(saga.getStatus().isFinished());
+
+        eligibilityRelease.countDown();
+        SagaStatusResponse finished = saga.getCompletion().get(10, TimeUnit.SECONDS);
+        assertEquals(SagaStatus.COMPLETED.name(), finished.getStatus());
+        assertEquals(1001L, finished.getAttemptId());
+        verify(assignmentClient).reserveAttempt(eq(1L), anyString(), eq(saga.getIdempotencyKey()));
+    }
+
+    @Test
+    public void testFailedStepIsCompensatedAndReported() throws Exception {
+        when(assignmentClient.checkEligibility(eq(2L), anyString())).thenReturn(true);
+        CountDownLatch created = new CountDownLatch(1);
+        when(attemptClient.createAttempt(eq(2L), anyString(), anyString())).thenAnswer(invocation -> {
+            created.countDown();
+            return 2002L;
+        });
+        // Create and reserve run in parallel; fail the reserve only once the create has gone out
+        doAnswer(invocation -> {
+            created.await(10, TimeUnit.SECONDS);
+            throw new RuntimeException("HTTP error: 400 BAD_REQUEST");
+        }).when(assignmentClient).reserveAttempt(eq(2L), anyString(), anyString());
+        SagaOrchestrationServiceImpl service = new SagaOrchestrationServiceImpl(assignmentClient, attemptClient, store, executor, SagaLog.NOOP);
+
+        String sagaId = service.startAttemptAsync(StartAttemptRequest.builder().assignmentId(2L).build()).getSagaId();
+        SagaStatusResponse finished = service.findSaga(sagaId).orElseThrow().getCompletion().get(10, TimeUnit.SECONDS);
+
+        assertEquals(SagaStatus.COMPENSATED.name(), finished.getStatus());
+        assertEquals("COMPENSATION", finished.getStep());
+        assertEquals(2002L, finished.getAttemptId());
+        verify(attemptClient).cancelAttempt(2002L);
+        verify(assignmentClient).releaseAttempt(eq(2L), anyString(), anyString());
+    }
+
+    @Test
+    public void testQueuedSagasOutlivingTheRequestDeadlineStillComplete() throws Exception {
+        executor = Executors.newSingleThreadExecutor();
+        when(assignmentClient.checkEligibility(anyLong(), anyString())).thenAnswer(invocation -> {
+            Thread.sleep(20);
+            return true;
+        });
+        when(attemptClient.createAttempt(anyLong(), anyString(), anyString())).thenReturn(1L);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        SagaOrchestrationServiceImpl service = new SagaOrchestrationServiceImpl(assignmentClient, attemptClient, store,
+                new SagaEngine(executor, registry), SagaLog.NOOP, true, RetryPolicy.NONE, Map.of(), 0, 250);
+        // Holds the only saga thread for longer than both the request's deadline and the async budget
+        executor.submit(() -> {
+            Thread.sleep(300);
+            return null;
+        });
+
+        List<SagaInstance> sagas = new ArrayList<>();
+        Deadline.runWith(Deadline.after(Duration.ofMillis(100)), () -> {
+            for (long i = 0; i < 3; i++) {
+                String sagaId = service.startAttemptAsync(StartAttemptRequest.builder().assignmentId(10L + i).build()).getSagaId();
+                sagas.add(service.findSaga(sagaId).orElseThrow());
+            }
+        });
+
+        for (SagaInstance saga : sagas) {
+            assertEquals(SagaStatus.COMPLETED.name(), saga.getCompletion().get(10, TimeUnit.SECONDS).getStatus());
+        }
+        assertNull(registry.find("orchestrator.saga.deadline.exceeded").counter());
+    }
+
+    @Test
+    public void testSaturatedExecutorRejectsSaga() {
+        executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new SynchronousQueue<>());
+        CountDownLatch block = new CountDownLatch(1);
+        when(assignmentClient.checkEligibility(anyLong(), anyString())).thenAnswer(invocation -> block.await(10, TimeUnit.SECONDS));
+        SagaOrchestrationServiceImpl service = new SagaOrchestrationServiceImpl(assignmentClient, attemptClient, store, executor, SagaLog.NOOP);
+
+        service.startAttemptAsync(StartAttemptRequest.builder().assignmentId(3L).build());
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> service.startAttemptAsync(StartAttemptRequest.builder().assignmentId(3L).build()));
+        assertEquals(503, e.getStatusCode().value());
+        block.countDown();
+    }
+}
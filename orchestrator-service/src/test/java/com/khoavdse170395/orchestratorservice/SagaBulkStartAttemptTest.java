@@ -0,0 +1,148 @@
+package com.khoavdse170395.orchestratorservice;
+
+import com.khoavdse170395.orchestratorservice.dto.BulkAttemptItem;
+import com.khoavdse170395.orchestratorservice.dto.BulkReservationResult;
+import com.khoavdse170395.orchestratorservice.dto.BulkStartAttemptRequest;
+import com.khoavdse170395.orchestratorservice.dto.BulkStartAttemptResponse;
+import com.khoavdse170395.orchestratorservice.dto.SagaStatusResponse;
+import com.khoavdse170395.orchestratorservice.model.SagaStatus;
+import com.khoavdse170395.orchestratorservice.service.AssignmentServiceClient;
+import com.khoavdse170395.orchestratorservice.service.AttemptServiceClient;
+import com.khoavdse170395.orchestratorservice.service.SagaLog;
+import com.khoavdse170395.orchestratorservice.service.impl.InMemorySagaInstanceStore;
+import com.khoavdse170395.orchestratorservice.service.impl.SagaOrchestrationServiceImpl;
+import com.khoavdse170395.orchestratorservice.service.saga.RetryPolicy;
+import com.khoavdse170395.orchestratorservice.service.saga.SagaEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class SagaBulkStartAttemptTest {
+
+    private final AssignmentServiceClient assignmentClient = mock(AssignmentServiceClient.class);
+    private final AttemptServiceClient attemptClient = mock(AttemptServiceClient.class);
+    private final InMemorySagaInstanceStore store = new InMemorySagaInstanceStore(100, Duration.ofMinutes(5), Clock.systemUTC());
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testClassLaunchUsesTwoCallsAndCompensatesPerStudent() {
+        // "late" is rejected by the reserve, "lost" gets no attempt back from the create
+        when(assignmentClient.reserveAttempts(anyList())).thenAnswer(invocation -> ((List<BulkAttemptItem>) invocation.getArgument(0))
+                .stream()
+                .map(item -> BulkReservationResult.builder()
+                        .idempotencyKey(item.getIdempotencyKey())
+                        .status(item.getUserId().equals("late") ? "REJECTED" : "RESERVED")
+                        .reason(item.getUserId().equals("late") ? "Assignment has closed" : null)
+                        .build())
+                .toList());
+        when(attemptClient.createAttempts(anyList())).thenAnswer(invocation -> {
+            Map<String, Long> attemptIds = new HashMap<>();
+            long next = 100;
+            for (BulkAttemptItem item : (List<BulkAttemptItem>) invocation.getArgument(0)) {
+                if (!item.getUserId().equals("lost")) {
+                    attemptIds.put(item.getIdempotencyKey(), next++);
+                }
+            }
+            return attemptIds;
+        });
+        SagaOrchestrationServiceImpl service = new SagaOrchestrationServiceImpl(assignmentClient, attemptClient, store, executor, SagaLog.NOOP);
+
+        BulkStartAttemptResponse response = service.startAttempts(request("s1", "late", "s2", "lost"));
+
+        assertEquals(2, response.getCompleted());
+        assertEquals(2, response.getFailed());
+        List<SagaStatusResponse> sagas = response.getSagas();
+        assertEquals(List.of(SagaStatus.COMPLETED.name(), SagaStatus.COMPENSATED.name(), SagaStatus.COMPLETED.name(),
+                SagaStatus.COMPENSATED.name()), sagas.stream().map(SagaStatusResponse::getStatus).toList());
+        assertNotNull(sagas.get(0).getAttemptId());
+        assertTrue(sagas.get(1).getError().contains("Assignment has closed"));
+        assertEquals(sagas.get(2).getStatus(), service.findSaga(sagas.get(2).getSagaId()).orElseThrow().getStatus().name());
+
+        // Three round trips for four students; only the student without an attempt is released
+        verify(assignmentClient, times(1)).reserveAttempts(anyList());
+        ArgumentCaptor<List<BulkAttemptItem>> created = ArgumentCaptor.forClass(List.class);
+        verify(attemptClient, times(1)).createAttempts(created.capture());
+        assertEquals(List.of("s1", "s2", "lost"), created.getValue().stream().map(BulkAttemptItem::getUserId).toList());
+        ArgumentCaptor<List<BulkAttemptItem>> released = ArgumentCaptor.forClass(List.class);
+        verify(assignmentClient, times(1)).releaseAttempts(released.capture());
+        assertEquals(List.of("lost"), released.getValue().stream().map(BulkAttemptItem::getUserId).toList());
+        verifyNoMoreInteractions(assignmentClient);
+        verify(attemptClient, never()).cancelAttempt(anyLong());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFailedBulkCreateReleasesEveryReservation() {
+        when(assignmentClient.reserveAttempts(anyList())).thenAnswer(invocation -> ((List<BulkAttemptItem>) invocation.getArgument(0))
+                .stream()
+                .map(item -> BulkReservationResult.builder().idempotencyKey(item.getIdempotencyKey()).status("RESERVED").build())
+                .toList());
+        when(attemptClient.createAttempts(anyList())).thenThrow(new RuntimeException("Failed to create attempts"));
+        SagaOrchestrationServiceImpl service = new SagaOrchestrationServiceImpl(assignmentClient, attemptClient, store, executor, SagaLog.NOOP);
+
+        BulkStartAttemptResponse response = service.startAttempts(request("s1", "s2", "s3"));
+
+        assertEquals(0, response.getCompleted());
+        assertTrue(response.getSagas().stream().allMatch(saga -> SagaStatus.COMPENSATED.name().equals(saga.getStatus())));
+        ArgumentCaptor<List<BulkAttemptItem>> released = ArgumentCaptor.forClass(List.class);
+        verify(assignmentClient).releaseAttempts(released.capture());
+        assertEquals(3, released.getValue().size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testTimedOutBulkCreateCancelsTheAttemptsItCreated() {
+        when(assignmentClient.reserveAttempts(anyList())).thenAnswer(invocation -> ((List<BulkAttemptItem>) invocation.getArgument(0))
+                .stream()
+                .map(item -> BulkReservationResult.builder().idempotencyKey(item.getIdempotencyKey()).status("RESERVED").build())
+                .toList());
+        // The batch lands at once but answers after the step timed out; the lookup finds its attempts by key
+        Map<String, Long> created = new ConcurrentHashMap<>();
+        when(attemptClient.createAttempts(anyList())).thenAnswer(invocation -> {
+            for (BulkAttemptItem item : (List<BulkAttemptItem>) invocation.getArgument(0)) {
+                created.put(item.getIdempotencyKey(), Long.valueOf(item.getUserId().substring(1)));
+            }
+            Thread.sleep(300);
+            return Map.copyOf(created);
+        });
+        when(attemptClient.findAttempts(anyList())).thenAnswer(invocation -> Map.copyOf(created));
+        SagaOrchestrationServiceImpl service = new SagaOrchestrationServiceImpl(assignmentClient, attemptClient, store,
+                new SagaEngine(executor), SagaLog.NOOP, true, RetryPolicy.NONE, 50);
+
+        BulkStartAttemptResponse response = service.startAttempts(request("s1", "s2"));
+
+        assertEquals(0, response.getCompleted());
+        verify(attemptClient).cancelAttempt(1L);
+        verify(attemptClient).cancelAttempt(2L);
+        verify(attemptClient, times(1)).createAttempts(anyList());
+        verify(assignmentClient).releaseAttempts(anyList());
+    }
+
+    private static BulkStartAttemptRequest request(String... userIds) {
+        return BulkStartAttemptRequest.builder()
+                .items(Arrays.stream(userIds)
+                        .map(userId -> BulkStartAttemptRequest.Item.builder().assignmentId(1L).userId(userId).build())
+                        .toList())
+                .build();
+    }
+}
@@ -0,0 +1,178 @@
+package com.khoavdse170395.orchestratorservice;
+
+import com.khoavdse170395.orchestratorservice.config.RestClientConfig;
+import com.khoavdse170395.orchestratorservice.config.SagaExecutorConfig;
+import com.khoavdse170395.orchestratorservice.dto.StartAttemptRequest;
+import com.khoavdse170395.orchestratorservice.model.SagaStep;
+import com.khoavdse170395.orchestratorservice.service.SagaLog;
+import com.khoavdse170395.orchestratorservice.service.impl.AssignmentServiceClientImpl;
+import com.khoavdse170395.orchestratorservice.service.impl.AttemptServiceClientImpl;
+import com.khoavdse170395.orchestratorservice.service.impl.InMemorySagaInstanceStore;
+import com.khoavdse170395.orchestratorservice.service.impl.SagaOrchestrationServiceImpl;
+import com.khoavdse170395.orchestratorservice.service.saga.Deadline;
+import com.khoavdse170395.orchestratorservice.service.saga.RetryBudget;
+import com.khoavdse170395.orchestratorservice.service.saga.RetryPolicy;
+import com.khoavdse170395.orchestratorservice.service.saga.SagaEngine;
+import com.khoavdse170395.orchestratorservice.service.saga.SagaStepException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Saga deadlines against a stub of both downstream services, which records the X-Request-Timeout-Ms
+ * each call arrives with: the time left is passed on by every forward step, a step running past the
+ * deadline fails the saga with a 504 and the steps after it are never called, and a retry that could
+ * not finish in time is skipped while compensation still runs.
+ */
+public class SagaDeadlineTest {
+
+    private HttpServer server;
+    private String baseUrl;
+    private SimpleMeterRegistry registry;
+    private ExecutorService sagaExecutor;
+
+    private volatile long eligibilityDelayMs;
+    private volatile int reserveStatus = 200;
+    // Header value by path suffix; "none" if the call had no header
+    private final Map<String, String> timeouts = new ConcurrentHashMap<>();
+    private final AtomicLong attemptIds = new AtomicLong();
+
+    @BeforeEach
+    public void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 256);
+        server.setExecutor(Executors.newFixedThreadPool(16));
+        server.createContext("/", this::handle);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        registry = new SimpleMeterRegistry();
+        sagaExecutor = Executors.newFixedThreadPool(8);
+    }
+
+    @AfterEach
+    public void stopStub() {
+        sagaExecutor.shutdownNow();
+        server.stop(0);
+        ((ExecutorService) server.getExecutor()).shutdownNow();
+    }
+
+    @Test
+    public void testRemainingTimeIsPassedToEveryStep() {
+        SagaOrchestrationServiceImpl service = service(5);
+
+        Deadline.callWith(Deadline.after(Duration.ofSeconds(5)),
+                () -> service.startAttempt(StartAttemptRequest.builder().assignmentId(1L).build()));
+
+        for (String step : new String[]{"check-eligibility", "reserve", "attempts"}) {
+            String timeout = timeouts.get(step);
+            assertNotNull(timeout, step + " was not called");
+            long remaining = Long.parseLong(timeout);
+            assertTrue(remaining > 0 && remaining <= 5000, step + " got " + timeout);
+        }
+        assertNull(Deadline.current());
+    }
+
+    @Test
+    public void testStepsAfterTheDeadlineAreNotCalled() {
+        SagaOrchestrationServiceImpl service = service(5);
+        eligibilityDelayMs = 400;
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> Deadline.callWith(
+                Deadline.after(Duration.ofMillis(150)),
+                () -> service.startAttempt(StartAttemptRequest.builder().assignmentId(1L).build())));
+
+        assertEquals(HttpStatus.GATEWAY_TIMEOUT, e.getStatusCode());
+        assertFalse(timeouts.containsKey("reserve"));
+        assertFalse(timeouts.containsKey("attempts"));
+        assertEquals(1.0, registry.get("orchestrator.saga.deadline.exceeded")
+                .tag("step", "CHECK_ELIGIBILITY").tag("phase", "during_step").counter().count());
+    }
+
+    @Test
+    public void testRetryThatWouldMissTheDeadlineIsSkippedAndCompensationRuns() {
+        // Backoff of 500ms against 300ms left
+        SagaOrchestrationServiceImpl service = service(500);
+        reserveStatus = 503;
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> Deadline.callWith(Deadline.after(Duration.ofMillis(300)),
+                () -> service.startAttempt(StartAttemptRequest.builder().assignmentId(1L).build())));
+        // The saga's failure is kept as the cause, with the step that failed
+        SagaStepException failure = assertInstanceOf(SagaStepException.class, e.getCause());
+        assertEquals(SagaStep.RESERVE_ATTEMPT, failure.getFailedStep());
+
+        assertEquals(1.0, registry.get("orchestrator.saga.deadline.exceeded")
+                .tag("step", "RESERVE_ATTEMPT").tag("phase", "before_retry").counter().count());
+        assertNull(registry.find("orchestrator.saga.step.retries").counter());
+        // Compensation is not bound by the deadline
+        assertEquals("none", timeouts.get("release"));
+        assertEquals("none", timeouts.get("cancel"));
+    }
+
+    private SagaOrchestrationServiceImpl service(long backoffMs) {
+        RestClient.Builder builder = new RestClientConfig().restClientBuilder();
+        AssignmentServiceClientImpl assignmentClient = new AssignmentServiceClientImpl(builder,
+                new JdkClientHttpRequestFactory(), baseUrl);
+        AttemptServiceClientImpl attemptClient = new AttemptServiceClientImpl(builder,
+                new JdkClientHttpRequestFactory(), baseUrl);
+        RetryPolicy retryPolicy = new SagaExecutorConfig().sagaRetryPolicy(3, backoffMs, 1.0, backoffMs, 0.0,
+                new RetryBudget(0.1, 10));
+        // Reserve after create, so that a failed reserve has an attempt to cancel
+        return new SagaOrchestrationServiceImpl(assignmentClient, attemptClient,
+                new InMemorySagaInstanceStore(1000, Duration.ofMinutes(5), Clock.systemUTC()),
+                new SagaEngine(sagaExecutor, registry), SagaLog.NOOP, false, retryPolicy, 0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        String path = exchange.getRequestURI().getPath();
+        String step = path.substring(path.lastIndexOf('/') + 1);
+        String timeout = exchange.getRequestHeaders().getFirst(Deadline.HEADER);
+        timeouts.put(step, timeout != null ? timeout : "none");
+        int status = 200;
+        String body = "{}";
+        if (step.equals("check-eligibility")) {
+            sleep(eligibilityDelayMs);
+            body = "{\"eligible\":true,\"reason\":\"Eligible\"}";
+        } else if (step.equals("reserve")) {
+            status = reserveStatus;
+        } else if (path.equals("/attempts")) {
+            status = 201;
+            body = "{\"attemptId\":" + attemptIds.incrementAndGet() + ",\"status\":\"PENDING\"}";
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
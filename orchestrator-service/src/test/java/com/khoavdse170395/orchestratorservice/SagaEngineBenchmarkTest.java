@@ -0,0 +1,102 @@
+package com.khoavdse170395.orchestratorservice;
+
+import com.khoavdse170395.orchestratorservice.model.SagaStep;
+import com.khoavdse170395.orchestratorservice.service.saga.SagaDefinition;
+import com.khoavdse170395.orchestratorservice.service.saga.SagaEngine;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Starts 50,000 start-attempt shaped sagas (one step, then two in parallel) against non-blocking
+ * stubs that answer after 300ms, so all of them are in flight at once on a 4-thread executor.
+ * Reports the peak in-flight count, retained heap per in-flight saga (engine state plus the stub's
+ * pending timer) and the throughput once they drain.
+ */
+@Slf4j
+@Tag("benchmark")
+public class SagaEngineBenchmarkTest {
+
+    private static final int SAGAS = 50_000;
+    private static final long LATENCY_MS = 300;
+
+    @Test
+    public void benchmarkManyInFlightSagas() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        ScheduledExecutorService downstream = Executors.newScheduledThreadPool(2);
+        SagaEngine engine = new SagaEngine(executor);
+        SagaDefinition<AtomicInteger> saga = SagaDefinition.<AtomicInteger>builder("benchmark")
+                .step(SagaStep.CHECK_ELIGIBILITY).asyncAction(c -> respondLater(downstream, c))
+                        .timeout(Duration.ofSeconds(30)).add()
+                .step(SagaStep.CREATE_ATTEMPT).asyncAction(c -> respondLater(downstream, c))
+                        .compensation(AtomicInteger::decrementAndGet).timeout(Duration.ofSeconds(30))
+                        .dependsOn(SagaStep.CHECK_ELIGIBILITY).add()
+                .step(SagaStep.RESERVE_ATTEMPT).asyncAction(c -> respondLater(downstream, c))
+                        .compensation(AtomicInteger::decrementAndGet).timeout(Duration.ofSeconds(30))
+                        .dependsOn(SagaStep.CHECK_ELIGIBILITY).add()
+                .build();
+        try {
+            int threadsBefore = Thread.activeCount();
+            long heapBefore = usedHeapAfterGc();
+            long start = System.nanoTime();
+
+            List<CompletableFuture<Void>> results = new ArrayList<>(SAGAS);
+            List<AtomicInteger> contexts = new ArrayList<>(SAGAS);
+            for (int i = 0; i < SAGAS; i++) {
+                AtomicInteger context = new AtomicInteger();
+                contexts.add(context);
+                results.add(engine.start(saga, context));
+            }
+            int peakInFlight = engine.getInFlight();
+            long bytesPerSaga = (usedHeapAfterGc() - heapBefore) / SAGAS;
+            int threadsDuring = Thread.activeCount();
+
+            CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).get(60, TimeUnit.SECONDS);
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            log.info("sagas {}, peak in flight {}, ~{} bytes/saga in flight, threads {} -> {}, "
+                            + "{} ms ({} sagas/s, 3 x {}ms steps each)",
+                    SAGAS, peakInFlight, bytesPerSaga, threadsBefore, threadsDuring, millis,
+                    SAGAS * 1000L / Math.max(1, millis), LATENCY_MS);
+            assertTrue(peakInFlight > SAGAS * 0.9, "peak in flight " + peakInFlight);
+            assertTrue(bytesPerSaga < 4096, "bytes per saga " + bytesPerSaga);
+            assertTrue(threadsDuring - threadsBefore <= 8, "threads grew from " + threadsBefore + " to " + threadsDuring);
+            assertTrue(contexts.stream().allMatch(c -> c.get() == 3));
+            assertEquals(0, engine.getInFlight());
+        } finally {
+            engine.close();
+            downstream.shutdownNow();
+            executor.shutdownNow();
+        }
+    }
+
+    private static CompletableFuture<Void> respondLater(ScheduledExecutorService downstream, AtomicInteger context) {
+        CompletableFuture<Void> response = new CompletableFuture<>();
+        downstream.schedule(() -> {
+            context.incrementAndGet();
+            response.complete(null);
+        }, LATENCY_MS, TimeUnit.MILLISECONDS);
+        return response;
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,343 @@
+package com.khoavdse170395.orchestratorservice;
+
+import com.khoavdse170395.orchestratorservice.dto.StartAttemptRequest;
+import com.khoavdse170395.orchestratorservice.dto.SubmitAttemptRequest;
+import com.khoavdse170395.orchestratorservice.model.SagaInstance;
+import com.khoavdse170395.orchestratorservice.model.SagaLogEvent;
+import com.khoavdse170395.orchestratorservice.model.SagaLogRecord;
+import com.khoavdse170395.orchestratorservice.model.SagaStatus;
+import com.khoavdse170395.orchestratorservice.model.SagaStep;
+import com.khoavdse170395.orchestratorservice.service.AssignmentServiceClient;
+import com.khoavdse170395.orchestratorservice.service.AttemptServiceClient;
+import com.khoavdse170395.orchestratorservice.service.SagaLog;
+import com.khoavdse170395.orchestratorservice.service.impl.InMemorySagaInstanceStore;
+import com.khoavdse170395.orchestratorservice.service.impl.SagaOrchestrationServiceImpl;
+import com.khoavdse170395.orchestratorservice.service.saga.RetryPolicy;
+import com.khoavdse170395.orchestratorservice.service.saga.SagaDefinition;
+import com.khoavdse170395.orchestratorservice.service.saga.SagaEngine;
+import com.khoavdse170395.orchestratorservice.service.saga.SagaStepException;
+import com.khoavdse170395.orchestratorservice.service.saga.SagaStepTimeoutException;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@Slf4j
+public class SagaEngineTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final SagaEngine engine = new SagaEngine(executor);
+
+    @AfterEach
+    public void tearDown() {
+        engine.close();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testFailureCompensatesEveryStartedStepInReverse() {
+        List<String> calls = new CopyOnWriteArrayList<>();
+        CountDownLatch createStarted = new CountDownLatch(1);
+        SagaDefinition<List<String>> saga = SagaDefinition.<List<String>>builder("test")
+                .step(SagaStep.CHECK_ELIGIBILITY).action(c -> c.add("check")).compensation(c -> c.add("undo-check")).add()
+                .step(SagaStep.CREATE_ATTEMPT).action(c -> {
+                    createStarted.countDown();
+                    Thread.sleep(50);
+                    c.add("create");
+                }).compensation(c -> c.add("undo-create")).dependsOn(SagaStep.CHECK_ELIGIBILITY).add()
+                .step(SagaStep.RESERVE_ATTEMPT).action(c -> {
+                    createStarted.await(5, TimeUnit.SECONDS);
+                    throw new IllegalStateException("No attempts remaining");
+                }).compensation(c -> c.add("undo-reserve")).dependsOn(SagaStep.CHECK_ELIGIBILITY).add()
+                .build();
+
+        CompletionException thrown = assertThrows(CompletionException.class, () -> engine.start(saga, calls).join());
+        SagaStepException failure = (SagaStepException) thrown.getCause();
+        assertEquals(SagaStep.RESERVE_ATTEMPT, failure.getFailedStep());
+        assertEquals("No attempts remaining", failure.getMessage());
+        assertEquals(List.of(SagaStep.CHECK_ELIGIBILITY, SagaStep.CREATE_ATTEMPT, SagaStep.RESERVE_ATTEMPT),
+                failure.getStartedSteps());
+        // The create in flight was waited for, not abandoned, and everything was undone in reverse start order
+        assertEquals(List.of("check", "create", "undo-reserve", "undo-create", "undo-check"), calls);
+        assertEquals(0, engine.getInFlight());
+    }
+
+    @Test
+    public void testRunKeepsEveryStepRetryAndCompensationOnTheCallingThread() {
+        AtomicInteger executorTasks = new AtomicInteger();
+        SagaEngine counting = new SagaEngine(task -> {
+            executorTasks.incrementAndGet();
+            executor.execute(task);
+        });
+        Thread caller = Thread.currentThread();
+        List<Thread> threads = new CopyOnWriteArrayList<>();
+        AtomicInteger reserves = new AtomicInteger();
+        SagaDefinition<List<String>> saga = SagaDefinition.<List<String>>builder("test")
+                .step(SagaStep.CHECK_ELIGIBILITY).action(c -> threads.add(Thread.currentThread())).add()
+                .step(SagaStep.CREATE_ATTEMPT).action(c -> threads.add(Thread.currentThread()))
+                .compensation(c -> threads.add(Thread.currentThread())).dependsOn(SagaStep.CHECK_ELIGIBILITY).add()
+                .step(SagaStep.RESERVE_ATTEMPT).action(c -> {
+                    threads.add(Thread.currentThread());
+                    throw new IllegalStateException("Reserve " + reserves.incrementAndGet() + " failed");
+                })
+                // The backoff runs on the timer, the retry itself comes back here
+                .retry(RetryPolicy.exponential(2, Duration.ofMillis(20), 1.0, Duration.ofMillis(20)))
+                .compensation(c -> threads.add(Thread.currentThread())).dependsOn(SagaStep.CREATE_ATTEMPT).add()
+                .build();
+
+        try {
+            CompletableFuture<Void> result = counting.run(saga, new ArrayList<>(), null);
+            assertTrue(result.isDone());
+            CompletionException thrown = assertThrows(CompletionException.class, result::join);
+            assertEquals("Reserve 2 failed", thrown.getCause().getMessage());
+        } finally {
+            counting.close();
+        }
+        // check, create, reserve twice, then both compensations
+        assertEquals(6, threads.size());
+        assertTrue(threads.stream().allMatch(thread -> thread == caller), threads.toString());
+        assertEquals(0, executorTasks.get());
+        assertEquals(0, counting.getInFlight());
+    }
+
+    @Test
+    public void testRunStillOverlapsParallelSteps() {
+        // Each branch only gets past the latch if the other one runs at the same time
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        SagaDefinition.StepAction<List<String>> meet = c -> {
+            bothRunning.countDown();
+            if (!bothRunning.await(5, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Parallel steps ran one after the other");
+            }
+        };
+        SagaDefinition<List<String>> saga = SagaDefinition.<List<String>>builder("test")
+                .step(SagaStep.CHECK_ELIGIBILITY).action(c -> { }).add()
+                .step(SagaStep.CREATE_ATTEMPT).action(meet).dependsOn(SagaStep.CHECK_ELIGIBILITY).add()
+                .step(SagaStep.RESERVE_ATTEMPT).action(meet).dependsOn(SagaStep.CHECK_ELIGIBILITY).add()
+                .build();
+
+        engine.run(saga, new ArrayList<>(), null).join();
+        assertEquals(0, engine.getInFlight());
+    }
+
+    @Test
+    public void testTimedOutAttemptIsRetriedAndLateResultIgnored() {
+        AtomicInteger attempts = new AtomicInteger();
+        AtomicInteger results = new AtomicInteger();
+        SagaDefinition<AtomicInteger> saga = SagaDefinition.<AtomicInteger>builder("test")
+                .step(SagaStep.CREATE_ATTEMPT).action(c -> {
+                    if (attempts.incrementAndGet() == 1) {
+                        Thread.sleep(300);
+                    }
+                    c.incrementAndGet();
+                })
+                .retry(RetryPolicy.exponential(3, Duration.ofMillis(10), 2.0, Duration.ofMillis(100))
+                        .retryOn(e -> e instanceof SagaStepTimeoutException))
+                .timeout(Duration.ofMillis(50))
+                .add()
+                .build();
+
+        engine.start(saga, results).orTimeout(5, TimeUnit.SECONDS).join();
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    public void testTimedOutCreateIsLookedUpAndCancelled() throws Exception {
+        AssignmentServiceClient assignmentClient = mock(AssignmentServiceClient.class);
+        AttemptServiceClient attemptClient = mock(AttemptServiceClient.class);
+        when(assignmentClient.checkEligibility(anyLong(), anyString())).thenReturn(true);
+        CountDownLatch landed = new CountDownLatch(1);
+        CountDownLatch lateReply = new CountDownLatch(1);
+        // The create lands at once but answers after the step timed out; the lookup finds it by key
+        when(attemptClient.createAttempt(anyLong(), anyString(), anyString())).thenAnswer(invocation -> {
+            landed.countDown();
+            Thread.sleep(300);
+            lateReply.countDown();
+            return 42L;
+        });
+        when(attemptClient.findAttempts(anyList())).thenAnswer(invocation -> landed.getCount() == 0
+                ? Map.of(invocation.<List<String>>getArgument(0).get(0), 42L) : Map.of());
+        List<SagaLogEvent> events = new CopyOnWriteArrayList<>();
+        SagaOrchestrationServiceImpl service = service(assignmentClient, attemptClient, events);
+
+        assertThrows(RuntimeException.class,
+                () -> service.startAttempt(StartAttemptRequest.builder().assignmentId(1L).build()));
+        assertTrue(lateReply.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+
+        verify(attemptClient, times(1)).createAttempt(anyLong(), anyString(), anyString());
+        verify(attemptClient).findAttempts(anyList());
+        verify(attemptClient).cancelAttempt(42L);
+        verify(assignmentClient, never()).reserveAttempt(anyLong(), anyString(), anyString());
+        // The late reply neither recorded the attempt nor wrote anything after the saga had finished
+        assertFalse(events.contains(SagaLogEvent.ATTEMPT_CREATED), events.toString());
+        assertEquals(SagaLogEvent.COMPENSATED, events.get(events.size() - 1));
+    }
+
+    @Test
+    public void testTimedOutCreateThatNeverLandedCreatesNothing() throws Exception {
+        AssignmentServiceClient assignmentClient = mock(AssignmentServiceClient.class);
+        AttemptServiceClient attemptClient = mock(AttemptServiceClient.class);
+        when(assignmentClient.checkEligibility(anyLong(), anyString())).thenReturn(true);
+        CountDownLatch gaveUp = new CountDownLatch(1);
+        when(attemptClient.createAttempt(anyLong(), anyString(), anyString())).thenAnswer(invocation -> {
+            Thread.sleep(300);
+            gaveUp.countDown();
+            throw new RuntimeException("Failed to create attempt");
+        });
+        when(attemptClient.findAttempts(anyList())).thenReturn(Map.of());
+        List<SagaLogEvent> events = new CopyOnWriteArrayList<>();
+        SagaOrchestrationServiceImpl service = service(assignmentClient, attemptClient, events);
+
+        assertThrows(RuntimeException.class,
+                () -> service.startAttempt(StartAttemptRequest.builder().assignmentId(1L).build()));
+        assertTrue(gaveUp.await(5, TimeUnit.SECONDS));
+
+        verify(attemptClient, times(1)).createAttempt(anyLong(), anyString(), anyString());
+        verify(attemptClient).findAttempts(anyList());
+        verify(attemptClient, never()).cancelAttempt(anyLong());
+        assertEquals(SagaLogEvent.COMPENSATED, events.get(events.size() - 1));
+    }
+
+    @Test
+    public void testFailedLookupLeavesCompensationIncomplete() {
+        AssignmentServiceClient assignmentClient = mock(AssignmentServiceClient.class);
+        AttemptServiceClient attemptClient = mock(AttemptServiceClient.class);
+        when(assignmentClient.checkEligibility(anyLong(), anyString())).thenReturn(true);
+        when(attemptClient.createAttempt(anyLong(), anyString(), anyString())).thenAnswer(invocation -> {
+            Thread.sleep(300);
+            return 42L;
+        });
+        when(attemptClient.findAttempts(anyList())).thenThrow(new RuntimeException("Failed to look up attempts"));
+        List<SagaLogEvent> events = new CopyOnWriteArrayList<>();
+        SagaOrchestrationServiceImpl service = service(assignmentClient, attemptClient, events);
+
+        assertThrows(RuntimeException.class,
+                () -> service.startAttempt(StartAttemptRequest.builder().assignmentId(1L).build()));
+
+        verify(attemptClient, times(1)).createAttempt(anyLong(), anyString(), anyString());
+        verify(attemptClient, never()).cancelAttempt(anyLong());
+        assertEquals(SagaLogEvent.COMPENSATION_FAILED, events.get(events.size() - 1));
+    }
+
+    private SagaOrchestrationServiceImpl service(AssignmentServiceClient assignmentClient, AttemptServiceClient attemptClient,
+                                                 List<SagaLogEvent> events) {
+        SagaLog sagaLog = new SagaLog() {
+            @Override
+            public void append(SagaLogRecord record) {
+                events.add(record.getEvent());
+            }
+
+            @Override
+            public List<SagaInstance> unfinishedSagas() {
+                return List.of();
+            }
+        };
+        return new SagaOrchestrationServiceImpl(assignmentClient, attemptClient,
+                new InMemorySagaInstanceStore(100, Duration.ofMinutes(5), Clock.systemUTC()), engine,
+                sagaLog, false, RetryPolicy.NONE, 50);
+    }
+
+    @Test
+    public void testNonRetryableFailureIsNotRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+        SagaDefinition<Object> saga = SagaDefinition.builder("test")
+                .step(SagaStep.CHECK_ELIGIBILITY).action(c -> {
+                    attempts.incrementAndGet();
+                    throw new RuntimeException("User not eligible");
+                })
+                .retry(RetryPolicy.exponential(3, Duration.ofMillis(1), 1.0, Duration.ofMillis(1))
+                        .retryOn(e -> e instanceof SagaStepTimeoutException))
+                .add()
+                .build();
+
+        assertThrows(CompletionException.class, () -> engine.start(saga, new Object()).join());
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    public void testCycleIsRejected() {
+        SagaDefinition.Builder<Object> builder = SagaDefinition.builder("cycle")
+                .step(SagaStep.CREATE_ATTEMPT).action(c -> { }).dependsOn(SagaStep.RESERVE_ATTEMPT).add()
+                .step(SagaStep.RESERVE_ATTEMPT).action(c -> { }).dependsOn(SagaStep.CREATE_ATTEMPT).add();
+        assertThrows(IllegalStateException.class, builder::build);
+    }
+
+    @Test
+    public void testSubmitFlowRunsStepsInOrderWithScore() {
+        AssignmentServiceClient assignmentClient = mock(AssignmentServiceClient.class);
+        AttemptServiceClient attemptClient = mock(AttemptServiceClient.class);
+        when(attemptClient.autoScore(7L)).thenReturn(8.5);
+        SagaOrchestrationServiceImpl service = new SagaOrchestrationServiceImpl(assignmentClient, attemptClient,
+                new InMemorySagaInstanceStore(100, Duration.ofMinutes(5), Clock.systemUTC()), executor, SagaLog.NOOP);
+
+        service.submitAttempt(SubmitAttemptRequest.builder().attemptId(7L).answers(List.of()).build());
+
+        var order = inOrder(attemptClient);
+        order.verify(attemptClient).submitAnswers(eq(7L), any());
+        order.verify(attemptClient).autoScore(7L);
+        order.verify(attemptClient).finalizeAttempt(7L, 8.5);
+    }
+
+    /**
+     * Stub downstreams with 20ms eligibility and 60ms create/reserve: sequential sagas take about the
+     * sum (140ms), parallel ones about the longest path (80ms).
+     */
+    @Test
+    @Tag("benchmark")
+    public void benchmarkSequentialVersusParallelSteps() {
+        long sequential = meanSagaMillis(false);
+        long parallel = meanSagaMillis(true);
+        log.info("mean saga latency: sequential {} ms, parallel {} ms", sequential, parallel);
+        assertTrue(sequential >= 140, "sequential " + sequential);
+        assertTrue(parallel < 120, "parallel " + parallel);
+    }
+
+    private long meanSagaMillis(boolean parallelSteps) {
+        AssignmentServiceClient assignmentClient = mock(AssignmentServiceClient.class);
+        AttemptServiceClient attemptClient = mock(AttemptServiceClient.class);
+        when(assignmentClient.checkEligibility(anyLong(), anyString())).thenAnswer(invocation -> {
+            Thread.sleep(20);
+            return true;
+        });
+        when(attemptClient.createAttempt(anyLong(), anyString(), anyString())).thenAnswer(invocation -> {
+            Thread.sleep(60);
+            return 1L;
+        });
+        doAnswer(invocation -> {
+            Thread.sleep(60);
+            return null;
+        }).when(assignmentClient).reserveAttempt(anyLong(), anyString(), anyString());
+        SagaOrchestrationServiceImpl service = new SagaOrchestrationServiceImpl(assignmentClient, attemptClient,
+                new InMemorySagaInstanceStore(100, Duration.ofMinutes(5), Clock.systemUTC()), engine,
+                SagaLog.NOOP, parallelSteps, RetryPolicy.NONE, 0);
+
+        int sagas = 20;
+        long totalNanos = 0;
+        for (int i = 0; i < sagas; i++) {
+            long start = System.nanoTime();
+            String sagaId = service.startAttempt(StartAttemptRequest.builder().assignmentId(1L).build()).getSagaId();
+            totalNanos += System.nanoTime() - start;
+            assertEquals(SagaStatus.COMPLETED, service.findSaga(sagaId).orElseThrow().getStatus());
+        }
+        return totalNanos / sagas / 1_000_000;
+    }
+}
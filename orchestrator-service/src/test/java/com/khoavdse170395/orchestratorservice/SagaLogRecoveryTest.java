@@ -0,0 +1,176 @@
+package com.khoavdse170395.orchestratorservice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.khoavdse170395.orchestratorservice.dto.StartAttemptRequest;
+import com.khoavdse170395.orchestratorservice.model.SagaInstance;
+import com.khoavdse170395.orchestratorservice.model.SagaLogEvent;
+import com.khoavdse170395.orchestratorservice.model.SagaLogRecord;
+import com.khoavdse170395.orchestratorservice.model.SagaStatus;
+import com.khoavdse170395.orchestratorservice.model.SagaStep;
+import com.khoavdse170395.orchestratorservice.service.AssignmentServiceClient;
+import com.khoavdse170395.orchestratorservice.service.AttemptServiceClient;
+import com.khoavdse170395.orchestratorservice.service.impl.FileSagaLog;
+import com.khoavdse170395.orchestratorservice.service.impl.InMemorySagaInstanceStore;
+import com.khoavdse170395.orchestratorservice.service.impl.SagaOrchestrationServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class SagaLogRecoveryTest {
+
+    @TempDir
+    Path dir;
+
+    private final AssignmentServiceClient assignmentClient = mock(AssignmentServiceClient.class);
+    private final AttemptServiceClient attemptClient = mock(AttemptServiceClient.class);
+
+    @Test
+    public void testSagaStoppedDuringCreateIsDrivenForward() throws IOException {
+        Path file = dir.resolve("saga.log");
+        SagaInstance crashed = new SagaInstance("saga-1", 5L, "demo-user", "key-1");
+        try (FileSagaLog sagaLog = open(file, 1 << 20)) {
+            sagaLog.append(SagaLogRecord.started(crashed));
+            sagaLog.append(SagaLogRecord.step(crashed, SagaStep.CHECK_ELIGIBILITY));
+            sagaLog.append(SagaLogRecord.step(crashed, SagaStep.CREATE_ATTEMPT));
+        }
+        // The process died halfway through writing the next record
+        Files.writeString(file, "{\"sagaId\":\"saga-1\",\"ev", StandardOpenOption.APPEND);
+
+        when(attemptClient.createAttempt(5L, "demo-user", "key-1")).thenReturn(501L);
+        try (FileSagaLog sagaLog = open(file, 1 << 20)) {
+            List<SagaInstance> unfinished = sagaLog.unfinishedSagas();
+            assertEquals(1, unfinished.size());
+            assertEquals(SagaStep.CREATE_ATTEMPT, unfinished.get(0).getCurrentStep());
+
+            service(sagaLog).recoverStartAttempt(unfinished.get(0), false);
+        }
+
+        verify(assignmentClient, never()).checkEligibility(anyLong(), anyString());
+        verify(attemptClient).createAttempt(5L, "demo-user", "key-1");
+        verify(assignmentClient).reserveAttempt(5L, "demo-user", "key-1");
+        try (FileSagaLog sagaLog = open(file, 1 << 20)) {
+            assertTrue(sagaLog.unfinishedSagas().isEmpty());
+        }
+    }
+
+    @Test
+    public void testCompensateModeRollsBackReservedSaga() throws IOException {
+        Path file = dir.resolve("saga.log");
+        SagaInstance crashed = new SagaInstance("saga-2", 6L, "demo-user", "key-2");
+        try (FileSagaLog sagaLog = open(file, 1 << 20)) {
+            sagaLog.append(SagaLogRecord.started(crashed));
+            sagaLog.append(SagaLogRecord.step(crashed, SagaStep.CREATE_ATTEMPT));
+            sagaLog.append(SagaLogRecord.attemptCreated(crashed, 602L));
+            sagaLog.append(SagaLogRecord.step(crashed, SagaStep.RESERVE_ATTEMPT));
+        }
+
+        try (FileSagaLog sagaLog = open(file, 1 << 20)) {
+            SagaInstance recovered = sagaLog.unfinishedSagas().get(0);
+            assertEquals(602L, recovered.getAttemptId());
+            service(sagaLog).recoverStartAttempt(recovered, true);
+            assertEquals("COMPENSATED", recovered.toResponse().getStatus());
+        }
+
+        verify(attemptClient).cancelAttempt(602L);
+        verify(assignmentClient).releaseAttempt(6L, "demo-user", "key-2");
+        verify(assignmentClient, never()).reserveAttempt(anyLong(), anyString(), anyString());
+    }
+
+    @Test
+    public void testFailedCompensationStaysOpenAndIsRetriedByRecovery() throws IOException {
+        Path file = dir.resolve("saga.log");
+        when(assignmentClient.checkEligibility(anyLong(), anyString())).thenReturn(true);
+        when(attemptClient.createAttempt(anyLong(), anyString(), anyString())).thenReturn(801L);
+        doThrow(new RuntimeException("HTTP error: 400 BAD_REQUEST"))
+                .when(assignmentClient).reserveAttempt(anyLong(), anyString(), anyString());
+        // attempt-service is unreachable for the first cancel only
+        doThrow(new RuntimeException("Failed to cancel attempt", new ResourceAccessException("Connection refused")))
+                .doNothing()
+                .when(attemptClient).cancelAttempt(801L);
+
+        SagaOrchestrationServiceImpl failedService;
+        try (FileSagaLog sagaLog = open(file, 1 << 20)) {
+            // With the saga executor full both parallel steps wait for the caller, so create runs before reserve fails
+            failedService = service(sagaLog, task -> {
+                throw new RejectedExecutionException("Saga executor full");
+            });
+            assertThrows(RuntimeException.class,
+                    () -> failedService.startAttempt(StartAttemptRequest.builder().assignmentId(8L).build()));
+            assertEquals(1, sagaLog.openSagaCount());
+        }
+
+        try (FileSagaLog sagaLog = open(file, 1 << 20)) {
+            List<SagaInstance> unfinished = sagaLog.unfinishedSagas();
+            assertEquals(1, unfinished.size());
+            SagaInstance recovered = unfinished.get(0);
+            assertEquals(SagaStep.COMPENSATION, recovered.getCurrentStep());
+            assertEquals(801L, recovered.getAttemptId());
+            assertEquals(SagaStatus.COMPENSATION_FAILED,
+                    failedService.findSaga(recovered.getSagaId()).orElseThrow().getStatus());
+            service(sagaLog).recoverStartAttempt(recovered, false);
+            assertEquals("COMPENSATED", recovered.toResponse().getStatus());
+        }
+
+        verify(attemptClient, times(2)).cancelAttempt(801L);
+        verify(assignmentClient, times(2)).releaseAttempt(eq(8L), eq("demo-user"), anyString());
+        try (FileSagaLog sagaLog = open(file, 1 << 20)) {
+            assertTrue(sagaLog.unfinishedSagas().isEmpty());
+        }
+    }
+
+    @Test
+    public void testCompactionKeepsOnlyOpenSagas() throws IOException {
+        Path file = dir.resolve("saga.log");
+        try (FileSagaLog sagaLog = open(file, 4096)) {
+            SagaInstance open = new SagaInstance("open-saga", 7L, "demo-user", "open-key");
+            sagaLog.append(SagaLogRecord.started(open));
+            sagaLog.append(SagaLogRecord.attemptCreated(open, 701L));
+            for (int i = 0; i < 200; i++) {
+                SagaInstance done = new SagaInstance("done-" + i, 7L, "demo-user", "done-key-" + i);
+                sagaLog.append(SagaLogRecord.started(done));
+                sagaLog.append(SagaLogRecord.step(done, SagaStep.RESERVE_ATTEMPT));
+                sagaLog.append(SagaLogRecord.finished(done, SagaLogEvent.COMPLETED));
+            }
+            assertEquals(1, sagaLog.openSagaCount());
+        }
+
+        assertTrue(Files.size(file) < 4096, "log was not compacted: " + Files.size(file) + " bytes");
+        assertFalse(Files.readString(file, StandardCharsets.UTF_8).contains("done-0\""));
+        try (FileSagaLog sagaLog = open(file, 4096)) {
+            List<SagaInstance> unfinished = sagaLog.unfinishedSagas();
+            assertEquals(1, unfinished.size());
+            assertEquals("open-saga", unfinished.get(0).getSagaId());
+            assertEquals(701L, unfinished.get(0).getAttemptId());
+        }
+    }
+
+    private SagaOrchestrationServiceImpl service(FileSagaLog sagaLog) {
+        // Runs recovery inline
+        return service(sagaLog, Runnable::run);
+    }
+
+    private SagaOrchestrationServiceImpl service(FileSagaLog sagaLog, Executor sagaExecutor) {
+        return new SagaOrchestrationServiceImpl(assignmentClient, attemptClient,
+                new InMemorySagaInstanceStore(100, Duration.ofMinutes(5), Clock.systemUTC()), sagaExecutor, sagaLog);
+    }
+
+    private static FileSagaLog open(Path file, long compactThresholdBytes) throws IOException {
+        return new FileSagaLog(file, FileSagaLog.FsyncPolicy.GROUP, 64, Duration.ofMillis(10),
+                compactThresholdBytes, new ObjectMapper());
+    }
+}
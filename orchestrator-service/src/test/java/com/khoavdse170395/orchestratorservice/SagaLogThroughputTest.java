@@ -0,0 +1,90 @@
+package com.khoavdse170395.orchestratorservice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.khoavdse170395.orchestratorservice.model.SagaInstance;
+import com.khoavdse170395.orchestratorservice.model.SagaLogRecord;
+import com.khoavdse170395.orchestratorservice.model.SagaStep;
+import com.khoavdse170395.orchestratorservice.service.impl.FileSagaLog;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Appends from concurrent saga threads under each fsync policy and prints records/s and mean append
+ * latency. Absolute numbers depend on the disk (tmpfs makes fsync nearly free); the point is the
+ * relative cost of ALWAYS against the batched policies on the same machine.
+ */
+@Slf4j
+@Tag("benchmark")
+public class SagaLogThroughputTest {
+
+    private static final int THREADS = 8;
+    private static final int SAGAS_PER_THREAD = 100;
+    // STARTED + three steps, as written by a successful start-attempt before its terminal record
+    private static final int RECORDS_PER_SAGA = 4;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void measureAppendThroughputPerFsyncPolicy() throws Exception {
+        for (FileSagaLog.FsyncPolicy policy : FileSagaLog.FsyncPolicy.values()) {
+            Path file = dir.resolve(policy.name().toLowerCase() + ".log");
+            long elapsedNanos;
+            try (FileSagaLog sagaLog = new FileSagaLog(file, policy, 256, Duration.ofMillis(20), Long.MAX_VALUE,
+                    new ObjectMapper())) {
+                elapsedNanos = run(sagaLog);
+            }
+
+            int records = THREADS * SAGAS_PER_THREAD * RECORDS_PER_SAGA;
+            double perSecond = records / (elapsedNanos / 1_000_000_000.0);
+            double meanMicros = TimeUnit.NANOSECONDS.toMicros(elapsedNanos) * THREADS / (double) records;
+            log.info("{}: {} records in {} ms, {} records/s, mean append {} us", policy, records,
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNanos), Math.round(perSecond), Math.round(meanMicros * 10) / 10.0);
+
+            try (FileSagaLog reopened = new FileSagaLog(file, policy, 256, Duration.ofMillis(20), Long.MAX_VALUE,
+                    new ObjectMapper())) {
+                List<SagaInstance> unfinished = reopened.unfinishedSagas();
+                assertEquals(THREADS * SAGAS_PER_THREAD, unfinished.size());
+                assertTrue(unfinished.stream().allMatch(s -> s.getCurrentStep() == SagaStep.RESERVE_ATTEMPT));
+            }
+        }
+    }
+
+    private static long run(FileSagaLog sagaLog) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < SAGAS_PER_THREAD; i++) {
+                    SagaInstance saga = new SagaInstance("saga-" + thread + "-" + i, 1L, "demo-user", "key-" + thread + "-" + i);
+                    sagaLog.append(SagaLogRecord.started(saga));
+                    sagaLog.append(SagaLogRecord.step(saga, SagaStep.CHECK_ELIGIBILITY));
+                    sagaLog.append(SagaLogRecord.step(saga, SagaStep.CREATE_ATTEMPT));
+                    sagaLog.append(SagaLogRecord.step(saga, SagaStep.RESERVE_ATTEMPT));
+                }
+                return null;
+            }));
+        }
+        long startNanos = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(120, TimeUnit.SECONDS);
+        }
+        long elapsed = System.nanoTime() - startNanos;
+        executor.shutdown();
+        return elapsed;
+    }
+}
@@ -0,0 +1,195 @@
+package com.khoavdse170395.orchestratorservice;
+
+import com.khoavdse170395.orchestratorservice.config.RestClientConfig;
+import com.khoavdse170395.orchestratorservice.config.SagaExecutorConfig;
+import com.khoavdse170395.orchestratorservice.dto.StartAttemptRequest;
+import com.khoavdse170395.orchestratorservice.service.SagaLog;
+import com.khoavdse170395.orchestratorservice.service.impl.AssignmentServiceClientImpl;
+import com.khoavdse170395.orchestratorservice.service.impl.AttemptServiceClientImpl;
+import com.khoavdse170395.orchestratorservice.service.impl.InMemorySagaInstanceStore;
+import com.khoavdse170395.orchestratorservice.service.impl.SagaOrchestrationServiceImpl;
+import com.khoavdse170395.orchestratorservice.service.saga.RetryBudget;
+import com.khoavdse170395.orchestratorservice.service.saga.RetryPolicy;
+import com.khoavdse170395.orchestratorservice.service.saga.SagaEngine;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Saga step retries against a stub of both downstream services: a 5xx on reserve is retried and
+ * the saga saved instead of compensated, 429 honours Retry-After, and during an outage the retry
+ * budget keeps retries to a fraction of the calls.
+ */
+@Slf4j
+public class SagaRetryTest {
+
+    private HttpServer server;
+    private String baseUrl;
+    private SimpleMeterRegistry registry;
+    private ExecutorService sagaExecutor;
+
+    // Reserve calls answered with reserveFailureStatus before reserve succeeds; -1 = always fail
+    private volatile int reserveFailures;
+    private volatile int reserveFailureStatus = 503;
+    private final AtomicInteger reserveCalls = new AtomicInteger();
+    private final AtomicInteger releases = new AtomicInteger();
+    private final AtomicLong attemptIds = new AtomicLong();
+
+    @BeforeEach
+    public void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 256);
+        server.setExecutor(Executors.newFixedThreadPool(16));
+        server.createContext("/", this::handle);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        registry = new SimpleMeterRegistry();
+        sagaExecutor = Executors.newFixedThreadPool(8);
+    }
+
+    @AfterEach
+    public void stopStub() {
+        sagaExecutor.shutdownNow();
+        server.stop(0);
+        ((ExecutorService) server.getExecutor()).shutdownNow();
+    }
+
+    @Test
+    public void testServerErrorOnReserveIsRetriedAndSagaSaved() {
+        SagaOrchestrationServiceImpl service = service(new RetryBudget(0.1, 10));
+        reserveFailures = 2;
+
+        assertNotNull(service.startAttempt(StartAttemptRequest.builder().assignmentId(1L).build()).getAttemptId());
+
+        assertEquals(3, reserveCalls.get());
+        assertEquals(0, releases.get());
+        assertEquals(2.0, registry.get("orchestrator.saga.step.retries")
+                .tag("step", "RESERVE_ATTEMPT").tag("result", "retried").counter().count());
+        assertEquals(1.0, registry.get("orchestrator.saga.retried").tag("outcome", "saved").counter().count());
+        assertNull(registry.find("orchestrator.saga.retried").tag("outcome", "compensated").counter());
+    }
+
+    @Test
+    public void testNotFoundIsFinal() {
+        SagaOrchestrationServiceImpl service = service(new RetryBudget(0.1, 10));
+        reserveFailures = -1;
+        reserveFailureStatus = 404;
+
+        assertThrows(RuntimeException.class, () -> service.startAttempt(StartAttemptRequest.builder().assignmentId(1L).build()));
+        assertEquals(1, reserveCalls.get());
+        assertEquals(1, releases.get());
+    }
+
+    @Test
+    public void testRetryBudgetCapsRetriesDuringOutage() {
+        RetryBudget budget = new RetryBudget(0.1, 5);
+        SagaOrchestrationServiceImpl service = service(budget);
+        reserveFailures = -1;
+        int sagas = 50;
+
+        for (int i = 0; i < sagas; i++) {
+            long assignmentId = i + 1;
+            assertThrows(RuntimeException.class, () -> service.startAttempt(StartAttemptRequest.builder()
+                    .assignmentId(assignmentId).build()));
+        }
+
+        // Without the budget every saga would reserve 3 times; 3 first attempts per saga earn 0.3 retries
+        long retries = reserveCalls.get() - sagas;
+        log.info("sagas={} reserveCalls={} retries={} budgetExhausted={}",
+                sagas, reserveCalls.get(), retries, budget.getExhausted());
+        assertTrue(retries <= Math.round(0.1 * 3 * sagas) + 5, "retries " + retries);
+        assertTrue(budget.getExhausted() > 0);
+        assertEquals(sagas, releases.get());
+        assertTrue(registry.get("orchestrator.saga.step.retries")
+                .tag("step", "RESERVE_ATTEMPT").tag("result", "budget_exhausted").counter().count() > 0);
+        double retriedSagas = registry.get("orchestrator.saga.retried").tag("outcome", "compensated").counter().count();
+        assertTrue(retriedSagas > 0 && retriedSagas <= retries);
+    }
+
+    @Test
+    public void testBackoffHasJitterAndHonoursRetryAfter() {
+        RetryPolicy policy = new SagaExecutorConfig().sagaRetryPolicy(3, 100, 2.0, 2000, 0.5, new RetryBudget(0.1, 10));
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        for (int i = 0; i < 200; i++) {
+            long backoff = policy.backoffMillis(2);
+            min = Math.min(min, backoff);
+            max = Math.max(max, backoff);
+        }
+        assertTrue(min >= 100 && max <= 200, min + ".." + max);
+        assertTrue(max > min);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "1");
+        HttpClientErrorException tooMany = HttpClientErrorException.create(HttpStatus.TOO_MANY_REQUESTS,
+                "Too Many Requests", headers, null, null);
+        RuntimeException failure = new RuntimeException("Failed to reserve attempt", tooMany);
+        assertTrue(policy.shouldRetry(1, failure));
+        assertEquals(1000, policy.backoffMillis(1, failure));
+        headers.set(HttpHeaders.RETRY_AFTER, "30");
+        assertEquals(2000, policy.backoffMillis(1, new RuntimeException(HttpClientErrorException.create(
+                HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests", headers, null, null))));
+    }
+
+    private SagaOrchestrationServiceImpl service(RetryBudget budget) {
+        RestClient.Builder builder = new RestClientConfig().restClientBuilder();
+        AssignmentServiceClientImpl assignmentClient = new AssignmentServiceClientImpl(builder,
+                new JdkClientHttpRequestFactory(), baseUrl);
+        AttemptServiceClientImpl attemptClient = new AttemptServiceClientImpl(builder,
+                new JdkClientHttpRequestFactory(), baseUrl);
+        RetryPolicy retryPolicy = new SagaExecutorConfig().sagaRetryPolicy(3, 5, 2.0, 20, 0.5, budget);
+        // Reserve after create, so that every saga creates exactly once
+        return new SagaOrchestrationServiceImpl(assignmentClient, attemptClient,
+                new InMemorySagaInstanceStore(1000, Duration.ofMinutes(5), Clock.systemUTC()),
+                new SagaEngine(sagaExecutor, registry), SagaLog.NOOP, false, retryPolicy, 0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        String path = exchange.getRequestURI().getPath();
+        int status = 200;
+        String body = "{}";
+        if (path.endsWith("/check-eligibility")) {
+            body = "{\"eligible\":true,\"reason\":\"Eligible\"}";
+        } else if (path.endsWith("/reserve")) {
+            int call = reserveCalls.incrementAndGet();
+            if (reserveFailures < 0 || call <= reserveFailures) {
+                status = reserveFailureStatus;
+                body = "{\"message\":\"injected\"}";
+            }
+        } else if (path.endsWith("/release")) {
+            releases.incrementAndGet();
+        } else if (path.equals("/attempts")) {
+            status = 201;
+            body = "{\"attemptId\":" + attemptIds.incrementAndGet() + ",\"status\":\"PENDING\"}";
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
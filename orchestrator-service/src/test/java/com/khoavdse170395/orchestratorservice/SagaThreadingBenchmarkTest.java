@@ -0,0 +1,92 @@
+package com.khoavdse170395.orchestratorservice;
+
+import com.khoavdse170395.orchestratorservice.config.SagaExecutorConfig;
+import com.khoavdse170395.orchestratorservice.dto.SagaStatusResponse;
+import com.khoavdse170395.orchestratorservice.dto.StartAttemptRequest;
+import com.khoavdse170395.orchestratorservice.model.SagaStatus;
+import com.khoavdse170395.orchestratorservice.service.AssignmentServiceClient;
+import com.khoavdse170395.orchestratorservice.service.AttemptServiceClient;
+import com.khoavdse170395.orchestratorservice.service.SagaLog;
+import com.khoavdse170395.orchestratorservice.service.impl.InMemorySagaInstanceStore;
+import com.khoavdse170395.orchestratorservice.service.impl.SagaOrchestrationServiceImpl;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs the same burst of sagas, each blocking 5ms per downstream call, through the platform pool
+ * (default sizes) and through the virtual-thread executor. The platform pool is bounded by its core
+ * threads; the virtual executor keeps every saga in flight. The virtual half needs Java 21+.
+ */
+@Slf4j
+@Tag("benchmark")
+public class SagaThreadingBenchmarkTest {
+
+    private static final int SAGAS = 1000;
+    private static final long CALL_MS = 5;
+
+    @Test
+    public void benchmarkPlatformVersusVirtualThreads() throws Exception {
+        // Each saga queues a task per step, so the queue is sized to hold the whole burst
+        double platform = run("platform", SagaExecutorConfig.platformThreadExecutor(16, 64, 3 * SAGAS));
+        // 3 calls of 5ms per saga on 16 threads cannot go faster than this
+        assertTrue(platform < 16 * 1000.0 / (3 * CALL_MS) * 1.1, "platform " + platform);
+
+        if (Runtime.version().feature() < 21) {
+            log.info("virtual: skipped, needs Java 21+ (running on {})", Runtime.version().feature());
+            return;
+        }
+        double virtual = run("virtual", SagaExecutorConfig.virtualThreadExecutor(3 * SAGAS));
+        assertTrue(virtual > platform, "virtual " + virtual + " vs platform " + platform);
+    }
+
+    private double run(String label, ThreadPoolExecutor executor) throws Exception {
+        AssignmentServiceClient assignmentClient = mock(AssignmentServiceClient.class);
+        AttemptServiceClient attemptClient = mock(AttemptServiceClient.class);
+        when(assignmentClient.checkEligibility(anyLong(), anyString())).thenAnswer(invocation -> {
+            Thread.sleep(CALL_MS);
+            return true;
+        });
+        when(attemptClient.createAttempt(anyLong(), anyString(), anyString())).thenAnswer(invocation -> {
+            Thread.sleep(CALL_MS);
+            return 1L;
+        });
+        doAnswer(invocation -> {
+            Thread.sleep(CALL_MS);
+            return null;
+        }).when(assignmentClient).reserveAttempt(anyLong(), anyString(), anyString());
+        SagaOrchestrationServiceImpl service = new SagaOrchestrationServiceImpl(assignmentClient, attemptClient,
+                new InMemorySagaInstanceStore(SAGAS, Duration.ofMinutes(5), Clock.systemUTC()), executor, SagaLog.NOOP);
+
+        try {
+            long start = System.nanoTime();
+            List<CompletableFuture<SagaStatusResponse>> completions = new ArrayList<>(SAGAS);
+            for (int i = 0; i < SAGAS; i++) {
+                String sagaId = service.startAttemptAsync(StartAttemptRequest.builder().assignmentId(1L).build()).getSagaId();
+                completions.add(service.findSaga(sagaId).orElseThrow().getCompletion());
+            }
+            for (CompletableFuture<SagaStatusResponse> completion : completions) {
+                assertEquals(SagaStatus.COMPLETED.name(), completion.get(60, TimeUnit.SECONDS).getStatus());
+            }
+            long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            double perSecond = SAGAS * 1000.0 / millis;
+            log.info("{}: {} sagas in {} ms, {} sagas/s, peak threads {}",
+                    label, SAGAS, millis, Math.round(perSecond), executor.getLargestPoolSize());
+            return perSecond;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.khoavdse170395.orchestratorservice;
+
+import com.khoavdse170395.orchestratorservice.service.impl.SingleFlight;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SingleFlight<String, Boolean> singleFlight = new SingleFlight<>("test.eligibility", meterRegistry);
+    private final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentIdenticalCallsShareOneExecution() throws Exception {
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<Boolean>> results = callConcurrently("1:student", () -> {
+            executions.incrementAndGet();
+            await(release);
+            return true;
+        });
+
+        release.countDown();
+        for (Future<Boolean> result : results) {
+            assertTrue(result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, executions.get());
+        assertEquals(1, count("executed"));
+        assertEquals(CALLERS - 1, count("coalesced"));
+
+        // Nothing is cached: the next call runs again
+        assertFalse(singleFlight.execute("1:student", () -> false));
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    @Test
+    public void testWaitersGetTheSameFailure() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<Boolean>> results = callConcurrently("2:student", () -> {
+            await(release);
+            throw new IllegalStateException("assignment-service down");
+        });
+
+        release.countDown();
+        for (Future<Boolean> result : results) {
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, failure.getCause());
+        }
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    // Starts the leader first, then the others once its call is under way
+    private List<Future<Boolean>> callConcurrently(String key, Supplier<Boolean> call) throws Exception {
+        CountDownLatch leaderRunning = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        results.add(executor.submit(() -> singleFlight.execute(key, () -> {
+            leaderRunning.countDown();
+            return call.get();
+        })));
+        assertTrue(leaderRunning.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i < CALLERS; i++) {
+            results.add(executor.submit(() -> singleFlight.execute(key, call)));
+        }
+        // Followers count as coalesced as soon as they find the call in flight
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (count("coalesced") < CALLERS - 1 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        return results;
+    }
+
+    private double count(String result) {
+        return meterRegistry.get("test.eligibility.singleflight.calls").tag("result", result).counter().count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
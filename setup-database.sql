@@ -29,6 +29,14 @@ CREATE TABLE assignment_attempt_counter (
     PRIMARY KEY (assignment_id, user_id)
 );
 
+-- Tạo bảng reservation_idempotency_key (idempotency key của các lần reserve thành công)
+CREATE TABLE reservation_idempotency_key (
+    idempotency_key NVARCHAR(100) NOT NULL PRIMARY KEY,
+    created_at DATETIME2 NOT NULL
+);
+
+CREATE INDEX ix_reservation_idempotency_created_at ON reservation_idempotency_key(created_at);
+
 -- Sử dụng attempt_db
 USE attempt_db;
 GO
@@ -59,6 +67,24 @@ CREATE TABLE user_answer (
     UNIQUE(attempt_id, question_id)
 );
 
+-- Tạo bảng answer_key_entry (đáp án dùng cho auto-score, theo assignment)
+CREATE TABLE answer_key_entry (
+    assignment_id BIGINT NOT NULL,
+    question_id BIGINT NOT NULL,
+    correct_options NVARCHAR(50) NOT NULL,
+    weight DECIMAL(6,2) NOT NULL DEFAULT 1,
+    PRIMARY KEY (assignment_id, question_id)
+);
+
+-- Tạo bảng attempt_outbox (sự kiện vòng đời attempt, ghi cùng transaction, relay đọc và publish)
+CREATE TABLE attempt_outbox (
+    event_id BIGINT IDENTITY(1,1) PRIMARY KEY,
+    event_type NVARCHAR(50) NOT NULL,
+    attempt_id BIGINT NOT NULL,
+    payload NVARCHAR(MAX) NOT NULL,
+    created_at DATETIME2 NOT NULL
+);
+
 -- Thêm dữ liệu mẫu
 USE assignment_db;
 GO